@@ -0,0 +1,81 @@
+package org.kairosdb.metrics4j.benchmarks;
+
+import org.kairosdb.metrics4j.collectors.impl.DoubleCounter;
+import org.kairosdb.metrics4j.collectors.impl.LongCounter;
+import org.kairosdb.metrics4j.collectors.impl.StripedDoubleCounter;
+import org.kairosdb.metrics4j.collectors.impl.StripedLongCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ Compares the counters when many threads put to the same instance.  All
+ threads share one counter of each type.
+
+ Run main to go through 1, 8, 32 and 64 threads or pick a thread count with
+ <pre>
+ java -jar benchmarks/target/benchmarks.jar CounterContentionBenchmark -t 32
+ </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CounterContentionBenchmark
+{
+	private final LongCounter m_longCounter = new LongCounter();
+	private final StripedLongCounter m_stripedLongCounter = new StripedLongCounter();
+	private final DoubleCounter m_doubleCounter = new DoubleCounter();
+	private final StripedDoubleCounter m_stripedDoubleCounter = new StripedDoubleCounter();
+
+	@Benchmark
+	public void longCounter()
+	{
+		m_longCounter.put(1);
+	}
+
+	@Benchmark
+	public void stripedLongCounter()
+	{
+		m_stripedLongCounter.put(1);
+	}
+
+	@Benchmark
+	public void doubleCounter()
+	{
+		m_doubleCounter.put(1.0);
+	}
+
+	@Benchmark
+	public void stripedDoubleCounter()
+	{
+		m_stripedDoubleCounter.put(1.0);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		for (int threads : new int[]{1, 8, 32, 64})
+		{
+			Options options = new OptionsBuilder()
+					.include(CounterContentionBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build();
+
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package org.kairosdb.metrics4j.benchmarks;
+
+import org.kairosdb.metrics4j.MetricSourceManager;
+import org.kairosdb.metrics4j.annotation.Key;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ Measures the cost of calling a source interface returned from
+ MetricSourceManager.getSource and putting a value into the returned collector.
+
+ Run with the gc profiler to see bytes allocated per call:
+ <pre>
+ java -jar benchmarks/target/benchmarks.jar SourceInvocationBenchmark -prof gc
+ </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SourceInvocationBenchmark
+{
+	public interface BenchmarkSource
+	{
+		LongCollector count();
+
+		LongCollector countForHost(@Key("host") String host);
+
+		LongCollector countForHostAndStatus(@Key("host") String host, @Key("status") int status);
+	}
+
+	@Param({"proxy", "generated"})
+	public String m_implementation;
+
+	private BenchmarkSource m_source;
+
+	@Setup
+	public void setup()
+	{
+		MetricSourceManager.clearConfig();
+		MetricSourceManager.getMetricConfig().setGeneratedSources("generated".equals(m_implementation));
+		m_source = MetricSourceManager.getSource(BenchmarkSource.class);
+	}
+
+	@Benchmark
+	public void zeroArgs()
+	{
+		m_source.count().put(1);
+	}
+
+	@Benchmark
+	public void oneKey()
+	{
+		m_source.countForHost("host1").put(1);
+	}
+
+	@Benchmark
+	public void twoKeys()
+	{
+		m_source.countForHostAndStatus("host1", 200).put(1);
+	}
+}
@@ -0,0 +1,84 @@
+package org.kairosdb.metrics4j.benchmarks;
+
+import org.kairosdb.metrics4j.collectors.impl.SimpleStats;
+import org.kairosdb.metrics4j.collectors.impl.SimpleTimerMetric;
+import org.kairosdb.metrics4j.collectors.impl.StripedStats;
+import org.kairosdb.metrics4j.collectors.impl.StripedTimerMetric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Compares the stats collectors when many threads put to the same instance.
+ All threads share one collector of each type.
+
+ Run main to go through 1, 8, 32 and 64 threads or pick a thread count with
+ <pre>
+ java -jar benchmarks/target/benchmarks.jar StatsContentionBenchmark -t 32
+ </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsContentionBenchmark
+{
+	private static final Duration DURATION = Duration.ofMillis(42);
+
+	private final SimpleStats m_simpleStats = new SimpleStats();
+	private final StripedStats m_stripedStats = new StripedStats();
+	private final SimpleTimerMetric m_simpleTimer = new SimpleTimerMetric();
+	private final StripedTimerMetric m_stripedTimer = new StripedTimerMetric();
+
+	@Benchmark
+	public void simpleStats()
+	{
+		m_simpleStats.put(42);
+	}
+
+	@Benchmark
+	public void stripedStats()
+	{
+		m_stripedStats.put(42);
+	}
+
+	@Benchmark
+	public void simpleTimerMetric()
+	{
+		m_simpleTimer.put(DURATION);
+	}
+
+	@Benchmark
+	public void stripedTimerMetric()
+	{
+		m_stripedTimer.put(DURATION);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		for (int threads : new int[]{1, 8, 32, 64})
+		{
+			Options options = new OptionsBuilder()
+					.include(StatsContentionBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build();
+
+			new Runner(options).run();
+		}
+	}
+}
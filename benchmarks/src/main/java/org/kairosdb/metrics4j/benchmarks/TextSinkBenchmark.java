@@ -0,0 +1,134 @@
+package org.kairosdb.metrics4j.benchmarks;
+
+import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.internal.MetricBatch;
+import org.kairosdb.metrics4j.internal.ReportedMetricImpl;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.sinks.TelnetSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Measures samples per second through TelnetSink with the socket write replaced
+ by a no-op.  printWriter formats the same lines the way TextSocketSink did
+ before it used LineWriter, for comparison.  Run with -prof gc to see the
+ bytes allocated per sample (gc.alloc.rate.norm).  metricBatch sends the same
+ samples as a MetricBatch through reportBatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSinkBenchmark
+{
+	private static final int SAMPLES = 1000;
+
+	private static class NullTelnetSink extends TelnetSink
+	{
+		@Override
+		protected void writeBuffer(ByteBuffer buffer)
+		{
+			buffer.position(buffer.limit());
+		}
+	}
+
+	private final List<FormattedMetric> m_metrics = new ArrayList<>();
+	private final MetricBatch m_batch = new MetricBatch(SAMPLES);
+	private final NullTelnetSink m_sink = new NullTelnetSink();
+	private final ByteArrayOutputStream m_outputStream = new ByteArrayOutputStream();
+	private final PrintWriter m_printWriter = new PrintWriter(m_outputStream);
+
+	@Setup
+	public void setup()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("host", "server01.example.com");
+		tags.put("dc", "us-east");
+
+		MetricBatch.Series series = new MetricBatch.Series("org.kairosdb.Service.requestCount.value", "value",
+				"org.kairosdb.Service", "requestCount", tags, new HashMap<>(), "");
+
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			ReportedMetricImpl reportedMetric = new ReportedMetricImpl()
+					.setClassName("org.kairosdb.Service")
+					.setMethodName("requestCount")
+					.setTime(Instant.ofEpochMilli(1600000000000L + i));
+
+			if (i % 2 == 0)
+				reportedMetric.addSample("value", new LongValue(i * 31L));
+			else
+				reportedMetric.addSample("value", new DoubleValue(i));
+
+			FormattedMetric metric = new FormattedMetric(reportedMetric, new HashMap<>(), tags, "");
+			metric.addSample(reportedMetric.getSamples().get(0), "org.kairosdb.Service.requestCount.value");
+			m_metrics.add(metric);
+
+			m_batch.add(series, (1600000000000L + i) * 1_000_000L, reportedMetric.getSamples().get(0).getValue());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void lineWriter()
+	{
+		m_sink.reportMetrics(m_metrics);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void metricBatch()
+	{
+		m_sink.reportBatch(m_batch);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void printWriter(Blackhole blackhole)
+	{
+		for (FormattedMetric metric : m_metrics)
+		{
+			for (FormattedMetric.Sample sample : metric.getSamples())
+			{
+				StringBuilder sb = new StringBuilder();
+				sb.append("putm ").append(sample.getMetricName()).append(" ")
+						.append(sample.getTime().toEpochMilli())
+						.append(" ").append(sample.getValue().getValueAsString());
+
+				for (Map.Entry<String, String> tag : metric.getTags().entrySet())
+				{
+					sb.append(" ").append(tag.getKey()).append("=").append(tag.getValue());
+				}
+
+				m_printWriter.println(sb.toString());
+			}
+		}
+
+		m_printWriter.flush();
+		blackhole.consume(m_outputStream.size());
+		m_outputStream.reset();
+	}
+}
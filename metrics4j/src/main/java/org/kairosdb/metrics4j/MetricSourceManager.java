@@ -8,6 +8,7 @@ import org.kairosdb.metrics4j.internal.DoubleLambdaCollectorAdaptor;
 import org.kairosdb.metrics4j.internal.LambdaArgKey;
 import org.kairosdb.metrics4j.internal.LongLambdaCollectorAdaptor;
 import org.kairosdb.metrics4j.internal.MethodArgKey;
+import org.kairosdb.metrics4j.internal.SourceClassGenerator;
 import org.kairosdb.metrics4j.internal.SourceInvocationHandler;
 import org.kairosdb.metrics4j.collectors.MetricCollector;
 import org.kairosdb.metrics4j.internal.StaticCollectorCollection;
@@ -21,14 +22,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.DoubleSupplier;
 import java.util.function.LongSupplier;
@@ -47,10 +49,32 @@ public class MetricSourceManager
 {
 	private static final Logger log = LoggerFactory.getLogger(MetricSourceManager.class);
 	private static final Map<Class, SourceInvocationHandler> s_invocationMap = new ConcurrentHashMap<>();
-	private static final Map<ArgKey, StaticCollectorCollection> s_staticCollectors = new ConcurrentHashMap<>();
+	private static final Map<Class, Object> s_generatedSources = new ConcurrentHashMap<>();
+	private static final Map<ArgKey, StaticSource> s_staticCollectors = new ConcurrentHashMap<>();
+	//Snapshots from addSource to assign again on reload.  Weak so this does not
+	//keep sources alive, the configuration in use holds on to them.
+	private static final Map<Snapshot, ArgKey> s_snapshots = Collections.synchronizedMap(new WeakHashMap<>());
 
 	private static volatile MetricConfig s_metricConfig;
 
+	/**
+	 Collection for a source added with addSource, kept so it can be assigned
+	 to a new configuration on reload.
+	 */
+	private static class StaticSource
+	{
+		private final StaticCollectorCollection m_collection;
+		private final Map<String, String> m_tags;
+		private final String m_help;
+
+		private StaticSource(StaticCollectorCollection collection, Map<String, String> tags, String help)
+		{
+			m_collection = collection;
+			m_tags = tags;
+			m_help = help;
+		}
+	}
+
 	/**
 	 For testing purposes only, not to be used in production
 	 @param config MetricConfig object to set
@@ -59,6 +83,8 @@ public class MetricSourceManager
 	{
 		s_metricConfig = config;
 		s_invocationMap.clear();
+		s_generatedSources.clear();
+		s_snapshots.clear();
 	}
 
 	/**
@@ -68,6 +94,8 @@ public class MetricSourceManager
 	{
 		s_metricConfig = null;
 		s_invocationMap.clear();
+		s_generatedSources.clear();
+		s_snapshots.clear();
 	}
 
 	public static MetricConfig getMetricConfig()
@@ -89,6 +117,80 @@ public class MetricSourceManager
 		return s_metricConfig;
 	}
 
+	/**
+	 Reloads metrics4j.conf and metrics4j.properties, see {@link #reloadConfig(String, String)}
+	 */
+	public static void reloadConfig()
+	{
+		reloadConfig("metrics4j.conf", "metrics4j.properties");
+	}
+
+	/**
+	 Builds a new configuration and swaps it in for the current one.  The
+	 components of the new configuration are started first, then sinks,
+	 triggers, formatters and collectors of the current configuration are
+	 closed.  Sinks with unchanged settings are kept running.  Sources keep the
+	 values gathered so far when their collector and props are unchanged.  If the new configuration fails to parse or start it
+	 is closed and the current one is left running.
+	 @param baseConfig Resource name of the base configuration
+	 @param overridesConfig Resource name of the overrides
+	 */
+	public static synchronized void reloadConfig(String baseConfig, String overridesConfig)
+	{
+		MetricConfig oldConfig = s_metricConfig;
+		MetricConfig newConfig = MetricConfig.loadConfig(baseConfig, overridesConfig);
+
+		if (oldConfig != null)
+		{
+			log.info("Reloading metrics4j configuration");
+			newConfig.inheritFrom(oldConfig);
+		}
+
+		try
+		{
+			newConfig.initComponents();
+		}
+		catch (RuntimeException e)
+		{
+			newConfig.discard();
+			throw e;
+		}
+
+		if (oldConfig == null)
+		{
+			s_metricConfig = newConfig;
+			newConfig.runPostConfigInit();
+			return;
+		}
+
+		oldConfig.replaceWith(newConfig);
+		s_metricConfig = newConfig;
+
+		for (SourceInvocationHandler handler : s_invocationMap.values())
+			handler.reload(newConfig, oldConfig);
+
+		MetricsContext context = newConfig.getContext();
+		for (Map.Entry<ArgKey, StaticSource> entry : s_staticCollectors.entrySet())
+		{
+			if (!newConfig.isDisabled(entry.getKey()))
+			{
+				entry.getValue().m_collection.clearNameCaches();
+				assignStaticSource(newConfig, entry.getKey(), entry.getValue());
+			}
+		}
+
+		Map<Snapshot, ArgKey> snapshots;
+		synchronized (s_snapshots)
+		{
+			snapshots = new HashMap<>(s_snapshots);
+		}
+
+		for (Map.Entry<Snapshot, ArgKey> entry : snapshots.entrySet())
+			context.assignSnapshot(entry.getValue(), entry.getKey());
+
+		newConfig.runPostConfigInit();
+	}
+
 	/*public static void registerMetricCollector(MetricCollector collector)
 	{
 		ArgKey key = new CustomArgKey(collector);
@@ -116,7 +218,7 @@ public class MetricSourceManager
 		//todo need to do some validation on tClass, makes ure all methods only take strings and are annotated with Keys
 
 		requireNonNull(tClass, "Source class object cannot be null");
-		InvocationHandler handler = s_invocationMap.computeIfAbsent(tClass, (klass) -> {
+		SourceInvocationHandler handler = s_invocationMap.computeIfAbsent(tClass, (klass) -> {
 			MetricConfig metricConfig = getMetricConfig();
 			if (metricConfig.isDumpMetrics())
 			{
@@ -135,11 +237,33 @@ public class MetricSourceManager
 			return new SourceInvocationHandler(metricConfig);
 		});
 
+		if (getMetricConfig().isGeneratedSources())
+			return (T)s_generatedSources.computeIfAbsent(tClass, (klass) -> generateSource(klass, handler));
+
 		//not sure if we should cache proxy instances or create new ones each time.
-		Object proxyInstance = Proxy.newProxyInstance(tClass.getClassLoader(), new Class[]{tClass},
+		return (T)newProxy(tClass, handler);
+	}
+
+	private static Object newProxy(Class<?> sourceClass, SourceInvocationHandler handler)
+	{
+		return Proxy.newProxyInstance(sourceClass.getClassLoader(), new Class[]{sourceClass},
 				handler);
+	}
 
-		return (T)proxyInstance;
+	/**
+	 Falls back to a proxy if the source cannot be generated
+	 */
+	private static Object generateSource(Class<?> sourceClass, SourceInvocationHandler handler)
+	{
+		try
+		{
+			return SourceClassGenerator.newSource(sourceClass, handler);
+		}
+		catch (Exception | LinkageError e)
+		{
+			log.warn("Unable to generate source for {}, falling back to proxy", sourceClass.getName(), e);
+			return newProxy(sourceClass, handler);
+		}
 	}
 
 	/**
@@ -191,8 +315,11 @@ public class MetricSourceManager
 		for (Method method : annotatedMethods)
 		{
 			String className = o.getClass().getName();
+			ArgKey key = new LambdaArgKey(className, method.getName());
+			Snapshot snapshot = new MethodSnapshotAdapter(o, method);
 
-			context.assignSnapshot(new LambdaArgKey(className, method.getName()), new MethodSnapshotAdapter(o, method));
+			s_snapshots.put(snapshot, key);
+			context.assignSnapshot(key, snapshot);
 		}
 	}
 
@@ -214,25 +341,18 @@ public class MetricSourceManager
 	{
 		ArgKey key = new LambdaArgKey(className, methodName);
 
-		StaticCollectorCollection collection = s_staticCollectors.get(key);
+		StaticSource source = s_staticCollectors.get(key);
 
-		if (collection != null)
+		if (source != null)
 		{
-			collection.removeCollector(buildTagKey(tags));
+			source.m_collection.removeCollector(buildTagKey(tags));
 		}
 	}
 
 	private static TagKey buildTagKey(Map<String, String> tags)
 	{
-		//Need to make sure the tags are sorted
-		Map<String, String> sortedTags = new TreeMap<>(tags);
-		TagKey.Builder builder = TagKey.newBuilder();
-		for (String tagKey : sortedTags.keySet())
-		{
-			builder.addTag(tagKey, sortedTags.get(tagKey));
-		}
-
-		return builder.build();
+		//The builder sorts the tags
+		return TagKey.newBuilder().addTags(tags).build().intern();
 	}
 
 	/**
@@ -262,24 +382,29 @@ public class MetricSourceManager
 		if (metricConfig.isDisabled(key))
 			return;
 
-		StaticCollectorCollection collection = s_staticCollectors.computeIfAbsent(key, (k) ->
+		StaticSource source = s_staticCollectors.computeIfAbsent(key, (k) ->
 		{
 			Map<String, String> contextProperties = metricConfig.getPropsForKey(key);
 
-			StaticCollectorCollection staticCollection = new StaticCollectorCollection(k, contextProperties);
-			MetricsContext context = metricConfig.getContext();
+			StaticSource staticSource = new StaticSource(new StaticCollectorCollection(k, contextProperties), tags, help);
+			assignStaticSource(metricConfig, key, staticSource);
+
+			return staticSource;
+		});
 
-			Map<String, String> configTags = metricConfig.getTagsForKey(key);
-			if (tags != null)
-				configTags.putAll(tags);
+		source.m_collection.addCollector(buildTagKey(tags), collector);
+	}
 
-			context.assignCollector(key, staticCollection, configTags, contextProperties,
-					metricConfig.getMetricNameForKey(key), help);
+	private static void assignStaticSource(MetricConfig metricConfig, ArgKey key, StaticSource source)
+	{
+		MetricsContext context = metricConfig.getContext();
 
-			return staticCollection;
-		});
+		Map<String, String> configTags = metricConfig.getTagsForKey(key);
+		if (source.m_tags != null)
+			configTags.putAll(source.m_tags);
 
-		collection.addCollector(buildTagKey(tags), collector);
+		context.assignCollector(key, source.m_collection, configTags, metricConfig.getPropsForKey(key),
+				metricConfig.getMetricNameForKey(key), source.m_help);
 	}
 
 
@@ -3,36 +3,15 @@ package org.kairosdb.metrics4j;
 import java.time.Instant;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 /**
  Used to set tags and report time for metrics reported on the current thread.
+ The tag methods replace the thread's current {@link TagContext}, use
+ TagContext directly to scope tags or pass them to other threads.
  */
 public class MetricThreadHelper
 {
-
-	private static class CurrentTags extends ThreadLocal<SortedMap<String, String>>
-	{
-		@Override
-		protected synchronized SortedMap<String, String> initialValue()
-		{
-			return new TreeMap<>();
-		}
-	}
-
-	private static class ReporterTime extends ThreadLocal<Instant>
-	{
-		@Override
-		protected synchronized Instant initialValue()
-		{
-			return (Instant.MIN);
-		}
-	}
-
-
-	private static final CurrentTags s_currentTags = new CurrentTags();
-	private static final ReporterTime s_reportTime = new ReporterTime();
+	private static final ThreadLocal<Instant> s_reportTime = ThreadLocal.withInitial(() -> Instant.MIN);
 
 	private MetricThreadHelper()
 	{
@@ -74,7 +53,7 @@ public class MetricThreadHelper
 	 */
 	public static void addTag(String name, String value)
 	{
-		s_currentTags.get().put(name, value);
+		TagContext.setCurrent(TagContext.current().with(name, value));
 	}
 
 	/**
@@ -84,7 +63,7 @@ public class MetricThreadHelper
 	 */
 	public static String getTag(String name)
 	{
-		return s_currentTags.get().get(name);
+		return TagContext.current().getTag(name);
 	}
 
 	/**
@@ -93,7 +72,7 @@ public class MetricThreadHelper
 	 */
 	public static void removeTag(String name)
 	{
-		s_currentTags.get().remove(name);
+		TagContext.setCurrent(TagContext.current().without(name));
 	}
 
 	/**
@@ -103,7 +82,16 @@ public class MetricThreadHelper
 	 */
 	public static void clearTags()
 	{
-		s_currentTags.get().clear();
+		TagContext.setCurrent(TagContext.EMPTY);
+	}
+
+	/**
+	 Returns true if any tags are set on the current thread.
+	 @return
+	 */
+	public static boolean hasTags()
+	{
+		return !TagContext.current().isEmpty();
 	}
 
 	/**
@@ -112,6 +100,6 @@ public class MetricThreadHelper
 	 */
 	public static Iterator<Map.Entry<String, String>> getTagIterator()
 	{
-		return s_currentTags.get().entrySet().iterator();
+		return TagContext.current().getTags().entrySet().iterator();
 	}
 }
@@ -7,6 +7,7 @@ import org.kairosdb.metrics4j.internal.ArgKey;
 import org.kairosdb.metrics4j.internal.CollectorContext;
 import org.kairosdb.metrics4j.sinks.MetricSink;
 import org.kairosdb.metrics4j.triggers.Trigger;
+import org.kairosdb.metrics4j.util.Clock;
 
 import java.util.List;
 import java.util.Map;
@@ -51,4 +52,10 @@ public interface MetricsContext
 	MetricSink getSink(String name);
 
 	Trigger getTrigger(String name);
+
+	/**
+	 Clock collectors should use when they need the current time, configured
+	 with the _clock setting.
+	 */
+	Clock getClock();
 }
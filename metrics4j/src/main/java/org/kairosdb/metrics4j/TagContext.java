@@ -0,0 +1,260 @@
+package org.kairosdb.metrics4j;
+
+import org.kairosdb.metrics4j.internal.TagKey;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ Immutable set of tags that are added to every metric reported while the
+ context is current.  Adding or removing a tag returns a new context that
+ shares nothing mutable with the original, so a context can be captured on
+ one thread and made current on another.
+
+ <pre>
+ try (TagContext.Scope scope = TagContext.current().with("customer", id).makeCurrent())
+ {
+     //metrics reported here are tagged with customer
+     executor.execute(TagContext.current().wrap(task)); //so are the ones from task
+ }
+ </pre>
+
+ A thread only holds a reference to its current context instead of a map of
+ its own, so forking a context for a task is a single small copy and many
+ short lived threads cost nothing until they set tags.  MetricThreadHelper
+ tag methods work on the same current context.
+ */
+public final class TagContext
+{
+	public static final TagContext EMPTY = new TagContext(TagKey.EMPTY);
+
+	private static final ThreadLocal<TagContext> s_current = new ThreadLocal<>();
+
+	private final TagKey m_tags;
+	private volatile OverriddenTags m_overridden; //Last result of getTagKey(overrides)
+
+	private TagContext(TagKey tags)
+	{
+		m_tags = tags;
+	}
+
+	/**
+	 Returns the context of the current thread or EMPTY if none is set.
+	 */
+	public static TagContext current()
+	{
+		TagContext context = s_current.get();
+		return context == null ? EMPTY : context;
+	}
+
+	/*package*/ static void setCurrent(TagContext context)
+	{
+		if (context == null || context.isEmpty())
+			s_current.remove();
+		else
+			s_current.set(context);
+	}
+
+	/**
+	 Returns an executor that runs each task with the context that was current
+	 when the task was submitted.
+	 */
+	public static Executor propagating(Executor executor)
+	{
+		return command -> executor.execute(current().wrap(command));
+	}
+
+	/**
+	 Returns a context with the tag added, replacing any tag with the same name.
+	 */
+	public TagContext with(String name, String value)
+	{
+		TagKey.Builder builder = TagKey.newBuilder();
+		for (int i = 0; i < m_tags.size(); i++)
+			builder.addTag(m_tags.getName(i), m_tags.getValue(i));
+
+		return new TagContext(builder.addTag(name, value).build());
+	}
+
+	/**
+	 Returns a context with all of the tags added.
+	 */
+	public TagContext with(Map<String, String> tags)
+	{
+		TagKey.Builder builder = TagKey.newBuilder();
+		for (int i = 0; i < m_tags.size(); i++)
+			builder.addTag(m_tags.getName(i), m_tags.getValue(i));
+
+		return new TagContext(builder.addTags(tags).build());
+	}
+
+	/**
+	 Returns a context without the named tag.
+	 */
+	public TagContext without(String name)
+	{
+		if (!m_tags.getTags().containsKey(name))
+			return this;
+
+		TagKey.Builder builder = TagKey.newBuilder();
+		for (int i = 0; i < m_tags.size(); i++)
+		{
+			if (!m_tags.getName(i).equals(name))
+				builder.addTag(m_tags.getName(i), m_tags.getValue(i));
+		}
+
+		TagKey tags = builder.build();
+		return tags.size() == 0 ? EMPTY : new TagContext(tags);
+	}
+
+	public String getTag(String name)
+	{
+		return m_tags.getTags().get(name);
+	}
+
+	/**
+	 Tags as a read only map that iterates in tag name order.
+	 */
+	public Map<String, String> getTags()
+	{
+		return m_tags.getTags();
+	}
+
+	/**
+	 Tags sorted by name, used when building the key for a collector.
+	 */
+	public TagKey getTagKey()
+	{
+		return m_tags;
+	}
+
+	/**
+	 Tags with the value of every tag named in overrides replaced by the
+	 override.  The result for the last overrides map is kept on the context,
+	 overrides are compared by identity so callers should pass the same map
+	 each time.
+	 */
+	public TagKey getTagKey(Map<String, String> overrides)
+	{
+		if (overrides.isEmpty() || isEmpty())
+			return m_tags;
+
+		OverriddenTags overridden = m_overridden;
+		if (overridden != null && overridden.m_overrides == overrides)
+			return overridden.m_tags;
+
+		TagKey tags = m_tags;
+		for (int i = 0; i < m_tags.size(); i++)
+		{
+			if (overrides.containsKey(m_tags.getName(i)))
+			{
+				TagKey.Builder builder = TagKey.newBuilder();
+				for (int j = 0; j < m_tags.size(); j++)
+				{
+					String name = m_tags.getName(j);
+					String override = overrides.get(name);
+					builder.addTag(name, override != null ? override : m_tags.getValue(j));
+				}
+
+				tags = builder.build();
+				break;
+			}
+		}
+
+		m_overridden = new OverriddenTags(overrides, tags);
+		return tags;
+	}
+
+	public boolean isEmpty()
+	{
+		return m_tags.size() == 0;
+	}
+
+	/**
+	 Makes this context current on the calling thread until the returned scope
+	 is closed, closing the scope restores the context that was current before.
+	 */
+	public Scope makeCurrent()
+	{
+		Scope scope = new Scope(s_current.get());
+		setCurrent(this);
+		return scope;
+	}
+
+	public Runnable wrap(Runnable runnable)
+	{
+		return () ->
+		{
+			try (Scope scope = makeCurrent())
+			{
+				runnable.run();
+			}
+		};
+	}
+
+	public <T> Callable<T> wrap(Callable<T> callable)
+	{
+		return () ->
+		{
+			try (Scope scope = makeCurrent())
+			{
+				return callable.call();
+			}
+		};
+	}
+
+	/**
+	 Wraps a supplier so it can be passed to CompletableFuture.supplyAsync
+	 */
+	public <T> Supplier<T> wrapSupplier(Supplier<T> supplier)
+	{
+		return () ->
+		{
+			try (Scope scope = makeCurrent())
+			{
+				return supplier.get();
+			}
+		};
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TagContext{" +
+				"m_tags=" + m_tags.getTags() +
+				'}';
+	}
+
+	private static final class OverriddenTags
+	{
+		private final Map<String, String> m_overrides;
+		private final TagKey m_tags;
+
+		private OverriddenTags(Map<String, String> overrides, TagKey tags)
+		{
+			m_overrides = overrides;
+			m_tags = tags;
+		}
+	}
+
+	/**
+	 Restores the previous context when closed.
+	 */
+	public static final class Scope implements AutoCloseable
+	{
+		private final TagContext m_previous;
+
+		private Scope(TagContext previous)
+		{
+			m_previous = previous;
+		}
+
+		@Override
+		public void close()
+		{
+			setCurrent(m_previous);
+		}
+	}
+}
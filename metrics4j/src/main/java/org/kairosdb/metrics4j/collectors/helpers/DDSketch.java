@@ -0,0 +1,368 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+/**
+ Quantile sketch with relative accuracy guarantees based on DDSketch
+ (Masson, Rim, Lee - "DDSketch: A Fast and Fully-Mergeable Quantile Sketch
+ with Relative-Error Guarantees").  Values are mapped to logarithmic bins so
+ every quantile is returned within the configured relative accuracy of the
+ real value, no matter how wide the range of values is.
+
+ Bins are kept in pages of 64 that are only allocated when a value falls in
+ them, so a sketch only uses memory for the parts of the range values were
+ actually seen in.  maxBins limits the range a sketch covers, when the range
+ needs more than maxBins the lowest bins are collapsed together, which only
+ affects the accuracy of the lowest quantiles.
+
+ Two sketches with the same relative accuracy can be merged without losing
+ accuracy.  This class is not thread safe.
+ */
+public class DDSketch
+{
+	private static final int PAGE_BITS = 6;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private final double m_relativeAccuracy;
+	private final double m_gamma;
+	private final double m_logGamma;
+	private final double m_minIndexableValue;
+	private final int m_maxBins;
+
+	private final Store m_positive;
+	private final Store m_negative;
+	private long m_zeroCount;
+	private long m_count;
+	private double m_sum;
+	private double m_min = Double.POSITIVE_INFINITY;
+	private double m_max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 @param relativeAccuracy Relative accuracy of quantiles, ie 0.01 for 1%
+	 @param maxBins Maximum number of bins for positive and for negative values
+	 */
+	public DDSketch(double relativeAccuracy, int maxBins)
+	{
+		if (relativeAccuracy <= 0.0 || relativeAccuracy >= 1.0)
+			throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+		if (maxBins < 1)
+			throw new IllegalArgumentException("Max bins must be greater than 0");
+
+		m_relativeAccuracy = relativeAccuracy;
+		m_gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		m_logGamma = Math.log(m_gamma);
+		m_minIndexableValue = Double.MIN_NORMAL * m_gamma;
+		m_maxBins = maxBins;
+
+		m_positive = new Store(maxBins);
+		m_negative = new Store(maxBins);
+	}
+
+	public double getRelativeAccuracy()
+	{
+		return m_relativeAccuracy;
+	}
+
+	public int getMaxBins()
+	{
+		return m_maxBins;
+	}
+
+	private int index(double value)
+	{
+		return (int)Math.ceil(Math.log(value) / m_logGamma);
+	}
+
+	private double value(int index)
+	{
+		//Value in the middle of the bin so the relative error is the same both ways
+		return Math.exp(index * m_logGamma) * 2 / (1 + m_gamma);
+	}
+
+	public void add(double value)
+	{
+		if (Double.isNaN(value))
+			return;
+
+		if (value >= m_minIndexableValue)
+			m_positive.add(index(value), 1);
+		else if (value <= -m_minIndexableValue)
+			m_negative.add(index(-value), 1);
+		else
+			m_zeroCount++;
+
+		m_count++;
+		m_sum += value;
+		m_min = Math.min(m_min, value);
+		m_max = Math.max(m_max, value);
+	}
+
+	/**
+	 Adds all values from other in to this sketch.
+	 @throws IllegalArgumentException if the sketches have a different relative accuracy
+	 */
+	public void merge(DDSketch other)
+	{
+		if (m_gamma != other.m_gamma)
+			throw new IllegalArgumentException("Cannot merge sketches with different relative accuracy");
+
+		if (other.m_count == 0)
+			return;
+
+		m_positive.merge(other.m_positive);
+		m_negative.merge(other.m_negative);
+		m_zeroCount += other.m_zeroCount;
+		m_count += other.m_count;
+		m_sum += other.m_sum;
+		m_min = Math.min(m_min, other.m_min);
+		m_max = Math.max(m_max, other.m_max);
+	}
+
+	/**
+	 Number of bins allocated for positive and negative values, each bin is 8
+	 bytes.
+	 */
+	public int getAllocatedBins()
+	{
+		return m_positive.allocatedBins() + m_negative.allocatedBins();
+	}
+
+	public DDSketch copy()
+	{
+		DDSketch copy = new DDSketch(m_relativeAccuracy, m_maxBins);
+		copy.merge(this);
+		return copy;
+	}
+
+	public long getCount()
+	{
+		return m_count;
+	}
+
+	public double getSum()
+	{
+		return m_sum;
+	}
+
+	public double getMin()
+	{
+		return m_count == 0 ? 0.0 : m_min;
+	}
+
+	public double getMax()
+	{
+		return m_count == 0 ? 0.0 : m_max;
+	}
+
+	/**
+	 Returns the approximate value at the quantile.
+	 @param quantile Quantile between 0 and 1
+	 */
+	public double getValueAtQuantile(double quantile)
+	{
+		if (m_count == 0)
+			return 0.0;
+
+		long rank = (long)(quantile * (m_count - 1));
+		double value;
+
+		if (rank < m_negative.m_total)
+		{
+			//Negative values are stored by magnitude so walk them from the highest
+			int index = m_negative.indexOfRank(m_negative.m_total - 1 - rank);
+			value = -value(index);
+		}
+		else if (rank < m_negative.m_total + m_zeroCount)
+			value = 0.0;
+		else
+		{
+			int index = m_positive.indexOfRank(rank - m_negative.m_total - m_zeroCount);
+			value = value(index);
+		}
+
+		return Math.max(m_min, Math.min(value, m_max));
+	}
+
+	/**
+	 Sparse bin counts for indexes between m_minIndex and m_maxIndex, at most
+	 maxBins apart.  Counts are kept in pages of PAGE_SIZE bins that are only
+	 allocated when a bin in them is added to.
+	 */
+	private static class Store
+	{
+		private final int m_maxBins;
+		private long[][] m_pages;
+		private int m_firstPage; //page number of m_pages[0]
+		private int m_minIndex;
+		private int m_maxIndex;
+		private long m_total;
+
+		private Store(int maxBins)
+		{
+			m_maxBins = maxBins;
+		}
+
+		private static int pageOf(int index)
+		{
+			return index >> PAGE_BITS;
+		}
+
+		private long[] getPage(int page)
+		{
+			if (m_pages == null || page < m_firstPage || page >= m_firstPage + m_pages.length)
+				return null;
+
+			return m_pages[page - m_firstPage];
+		}
+
+		private long[] getOrCreatePage(int page)
+		{
+			if (m_pages == null || page < m_firstPage || page >= m_firstPage + m_pages.length)
+			{
+				//Only pages between m_minIndex and m_maxIndex hold counts
+				int first = Math.min(page, pageOf(m_minIndex));
+				int last = Math.max(page, pageOf(m_maxIndex));
+				long[][] pages = new long[last - first + 1][];
+
+				if (m_pages != null)
+				{
+					for (int i = Math.max(first, m_firstPage); i <= Math.min(last, m_firstPage + m_pages.length - 1); i++)
+						pages[i - first] = m_pages[i - m_firstPage];
+				}
+
+				m_pages = pages;
+				m_firstPage = first;
+			}
+
+			long[] counts = m_pages[page - m_firstPage];
+			if (counts == null)
+			{
+				counts = new long[PAGE_SIZE];
+				m_pages[page - m_firstPage] = counts;
+			}
+
+			return counts;
+		}
+
+		private void add(int index, long count)
+		{
+			if (m_total == 0)
+			{
+				m_minIndex = m_maxIndex = index;
+			}
+			else
+			{
+				int lo = Math.min(m_minIndex, index);
+				int hi = Math.max(m_maxIndex, index);
+				if (hi - lo + 1 > m_maxBins)
+					lo = hi - m_maxBins + 1;
+
+				m_maxIndex = hi;
+				if (lo > m_minIndex)
+					collapseBelow(lo);
+				else
+					m_minIndex = lo;
+			}
+
+			index = Math.max(index, m_minIndex);
+			getOrCreatePage(pageOf(index))[index & PAGE_MASK] += count;
+			m_total += count;
+		}
+
+		/**
+		 Moves the counts of bins below lo in to lo and frees the pages that
+		 are left empty.
+		 */
+		private void collapseBelow(int lo)
+		{
+			long collapsed = 0;
+			int index = m_minIndex;
+			while (index < lo)
+			{
+				int page = pageOf(index);
+				int pageEnd = (page + 1) << PAGE_BITS;
+				int end = Math.min(lo, pageEnd);
+
+				long[] counts = getPage(page);
+				if (counts != null)
+				{
+					for (int i = index; i < end; i++)
+					{
+						collapsed += counts[i & PAGE_MASK];
+						counts[i & PAGE_MASK] = 0;
+					}
+
+					//Bins below m_minIndex are always empty
+					if (end == pageEnd)
+						m_pages[page - m_firstPage] = null;
+				}
+
+				index = end;
+			}
+
+			m_minIndex = lo;
+			if (collapsed != 0)
+				getOrCreatePage(pageOf(lo))[lo & PAGE_MASK] += collapsed;
+		}
+
+		private void merge(Store other)
+		{
+			if (other.m_total == 0)
+				return;
+
+			for (int page = pageOf(other.m_minIndex); page <= pageOf(other.m_maxIndex); page++)
+			{
+				long[] counts = other.getPage(page);
+				if (counts == null)
+					continue;
+
+				for (int i = 0; i < PAGE_SIZE; i++)
+				{
+					if (counts[i] != 0)
+						add((page << PAGE_BITS) + i, counts[i]);
+				}
+			}
+		}
+
+		/**
+		 Returns the bin index that holds the value with the given rank, rank
+		 starts at 0 for the lowest value.
+		 */
+		private int indexOfRank(long rank)
+		{
+			long running = 0;
+			for (int page = pageOf(m_minIndex); page <= pageOf(m_maxIndex); page++)
+			{
+				long[] counts = getPage(page);
+				if (counts == null)
+					continue;
+
+				for (int i = 0; i < PAGE_SIZE; i++)
+				{
+					running += counts[i];
+					if (running > rank)
+						return (page << PAGE_BITS) + i;
+				}
+			}
+
+			return m_maxIndex;
+		}
+
+		/**
+		 Number of bins currently allocated
+		 */
+		private int allocatedBins()
+		{
+			int bins = 0;
+			if (m_pages != null)
+			{
+				for (long[] page : m_pages)
+				{
+					if (page != null)
+						bins += PAGE_SIZE;
+				}
+			}
+
+			return bins;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ Fixed memory histogram with log-linear buckets, the same layout used by
+ HdrHistogram.  Values are grouped in to buckets by powers of two and each
+ bucket is split linearly in to enough sub buckets to keep the requested
+ number of significant digits.  Recording a value is a couple of shifts and
+ an atomic increment, no locks are taken.
+
+ Values greater than the highest trackable value are counted in the last
+ bucket, negative values are counted as zero.  Min and max are tracked exactly.
+ */
+public class LogLinearHistogram
+{
+	private final long m_highestTrackableValue;
+	private final int m_significantDigits;
+
+	private final int m_subBucketHalfCountMagnitude;
+	private final int m_subBucketHalfCount;
+	private final long m_subBucketMask;
+	private final int m_leadingZeroCountBase;
+
+	private final AtomicLongArray m_counts;
+	private final AtomicLong m_sum = new AtomicLong();
+	private final AtomicLong m_min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong m_max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 @param highestTrackableValue Highest value that will be recorded with full precision
+	 @param significantDigits Number of significant decimal digits to keep, between 1 and 5
+	 */
+	public LogLinearHistogram(long highestTrackableValue, int significantDigits)
+	{
+		if (significantDigits < 1 || significantDigits > 5)
+			throw new IllegalArgumentException("Significant digits must be between 1 and 5");
+		if (highestTrackableValue < 2)
+			throw new IllegalArgumentException("Highest trackable value must be at least 2");
+
+		m_highestTrackableValue = highestTrackableValue;
+		m_significantDigits = significantDigits;
+
+		long largestValueWithSingleUnitResolution = 2 * (long)Math.pow(10, significantDigits);
+		int subBucketCountMagnitude = (int)Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+		m_subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+		int subBucketCount = 1 << subBucketCountMagnitude;
+		m_subBucketHalfCount = subBucketCount / 2;
+		m_subBucketMask = subBucketCount - 1;
+		m_leadingZeroCountBase = 64 - m_subBucketHalfCountMagnitude - 1;
+
+		int bucketCount = getBucketsNeeded(highestTrackableValue, subBucketCount);
+		m_counts = new AtomicLongArray((bucketCount + 1) * m_subBucketHalfCount);
+	}
+
+	private static int getBucketsNeeded(long value, int subBucketCount)
+	{
+		long smallestUntrackableValue = subBucketCount;
+		int bucketsNeeded = 1;
+		while (smallestUntrackableValue <= value)
+		{
+			if (smallestUntrackableValue > (Long.MAX_VALUE / 2))
+				return bucketsNeeded + 1;
+
+			smallestUntrackableValue <<= 1;
+			bucketsNeeded++;
+		}
+
+		return bucketsNeeded;
+	}
+
+	public long getHighestTrackableValue()
+	{
+		return m_highestTrackableValue;
+	}
+
+	public int getSignificantDigits()
+	{
+		return m_significantDigits;
+	}
+
+	private int countsIndex(long value)
+	{
+		int bucketIndex = m_leadingZeroCountBase - Long.numberOfLeadingZeros(value | m_subBucketMask);
+		int subBucketIndex = (int)(value >>> bucketIndex);
+		int index = ((bucketIndex + 1) << m_subBucketHalfCountMagnitude) + (subBucketIndex - m_subBucketHalfCount);
+
+		return Math.min(index, m_counts.length() - 1);
+	}
+
+	private long lowestEquivalentValue(int index)
+	{
+		int bucketIndex = (index >> m_subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & (m_subBucketHalfCount - 1)) + m_subBucketHalfCount;
+		if (bucketIndex < 0)
+		{
+			subBucketIndex -= m_subBucketHalfCount;
+			bucketIndex = 0;
+		}
+
+		return ((long)subBucketIndex) << bucketIndex;
+	}
+
+	private long highestEquivalentValue(int index)
+	{
+		if (index == m_counts.length() - 1)
+			return Long.MAX_VALUE;
+
+		return lowestEquivalentValue(index + 1) - 1;
+	}
+
+	public void record(long value)
+	{
+		if (value < 0)
+			value = 0;
+
+		m_counts.getAndIncrement(countsIndex(value));
+		m_sum.getAndAdd(value);
+
+		long min = m_min.get();
+		while (value < min && !m_min.compareAndSet(min, value))
+			min = m_min.get();
+
+		long max = m_max.get();
+		while (value > max && !m_max.compareAndSet(max, value))
+			max = m_max.get();
+	}
+
+	/**
+	 Returns the values recorded since the last call and resets the histogram.
+	 Values recorded while this runs will show up in this snapshot or the next.
+	 */
+	public Snapshot getAndReset()
+	{
+		long[] counts = new long[m_counts.length()];
+		long totalCount = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			//Most buckets are empty so check before doing the atomic swap
+			if (m_counts.get(i) != 0)
+			{
+				long count = m_counts.getAndSet(i, 0L);
+				counts[i] = count;
+				totalCount += count;
+			}
+		}
+
+		long sum = m_sum.getAndSet(0);
+		long min = m_min.getAndSet(Long.MAX_VALUE);
+		long max = m_max.getAndSet(Long.MIN_VALUE);
+
+		return new Snapshot(counts, totalCount, sum, min, max);
+	}
+
+	public class Snapshot
+	{
+		private final long[] m_snapshotCounts;
+		private final long m_totalCount;
+		private final long m_sum;
+		private final long m_min;
+		private final long m_max;
+
+		private Snapshot(long[] counts, long totalCount, long sum, long min, long max)
+		{
+			m_snapshotCounts = counts;
+			m_totalCount = totalCount;
+			m_sum = sum;
+
+			//min and max are tracked separately from the counts so they may be
+			//out of step if values were recorded during the reset
+			if (min > max)
+			{
+				min = totalCount == 0 ? 0 : lowestEquivalentValue(firstIndex());
+				max = totalCount == 0 ? 0 : highestEquivalentValue(lastIndex());
+			}
+			m_min = min;
+			m_max = max;
+		}
+
+		private int firstIndex()
+		{
+			for (int i = 0; i < m_snapshotCounts.length; i++)
+				if (m_snapshotCounts[i] != 0)
+					return i;
+
+			return 0;
+		}
+
+		private int lastIndex()
+		{
+			for (int i = m_snapshotCounts.length - 1; i >= 0; i--)
+				if (m_snapshotCounts[i] != 0)
+					return i;
+
+			return 0;
+		}
+
+		public long getCount()
+		{
+			return m_totalCount;
+		}
+
+		public long getSum()
+		{
+			return m_sum;
+		}
+
+		public long getMin()
+		{
+			return m_min;
+		}
+
+		public long getMax()
+		{
+			return m_max;
+		}
+
+		/**
+		 Returns the highest value in the bucket that contains the percentile,
+		 limited to the recorded min and max.
+		 @param percentile Percentile between 0 and 100
+		 */
+		public long getValueAtPercentile(double percentile)
+		{
+			if (m_totalCount == 0)
+				return 0;
+
+			long countAtPercentile = (long)Math.ceil((percentile / 100.0) * m_totalCount);
+			countAtPercentile = Math.max(1, Math.min(countAtPercentile, m_totalCount));
+
+			long runningCount = 0;
+			for (int i = 0; i < m_snapshotCounts.length; i++)
+			{
+				runningCount += m_snapshotCounts[i];
+				if (runningCount >= countAtPercentile)
+				{
+					long value = highestEquivalentValue(i);
+					return Math.max(m_min, Math.min(value, m_max));
+				}
+			}
+
+			return m_max;
+		}
+	}
+}
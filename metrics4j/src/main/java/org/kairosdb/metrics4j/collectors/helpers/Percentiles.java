@@ -0,0 +1,66 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ Helpers for collectors that report percentiles.
+ */
+public class Percentiles
+{
+	public static final List<Double> DEFAULT_PERCENTILES = Arrays.asList(50.0, 90.0, 99.0, 99.9);
+
+	/**
+	 Parses a comma separated list of percentiles, ie "50, 99, 99.9"
+	 */
+	public static List<Double> parse(String percentiles)
+	{
+		List<Double> ret = new ArrayList<>();
+		for (String percentile : percentiles.split(","))
+		{
+			if (!percentile.trim().isEmpty())
+				ret.add(Double.valueOf(percentile.trim()));
+		}
+
+		validate(ret);
+		return ret;
+	}
+
+	public static void validate(List<Double> percentiles)
+	{
+		for (Double percentile : percentiles)
+		{
+			if (percentile <= 0.0 || percentile > 100.0)
+				throw new IllegalArgumentException("Percentile "+percentile+" must be greater than 0 and less than or equal to 100");
+		}
+	}
+
+	/**
+	 Returns the field name to report a percentile as.  For percentiles of 10
+	 and up the decimal point is dropped so 50 is reported as p50, 99.9 as p999
+	 and 99.99 as p9999.  Below 10 it is replaced with an underscore so 9.9
+	 (p9_9) does not collide with 99 (p99).
+	 */
+	public static String fieldName(double percentile)
+	{
+		String value = BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
+		if (percentile < 10.0)
+			return "p" + value.replace('.', '_');
+		else
+			return "p" + value.replace(".", "");
+	}
+
+	/**
+	 Returns field names for each percentile in the list
+	 */
+	public static String[] fieldNames(List<Double> percentiles)
+	{
+		String[] ret = new String[percentiles.size()];
+		for (int i = 0; i < ret.length; i++)
+			ret[i] = fieldName(percentiles.get(i));
+
+		return ret;
+	}
+}
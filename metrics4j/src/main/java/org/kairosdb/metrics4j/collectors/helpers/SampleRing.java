@@ -0,0 +1,298 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ Bounded ring of timestamped samples that many threads can add to without
+ locking while a single reader drains it.  Times and values are kept in
+ preallocated primitive arrays (doubles are stored as their long bits) so
+ adding a long or double sample does not allocate.
+
+ Each slot has a sequence that says which sample index it holds and whether
+ the write is finished.  Writers claim an index, mark the slot as being
+ written, store the values and then publish the slot.  The reader only
+ returns slots that are published for the index it expects, a slot that was
+ overwritten while it was being read is counted as dropped.
+
+ When the ring is full DROP_OLDEST overwrites the oldest samples and
+ DROP_NEWEST discards the sample being added, either way the dropped count
+ is incremented.  GROW keeps the sample in an overflow queue that is drained
+ after the ring, only samples that do not fit in the ring allocate.
+ */
+public class SampleRing
+{
+	public enum OverflowPolicy
+	{
+		DROP_OLDEST,
+		DROP_NEWEST,
+		GROW
+	}
+
+	/**
+	 Receives the samples from drain()
+	 */
+	public interface SampleVisitor
+	{
+		default void longSample(long time, long value) {}
+
+		default void doubleSample(long time, double value) {}
+
+		default void stringSample(long time, String value) {}
+	}
+
+	private static final int TYPE_LONG = 0;
+	private static final int TYPE_DOUBLE = 1;
+	private static final int TYPE_STRING = 2;
+
+	private final int m_mask;
+	private final OverflowPolicy m_overflowPolicy;
+
+	//0 is empty, published slots are ((index + 1) << 2) | type and a slot
+	//being written is -(index + 1)
+	private final AtomicLongArray m_sequences;
+	private final AtomicLongArray m_times;
+	private final AtomicLongArray m_values;
+	private final AtomicReferenceArray<String> m_strings;
+	private final ConcurrentLinkedQueue<OverflowSample> m_overflow = new ConcurrentLinkedQueue<>();
+
+	private final AtomicLong m_writeIndex = new AtomicLong();
+	private final AtomicLong m_dropped = new AtomicLong();
+	private volatile long m_readIndex;
+	private long m_reportedDropped;
+
+	/**
+	 @param capacity Number of samples the ring holds, rounded up to a power of 2
+	 @param overflowPolicy What to drop when the ring is full
+	 */
+	public SampleRing(int capacity, OverflowPolicy overflowPolicy)
+	{
+		if (capacity <= 0 || capacity > (1 << 30))
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+
+		m_mask = size - 1;
+		m_overflowPolicy = overflowPolicy;
+		m_sequences = new AtomicLongArray(size);
+		m_times = new AtomicLongArray(size);
+		m_values = new AtomicLongArray(size);
+		m_strings = new AtomicReferenceArray<>(size);
+	}
+
+	public int getCapacity()
+	{
+		return m_mask + 1;
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return m_overflowPolicy;
+	}
+
+	/**
+	 Number of samples dropped since the ring was created
+	 */
+	public long getDropped()
+	{
+		return m_dropped.get();
+	}
+
+	/**
+	 Number of samples dropped since the last call, the count starts over
+	 with each new ring.  Only the thread that drains should call this.
+	 */
+	public synchronized long takeDropped()
+	{
+		long dropped = m_dropped.get();
+		long ret = dropped - m_reportedDropped;
+		m_reportedDropped = dropped;
+		return ret;
+	}
+
+	public void addLong(long time, long value)
+	{
+		add(time, value, null, TYPE_LONG);
+	}
+
+	public void addDouble(long time, double value)
+	{
+		add(time, Double.doubleToRawLongBits(value), null, TYPE_DOUBLE);
+	}
+
+	public void addString(long time, String value)
+	{
+		add(time, 0L, value, TYPE_STRING);
+	}
+
+	private long claimIndex()
+	{
+		if (m_overflowPolicy == OverflowPolicy.DROP_OLDEST)
+			return m_writeIndex.getAndIncrement();
+
+		for (;;)
+		{
+			long index = m_writeIndex.get();
+			if (index - m_readIndex > m_mask)
+				return -1;
+
+			if (m_writeIndex.compareAndSet(index, index + 1))
+				return index;
+		}
+	}
+
+	private void add(long time, long value, String string, int type)
+	{
+		long index = claimIndex();
+		if (index < 0)
+		{
+			if (m_overflowPolicy == OverflowPolicy.GROW)
+				m_overflow.add(new OverflowSample(time, value, string, type));
+			else
+				m_dropped.incrementAndGet();
+			return;
+		}
+
+		int slot = (int) (index & m_mask);
+		long writing = -(index + 1);
+
+		//Wait for a writer one lap behind us to finish with the slot
+		for (;;)
+		{
+			long sequence = m_sequences.get(slot);
+			if (sequence < 0 && -sequence - 1 < index)
+			{
+				Thread.yield();
+				continue;
+			}
+
+			if (sequenceIndex(sequence) > index)
+			{
+				//A writer a lap ahead already has the slot, drain counts
+				//this sample as dropped when it finds the newer one
+				return;
+			}
+
+			if (m_sequences.compareAndSet(slot, sequence, writing))
+				break;
+		}
+
+		m_times.set(slot, time);
+		m_values.set(slot, value);
+		m_strings.set(slot, string);
+
+		m_sequences.set(slot, ((index + 1) << 2) | type);
+	}
+
+	private static long sequenceIndex(long sequence)
+	{
+		if (sequence < 0)
+			return -sequence - 1;
+		else
+			return (sequence >>> 2) - 1;
+	}
+
+	/**
+	 Passes every published sample since the last drain to the visitor in the
+	 order they were added.  Samples still being written are left for the
+	 next drain.  Samples that overflowed the ring are passed after the ones
+	 in the ring.  Only one thread should drain at a time.
+	 @return number of samples passed to the visitor
+	 */
+	public synchronized int drain(SampleVisitor visitor)
+	{
+		long end = m_writeIndex.get();
+		long index = m_readIndex;
+		int count = 0;
+
+		if (end - index > m_mask + 1)
+		{
+			//Lapped by writers, those samples were overwritten
+			long start = end - (m_mask + 1);
+			m_dropped.addAndGet(start - index);
+			index = start;
+		}
+
+		for (; index < end; index++)
+		{
+			int slot = (int) (index & m_mask);
+			long sequence = m_sequences.get(slot);
+
+			long slotIndex = sequenceIndex(sequence);
+
+			if (slotIndex > index)
+			{
+				//Overwritten by a writer a lap ahead
+				m_dropped.incrementAndGet();
+				continue;
+			}
+
+			if (slotIndex < index || sequence < 0)
+			{
+				//Claimed but the write has not finished
+				break;
+			}
+
+			long time = m_times.get(slot);
+			long value = m_values.get(slot);
+			String string = m_strings.get(slot);
+
+			if (m_sequences.get(slot) != sequence)
+			{
+				//Overwritten while we were reading it
+				m_dropped.incrementAndGet();
+				continue;
+			}
+
+			visit(visitor, (int) (sequence & 3), time, value, string);
+			count++;
+		}
+
+		//Frees the ring before draining the overflow so writers go back to it
+		m_readIndex = index;
+
+		OverflowSample sample;
+		while ((sample = m_overflow.poll()) != null)
+		{
+			visit(visitor, sample.m_type, sample.m_time, sample.m_value, sample.m_string);
+			count++;
+		}
+
+		return count;
+	}
+
+	private static void visit(SampleVisitor visitor, int type, long time, long value, String string)
+	{
+		switch (type)
+		{
+			case TYPE_LONG:
+				visitor.longSample(time, value);
+				break;
+			case TYPE_DOUBLE:
+				visitor.doubleSample(time, Double.longBitsToDouble(value));
+				break;
+			default:
+				visitor.stringSample(time, string);
+		}
+	}
+
+	private static final class OverflowSample
+	{
+		private final long m_time;
+		private final long m_value;
+		private final String m_string;
+		private final int m_type;
+
+		private OverflowSample(long time, long value, String string, int type)
+		{
+			m_time = time;
+			m_value = value;
+			m_string = string;
+			m_type = type;
+		}
+	}
+}
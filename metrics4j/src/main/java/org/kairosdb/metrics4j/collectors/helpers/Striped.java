@@ -0,0 +1,97 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ Base for striped accumulators.  Values are first added to a base value
+ kept by the sub class, when two threads contend on the base the accumulator
+ inflates to an array of cells, one per stripe, so threads stop writing to the
+ same cache line.
+ This is the same idea as java.util.concurrent.atomic.LongAdder except every
+ cell can be atomically read and cleared so no values are lost when summing
+ and resetting at the same time values are being added.
+
+ Cells are padded so each one sits on its own cache line.  A sub class can
+ keep up to 8 values in each cell.
+ */
+public abstract class Striped
+{
+	private static final int PADDING = 16; //longs per cell, 128 bytes to cover adjacent line prefetch
+	private static final int MAX_STRIPES = 256;
+	public static final int STRIPES;
+
+	static
+	{
+		int stripes = 1;
+		int processors = Runtime.getRuntime().availableProcessors();
+		while (stripes < processors && stripes < MAX_STRIPES)
+			stripes <<= 1;
+
+		STRIPES = stripes;
+	}
+
+	private volatile AtomicLongArray m_cells;
+
+	/**
+	 Returns the stripe for the current thread, between 0 and STRIPES - 1
+	 */
+	public static int currentStripe()
+	{
+		//Fibonacci hash to spread sequential thread ids across the stripes
+		int hash = (int)(Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> 32);
+		return hash & (STRIPES - 1);
+	}
+
+	/**
+	 Returns the index in to the cell array for the current thread.
+	 */
+	protected static int cellIndex()
+	{
+		return currentStripe() * PADDING;
+	}
+
+	/**
+	 Returns the cells or null if there has been no contention yet
+	 */
+	protected AtomicLongArray getCells()
+	{
+		return m_cells;
+	}
+
+	protected AtomicLongArray inflate()
+	{
+		AtomicLongArray cells = m_cells;
+		if (cells == null)
+		{
+			synchronized (this)
+			{
+				cells = m_cells;
+				if (cells == null)
+				{
+					cells = new AtomicLongArray(STRIPES * PADDING);
+					initCells(cells);
+					m_cells = cells;
+				}
+			}
+		}
+
+		return cells;
+	}
+
+	/**
+	 Called before new cells are published so sub classes can set initial values
+	 */
+	protected void initCells(AtomicLongArray cells)
+	{
+	}
+
+	protected static int cellCount()
+	{
+		return STRIPES;
+	}
+
+	protected static int cellOffset(int cell)
+	{
+		return cell * PADDING;
+	}
+}
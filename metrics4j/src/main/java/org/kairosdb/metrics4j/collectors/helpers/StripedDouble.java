@@ -0,0 +1,75 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ Striped double sum, see Striped.  Values are stored as the raw long bits of
+ the double and added with a compare and set.
+ */
+public class StripedDouble extends Striped
+{
+	private static final long ZERO = Double.doubleToRawLongBits(0.0); //Same as the initial value of the cells
+
+	private final AtomicLong m_base = new AtomicLong(ZERO);
+
+	public void add(double value)
+	{
+		AtomicLongArray cells = getCells();
+		if (cells == null)
+		{
+			if (casAdd(m_base, value))
+				return;
+
+			cells = inflate();
+		}
+
+		int index = cellIndex();
+		long current;
+		do
+		{
+			current = cells.get(index);
+		} while (!cells.compareAndSet(index, current, add(current, value)));
+	}
+
+	private static boolean casAdd(AtomicLong base, double value)
+	{
+		long current = base.get();
+		return base.compareAndSet(current, add(current, value));
+	}
+
+	private static long add(long bits, double value)
+	{
+		return Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + value);
+	}
+
+	public double sum()
+	{
+		double sum = Double.longBitsToDouble(m_base.get());
+		AtomicLongArray cells = getCells();
+		if (cells != null)
+		{
+			for (int i = 0; i < cellCount(); i++)
+				sum += Double.longBitsToDouble(cells.get(cellOffset(i)));
+		}
+
+		return sum;
+	}
+
+	/**
+	 Returns the sum and sets all cells to zero without losing values added
+	 at the same time, see StripedLong.sumThenReset
+	 */
+	public double sumThenReset()
+	{
+		double sum = Double.longBitsToDouble(m_base.getAndSet(ZERO));
+		AtomicLongArray cells = getCells();
+		if (cells != null)
+		{
+			for (int i = 0; i < cellCount(); i++)
+				sum += Double.longBitsToDouble(cells.getAndSet(cellOffset(i), ZERO));
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,58 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ Striped long sum, see Striped.
+ */
+public class StripedLong extends Striped
+{
+	private final AtomicLong m_base = new AtomicLong();
+
+	public void add(long value)
+	{
+		AtomicLongArray cells = getCells();
+		if (cells == null)
+		{
+			long current = m_base.get();
+			if (m_base.compareAndSet(current, current + value))
+				return;
+
+			cells = inflate();
+		}
+
+		cells.getAndAdd(cellIndex(), value);
+	}
+
+	public long sum()
+	{
+		long sum = m_base.get();
+		AtomicLongArray cells = getCells();
+		if (cells != null)
+		{
+			for (int i = 0; i < cellCount(); i++)
+				sum += cells.get(cellOffset(i));
+		}
+
+		return sum;
+	}
+
+	/**
+	 Returns the sum and sets all cells to zero.  Each cell is swapped
+	 atomically so a value added while this runs is either part of the
+	 returned sum or left for the next call, it is never lost.
+	 */
+	public long sumThenReset()
+	{
+		long sum = m_base.getAndSet(0L);
+		AtomicLongArray cells = getCells();
+		if (cells != null)
+		{
+			for (int i = 0; i < cellCount(); i++)
+				sum += cells.getAndSet(cellOffset(i), 0L);
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,186 @@
+package org.kairosdb.metrics4j.collectors.helpers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ Striped min, max, sum and count of long values, see Striped.  Each cell holds
+ all four values for a stripe so recording a value never takes a lock.
+
+ The four values in a cell are not updated as a unit.  The count is written
+ last so a value recorded while getAndReset is running may have its sum, min
+ or max reported one interval before its count, never after.  getAndReset
+ corrects for this so the reported min and max are always values that were
+ recorded.  A sum, min or max without a count is carried over to the next
+ interval where its count will show up.  A count without a min or max is
+ reported without them, see Snapshot.hasMinMax.
+ */
+public class StripedStatistics extends Striped
+{
+	private static final int COUNT = 0;
+	private static final int SUM = 1;
+	private static final int MIN = 2;
+	private static final int MAX = 3;
+
+	private final AtomicLongArray m_base = new AtomicLongArray(4);
+
+	public StripedStatistics()
+	{
+		resetCell(m_base, 0);
+	}
+
+	public void record(long value)
+	{
+		AtomicLongArray cells = getCells();
+		if (cells == null)
+		{
+			long count = m_base.get(COUNT);
+			update(m_base, 0, value);
+			if (!m_base.compareAndSet(COUNT, count, count + 1))
+			{
+				//Contended, this value stays in the base and later ones go to the cells
+				m_base.getAndIncrement(COUNT);
+				inflate();
+			}
+			return;
+		}
+
+		int index = cellIndex();
+		update(cells, index, value);
+		cells.getAndIncrement(index + COUNT);
+	}
+
+	@Override
+	protected void initCells(AtomicLongArray cells)
+	{
+		for (int i = 0; i < cellCount(); i++)
+			resetCell(cells, cellOffset(i));
+	}
+
+	private static void update(AtomicLongArray cells, int index, long value)
+	{
+		cells.getAndAdd(index + SUM, value);
+		updateMin(cells, index, value);
+		updateMax(cells, index, value);
+	}
+
+	private static void updateMin(AtomicLongArray cells, int index, long value)
+	{
+		long min = cells.get(index + MIN);
+		while (value < min && !cells.compareAndSet(index + MIN, min, value))
+			min = cells.get(index + MIN);
+	}
+
+	private static void updateMax(AtomicLongArray cells, int index, long value)
+	{
+		long max = cells.get(index + MAX);
+		while (value > max && !cells.compareAndSet(index + MAX, max, value))
+			max = cells.get(index + MAX);
+	}
+
+	private static void resetCell(AtomicLongArray cells, int index)
+	{
+		cells.set(index + COUNT, 0L);
+		cells.set(index + SUM, 0L);
+		cells.set(index + MIN, Long.MAX_VALUE);
+		cells.set(index + MAX, Long.MIN_VALUE);
+	}
+
+	/**
+	 Returns the statistics recorded since the last call and resets them.
+	 */
+	public Snapshot getAndReset()
+	{
+		Snapshot snapshot = new Snapshot();
+		snapshot.add(m_base, 0);
+
+		AtomicLongArray cells = getCells();
+		if (cells != null)
+		{
+			for (int i = 0; i < cellCount(); i++)
+				snapshot.add(cells, cellOffset(i));
+		}
+
+		boolean hasMin = snapshot.min != Long.MAX_VALUE;
+		boolean hasMax = snapshot.max != Long.MIN_VALUE;
+
+		if (snapshot.count == 0)
+		{
+			//Count for these values will show up in the next interval
+			if (snapshot.sum != 0)
+				m_base.getAndAdd(SUM, snapshot.sum);
+			if (hasMin)
+				updateMin(m_base, 0, snapshot.min);
+			if (hasMax)
+				updateMax(m_base, 0, snapshot.max);
+
+			snapshot.sum = 0;
+			snapshot.min = 0;
+			snapshot.max = 0;
+		}
+		else if (!hasMin && !hasMax)
+		{
+			//min and max for these values were reported in the previous interval
+			snapshot.hasMinMax = false;
+			snapshot.min = 0;
+			snapshot.max = 0;
+		}
+		else if (!hasMin)
+		{
+			snapshot.min = snapshot.max;
+		}
+		else if (!hasMax)
+		{
+			snapshot.max = snapshot.min;
+		}
+
+		return snapshot;
+	}
+
+	public static class Snapshot
+	{
+		private long count = 0;
+		private long sum = 0;
+		private long min = Long.MAX_VALUE;
+		private long max = Long.MIN_VALUE;
+		private boolean hasMinMax = true;
+
+		private void add(AtomicLongArray cells, int index)
+		{
+			//Count is taken first, the sum, min and max of any value it counts
+			//were written before it
+			count += cells.getAndSet(index + COUNT, 0L);
+			sum += cells.getAndSet(index + SUM, 0L);
+			min = Math.min(min, cells.getAndSet(index + MIN, Long.MAX_VALUE));
+			max = Math.max(max, cells.getAndSet(index + MAX, Long.MIN_VALUE));
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getSum()
+		{
+			return sum;
+		}
+
+		public long getMin()
+		{
+			return min;
+		}
+
+		public long getMax()
+		{
+			return max;
+		}
+
+		/**
+		 False when the min and max of every value counted in this snapshot
+		 were already reported with an earlier one
+		 */
+		public boolean hasMinMax()
+		{
+			return hasMinMax;
+		}
+	}
+}
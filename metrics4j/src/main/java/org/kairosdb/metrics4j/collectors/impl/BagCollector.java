@@ -3,47 +3,119 @@ package org.kairosdb.metrics4j.collectors.impl;
 import org.kairosdb.metrics4j.MetricThreadHelper;
 import org.kairosdb.metrics4j.MetricsContext;
 import org.kairosdb.metrics4j.collectors.*;
+import org.kairosdb.metrics4j.collectors.helpers.SampleRing;
 import org.kairosdb.metrics4j.collectors.helpers.TimerCollector;
 import org.kairosdb.metrics4j.reporting.*;
+import org.kairosdb.metrics4j.util.Clock;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 
 /**
  This collector does not do any aggregation.  Whatever value was put into the collector
  is reported using the time of the put or the Instant if one was provided.  This collector
- will also honor any request time set on the thread via MetricThreadHelper
+ will also honor any request time set on the thread via MetricThreadHelper.
+ Put times are read from the clock configured on the MetricsContext.
+
+ Values are kept in a SampleRing of capacity samples, when it fills up the
+ overflowPolicy decides whether it grows (the default) or which samples are
+ dropped.  The number dropped since the last report is reported as dropped.
+ Sample times are kept as epoch nanoseconds so an Instant that was put is
+ reported with the precision it was given.
  */
 public class BagCollector extends TimerCollector implements LongCollector, DoubleCollector, StringCollector
 {
-	private final Object m_bagLock = new Object();
-	private volatile ArrayList<TimedValue> m_bag = new ArrayList<>();
+	public static final int DEFAULT_CAPACITY = 1024;
 
-	private void addToBag(Instant time, MetricValue value)
+	private volatile SampleRing m_ring = new SampleRing(DEFAULT_CAPACITY, SampleRing.OverflowPolicy.GROW);
+	private Clock m_clock;
+	private final boolean m_useContextClock;
+
+	public BagCollector()
+	{
+		this(new Clock(), true);
+	}
+
+	public BagCollector(Clock clock)
+	{
+		this(clock, false);
+	}
+
+	private BagCollector(Clock clock, boolean useContextClock)
+	{
+		m_clock = clock;
+		m_useContextClock = useContextClock;
+	}
+
+	/**
+	 Number of values the ring holds between reports, defaults to 1024.  With
+	 the GROW policy more are kept but they allocate
+	 */
+	public void setCapacity(int capacity)
+	{
+		m_ring = new SampleRing(capacity, m_ring.getOverflowPolicy());
+	}
+
+	/**
+	 What to do when the ring is full, GROW (default) keeps every value,
+	 DROP_OLDEST or DROP_NEWEST bound the memory used by dropping values
+	 */
+	public void setOverflowPolicy(SampleRing.OverflowPolicy overflowPolicy)
+	{
+		m_ring = new SampleRing(m_ring.getCapacity(), overflowPolicy);
+	}
+
+	public long getDroppedSamples()
+	{
+		return m_ring.getDropped();
+	}
+
+	private static long toNanos(Instant time)
+	{
+		return time.getEpochSecond() * 1_000_000_000L + time.getNano();
+	}
+
+	private static Instant toInstant(long nanos)
+	{
+		return Instant.ofEpochSecond(0, nanos);
+	}
+
+	private long now()
+	{
+		return m_clock.now() * 1_000_000L;
+	}
+
+	private long reportTime(long time)
 	{
 		Instant reportTime = MetricThreadHelper.getReportTime();
-		if (reportTime == Instant.MIN) //time was not set on thread.
-			reportTime = time;
+		if (reportTime != Instant.MIN) //time was set on thread.
+			return toNanos(reportTime);
 
-		synchronized (m_bagLock)
-		{
-			m_bag.add(new TimedValue(reportTime, value));
-		}
+		return time;
+	}
+
+	private void addValue(long time, MetricValue value)
+	{
+		if (value instanceof LongValue)
+			m_ring.addLong(reportTime(time), ((LongValue) value).getValue());
+		else
+			m_ring.addDouble(reportTime(time), ((DoubleValue) value).getValue());
 	}
 
 	@Override
 	public void init(MetricsContext context)
 	{
-
+		if (m_useContextClock && context.getClock() != null)
+			m_clock = context.getClock();
 	}
 
 	@Override
 	public Collector clone()
 	{
-		BagCollector ret = new BagCollector();
+		BagCollector ret = new BagCollector(m_clock, m_useContextClock);
 		ret.setReportUnit(getReportUnit());
 		ret.setReportFormat(getReportFormat());
+		ret.m_ring = new SampleRing(m_ring.getCapacity(), m_ring.getOverflowPolicy());
 
 		return ret;
 	}
@@ -51,76 +123,78 @@ public class BagCollector extends TimerCollector implements LongCollector, Doubl
 	@Override
 	public void put(double value)
 	{
-		put(Instant.now(), value);
+		m_ring.addDouble(reportTime(now()), value);
 	}
 
 	@Override
 	public void put(Instant time, double value)
 	{
-		addToBag(time, new DoubleValue(value));
+		m_ring.addDouble(reportTime(toNanos(time)), value);
 	}
 
 	@Override
 	public void put(Duration duration)
 	{
-		put(Instant.now(), duration);
+		addValue(now(), m_timeReporter.getValue(duration));
 	}
 
 	@Override
 	public void put(Instant time, Duration duration)
 	{
-		addToBag(time, m_timeReporter.getValue(duration));
+		addValue(toNanos(time), m_timeReporter.getValue(duration));
 	}
 
 	@Override
 	public void put(long value)
 	{
-		put(Instant.now(), value);
+		m_ring.addLong(reportTime(now()), value);
 	}
 
 	@Override
 	public void put(Instant time, long value)
 	{
-		addToBag(time, new LongValue(value));
+		m_ring.addLong(reportTime(toNanos(time)), value);
 	}
 
 	@Override
 	public void reportMetric(MetricReporter metricReporter)
 	{
-		ArrayList<TimedValue> oldBag;
-		synchronized (m_bagLock)
-		{
-			oldBag = m_bag;
-			m_bag = new ArrayList<>();
-		}
-
-		for (TimedValue timedValue : oldBag)
+		SampleRing ring = m_ring;
+		ring.drain(new SampleRing.SampleVisitor()
 		{
-			metricReporter.put("value", timedValue.m_value, timedValue.m_time);
-		}
+			@Override
+			public void longSample(long time, long value)
+			{
+				metricReporter.put("value", new LongValue(value), toInstant(time));
+			}
+
+			@Override
+			public void doubleSample(long time, double value)
+			{
+				metricReporter.put("value", new DoubleValue(value), toInstant(time));
+			}
+
+			@Override
+			public void stringSample(long time, String value)
+			{
+				metricReporter.put("value", new StringValue(value), toInstant(time));
+			}
+		});
+
+		long dropped = ring.takeDropped();
+		if (dropped != 0)
+			metricReporter.put("dropped", new LongValue(dropped));
 	}
 
 	@Override
 	public void put(String value)
 	{
-		put(Instant.now(), value);
+		m_ring.addString(reportTime(now()), value);
 	}
 
 	@Override
 	public void put(Instant time, String value)
 	{
-		m_bag.add(new TimedValue(time, new StringValue(value)));
-	}
-
-	private class TimedValue
-	{
-		public Instant m_time;
-		public MetricValue m_value;
-
-		public TimedValue(Instant time, MetricValue value)
-		{
-			m_time = time;
-			m_value = value;
-		}
+		m_ring.addString(reportTime(toNanos(time)), value);
 	}
 }
@@ -0,0 +1,191 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import com.typesafe.config.ConfigFactory;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.DurationCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.helpers.LogLinearHistogram;
+import org.kairosdb.metrics4j.collectors.helpers.Percentiles;
+import org.kairosdb.metrics4j.collectors.helpers.TimerCollector;
+import org.kairosdb.metrics4j.internal.DoubleTimeReporter;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Records durations in nanoseconds in a log-linear histogram and reports min,
+ max, total, count, avg and the configured percentiles in the report unit.
+ The histogram is reset each time it is reported.
+ */
+@ToString
+@EqualsAndHashCode
+public class DurationHistogram extends TimerCollector implements DurationCollector, MetricCollector
+{
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = Duration.ofHours(1).toNanos();
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+	private DoubleTimeReporter m_doubleTimeReporter = new DoubleTimeReporter(ChronoUnit.MILLIS);
+
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	protected LogLinearHistogram m_histogram;
+
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	protected String[] m_percentileFields;
+
+	protected long highestTrackableValue = DEFAULT_HIGHEST_TRACKABLE_VALUE;
+	protected int significantDigits = DEFAULT_SIGNIFICANT_DIGITS;
+	protected List<Double> percentiles = Percentiles.DEFAULT_PERCENTILES;
+
+	/**
+	 Report zero values during interval if no data is received.
+	 */
+	@Setter
+	protected boolean reportZero = false;
+
+	public DurationHistogram()
+	{
+		m_histogram = new LogLinearHistogram(highestTrackableValue, significantDigits);
+		m_percentileFields = Percentiles.fieldNames(percentiles);
+	}
+
+	public DurationHistogram(ChronoUnit unit, boolean reportZero)
+	{
+		this();
+		setReportUnit(unit);
+		this.reportZero = reportZero;
+	}
+
+	@Override
+	public void setReportUnit(ChronoUnit reportUnit)
+	{
+		super.setReportUnit(reportUnit);
+		//We have to maintain our own double reporter to get averages
+		m_doubleTimeReporter = new DoubleTimeReporter(reportUnit);
+	}
+
+	/**
+	 Durations longer than this are counted in the highest bucket.
+	 */
+	public void setHighestTrackableValue(Duration highestTrackableValue)
+	{
+		this.highestTrackableValue = highestTrackableValue.toNanos();
+		m_histogram = new LogLinearHistogram(this.highestTrackableValue, significantDigits);
+	}
+
+	/**
+	 Number of significant digits kept for each value, between 1 and 5.
+	 */
+	public void setSignificantDigits(int significantDigits)
+	{
+		this.significantDigits = significantDigits;
+		m_histogram = new LogLinearHistogram(highestTrackableValue, significantDigits);
+	}
+
+	public void setPercentiles(List<Double> percentiles)
+	{
+		Percentiles.validate(percentiles);
+		this.percentiles = new ArrayList<>(percentiles);
+		m_percentileFields = Percentiles.fieldNames(percentiles);
+	}
+
+	@Override
+	public void put(Duration duration)
+	{
+		m_histogram.record(duration.toNanos());
+	}
+
+	@Override
+	public void put(Instant time, Duration duration)
+	{
+		put(duration);
+	}
+
+	@Override
+	public void reportMetric(MetricReporter metricReporter)
+	{
+		LogLinearHistogram.Snapshot snapshot = m_histogram.getAndReset();
+
+		if (snapshot.getCount() != 0)
+		{
+			metricReporter.put("min", m_timeReporter.getValue(Duration.ofNanos(snapshot.getMin())));
+			metricReporter.put("max", m_timeReporter.getValue(Duration.ofNanos(snapshot.getMax())));
+			metricReporter.put("total", m_timeReporter.getValue(Duration.ofNanos(snapshot.getSum())));
+			metricReporter.put("count", new LongValue(snapshot.getCount()));
+			metricReporter.put("avg", m_doubleTimeReporter.getValue(Duration.ofNanos(snapshot.getSum() / snapshot.getCount())));
+
+			for (int i = 0; i < m_percentileFields.length; i++)
+			{
+				long value = snapshot.getValueAtPercentile(percentiles.get(i));
+				metricReporter.put(m_percentileFields[i], m_timeReporter.getValue(Duration.ofNanos(value)));
+			}
+		}
+		else if (reportZero)
+		{
+			metricReporter.put("min", new LongValue(0L));
+			metricReporter.put("max", new LongValue(0L));
+			metricReporter.put("total", new LongValue(0L));
+			metricReporter.put("count", new LongValue(0L));
+			metricReporter.put("avg", new DoubleValue(0.0));
+
+			for (String percentileField : m_percentileFields)
+			{
+				metricReporter.put(percentileField, new LongValue(0L));
+			}
+		}
+	}
+
+	@Override
+	public Collector clone()
+	{
+		DurationHistogram ret = new DurationHistogram();
+		ret.setReportUnit(getReportUnit());
+		ret.setReportFormat(getReportFormat());
+		ret.reportZero = reportZero;
+		ret.setHighestTrackableValue(Duration.ofNanos(highestTrackableValue));
+		ret.setSignificantDigits(significantDigits);
+		ret.setPercentiles(percentiles);
+		return ret;
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+
+	@Override
+	public void setContextProperties(Map<String, String> contextProperties)
+	{
+		super.setContextProperties(contextProperties);
+
+		String value = contextProperties.get("highest-trackable-value");
+		if (value != null)
+		{
+			//Parse with hocon so the value can be written like "1h" or "500ms"
+			Duration duration = ConfigFactory.parseMap(Collections.singletonMap("value", value)).getDuration("value");
+			setHighestTrackableValue(duration);
+		}
+
+		value = contextProperties.get("significant-digits");
+		if (value != null)
+			setSignificantDigits(Integer.parseInt(value));
+
+		value = contextProperties.get("percentiles");
+		if (value != null)
+			setPercentiles(Percentiles.parse(value));
+	}
+}
@@ -0,0 +1,164 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.helpers.LogLinearHistogram;
+import org.kairosdb.metrics4j.collectors.helpers.Percentiles;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Records long values in a log-linear histogram and reports min, max, sum,
+ count, avg and the configured percentiles.  The histogram is reset each time
+ it is reported.
+ */
+@ToString
+@EqualsAndHashCode
+public class LongHistogram implements LongCollector, MetricCollector
+{
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3_600_000_000_000L;
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	protected LogLinearHistogram m_histogram;
+
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	protected String[] m_percentileFields;
+
+	protected long highestTrackableValue = DEFAULT_HIGHEST_TRACKABLE_VALUE;
+	protected int significantDigits = DEFAULT_SIGNIFICANT_DIGITS;
+	protected List<Double> percentiles = Percentiles.DEFAULT_PERCENTILES;
+
+	/**
+	 Report zero values during interval if no data is received.
+	 */
+	@Setter
+	protected boolean reportZero = false;
+
+	public LongHistogram()
+	{
+		this(false);
+	}
+
+	public LongHistogram(boolean reportZero)
+	{
+		this.reportZero = reportZero;
+		m_histogram = new LogLinearHistogram(highestTrackableValue, significantDigits);
+		m_percentileFields = Percentiles.fieldNames(percentiles);
+	}
+
+	/**
+	 Values above this are counted in the highest bucket.
+	 */
+	public void setHighestTrackableValue(long highestTrackableValue)
+	{
+		this.highestTrackableValue = highestTrackableValue;
+		m_histogram = new LogLinearHistogram(highestTrackableValue, significantDigits);
+	}
+
+	/**
+	 Number of significant digits kept for each value, between 1 and 5.
+	 */
+	public void setSignificantDigits(int significantDigits)
+	{
+		this.significantDigits = significantDigits;
+		m_histogram = new LogLinearHistogram(highestTrackableValue, significantDigits);
+	}
+
+	public void setPercentiles(List<Double> percentiles)
+	{
+		Percentiles.validate(percentiles);
+		this.percentiles = new ArrayList<>(percentiles);
+		m_percentileFields = Percentiles.fieldNames(percentiles);
+	}
+
+	@Override
+	public void put(long value)
+	{
+		m_histogram.record(value);
+	}
+
+	@Override
+	public void put(Instant time, long value)
+	{
+		put(value);
+	}
+
+	@Override
+	public Collector clone()
+	{
+		LongHistogram ret = new LongHistogram(reportZero);
+		ret.setHighestTrackableValue(highestTrackableValue);
+		ret.setSignificantDigits(significantDigits);
+		ret.setPercentiles(percentiles);
+		return ret;
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+
+	@Override
+	public void reportMetric(MetricReporter metricReporter)
+	{
+		LogLinearHistogram.Snapshot snapshot = m_histogram.getAndReset();
+
+		if (snapshot.getCount() != 0)
+		{
+			metricReporter.put("min", new LongValue(snapshot.getMin()));
+			metricReporter.put("max", new LongValue(snapshot.getMax()));
+			metricReporter.put("sum", new LongValue(snapshot.getSum()));
+			metricReporter.put("count", new LongValue(snapshot.getCount()));
+			metricReporter.put("avg", new DoubleValue(((double)snapshot.getSum())/((double)snapshot.getCount())));
+
+			for (int i = 0; i < m_percentileFields.length; i++)
+			{
+				metricReporter.put(m_percentileFields[i], new LongValue(snapshot.getValueAtPercentile(percentiles.get(i))));
+			}
+		}
+		else if (reportZero)
+		{
+			metricReporter.put("min", new LongValue(0L));
+			metricReporter.put("max", new LongValue(0L));
+			metricReporter.put("sum", new LongValue(0L));
+			metricReporter.put("count", new LongValue(0L));
+			metricReporter.put("avg", new DoubleValue(0.0));
+
+			for (String percentileField : m_percentileFields)
+			{
+				metricReporter.put(percentileField, new LongValue(0L));
+			}
+		}
+	}
+
+	@Override
+	public void setContextProperties(Map<String, String> contextProperties)
+	{
+		String value = contextProperties.get("highest-trackable-value");
+		if (value != null)
+			setHighestTrackableValue(Long.parseLong(value));
+
+		value = contextProperties.get("significant-digits");
+		if (value != null)
+			setSignificantDigits(Integer.parseInt(value));
+
+		value = contextProperties.get("percentiles");
+		if (value != null)
+			setPercentiles(Percentiles.parse(value));
+	}
+}
@@ -0,0 +1,289 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.DoubleCollector;
+import org.kairosdb.metrics4j.collectors.DurationCollector;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.helpers.DDSketch;
+import org.kairosdb.metrics4j.collectors.helpers.Percentiles;
+import org.kairosdb.metrics4j.collectors.helpers.TimerCollector;
+import org.kairosdb.metrics4j.internal.DoubleTimeReporter;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Records values in a DDSketch and reports min, max, sum, count, avg and the
+ configured percentiles.  Percentiles are within relative-accuracy of the real
+ value over any range of values, which makes this a good fit for things like
+ payload sizes where a fixed bucket histogram is too coarse.
+
+ Can be used as a LongCollector, DoubleCollector or DurationCollector.  Once a
+ duration is put the values are reported in the report unit and sum is reported
+ as total, same as the other timer collectors.
+
+ The sketch is reset each time it is reported.  Sketches can be merged with
+ merge() to roll up values across tag combinations.
+ */
+@ToString
+@EqualsAndHashCode
+public class QuantileSketch extends TimerCollector implements LongCollector, DoubleCollector, DurationCollector, MetricCollector
+{
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+	public static final int DEFAULT_MAX_BINS = 2048;
+
+	private DoubleTimeReporter m_doubleTimeReporter = new DoubleTimeReporter(ChronoUnit.MILLIS);
+
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final Object m_sketchLock = new Object();
+
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	protected DDSketch m_sketch;
+
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	protected String[] m_percentileFields;
+
+	@EqualsAndHashCode.Exclude
+	protected volatile boolean m_durationValues = false;
+
+	protected double relativeAccuracy = DEFAULT_RELATIVE_ACCURACY;
+	protected int maxBins = DEFAULT_MAX_BINS;
+	protected List<Double> percentiles = Percentiles.DEFAULT_PERCENTILES;
+
+	/**
+	 Report zero values during interval if no data is received.
+	 */
+	@Setter
+	protected boolean reportZero = false;
+
+	public QuantileSketch()
+	{
+		m_sketch = new DDSketch(relativeAccuracy, maxBins);
+		m_percentileFields = Percentiles.fieldNames(percentiles);
+	}
+
+	public QuantileSketch(double relativeAccuracy, boolean reportZero)
+	{
+		this();
+		setRelativeAccuracy(relativeAccuracy);
+		this.reportZero = reportZero;
+	}
+
+	@Override
+	public void setReportUnit(ChronoUnit reportUnit)
+	{
+		super.setReportUnit(reportUnit);
+		//We have to maintain our own double reporter to get averages
+		m_doubleTimeReporter = new DoubleTimeReporter(reportUnit);
+	}
+
+	/**
+	 Relative accuracy of the reported percentiles, 0.01 is within 1%
+	 */
+	public void setRelativeAccuracy(double relativeAccuracy)
+	{
+		synchronized (m_sketchLock)
+		{
+			this.relativeAccuracy = relativeAccuracy;
+			m_sketch = new DDSketch(relativeAccuracy, maxBins);
+		}
+	}
+
+	/**
+	 Maximum number of bins for positive and for negative values.  The default
+	 of 2048 covers values from 1 to about 1e17 at 1% accuracy.  Bins are
+	 allocated 64 at a time (512 bytes) only where values fall, so this limits
+	 the range covered rather than the memory used.
+	 */
+	public void setMaxBins(int maxBins)
+	{
+		synchronized (m_sketchLock)
+		{
+			this.maxBins = maxBins;
+			m_sketch = new DDSketch(relativeAccuracy, maxBins);
+		}
+	}
+
+	public void setPercentiles(List<Double> percentiles)
+	{
+		Percentiles.validate(percentiles);
+		this.percentiles = new ArrayList<>(percentiles);
+		m_percentileFields = Percentiles.fieldNames(percentiles);
+	}
+
+	private void add(double value)
+	{
+		synchronized (m_sketchLock)
+		{
+			m_sketch.add(value);
+		}
+	}
+
+	@Override
+	public void put(long value)
+	{
+		add(value);
+	}
+
+	@Override
+	public void put(Instant time, long value)
+	{
+		put(value);
+	}
+
+	@Override
+	public void put(double value)
+	{
+		add(value);
+	}
+
+	@Override
+	public void put(Instant time, double value)
+	{
+		put(value);
+	}
+
+	@Override
+	public void put(Duration duration)
+	{
+		m_durationValues = true;
+		add(duration.toNanos());
+	}
+
+	@Override
+	public void put(Instant time, Duration duration)
+	{
+		put(duration);
+	}
+
+	/**
+	 Adds the values currently recorded in other to this collector.  Both
+	 collectors must have the same relative accuracy.
+	 */
+	public void merge(QuantileSketch other)
+	{
+		DDSketch otherSketch;
+		synchronized (other.m_sketchLock)
+		{
+			otherSketch = other.m_sketch.copy();
+		}
+
+		if (other.m_durationValues)
+			m_durationValues = true;
+
+		synchronized (m_sketchLock)
+		{
+			m_sketch.merge(otherSketch);
+		}
+	}
+
+	@Override
+	public void reportMetric(MetricReporter metricReporter)
+	{
+		DDSketch sketch;
+		synchronized (m_sketchLock)
+		{
+			sketch = m_sketch;
+			m_sketch = new DDSketch(relativeAccuracy, maxBins);
+		}
+
+		if (sketch.getCount() != 0)
+		{
+			if (m_durationValues)
+			{
+				metricReporter.put("min", m_timeReporter.getValue(toDuration(sketch.getMin())));
+				metricReporter.put("max", m_timeReporter.getValue(toDuration(sketch.getMax())));
+				metricReporter.put("total", m_timeReporter.getValue(toDuration(sketch.getSum())));
+				metricReporter.put("count", new LongValue(sketch.getCount()));
+				metricReporter.put("avg", m_doubleTimeReporter.getValue(toDuration(sketch.getSum() / sketch.getCount())));
+			}
+			else
+			{
+				metricReporter.put("min", new DoubleValue(sketch.getMin()));
+				metricReporter.put("max", new DoubleValue(sketch.getMax()));
+				metricReporter.put("sum", new DoubleValue(sketch.getSum()));
+				metricReporter.put("count", new LongValue(sketch.getCount()));
+				metricReporter.put("avg", new DoubleValue(sketch.getSum() / sketch.getCount()));
+			}
+
+			for (int i = 0; i < m_percentileFields.length; i++)
+			{
+				double value = sketch.getValueAtQuantile(percentiles.get(i) / 100.0);
+				if (m_durationValues)
+					metricReporter.put(m_percentileFields[i], m_timeReporter.getValue(toDuration(value)));
+				else
+					metricReporter.put(m_percentileFields[i], new DoubleValue(value));
+			}
+		}
+		else if (reportZero)
+		{
+			metricReporter.put("min", new LongValue(0L));
+			metricReporter.put("max", new LongValue(0L));
+			metricReporter.put(m_durationValues ? "total" : "sum", new LongValue(0L));
+			metricReporter.put("count", new LongValue(0L));
+			metricReporter.put("avg", new DoubleValue(0.0));
+
+			for (String percentileField : m_percentileFields)
+			{
+				metricReporter.put(percentileField, new LongValue(0L));
+			}
+		}
+	}
+
+	private static Duration toDuration(double nanos)
+	{
+		return Duration.ofNanos(Math.round(nanos));
+	}
+
+	@Override
+	public Collector clone()
+	{
+		QuantileSketch ret = new QuantileSketch();
+		ret.setReportUnit(getReportUnit());
+		ret.setReportFormat(getReportFormat());
+		ret.reportZero = reportZero;
+		ret.setMaxBins(maxBins);
+		ret.setRelativeAccuracy(relativeAccuracy);
+		ret.setPercentiles(percentiles);
+		return ret;
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+
+	@Override
+	public void setContextProperties(Map<String, String> contextProperties)
+	{
+		super.setContextProperties(contextProperties);
+
+		String value = contextProperties.get("relative-accuracy");
+		if (value != null)
+			setRelativeAccuracy(Double.parseDouble(value));
+
+		value = contextProperties.get("max-bins");
+		if (value != null)
+			setMaxBins(Integer.parseInt(value));
+
+		value = contextProperties.get("percentiles");
+		if (value != null)
+			setPercentiles(Percentiles.parse(value));
+	}
+}
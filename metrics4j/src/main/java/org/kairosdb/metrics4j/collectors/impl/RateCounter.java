@@ -0,0 +1,151 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.DoubleCollector;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.helpers.StripedDouble;
+import org.kairosdb.metrics4j.collectors.helpers.StripedLong;
+import org.kairosdb.metrics4j.collectors.helpers.SystemTicker;
+import org.kairosdb.metrics4j.collectors.helpers.Ticker;
+import org.kairosdb.metrics4j.configuration.ConfigurationException;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ Reports the rate values were put since the last report, in values per
+ rate unit.  The rate is divided by the time that actually elapsed between
+ reports so a trigger that is late (ie because of a GC pause) still reports
+ the right rate.  Values are added to cells striped by thread.
+
+ The first interval is measured from when the collector was created.  If no
+ time has elapsed since the last report the values are carried over to the
+ next one.  Zero rates are not reported by default so collectors for idle
+ tag combinations can be removed.
+ */
+@ToString
+@EqualsAndHashCode
+public class RateCounter implements LongCollector, DoubleCollector
+{
+	//Shorter intervals are carried over as the rate would mostly be noise
+	private static final long MIN_ELAPSED_NANOS = 1_000_000L;
+
+	@EqualsAndHashCode.Exclude
+	private final StripedLong m_longCount = new StripedLong();
+	@EqualsAndHashCode.Exclude
+	private final StripedDouble m_doubleCount = new StripedDouble();
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final Ticker m_ticker;
+	@EqualsAndHashCode.Exclude
+	private long m_lastReport;
+	@EqualsAndHashCode.Exclude
+	private double m_carryOver = 0.0;
+
+	@Setter
+	protected ChronoUnit rateUnit;
+
+	@Setter
+	protected boolean reportZero;
+
+	public RateCounter(ChronoUnit rateUnit, boolean reportZero, Ticker ticker)
+	{
+		this.rateUnit = rateUnit;
+		this.reportZero = reportZero;
+		m_ticker = ticker;
+		m_lastReport = ticker.read();
+	}
+
+	public RateCounter(ChronoUnit rateUnit, boolean reportZero)
+	{
+		this(rateUnit, reportZero, new SystemTicker());
+	}
+
+	public RateCounter()
+	{
+		this(ChronoUnit.SECONDS, false);
+	}
+
+	@Override
+	public void put(long value)
+	{
+		m_longCount.add(value);
+	}
+
+	@Override
+	public void put(Instant time, long value)
+	{
+		put(value);
+	}
+
+	@Override
+	public void put(double value)
+	{
+		m_doubleCount.add(value);
+	}
+
+	@Override
+	public void put(Instant time, double value)
+	{
+		put(value);
+	}
+
+	@Override
+	public Collector clone()
+	{
+		return new RateCounter(rateUnit, reportZero, m_ticker);
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+
+	@Override
+	public synchronized void reportMetric(MetricReporter metricReporter)
+	{
+		long now = m_ticker.read();
+		double count = m_carryOver + m_longCount.sumThenReset() + m_doubleCount.sumThenReset();
+		long elapsed = now - m_lastReport;
+
+		if (elapsed < MIN_ELAPSED_NANOS)
+		{
+			m_carryOver = count;
+			return;
+		}
+
+		m_carryOver = 0.0;
+		m_lastReport = now;
+
+		double rate = count * rateUnit.getDuration().toNanos() / elapsed;
+
+		if (rate != 0.0 || reportZero)
+			metricReporter.put("rate", new DoubleValue(rate));
+	}
+
+	@Override
+	public void setContextProperties(Map<String, String> contextProperties)
+	{
+		String rateUnit = contextProperties.get("rate-unit");
+
+		if (rateUnit != null)
+		{
+			try
+			{
+				setRateUnit(ChronoUnit.valueOf(rateUnit.trim().toUpperCase()));
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new ConfigurationException("Invalid value for rate-unit: '" + rateUnit + "'");
+			}
+		}
+	}
+}
@@ -5,30 +5,72 @@ import lombok.ToString;
 import org.kairosdb.metrics4j.MetricsContext;
 import org.kairosdb.metrics4j.collectors.Collector;
 import org.kairosdb.metrics4j.collectors.StringCollector;
+import org.kairosdb.metrics4j.collectors.helpers.SampleRing;
+import org.kairosdb.metrics4j.reporting.LongValue;
 import org.kairosdb.metrics4j.reporting.MetricReporter;
 import org.kairosdb.metrics4j.reporting.StringValue;
+import org.kairosdb.metrics4j.util.Clock;
 
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
+/**
+ Reports every string put along with the time it was put.  Strings are kept in
+ a SampleRing of capacity entries, see BagCollector for how overflow is handled.
+ */
 @ToString
 @EqualsAndHashCode
 public class StringReporter implements StringCollector
 {
-	protected List<Instant> m_times = new ArrayList<>();
-	protected List<String> m_strings = new ArrayList<>();
-	protected Object m_stringsLock = new Object();
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	protected volatile SampleRing m_ring = new SampleRing(DEFAULT_CAPACITY, SampleRing.OverflowPolicy.GROW);
+	private Clock m_clock;
+	private final boolean m_useContextClock;
+
+	public StringReporter()
+	{
+		this(new Clock(), true);
+	}
+
+	public StringReporter(Clock clock)
+	{
+		this(clock, false);
+	}
+
+	private StringReporter(Clock clock, boolean useContextClock)
+	{
+		m_clock = clock;
+		m_useContextClock = useContextClock;
+	}
+
+	/**
+	 Number of strings the ring holds between reports, defaults to 1024.  With
+	 the GROW policy more are kept but they allocate
+	 */
+	public void setCapacity(int capacity)
+	{
+		m_ring = new SampleRing(capacity, m_ring.getOverflowPolicy());
+	}
+
+	/**
+	 What to do when the ring is full, GROW (default) keeps every value,
+	 DROP_OLDEST or DROP_NEWEST bound the memory used by dropping strings
+	 */
+	public void setOverflowPolicy(SampleRing.OverflowPolicy overflowPolicy)
+	{
+		m_ring = new SampleRing(m_ring.getCapacity(), overflowPolicy);
+	}
+
+	public long getDroppedSamples()
+	{
+		return m_ring.getDropped();
+	}
 
 	@Override
 	public void put(String value)
 	{
-		synchronized (m_stringsLock)
-		{
-			m_times.add(Instant.now());
-			m_strings.add(value);
-		}
+		m_ring.addString(m_clock.now(), value);
 	}
 
 	@Override
@@ -40,32 +82,35 @@ public class StringReporter implements StringCollector
 	@Override
 	public Collector clone()
 	{
-		return new StringReporter();
+		StringReporter ret = new StringReporter(m_clock, m_useContextClock);
+		ret.m_ring = new SampleRing(m_ring.getCapacity(), m_ring.getOverflowPolicy());
+
+		return ret;
 	}
 
 	@Override
 	public void init(MetricsContext context)
 	{
-
+		if (m_useContextClock && context.getClock() != null)
+			m_clock = context.getClock();
 	}
 
 	@Override
 	public void reportMetric(MetricReporter metricReporter)
 	{
-		List<String> data;
-		List<Instant> times;
-		synchronized (m_stringsLock)
+		SampleRing ring = m_ring;
+		ring.drain(new SampleRing.SampleVisitor()
 		{
-			data = m_strings;
-			times = m_times;
-			m_strings = new ArrayList<>();
-			m_times = new ArrayList<>();
-		}
+			@Override
+			public void stringSample(long time, String value)
+			{
+				metricReporter.put("value", new StringValue(value), Instant.ofEpochMilli(time));
+			}
+		});
 
-		for (int i = 0; i < times.size(); i++)
-		{
-			metricReporter.put("value", new StringValue(data.get(i)), times.get(i));
-		}
+		long dropped = ring.takeDropped();
+		if (dropped != 0)
+			metricReporter.put("dropped", new LongValue(dropped));
 	}
 
 	@Override
@@ -0,0 +1,87 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.DoubleCollector;
+import org.kairosdb.metrics4j.collectors.helpers.StripedDouble;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ Same as DoubleCounter but without the lock, the count is striped across
+ cells so threads putting values at the same time do not contend.
+ */
+@ToString
+@EqualsAndHashCode
+public class StripedDoubleCounter implements DoubleCollector
+{
+	@EqualsAndHashCode.Exclude
+	protected final StripedDouble m_count = new StripedDouble();
+
+	@Setter
+	protected boolean reset;
+
+	@Setter
+	protected boolean reportZero;
+
+	public StripedDoubleCounter(boolean reset, boolean reportZero)
+	{
+		this.reset = reset;
+		this.reportZero = reportZero;
+	}
+
+	public StripedDoubleCounter()
+	{
+		this(false, true);
+	}
+
+	@Override
+	public void put(double value)
+	{
+		m_count.add(value);
+	}
+
+	@Override
+	public void put(Instant time, double value)
+	{
+		put(value);
+	}
+
+	@Override
+	public Collector clone()
+	{
+		return new StripedDoubleCounter(reset, reportZero);
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+
+	@Override
+	public void reportMetric(MetricReporter metricReporter)
+	{
+		double value;
+
+		if (reset)
+			value = m_count.sumThenReset();
+		else
+			value = m_count.sum();
+
+		if (value != 0.0 || reportZero)
+			metricReporter.put("count", new DoubleValue(value));
+	}
+
+	@Override
+	public void setContextProperties(Map<String, String> contextProperties)
+	{
+
+	}
+}
@@ -0,0 +1,88 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.helpers.StripedLong;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ Same as LongCounter but the count is striped across cells so threads
+ putting values at the same time do not contend on a single cache line.
+ */
+@ToString
+@EqualsAndHashCode
+public class StripedLongCounter implements LongCollector
+{
+	@EqualsAndHashCode.Exclude
+	protected final StripedLong m_count = new StripedLong();
+
+	@Setter
+	protected boolean reset = false;
+
+	@Setter
+	protected boolean reportZero = true;
+
+	public StripedLongCounter(boolean reset, boolean reportZero)
+	{
+		super();
+		this.reset = reset;
+		this.reportZero = reportZero;
+	}
+
+	public StripedLongCounter()
+	{
+		this(false, true);
+	}
+
+	@Override
+	public void put(long count)
+	{
+		m_count.add(count);
+	}
+
+	@Override
+	public void put(Instant time, long count)
+	{
+		put(count);
+	}
+
+	@Override
+	public void reportMetric(MetricReporter metricReporter)
+	{
+		long value;
+
+		if (reset)
+			value = m_count.sumThenReset();
+		else
+			value = m_count.sum();
+
+		if (value != 0L || reportZero)
+			metricReporter.put("count", new LongValue(value));
+	}
+
+	@Override
+	public void setContextProperties(Map<String, String> contextProperties)
+	{
+
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+
+	@Override
+	public Collector clone()
+	{
+		return new StripedLongCounter(reset, reportZero);
+	}
+}
@@ -0,0 +1,101 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.helpers.StripedStatistics;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ Reports the same values as SimpleStats without taking a lock on put.  Values
+ are accumulated in cells striped by thread and merged when reported.
+ */
+@ToString
+@EqualsAndHashCode
+public class StripedStats implements LongCollector, MetricCollector
+{
+	@EqualsAndHashCode.Exclude
+	protected final StripedStatistics m_statistics = new StripedStatistics();
+
+	/**
+	 Report zero values during interval if no data is received.
+	 */
+	@Setter
+	protected boolean reportZero = false;
+
+	public StripedStats()
+	{
+		this(false);
+	}
+
+	public StripedStats(boolean reportZero)
+	{
+		this.reportZero = reportZero;
+	}
+
+	@Override
+	public void put(long value)
+	{
+		m_statistics.record(value);
+	}
+
+	@Override
+	public void put(Instant time, long value)
+	{
+		put(value);
+	}
+
+	@Override
+	public Collector clone()
+	{
+		return new StripedStats(reportZero);
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+
+	@Override
+	public void reportMetric(MetricReporter metricReporter)
+	{
+		StripedStatistics.Snapshot snapshot = m_statistics.getAndReset();
+
+		if (snapshot.getCount() != 0)
+		{
+			if (snapshot.hasMinMax())
+			{
+				metricReporter.put("min", new LongValue(snapshot.getMin()));
+				metricReporter.put("max", new LongValue(snapshot.getMax()));
+			}
+
+			metricReporter.put("sum", new LongValue(snapshot.getSum()));
+			metricReporter.put("count", new LongValue(snapshot.getCount()));
+			metricReporter.put("avg", new DoubleValue(((double)snapshot.getSum())/((double)snapshot.getCount())));
+		}
+		else if (reportZero)
+		{
+			metricReporter.put("min", new LongValue(0L));
+			metricReporter.put("max", new LongValue(0L));
+			metricReporter.put("sum", new LongValue(0L));
+			metricReporter.put("count", new LongValue(0L));
+			metricReporter.put("avg", new DoubleValue(0.0));
+		}
+	}
+
+	@Override
+	public void setContextProperties(Map<String, String> contextProperties)
+	{
+
+	}
+}
@@ -0,0 +1,114 @@
+package org.kairosdb.metrics4j.collectors.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.Collector;
+import org.kairosdb.metrics4j.collectors.DurationCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.helpers.StripedStatistics;
+import org.kairosdb.metrics4j.collectors.helpers.TimerCollector;
+import org.kairosdb.metrics4j.internal.DoubleTimeReporter;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ Reports the same values as SimpleTimerMetric without taking a lock on put.
+ Durations are converted to nanoseconds once and accumulated in cells striped
+ by thread, no Duration objects are created until the values are reported.
+ */
+@ToString
+@EqualsAndHashCode
+public class StripedTimerMetric extends TimerCollector implements DurationCollector, MetricCollector
+{
+	private DoubleTimeReporter m_doubleTimeReporter = new DoubleTimeReporter(ChronoUnit.MILLIS);
+
+	@EqualsAndHashCode.Exclude
+	protected final StripedStatistics m_statistics = new StripedStatistics();
+
+	/**
+	 Report zero values during interval if no data is received.
+	 */
+	@Setter
+	protected boolean reportZero = false;
+
+	public StripedTimerMetric()
+	{
+	}
+
+	public StripedTimerMetric(ChronoUnit unit, boolean reportZero)
+	{
+		this();
+		setReportUnit(unit);
+		this.reportZero = reportZero;
+	}
+
+	@Override
+	public void setReportUnit(ChronoUnit reportUnit)
+	{
+		super.setReportUnit(reportUnit);
+		//We have to maintain our own double reporter to get averages
+		m_doubleTimeReporter = new DoubleTimeReporter(reportUnit);
+	}
+
+	@Override
+	public void reportMetric(MetricReporter metricReporter)
+	{
+		StripedStatistics.Snapshot snapshot = m_statistics.getAndReset();
+
+		if (snapshot.getCount() != 0)
+		{
+			if (snapshot.hasMinMax())
+			{
+				metricReporter.put("min", m_timeReporter.getValue(Duration.ofNanos(snapshot.getMin())));
+				metricReporter.put("max", m_timeReporter.getValue(Duration.ofNanos(snapshot.getMax())));
+			}
+
+			metricReporter.put("total", m_timeReporter.getValue(Duration.ofNanos(snapshot.getSum())));
+			metricReporter.put("count", new LongValue(snapshot.getCount()));
+			metricReporter.put("avg", m_doubleTimeReporter.getValue(Duration.ofNanos(snapshot.getSum() / snapshot.getCount())));
+		}
+		else if (reportZero)
+		{
+			metricReporter.put("min", new LongValue(0L));
+			metricReporter.put("max", new LongValue(0L));
+			metricReporter.put("total", new LongValue(0L));
+			metricReporter.put("count", new LongValue(0L));
+			metricReporter.put("avg", new DoubleValue(0.0));
+		}
+	}
+
+	@Override
+	public void put(Duration duration)
+	{
+		m_statistics.record(duration.toNanos());
+	}
+
+	@Override
+	public void put(Instant time, Duration duration)
+	{
+		put(duration);
+	}
+
+	@Override
+	public Collector clone()
+	{
+		StripedTimerMetric ret = new StripedTimerMetric();
+		ret.setReportUnit(getReportUnit());
+		ret.setReportFormat(getReportFormat());
+		ret.reportZero = reportZero;
+		return ret;
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+
+	}
+}
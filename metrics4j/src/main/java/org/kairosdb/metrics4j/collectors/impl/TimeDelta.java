@@ -18,16 +18,23 @@ import java.time.Instant;
 @EqualsAndHashCode
 public class TimeDelta extends SimpleTimerMetric implements TimeCollector
 {
-	private final Clock m_clock;
+	private Clock m_clock;
+	private final boolean m_useContextClock;
 
 	public TimeDelta(Clock clock)
 	{
-		m_clock = clock;
+		this(clock, false);
 	}
 
 	public TimeDelta()
 	{
-		this(new Clock());
+		this(new Clock(), true);
+	}
+
+	private TimeDelta(Clock clock, boolean useContextClock)
+	{
+		m_clock = clock;
+		m_useContextClock = useContextClock;
 	}
 
 
@@ -47,7 +54,7 @@ public class TimeDelta extends SimpleTimerMetric implements TimeCollector
 	@Override
 	public Collector clone()
 	{
-		TimeDelta ret = new TimeDelta();
+		TimeDelta ret = new TimeDelta(m_clock, m_useContextClock);
 		ret.setReportUnit(getReportUnit());
 		ret.setReportFormat(getReportFormat());
 		ret.reportZero = reportZero;
@@ -59,5 +66,8 @@ public class TimeDelta extends SimpleTimerMetric implements TimeCollector
 	public void init(MetricsContext context)
 	{
 		super.init(context);
+
+		if (m_useContextClock && context.getClock() != null)
+			m_clock = context.getClock();
 	}
 }
@@ -39,7 +39,8 @@ public class TimestampCounter extends Cloneable implements TimeCollector
 	private volatile Map<Instant, AtomicLong> m_timeBuckets = new HashMap<>();
 	private Object m_mapLock = new Object();
 
-	private final Clock m_clock;
+	private Clock m_clock;
+	private final boolean m_useContextClock;
 
 	@Setter
 	protected long truncateMillis = 20_000L; //Increments the reported timestamp every 20 sec
@@ -49,12 +50,18 @@ public class TimestampCounter extends Cloneable implements TimeCollector
 
 	public TimestampCounter()
 	{
-		this(new Clock());
+		this(new Clock(), true);
 	}
 
 	public TimestampCounter(Clock clock)
+	{
+		this(clock, false);
+	}
+
+	private TimestampCounter(Clock clock, boolean useContextClock)
 	{
 		m_clock = clock;
+		m_useContextClock = useContextClock;
 	}
 
 
@@ -90,7 +97,8 @@ public class TimestampCounter extends Cloneable implements TimeCollector
 	@Override
 	public void init(MetricsContext context)
 	{
-		//nothing to do
+		if (m_useContextClock && context.getClock() != null)
+			m_clock = context.getClock();
 	}
 
 	@Override
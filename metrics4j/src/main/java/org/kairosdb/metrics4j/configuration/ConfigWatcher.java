@@ -0,0 +1,87 @@
+package org.kairosdb.metrics4j.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Checks the modified time and size of the config files every interval and
+ calls reload when any of them change.  A reload that fails is logged and not
+ retried until the files change again.
+ */
+/*package*/ class ConfigWatcher implements Closeable, Runnable
+{
+	private static final Logger log = LoggerFactory.getLogger(ConfigWatcher.class);
+
+	private final List<File> m_files;
+	private final Duration m_interval;
+	private final Runnable m_reload;
+	private ScheduledExecutorService m_executor;
+	private List<Long> m_lastState;
+
+	/*package*/ ConfigWatcher(List<File> files, Duration interval, Runnable reload)
+	{
+		m_files = new ArrayList<>(files);
+		m_interval = interval;
+		m_reload = reload;
+	}
+
+	private List<Long> fileState()
+	{
+		List<Long> state = new ArrayList<>();
+		for (File file : m_files)
+		{
+			state.add(file.lastModified());
+			state.add(file.length());
+		}
+
+		return state;
+	}
+
+	/*package*/ void start()
+	{
+		m_lastState = fileState();
+		m_executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "metrics4j-config-watcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		m_executor.scheduleWithFixedDelay(this, m_interval.toMillis(), m_interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void run()
+	{
+		List<Long> state = fileState();
+		if (state.equals(m_lastState))
+			return;
+
+		m_lastState = state;
+		log.info("Configuration changed, reloading {}", m_files);
+		try
+		{
+			m_reload.run();
+		}
+		catch (Exception e)
+		{
+			log.error("Unable to reload configuration, keeping the current one", e);
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if (m_executor != null)
+			m_executor.shutdown();
+	}
+}
@@ -5,12 +5,25 @@ import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigRenderOptions;
 import com.typesafe.config.ConfigValue;
 import com.typesafe.config.ConfigValueType;
+import org.kairosdb.metrics4j.MetricSourceManager;
 import org.kairosdb.metrics4j.MetricsContext;
 import org.kairosdb.metrics4j.PostConfig;
 import org.kairosdb.metrics4j.PostConstruct;
+import org.kairosdb.metrics4j.SinkNotification;
+import org.kairosdb.metrics4j.TriggerNotification;
 import org.kairosdb.metrics4j.internal.ArgKey;
+import org.kairosdb.metrics4j.internal.AsyncSinkDispatcher;
 import org.kairosdb.metrics4j.internal.BeanInjector;
 import org.kairosdb.metrics4j.internal.MetricsContextImpl;
+import org.kairosdb.metrics4j.internal.PathTrie;
+import org.kairosdb.metrics4j.internal.SinkQueue;
+import org.kairosdb.metrics4j.internal.TagCombinationLimiter;
+import org.kairosdb.metrics4j.internal.TriggerMetricCollection;
+import org.kairosdb.metrics4j.sinks.ExclusiveSink;
+import org.kairosdb.metrics4j.sinks.MetricSink;
+import org.kairosdb.metrics4j.triggers.Trigger;
+import org.kairosdb.metrics4j.util.CachedClock;
+import org.kairosdb.metrics4j.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
@@ -18,18 +31,24 @@ import org.slf4j.Marker;
 import java.beans.IntrospectionException;
 import java.io.*;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,6 +58,20 @@ public class MetricConfig
 	public static final String FOLDER_PROPERTY = "_folder";
 	public static final String DUMP_FILE = "_dump-file";
 	public static final String METRIC_NAME = "_metric-name";
+	public static final String SOURCE_IMPLEMENTATION = "_source-implementation";
+	public static final String SOURCE_IMPLEMENTATION_PROXY = "proxy";
+	public static final String SOURCE_IMPLEMENTATION_GENERATED = "generated";
+	public static final String SINK_ASYNC = "_async";
+	public static final String SINK_QUEUE_SIZE = "_queue-size";
+	public static final String SINK_OVERFLOW_POLICY = "_overflow-policy";
+	public static final int DEFAULT_SINK_QUEUE_SIZE = 16;
+	public static final String TRIGGER_GATHER_PARALLELISM = "_gather-parallelism";
+	public static final String MAX_TAG_COMBINATIONS = "_max-tag-combinations";
+	public static final String CLOCK = "_clock";
+	public static final String CLOCK_PRECISE = "precise";
+	public static final String CLOCK_CACHED = "cached";
+	public static final String CLOCK_RESOLUTION = "_clock-resolution";
+	public static final String RELOAD_CHECK_INTERVAL = "_reload-check-interval";
 
 	public static final String CONFIG_SYSTEM_PROPERTY = "METRICS4J_CONFIG";
 	public static final String OVERRIDES_SYSTEM_PROPERTY = "METRICS4J_OVERRIDES";
@@ -51,17 +84,29 @@ public class MetricConfig
 
 	private Properties m_properties = new Properties();
 
-	private final Map<List<String>, Map<String, String>> m_mappedTags;
-	private final Map<List<String>, Map<String, String>> m_mappedProps;
+	private final PathTrie<PathSettings> m_pathSettings;
 	private final Map<List<String>, String> m_mappedMetricNames;
-	private final Map<List<String>, Boolean> m_disabledPaths;
+	//Resolved settings by config path, cleared when settings or properties change
+	private final Map<List<String>, ResolvedPath> m_resolvedPaths;
 
 	private final MetricsContextImpl m_context;
 	private final List<Closeable> m_closeables;
-
-	private boolean m_shutdownOverride = false;
+	private final Map<Object, Config> m_componentConfigs = new IdentityHashMap<>();
+	//Sinks taken over from the configuration this one replaces
+	private final List<SinkQueue> m_keptSinks = new ArrayList<>();
+
+	private volatile boolean m_shutdownOverride = false;
+	private volatile MetricConfig m_replacedBy;
+	/*package*/ final Thread m_shutdownHook;
+	private boolean m_closed = false;
+	private final List<File> m_configFiles = new ArrayList<>();
+	private Duration m_reloadCheckInterval;
+	private String m_baseConfig;
+	private String m_overridesConfig;
 	private boolean m_dumpMetrics = false;
 	private String m_dumpFile;
+	private boolean m_generatedSources = false;
+	private TagCombinationLimiter m_tagCombinationLimiter = null;
 	private Map<String, Object> m_dumpConfig;
 	private final List<PostConstruct> m_postConstructs;
 	private final List<PostConfig> m_postConfigs;
@@ -159,8 +204,9 @@ public class MetricConfig
 
 		for (String name : keys)
 		{
-
-			T classInstance = loadClass(configs.getConfig(name), name);
+			Config config = configs.getConfig(name);
+			T classInstance = loadClass(config, name);
+			m_componentConfigs.put(classInstance, config);
 
 			register.accept(name, classInstance);
 
@@ -181,6 +227,70 @@ public class MetricConfig
 		}
 	}
 
+	/**
+	 Wraps the sink in a SinkQueue and when _async is set gives the queue an
+	 AsyncSinkDispatcher so the sink is called on its own thread.
+	 */
+	private void registerSink(MetricsContextImpl context, Config sinkConfig, String name, MetricSink sink)
+	{
+		SinkQueue sinkQueue = new SinkQueue(sink, name);
+
+		if (sinkConfig.hasPath(SINK_ASYNC) && sinkConfig.getBoolean(SINK_ASYNC))
+		{
+			int queueSize = DEFAULT_SINK_QUEUE_SIZE;
+			if (sinkConfig.hasPath(SINK_QUEUE_SIZE))
+				queueSize = sinkConfig.getInt(SINK_QUEUE_SIZE);
+
+			if (queueSize < 1)
+				throw new ConfigurationException("Sink '"+name+"' "+SINK_QUEUE_SIZE+" must be greater than 0");
+
+			AsyncSinkDispatcher.OverflowPolicy policy = AsyncSinkDispatcher.OverflowPolicy.DROP_OLDEST;
+			if (sinkConfig.hasPath(SINK_OVERFLOW_POLICY))
+			{
+				String policyName = sinkConfig.getString(SINK_OVERFLOW_POLICY);
+				try
+				{
+					policy = AsyncSinkDispatcher.OverflowPolicy.valueOf(policyName.toUpperCase().replace('-', '_'));
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new ConfigurationException("Unknown value for "+SINK_OVERFLOW_POLICY+" on sink '"+name+"': '"+
+							policyName+"', expected 'drop-oldest', 'drop-newest' or 'block'");
+				}
+			}
+
+			AsyncSinkDispatcher dispatcher = new AsyncSinkDispatcher(name, sink, queueSize, policy);
+			sinkQueue.setAsyncDispatcher(dispatcher);
+
+			//Added before the sink itself so the queue is drained before the sink is closed
+			m_postConfigs.add(dispatcher);
+			m_closeables.add(dispatcher);
+		}
+
+		context.registerSinkQueue(sinkQueue);
+	}
+
+	/**
+	 Creates the TriggerMetricCollection for the trigger, _gather-parallelism
+	 sets how many threads are used to gather metrics for the trigger.
+	 */
+	private void registerTrigger(MetricsContextImpl context, Config triggerConfig, String name, Trigger trigger)
+	{
+		TriggerMetricCollection collection = new TriggerMetricCollection(trigger);
+
+		if (triggerConfig.hasPath(TRIGGER_GATHER_PARALLELISM))
+		{
+			int parallelism = triggerConfig.getInt(TRIGGER_GATHER_PARALLELISM);
+			if (parallelism < 1)
+				throw new ConfigurationException("Trigger '"+name+"' "+TRIGGER_GATHER_PARALLELISM+" must be greater than 0");
+
+			collection.setGatherParallelism(parallelism);
+			m_closeables.add(collection);
+		}
+
+		context.registerTriggerCollection(name, collection);
+	}
+
 	/*package*/ static List<String> appendSourceName(List<String> parent, String child)
 	{
 		List<String> copy = new ArrayList<>(parent);
@@ -242,7 +352,10 @@ public class MetricConfig
 						String metricName = root.getString(combinedPath);
 
 						if (!metricName.isEmpty())
+						{
 							m_mappedMetricNames.put(createList(path, i-1), metricName);
+							m_resolvedPaths.clear();
+						}
 					}
 					else if (internalProp.equals("_sink"))
 					{
@@ -300,23 +413,20 @@ public class MetricConfig
 						String key = path[i+1];
 						String value = (String) entry.getValue().unwrapped();
 
-						List<String> pathList = createList(path, i - 1);
-						Map<String, String> pathTags = m_mappedTags.computeIfAbsent(pathList, (k) -> new HashMap<>());
-						pathTags.put(key, value);
+						updatePathSettings(createList(path, i - 1), (settings) -> settings.withTag(key, value));
 					}
 					else if (internalProp.equals("_prop"))
 					{
 						String key = path[i+1];
-						String value = (String) entry.getValue().unwrapped();
+						//Numbers are common in props, ie max-tag-combinations: 1000
+						String value = String.valueOf(entry.getValue().unwrapped());
 
-						List<String> pathList = createList(path, i - 1);
-						Map<String, String> pathProps = m_mappedProps.computeIfAbsent(pathList, (k) -> new HashMap<>());
-						pathProps.put(key, value);
+						updatePathSettings(createList(path, i - 1), (settings) -> settings.withProp(key, value));
 					}
 					else if (internalProp.equals("_disabled"))
 					{
 						Boolean value = (Boolean)entry.getValue().unwrapped();
-						m_disabledPaths.put(createList(path, i - 1), value);
+						updatePathSettings(createList(path, i - 1), (settings) -> settings.withDisabled(value));
 					}
 					else
 					{
@@ -327,6 +437,12 @@ public class MetricConfig
 		}
 	}
 
+	private void updatePathSettings(List<String> path, UnaryOperator<PathSettings> update)
+	{
+		m_pathSettings.update(path, (settings) -> update.apply(settings == null ? PathSettings.EMPTY : settings));
+		m_resolvedPaths.clear();
+	}
+
 	private static void registerIfNotNull(Config config, String path, Consumer<Config> register)
 	{
 		if (config.hasPath(path))
@@ -340,10 +456,61 @@ public class MetricConfig
 	 * @return
 	 */
 	public static MetricConfig parseConfig(String baseConfig, String overridesConfig)
+	{
+		return parseConfig(baseConfig, overridesConfig, true);
+	}
+
+	/**
+	 Parses the configuration without calling init on any of the components,
+	 used when reloading so state can be handed over with inheritFrom before
+	 the new components start.  Call initComponents before replaceWith.
+	 */
+	public static MetricConfig loadConfig(String baseConfig, String overridesConfig)
+	{
+		return parseConfig(baseConfig, overridesConfig, false);
+	}
+
+	private static File resourceFile(String resource)
+	{
+		URL url = Thread.currentThread().getContextClassLoader().getResource(resource);
+		if (url == null || !"file".equals(url.getProtocol()))
+			return null;
+
+		try
+		{
+			return new File(url.toURI());
+		}
+		catch (URISyntaxException | IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+
+	private static MetricConfig parseConfig(String baseConfig, String overridesConfig, boolean init)
 	{
 		MetricsContextImpl context = new MetricsContextImpl();
 		MetricConfig ret = new MetricConfig(context);
 
+		try
+		{
+			parseInto(ret, context, baseConfig, overridesConfig, init);
+		}
+		catch (RuntimeException e)
+		{
+			//Stops the clock and anything else started before the failure
+			ret.discard();
+			throw e;
+		}
+
+		return ret;
+	}
+
+	private static void parseInto(MetricConfig ret, MetricsContextImpl context, String baseConfig,
+			String overridesConfig, boolean init)
+	{
+		ret.m_baseConfig = baseConfig;
+		ret.m_overridesConfig = overridesConfig;
+
 		String configFilePath = System.getProperty(CONFIG_SYSTEM_PROPERTY);
 		String overridesFile = System.getProperty(OVERRIDES_SYSTEM_PROPERTY);
 
@@ -357,6 +524,7 @@ public class MetricConfig
 				log.info("Unable to locate file: "+configFilePath);
 
 			base = ConfigFactory.parseFile(configFile);
+			ret.m_configFiles.add(configFile);
 		}
 		else
 		{
@@ -365,15 +533,24 @@ public class MetricConfig
 				log.info("Unable to locate " + baseConfig + " are you sure it is in the classpath?");
 
 			base = ConfigFactory.parseResources(baseConfig);
+
+			File configFile = resourceFile(baseConfig);
+			if (configFile != null)
+				ret.m_configFiles.add(configFile);
 		}
 
 		if (overridesFile != null)
 		{
 			overrides = ConfigFactory.parseFile(new File(overridesFile));
+			ret.m_configFiles.add(new File(overridesFile));
 		}
 		else
 		{
 			overrides = ConfigFactory.parseResources(overridesConfig);
+
+			File configFile = resourceFile(overridesConfig);
+			if (configFile != null)
+				ret.m_configFiles.add(configFile);
 		}
 
 		Config config = overrides.withFallback(base);
@@ -393,16 +570,19 @@ public class MetricConfig
 		{
 			Config metrics4j = config.getConfig("metrics4j");
 
+			//Set before anything is registered so collectors see it in init
+			ret.configureClock(context, metrics4j);
+
 			registerIfNotNull(config, "metrics4j.plugins", (plugins) -> ret.registerStuff(plugins, context::registerPlugin));
-			registerIfNotNull(config, "metrics4j.sinks", (sinks) -> ret.registerStuff(sinks, context::registerSink));
+			registerIfNotNull(config, "metrics4j.sinks", (sinks) -> ret.registerStuff(sinks,
+					(String name, MetricSink sink) -> ret.registerSink(context, sinks.getConfig(name), name, sink)));
 			registerIfNotNull(config, "metrics4j.collectors", (collectors) -> ret.registerStuff(collectors, context::registerCollector));
 			registerIfNotNull(config, "metrics4j.formatters", (formatters) -> ret.registerStuff(formatters, context::registerFormatter));
-			registerIfNotNull(config, "metrics4j.triggers", (triggers) -> ret.registerStuff(triggers, context::registerTrigger));
+			registerIfNotNull(config, "metrics4j.triggers", (triggers) -> ret.registerStuff(triggers,
+					(String name, Trigger trigger) -> ret.registerTrigger(context, triggers.getConfig(name), name, trigger)));
 
-			for (PostConstruct postConstruct : ret.m_postConstructs)
-			{
-				postConstruct.init(context);
-			}
+			if (init)
+				ret.initComponents();
 
 			if (metrics4j.hasPath(DUMP_FILE))
 			{
@@ -423,10 +603,59 @@ public class MetricConfig
 				dumpThread.start();
 			}
 
+			if (metrics4j.hasPath(SOURCE_IMPLEMENTATION))
+			{
+				String implementation = metrics4j.getString(SOURCE_IMPLEMENTATION);
+				if (SOURCE_IMPLEMENTATION_GENERATED.equals(implementation))
+					ret.m_generatedSources = true;
+				else if (!SOURCE_IMPLEMENTATION_PROXY.equals(implementation))
+					throw new ConfigurationException("Unknown value for "+SOURCE_IMPLEMENTATION+": '"+implementation+
+							"', expected '"+SOURCE_IMPLEMENTATION_PROXY+"' or '"+SOURCE_IMPLEMENTATION_GENERATED+"'");
+			}
+
+			if (metrics4j.hasPath(MAX_TAG_COMBINATIONS))
+			{
+				int maxTagCombinations = metrics4j.getInt(MAX_TAG_COMBINATIONS);
+				if (maxTagCombinations < 0)
+					throw new ConfigurationException(MAX_TAG_COMBINATIONS+" must not be negative");
+
+				ret.m_tagCombinationLimiter = new TagCombinationLimiter(maxTagCombinations);
+				ret.m_postConfigs.add(ret.m_tagCombinationLimiter);
+			}
+
+			if (metrics4j.hasPath(RELOAD_CHECK_INTERVAL))
+			{
+				ret.m_reloadCheckInterval = metrics4j.getDuration(RELOAD_CHECK_INTERVAL);
+				if (ret.m_reloadCheckInterval.isNegative() || ret.m_reloadCheckInterval.isZero())
+					throw new ConfigurationException(RELOAD_CHECK_INTERVAL+" must be greater than 0");
+			}
+
 			registerIfNotNull(config, "metrics4j.sources", (sources) -> ret.parseSources(sources));
 		}
+	}
 
-		return ret;
+	private void configureClock(MetricsContextImpl context, Config metrics4j)
+	{
+		if (!metrics4j.hasPath(CLOCK))
+			return;
+
+		String clock = metrics4j.getString(CLOCK);
+		if (CLOCK_CACHED.equals(clock))
+		{
+			long resolution = 1;
+			if (metrics4j.hasPath(CLOCK_RESOLUTION))
+				resolution = metrics4j.getDuration(CLOCK_RESOLUTION, TimeUnit.MILLISECONDS);
+
+			if (resolution <= 0)
+				throw new ConfigurationException(CLOCK_RESOLUTION+" must be at least 1ms");
+
+			CachedClock cachedClock = new CachedClock(resolution);
+			context.setClock(cachedClock);
+			m_closeables.add(cachedClock);
+		}
+		else if (!CLOCK_PRECISE.equals(clock))
+			throw new ConfigurationException("Unknown value for "+CLOCK+": '"+clock+
+					"', expected '"+CLOCK_PRECISE+"' or '"+CLOCK_CACHED+"'");
 	}
 
 	protected static String toEnvVarName(String propName) {
@@ -460,23 +689,48 @@ public class MetricConfig
 	{
 		m_context = context;
 		m_closeables = new ArrayList<>();
-		m_mappedTags = new HashMap<>();
-		m_mappedProps = new HashMap<>();
+		m_pathSettings = new PathTrie<>();
 		m_mappedMetricNames = new HashMap<>();
-		m_disabledPaths = new HashMap<>();
+		m_resolvedPaths = new ConcurrentHashMap<>();
 		m_postConstructs = new ArrayList<>();
 		m_postConfigs = new ArrayList<>();
 
 
-		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+		m_shutdownHook = new Thread(new Runnable()
 		{
 			@Override
 			public void run()
 			{
-				if (!m_shutdownOverride)
+				//A replaced configuration is shut down by the one that replaced it
+				if (!m_shutdownOverride && m_replacedBy == null)
 					shutdown();
 			}
-		}));
+		});
+		Runtime.getRuntime().addShutdownHook(m_shutdownHook);
+	}
+
+	private void removeShutdownHook()
+	{
+		try
+		{
+			Runtime.getRuntime().removeShutdownHook(m_shutdownHook);
+		}
+		catch (IllegalStateException e)
+		{
+			//Already shutting down
+		}
+	}
+
+	/**
+	 Calls init on sinks, collectors, formatters, triggers and plugins, done
+	 by parseConfig.  Only needed for configurations from loadConfig.
+	 */
+	public void initComponents()
+	{
+		for (PostConstruct postConstruct : m_postConstructs)
+		{
+			postConstruct.init(m_context);
+		}
 	}
 
 	public void runPostConfigInit()
@@ -485,11 +739,207 @@ public class MetricConfig
 		{
 			postConfig.init();
 		}
+
+		if (m_reloadCheckInterval != null && !m_configFiles.isEmpty())
+		{
+			String baseConfig = m_baseConfig;
+			String overridesConfig = m_overridesConfig;
+			ConfigWatcher watcher = new ConfigWatcher(m_configFiles, m_reloadCheckInterval,
+					() -> MetricSourceManager.reloadConfig(baseConfig, overridesConfig));
+			m_closeables.add(watcher);
+			watcher.start();
+		}
 	}
 
-	private void shutdown()
+	/**
+	 Called on a configuration from loadConfig before initComponents.  The
+	 clock and the global tag combination limiter of current are used when
+	 they are configured the same so collectors kept across the reload stay
+	 valid.  Sinks configured the same are kept running and are not
+	 initialized again.  Nothing is taken from current until replaceWith is
+	 called, so current keeps running if this configuration fails to start.
+	 The exception is a changed or removed ExclusiveSink, which is closed here
+	 so its replacement can take the port or directory it holds.
+	 */
+	public void inheritFrom(MetricConfig current)
 	{
-		log.debug("Shutdown called for Metrics4j");
+		m_shutdownOverride = current.m_shutdownOverride;
+
+		Clock clock = current.m_context.getClock();
+		Clock ownClock = m_context.getClock();
+		if (clock.getClass() == ownClock.getClass() && (!(clock instanceof CachedClock) ||
+				((CachedClock) clock).getResolution() == ((CachedClock) ownClock).getResolution()))
+		{
+			if (ownClock instanceof CachedClock)
+			{
+				m_closeables.remove(ownClock);
+				((CachedClock) ownClock).close();
+			}
+			m_context.setClock(clock);
+		}
+
+		TagCombinationLimiter limiter = current.m_tagCombinationLimiter;
+		if (limiter != null && m_tagCombinationLimiter != null && limiter.getLimit() == m_tagCombinationLimiter.getLimit())
+		{
+			m_postConfigs.set(m_postConfigs.indexOf(m_tagCombinationLimiter), limiter);
+			m_tagCombinationLimiter = limiter;
+		}
+
+		for (SinkQueue sinkQueue : current.m_context.getSinkQueues().values())
+		{
+			SinkQueue newQueue = m_context.getSinkQueues().get(sinkQueue.getSinkName());
+
+			if (newQueue != null && isUnchanged(newQueue.getSink(), current, sinkQueue.getSink()))
+				keepSink(sinkQueue, newQueue);
+			else if (sinkQueue.getSink() instanceof ExclusiveSink && ((ExclusiveSink) sinkQueue.getSink()).isExclusive())
+				current.closeSink(sinkQueue);
+		}
+	}
+
+	/**
+	 Uses the running sinkQueue from the current configuration in place of
+	 newQueue, which has not been initialized and is thrown away.
+	 */
+	private void keepSink(SinkQueue sinkQueue, SinkQueue newQueue)
+	{
+		MetricSink sink = sinkQueue.getSink();
+		MetricSink newSink = newQueue.getSink();
+
+		m_componentConfigs.put(sink, m_componentConfigs.remove(newSink));
+		m_postConstructs.remove(newSink);
+		m_postConfigs.remove(newSink);
+		replaceCloseable(newSink, sink);
+
+		AsyncSinkDispatcher newDispatcher = newQueue.getAsyncDispatcher();
+		if (newDispatcher != null)
+		{
+			m_postConfigs.remove(newDispatcher);
+			replaceCloseable(newDispatcher, sinkQueue.getAsyncDispatcher());
+			newDispatcher.close();
+		}
+
+		m_context.replaceSinkQueue(sinkQueue);
+		m_keptSinks.add(sinkQueue);
+	}
+
+	private void replaceCloseable(Object closeable, Object replacement)
+	{
+		for (int i = 0; i < m_closeables.size(); i++)
+		{
+			if (m_closeables.get(i) == closeable)
+				m_closeables.set(i, (Closeable) replacement);
+		}
+	}
+
+	private void removeCloseable(Object closeable)
+	{
+		m_closeables.removeIf((c) -> c == closeable);
+	}
+
+	/**
+	 Closes a sink that holds an exclusive resource so the sink replacing it
+	 can take the resource during init.  The sink stays closed if the new
+	 configuration fails to start.
+	 */
+	private void closeSink(SinkQueue sinkQueue)
+	{
+		log.info("Closing sink '{}' before its replacement is started", sinkQueue.getSinkName());
+
+		List<Closeable> closeables = new ArrayList<>();
+		if (sinkQueue.getAsyncDispatcher() != null)
+			closeables.add(sinkQueue.getAsyncDispatcher());
+		if (sinkQueue.getSink() instanceof Closeable)
+			closeables.add((Closeable) sinkQueue.getSink());
+
+		for (Closeable closeable : closeables)
+		{
+			removeCloseable(closeable);
+			try
+			{
+				closeable.close();
+			}
+			catch (Exception e)
+			{
+				log.error("Error closing " + closeable.getClass().getName(), e);
+			}
+		}
+	}
+
+	/**
+	 Closes the components of this configuration once next, which inherited
+	 from it and has been initialized, takes over.  A shared clock is handed
+	 to next to close.
+	 */
+	public void replaceWith(MetricConfig next)
+	{
+		Clock clock = m_context.getClock();
+		if (clock instanceof CachedClock && next.m_context.getClock() == clock)
+		{
+			m_closeables.remove(clock);
+			next.m_closeables.add((CachedClock) clock);
+		}
+
+		for (SinkQueue sinkQueue : next.m_keptSinks)
+		{
+			removeCloseable(sinkQueue.getAsyncDispatcher());
+			removeCloseable(sinkQueue.getSink());
+			next.registerNotifications(sinkQueue.getSink());
+		}
+
+		closeComponents();
+		removeShutdownHook();
+		m_replacedBy = next;
+	}
+
+	/**
+	 Closes a configuration that failed to load or start without affecting
+	 the one currently in use.
+	 */
+	public void discard()
+	{
+		//Kept sinks still belong to the current configuration
+		for (SinkQueue sinkQueue : m_keptSinks)
+		{
+			removeCloseable(sinkQueue.getAsyncDispatcher());
+			removeCloseable(sinkQueue.getSink());
+		}
+
+		closeComponents();
+		removeShutdownHook();
+	}
+
+	/**
+	 A kept sink registered its notifications with the context it was
+	 initialized with, they are registered again with this one.
+	 */
+	private void registerNotifications(MetricSink sink)
+	{
+		if (sink instanceof TriggerNotification)
+			m_context.registerTriggerNotification((TriggerNotification) sink);
+
+		if (sink instanceof SinkNotification)
+			m_context.registerSinkNotification((SinkNotification) sink);
+	}
+
+	/**
+	 True if both components were created from the same configuration, so
+	 state built up by the old one can be kept.
+	 */
+	public boolean isUnchanged(Object component, MetricConfig oldConfig, Object oldComponent)
+	{
+		if (component == null || oldComponent == null || component.getClass() != oldComponent.getClass())
+			return false;
+
+		Config config = m_componentConfigs.get(component);
+		return config != null && config.equals(oldConfig.m_componentConfigs.get(oldComponent));
+	}
+
+	private synchronized void closeComponents()
+	{
+		if (m_closed)
+			return;
+
+		m_closed = true;
 		for (Closeable closeable : m_closeables)
 		{
 			try
@@ -501,6 +951,19 @@ public class MetricConfig
 				log.error("Error closing " + closeable.getClass().getName(), e);
 			}
 		}
+	}
+
+	private void shutdown()
+	{
+		MetricConfig replacedBy = m_replacedBy;
+		if (replacedBy != null)
+		{
+			replacedBy.shutdown();
+			return;
+		}
+
+		log.debug("Shutdown called for Metrics4j");
+		closeComponents();
 		dumpConfFile();
 	}
 
@@ -543,7 +1006,7 @@ public class MetricConfig
 
 	public String getMetricNameForKey(ArgKey key)
 	{
-		return m_mappedMetricNames.get(key.getConfigPath());
+		return resolvePath(key).m_metricName;
 	}
 
 
@@ -555,23 +1018,12 @@ public class MetricConfig
 	public void setProperties(Properties properties)
 	{
 		m_properties = properties;
+		m_resolvedPaths.clear();
 	}
 
 	public boolean isDisabled(ArgKey argKey)
 	{
-		List<String> configPath = argKey.getConfigPath();
-		for (int i = configPath.size(); i >= 0; i--)
-		{
-			List<String> searchPath = new ArrayList<>(configPath.subList(0, i));
-
-			Boolean disabled = m_disabledPaths.get(searchPath);
-			if (disabled != null)
-			{
-				return disabled;
-			}
-		}
-
-		return false;
+		return resolvePath(argKey).m_disabled;
 	}
 
 	/**
@@ -581,35 +1033,132 @@ public class MetricConfig
 	 */
 	public Map<String, String> getTagsForKey(ArgKey argKey)
 	{
-		return getValuesForKey(argKey, m_mappedTags);
+		return new HashMap<>(resolvePath(argKey).m_tags);
 	}
 
-	private Map<String, String> getValuesForKey(ArgKey argKey, Map<List<String>, Map<String, String>> mappedTags)
+	/**
+	 returns immutable map of properties for the specified key context
+	 @param argKey
+	 @return
+	 */
+	public Map<String, String> getPropsForKey(ArgKey argKey)
 	{
-		Map<String, String> ret = new HashMap<>();
-		List<String> configPath = argKey.getConfigPath();
-		for (int i = configPath.size(); i >= 0; i--)
+		return resolvePath(argKey).m_props;
+	}
+
+	/**
+	 Resolves the tags, props, metric name and disabled flag for a key in one
+	 walk of the path trie.  Sources look these up together so the result is
+	 cached by config path.
+	 */
+	private ResolvedPath resolvePath(ArgKey argKey)
+	{
+		return m_resolvedPaths.computeIfAbsent(argKey.getConfigPath(), (configPath) ->
 		{
-			List<String> searchPath = new ArrayList<>(configPath.subList(0, i));
-			Map<String, String> pathTags = mappedTags.getOrDefault(searchPath, new HashMap<>());
+			Boolean disabled = null;
+			Map<String, String> tags = new HashMap<>();
+			Map<String, String> props = new HashMap<>();
 
-			for (String key : pathTags.keySet())
+			//Most specific first so it takes precedence
+			for (PathSettings settings : m_pathSettings.getAll(configPath))
 			{
-				ret.putIfAbsent(formatValue(key), formatValue(pathTags.get(key)));
+				if (disabled == null)
+					disabled = settings.m_disabled;
+
+				for (Map.Entry<String, String> tag : settings.m_tags.entrySet())
+					tags.putIfAbsent(formatValue(tag.getKey()), formatValue(tag.getValue()));
+
+				for (Map.Entry<String, String> prop : settings.m_props.entrySet())
+					props.putIfAbsent(formatValue(prop.getKey()), formatValue(prop.getValue()));
 			}
+
+			return new ResolvedPath(disabled != null && disabled, Collections.unmodifiableMap(tags),
+					Collections.unmodifiableMap(props), m_mappedMetricNames.get(configPath));
+		});
+	}
+
+	/**
+	 Settings made at a single config path, copied on update as it is stored in
+	 the path trie.
+	 */
+	private static class PathSettings
+	{
+		private static final PathSettings EMPTY = new PathSettings(null, Collections.emptyMap(), Collections.emptyMap());
+
+		private final Boolean m_disabled;
+		private final Map<String, String> m_tags;
+		private final Map<String, String> m_props;
+
+		private PathSettings(Boolean disabled, Map<String, String> tags, Map<String, String> props)
+		{
+			m_disabled = disabled;
+			m_tags = tags;
+			m_props = props;
 		}
 
-		return ret;
+		private static Map<String, String> with(Map<String, String> map, String key, String value)
+		{
+			Map<String, String> copy = new HashMap<>(map);
+			copy.put(key, value);
+			return Collections.unmodifiableMap(copy);
+		}
+
+		private PathSettings withDisabled(Boolean disabled)
+		{
+			return new PathSettings(disabled, m_tags, m_props);
+		}
+
+		private PathSettings withTag(String key, String value)
+		{
+			return new PathSettings(m_disabled, with(m_tags, key, value), m_props);
+		}
+
+		private PathSettings withProp(String key, String value)
+		{
+			return new PathSettings(m_disabled, m_tags, with(m_props, key, value));
+		}
+	}
+
+	private static class ResolvedPath
+	{
+		private final boolean m_disabled;
+		private final Map<String, String> m_tags;
+		private final Map<String, String> m_props;
+		private final String m_metricName;
+
+		private ResolvedPath(boolean disabled, Map<String, String> tags, Map<String, String> props, String metricName)
+		{
+			m_disabled = disabled;
+			m_tags = tags;
+			m_props = props;
+			m_metricName = metricName;
+		}
 	}
 
 	/**
-	 returns immutable map of properties for the specified key context
-	 @param argKey
-	 @return
+	 If true sources returned from MetricSourceManager.getSource are generated
+	 classes instead of java.lang.reflect.Proxy objects.
 	 */
-	public Map<String, String> getPropsForKey(ArgKey argKey)
+	public boolean isGeneratedSources()
+	{
+		return m_generatedSources;
+	}
+
+	/**
+	 For testing purposes
+	 */
+	public void setGeneratedSources(boolean generatedSources)
+	{
+		m_generatedSources = generatedSources;
+	}
+
+	/**
+	 Limits the number of tag combinations across all sources, null if there
+	 is no global limit.
+	 */
+	public TagCombinationLimiter getTagCombinationLimiter()
 	{
-		return Collections.unmodifiableMap(getValuesForKey(argKey, m_mappedProps));
+		return m_tagCombinationLimiter;
 	}
 
 	public boolean isDumpMetrics()
@@ -19,6 +19,12 @@ public class DefaultFormatter implements Formatter
 		m_replaceDot = (!m_separator.equals("."));
 	}
 
+	@Override
+	public boolean isCacheable()
+	{
+		return true;
+	}
+
 	@Override
 	public String formatReportedMetric(ReportedMetric reportedMetric, ReportedMetric.Sample sample, String metricName)
 	{
@@ -6,4 +6,14 @@ import org.kairosdb.metrics4j.reporting.ReportedMetric;
 public interface Formatter extends PostConstruct
 {
 	String formatReportedMetric(ReportedMetric reportedMetric, ReportedMetric.Sample sample, String metricName);
+
+	/**
+	 Return true if the formatted name only depends on the class name, method name,
+	 tags, field name and metric name.  Names from cacheable formatters are
+	 cached between reporting intervals.
+	 */
+	default boolean isCacheable()
+	{
+		return false;
+	}
 }
@@ -0,0 +1,192 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.kairosdb.metrics4j.MetricSourceManager;
+import org.kairosdb.metrics4j.PostConfig;
+import org.kairosdb.metrics4j.sinks.MetricSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Sends batches of metrics to a sink on its own thread so a slow sink does not
+ hold up the trigger thread or other sinks.  Batches are handed off through a
+ bounded queue, when the queue is full the overflow policy decides what happens.
+
+ Reports queueDepth and droppedBatches as sources under this class name with
+ a sink tag, they are removed again when the dispatcher is closed.
+ */
+public class AsyncSinkDispatcher implements PostConfig, Closeable
+{
+	private static final Logger log = LoggerFactory.getLogger(AsyncSinkDispatcher.class);
+	private static final long CLOSE_TIMEOUT_MS = 10_000;
+	private static final String SOURCE_CLASS = AsyncSinkDispatcher.class.getName();
+
+	public enum OverflowPolicy
+	{
+		DROP_OLDEST,
+		DROP_NEWEST,
+		BLOCK
+	}
+
+	private final String m_sinkName;
+	private final MetricSink m_sink;
+	private final OverflowPolicy m_overflowPolicy;
+	private final BlockingQueue<Runnable> m_queue;
+	private final AtomicLong m_droppedBatches = new AtomicLong();
+	private final Thread m_thread;
+	private volatile boolean m_running = true;
+	private boolean m_sourcesAdded = false;
+
+	public AsyncSinkDispatcher(String sinkName, MetricSink sink, int queueSize, OverflowPolicy overflowPolicy)
+	{
+		m_sinkName = sinkName;
+		m_sink = sink;
+		m_overflowPolicy = overflowPolicy;
+		m_queue = new ArrayBlockingQueue<>(queueSize);
+
+		m_thread = new Thread(this::run, "metrics4j-sink-" + sinkName);
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	@Override
+	public void init()
+	{
+		Map<String, String> tags = Collections.singletonMap("sink", m_sinkName);
+
+		MetricSourceManager.addSource(SOURCE_CLASS, "queueDepth", tags,
+				"Number of batches waiting to be sent to the sink", () -> (long)m_queue.size());
+		MetricSourceManager.addSource(SOURCE_CLASS, "droppedBatches", tags,
+				"Number of batches dropped because the sink queue was full", m_droppedBatches::get);
+		m_sourcesAdded = true;
+	}
+
+	/**
+	 Queues a batch of metrics to be sent to the sink.
+	 */
+	public void submit(List<FormattedMetric> batch)
+	{
+		enqueue(() -> m_sink.reportMetrics(batch));
+	}
+
+	/**
+	 Queues a columnar batch to be sent to the sink.
+	 */
+	public void submit(MetricBatch batch)
+	{
+		enqueue(() -> m_sink.reportBatch(batch));
+	}
+
+	private void enqueue(Runnable batch)
+	{
+		if (!m_running)
+		{
+			m_droppedBatches.incrementAndGet();
+			return;
+		}
+
+		switch (m_overflowPolicy)
+		{
+			case DROP_NEWEST:
+				if (!m_queue.offer(batch))
+					dropped();
+				break;
+			case DROP_OLDEST:
+				while (!m_queue.offer(batch))
+				{
+					if (m_queue.poll() != null)
+						dropped();
+				}
+				break;
+			case BLOCK:
+				try
+				{
+					m_queue.put(batch);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					dropped();
+				}
+				break;
+		}
+	}
+
+	private void dropped()
+	{
+		long dropped = m_droppedBatches.incrementAndGet();
+		//Log the first one and then every 100 so we do not flood the log
+		if (dropped % 100 == 1)
+			log.warn("Sink queue for '{}' is full, {} batches have been dropped", m_sinkName, dropped);
+	}
+
+	public int getQueueDepth()
+	{
+		return m_queue.size();
+	}
+
+	public long getDroppedBatches()
+	{
+		return m_droppedBatches.get();
+	}
+
+	private void run()
+	{
+		while (m_running || !m_queue.isEmpty())
+		{
+			try
+			{
+				Runnable batch = m_queue.poll(100, TimeUnit.MILLISECONDS);
+				if (batch != null)
+					batch.run();
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+			catch (Exception e)
+			{
+				log.error("Sink '{}' failed to report metrics", m_sinkName, e);
+			}
+		}
+	}
+
+	/**
+	 Stops taking new batches and waits for the queued batches to be sent
+	 */
+	@Override
+	public void close()
+	{
+		//A dispatcher thrown away on reload was never initialized and must not
+		//remove the sources of the one that is kept
+		if (m_sourcesAdded)
+		{
+			Map<String, String> tags = Collections.singletonMap("sink", m_sinkName);
+			MetricSourceManager.removeSource(SOURCE_CLASS, "queueDepth", tags);
+			MetricSourceManager.removeSource(SOURCE_CLASS, "droppedBatches", tags);
+		}
+
+		m_running = false;
+		try
+		{
+			m_thread.join(CLOSE_TIMEOUT_MS);
+			if (m_thread.isAlive())
+			{
+				log.warn("Timed out sending queued metrics to sink '{}'", m_sinkName);
+				m_thread.interrupt();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
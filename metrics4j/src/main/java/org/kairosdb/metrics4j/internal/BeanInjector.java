@@ -28,6 +28,10 @@ import java.util.Set;
 
 import static org.kairosdb.metrics4j.configuration.MetricConfig.CLASS_PROPERTY;
 import static org.kairosdb.metrics4j.configuration.MetricConfig.FOLDER_PROPERTY;
+import static org.kairosdb.metrics4j.configuration.MetricConfig.SINK_ASYNC;
+import static org.kairosdb.metrics4j.configuration.MetricConfig.SINK_OVERFLOW_POLICY;
+import static org.kairosdb.metrics4j.configuration.MetricConfig.SINK_QUEUE_SIZE;
+import static org.kairosdb.metrics4j.configuration.MetricConfig.TRIGGER_GATHER_PARALLELISM;
 
 public class BeanInjector
 {
@@ -84,7 +88,9 @@ public class BeanInjector
 		{
 			String property = prop.getKey();
 			//Skip internal
-			if (property.equals(CLASS_PROPERTY) || property.equals(FOLDER_PROPERTY))
+			if (property.equals(CLASS_PROPERTY) || property.equals(FOLDER_PROPERTY) ||
+					property.equals(SINK_ASYNC) || property.equals(SINK_QUEUE_SIZE) ||
+					property.equals(SINK_OVERFLOW_POLICY) || property.equals(TRIGGER_GATHER_PARALLELISM))
 				continue;
 
 			PropertyDescriptor pd = m_propMap.get(property);
@@ -1,57 +1,275 @@
 package org.kairosdb.metrics4j.internal;
 
+import org.kairosdb.metrics4j.MetricSourceManager;
 import org.kairosdb.metrics4j.collectors.Collector;
 import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.configuration.ConfigurationException;
 import org.kairosdb.metrics4j.reporting.MetricReporter;
 import org.kairosdb.metrics4j.reporting.MetricValue;
 import org.kairosdb.metrics4j.reporting.ReportedMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CollectorCollectionAdapter extends MetricsGatherer implements CollectorCollection
 {
+	private static final Logger log = LoggerFactory.getLogger(CollectorCollectionAdapter.class);
+
+	/**
+	 Prop that limits the number of tag combinations for a source
+	 */
+	public static final String MAX_TAG_COMBINATIONS_PROP = "max-tag-combinations";
+	public static final String OVERFLOW_TAG_VALUE = "_overflow";
+
+	/**
+	 Number of rejected tag combinations remembered so each is only counted once,
+	 past this new rejections are not counted
+	 */
+	private static final int MAX_TRACKED_REJECTIONS = 10_000;
+
+	private static final String SOURCE_CLASS = CollectorCollectionAdapter.class.getName();
+	private static final String REJECTED_SOURCE = "rejectedTagCombinations";
+
+	/**
+	 Prop for the number of intervals a collector can report nothing before it is removed
+	 */
+	public static final String MAX_IDLE_INTERVALS_PROP = "max-idle-intervals";
+
 	private final Collector m_baseCollector;
 
 	//todo change so we can keep track of how often they are used and get rid of old ones
 	private final Map<TagKey, AgedMetricCollector> m_collectors;
 	private final ArgKey m_argKey;
 	private final Map<String, String> m_contextProperties;
+	private final TagCombinationLimiter m_globalLimiter;
+	private final int m_maxTagCombinations;
+	private final int m_maxIdleIntervals;
+	private final AtomicInteger m_tagCombinations = new AtomicInteger();
+	private final AtomicLong m_rejected = new AtomicLong();
+	private final Set<TagKey> m_rejectedKeys = ConcurrentHashMap.newKeySet();
+	private final Map<Set<String>, TagKey> m_overflowKeys = new ConcurrentHashMap<>();
 
 	public CollectorCollectionAdapter(Collector baseCollector, ArgKey argKey,
 			Map<String, String> contextProperties)
+	{
+		this(baseCollector, argKey, contextProperties, null);
+	}
+
+	/**
+	 @param globalLimiter Limits tag combinations across all sources, may be null
+	 */
+	public CollectorCollectionAdapter(Collector baseCollector, ArgKey argKey,
+			Map<String, String> contextProperties, TagCombinationLimiter globalLimiter)
 	{
 		m_baseCollector = baseCollector;
 		m_argKey = argKey;
 		m_contextProperties = contextProperties;
 		m_collectors = new ConcurrentHashMap<>();
+		m_globalLimiter = globalLimiter;
+		m_maxTagCombinations = parseIntProp(argKey, contextProperties, MAX_TAG_COMBINATIONS_PROP, Integer.MAX_VALUE);
+		m_maxIdleIntervals = parseIntProp(argKey, contextProperties, MAX_IDLE_INTERVALS_PROP, DEFAULT_MAX_IDLE_INTERVALS);
 	}
 
-	private AgedMetricCollector newCollector(TagKey tagKey)
+	/*package*/ Collector getBaseCollector()
+	{
+		return m_baseCollector;
+	}
+
+	/*package*/ Map<String, String> getContextProperties()
+	{
+		return m_contextProperties;
+	}
+
+	/*package*/ TagCombinationLimiter getGlobalLimiter()
+	{
+		return m_globalLimiter;
+	}
+
+	private static int parseIntProp(ArgKey argKey, Map<String, String> contextProperties, String prop, int defaultValue)
+	{
+		String value = contextProperties.get(prop);
+		if (value == null)
+			return defaultValue;
+
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new ConfigurationException("Invalid "+prop+" '"+value+"' for "+
+					argKey.getClassName()+"."+argKey.getMethodName());
+		}
+	}
+
+	private AgedMetricCollector newCollector()
 	{
 		Collector clone = m_baseCollector.clone();
 		clone.setContextProperties(m_contextProperties);
-		return new AgedMetricCollector(clone);
+		return new AgedMetricCollector(clone, getEpoch());
 	}
 
 	void addCollector(TagKey tagKey, MetricCollector collector)
 	{
-		m_collectors.put(tagKey, new AgedMetricCollector(collector));
+		m_collectors.put(tagKey.intern(), new AgedMetricCollector(collector, getEpoch()));
+	}
+
+	/**
+	 Creates a collector if there is room under both the source and global limits,
+	 returns null otherwise so nothing is added to m_collectors.
+	 @param globalRejected Set to true when the global limit is why null was returned
+	 */
+	private AgedMetricCollector newLimitedCollector(boolean[] globalRejected)
+	{
+		if (m_tagCombinations.incrementAndGet() > m_maxTagCombinations)
+		{
+			m_tagCombinations.decrementAndGet();
+			return null;
+		}
+
+		if (m_globalLimiter != null && !m_globalLimiter.tryAcquire())
+		{
+			m_tagCombinations.decrementAndGet();
+			globalRejected[0] = true;
+			return null;
+		}
+
+		Collector clone = m_baseCollector.clone();
+		clone.setContextProperties(m_contextProperties);
+		return new LimitedMetricCollector(clone, getEpoch());
+	}
+
+	/**
+	 All tag combinations over the limit share one collector with the same tag
+	 names and every value set to OVERFLOW_TAG_VALUE.
+	 */
+	private TagKey getOverflowKey(TagKey tagKey)
+	{
+		Set<String> tagNames = tagKey.getTags().keySet();
+		TagKey overflowKey = m_overflowKeys.get(tagNames);
+		if (overflowKey == null)
+		{
+			TagKey.Builder builder = TagKey.newBuilder();
+			for (String tagName : tagNames)
+				builder.addTag(tagName, OVERFLOW_TAG_VALUE);
+
+			overflowKey = builder.build().intern();
+			m_overflowKeys.put(new HashSet<>(tagNames), overflowKey);
+		}
+
+		return overflowKey;
+	}
+
+	/**
+	 @param globalLimit true if the global limit caused the rejection rather
+	 than the source limit
+	 */
+	private AgedMetricCollector rejectTagKey(TagKey tagKey, boolean globalLimit)
+	{
+		//Only count a tag combination the first time it is rejected
+		if (m_rejectedKeys.size() < MAX_TRACKED_REJECTIONS && m_rejectedKeys.add(tagKey))
+		{
+			long rejected = m_rejected.incrementAndGet();
+			if (globalLimit)
+				m_globalLimiter.rejected();
+
+			if (rejected == 1)
+				log.warn("Tag combination limit reached for {}.{}, new tag combinations are reported with tag values of '{}'",
+						m_argKey.getClassName(), m_argKey.getMethodName(), OVERFLOW_TAG_VALUE);
+		}
+
+		return m_collectors.computeIfAbsent(getOverflowKey(tagKey), (tk) -> newCollector());
 	}
 
 	@Override
 	public MetricCollector getCollector(TagKey tagKey)
 	{
-		AgedMetricCollector agedMetricCollector = m_collectors.computeIfAbsent(tagKey, (tk) -> newCollector(tk));
-		agedMetricCollector.updateLastUsed();
+		//Try a plain get first, computeIfAbsent locks the bin even when the key is present
+		AgedMetricCollector agedMetricCollector = m_collectors.get(tagKey);
+		if (agedMetricCollector == null)
+		{
+			//Already over the source limit, skip interning a key that will not be kept
+			if (m_tagCombinations.get() >= m_maxTagCombinations)
+				return rejectTagKey(tagKey, false).getMetricCollector();
+
+			//The key is kept for the life of the collector so share one instance
+			boolean[] globalRejected = new boolean[1];
+			agedMetricCollector = m_collectors.computeIfAbsent(tagKey.intern(), (tk) -> newLimitedCollector(globalRejected));
+
+			if (agedMetricCollector == null)
+				agedMetricCollector = rejectTagKey(tagKey, globalRejected[0]);
+		}
+
 		return agedMetricCollector.getMetricCollector();
 	}
 
+	/**
+	 Number of distinct tag combinations that were sent to the overflow collector
+	 */
+	public long getRejectedCount()
+	{
+		return m_rejected.get();
+	}
+
+	private static Map<String, String> rejectedSourceTags(ArgKey argKey)
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("class", argKey.getClassName());
+		tags.put("method", argKey.getMethodName());
+		return tags;
+	}
+
+	/**
+	 Reports the rejected count as rejectedTagCombinations under this class
+	 name, tagged with the class and method of the source.  Only sources with a
+	 source or global limit report it, otherwise a count registered by an
+	 earlier configuration is removed.
+	 */
+	/*package*/ void registerRejectedSource()
+	{
+		if (m_maxTagCombinations == Integer.MAX_VALUE && m_globalLimiter == null)
+		{
+			removeRejectedSource(m_argKey);
+			return;
+		}
+
+		MetricSourceManager.addSource(SOURCE_CLASS, REJECTED_SOURCE, rejectedSourceTags(m_argKey),
+				"Number of tag combinations for a source sent to its overflow collector", m_rejected::get);
+	}
+
+	/*package*/ static void removeRejectedSource(ArgKey argKey)
+	{
+		MetricSourceManager.removeSource(SOURCE_CLASS, REJECTED_SOURCE, rejectedSourceTags(argKey));
+	}
+
+	@Override
+	protected void collectorRemoved(TagKey tagKey, AgedMetricCollector collector)
+	{
+		if (collector instanceof LimitedMetricCollector)
+		{
+			m_tagCombinations.decrementAndGet();
+			if (m_globalLimiter != null)
+				m_globalLimiter.release();
+		}
+	}
+
+	@Override
+	protected int getMaxIdleIntervals()
+	{
+		return m_maxIdleIntervals;
+	}
+
 	@Override
 	protected ArgKey getArgKey()
 	{
@@ -64,5 +282,14 @@ public class CollectorCollectionAdapter extends MetricsGatherer implements Colle
 		return m_collectors;
 	}
 
-
+	/**
+	 Marks collectors that count against the tag combination limits
+	 */
+	private static class LimitedMetricCollector extends AgedMetricCollector
+	{
+		private LimitedMetricCollector(MetricCollector metricCollector, long epoch)
+		{
+			super(metricCollector, epoch);
+		}
+	}
 }
@@ -22,4 +22,13 @@ public interface CollectorContext
 	List<SinkQueue> getSinkQueueList();
 	void reportMetrics(Instant now);
 
+	/**
+	 Same as reportMetrics(Instant) but formatted metrics are added to the buffer
+	 instead of directly to the sink queues.  Used when gathering in parallel.
+	 */
+	default void reportMetrics(Instant now, MetricBuffer buffer)
+	{
+		reportMetrics(now);
+	}
+
 }
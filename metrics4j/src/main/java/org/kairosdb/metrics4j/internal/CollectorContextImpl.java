@@ -56,7 +56,7 @@ public class CollectorContextImpl implements CollectorContext
 		return m_sinkQueueList;
 	}
 
-	private void formatAndSink(ReportedMetric metric)
+	private void formatAndSink(ReportedMetric metric, MetricBuffer buffer)
 	{
 		for (SinkQueue sinkQueue : m_sinkQueueList)
 		{
@@ -64,16 +64,26 @@ public class CollectorContextImpl implements CollectorContext
 
 			if (formatter != null)
 			{
+				MetricNameCache nameCache = null;
+				if (formatter.isCacheable() && metric instanceof ReportedMetricImpl)
+					nameCache = ((ReportedMetricImpl)metric).getNameCache();
+
+				if (sinkQueue.isBatched())
+				{
+					addToBatch(metric, formatter, nameCache, sinkQueue.getSinkName(), buffer.getBatch(sinkQueue));
+					continue;
+				}
+
 				FormattedMetric formattedMetric = new FormattedMetric(metric, m_props, m_tags, m_help);
 
 				for (ReportedMetric.Sample sample : metric.getSamples()) {
-					String metricName = formatter.formatReportedMetric(metric, sample, m_metricName);
+					String metricName = formatName(formatter, nameCache, sinkQueue.getSinkName(), metric, sample);
 
 					log.debug("Reporting metric {} to sink {}", metricName, sinkQueue.getSinkName());
 					formattedMetric.addSample(sample, metricName);
 				}
 
-				sinkQueue.addMetric(formattedMetric);
+				buffer.addMetric(sinkQueue, formattedMetric);
 			}
 			else {
 				log.warn("No formatter configured for metric {}", metric.getMethodName());
@@ -81,12 +91,64 @@ public class CollectorContextImpl implements CollectorContext
 		}
 	}
 
+	private void addToBatch(ReportedMetric metric, Formatter formatter, MetricNameCache nameCache,
+			String sinkName, MetricBatch batch)
+	{
+		Map<String, String> tags = null;
+
+		for (ReportedMetric.Sample sample : metric.getSamples())
+		{
+			MetricBatch.Series series = null;
+			if (nameCache != null)
+				series = nameCache.getSeries(sinkName, sample.getFieldName());
+
+			if (series == null)
+			{
+				if (tags == null)
+					tags = new MapCombiner<>(m_tags, metric.getTags());
+
+				String metricName = formatName(formatter, nameCache, sinkName, metric, sample);
+				series = new MetricBatch.Series(metricName, sample.getFieldName(), metric.getClassName(),
+						metric.getMethodName(), tags, m_props, m_help);
+
+				if (nameCache != null)
+					nameCache.putSeries(sinkName, sample.getFieldName(), series);
+			}
+
+			batch.add(series, MetricBatch.toEpochNanos(sample.getTime()), sample.getValue());
+		}
+	}
+
+	private String formatName(Formatter formatter, MetricNameCache nameCache, String sinkName,
+			ReportedMetric metric, ReportedMetric.Sample sample)
+	{
+		if (nameCache == null)
+			return formatter.formatReportedMetric(metric, sample, m_metricName);
+
+		String name = nameCache.getName(sinkName, sample.getFieldName());
+		if (name == null)
+		{
+			name = formatter.formatReportedMetric(metric, sample, m_metricName);
+			nameCache.putName(sinkName, sample.getFieldName(), name);
+		}
+
+		return name;
+	}
+
 	public void reportMetrics(Instant now)
+	{
+		MetricBuffer buffer = new MetricBuffer();
+		reportMetrics(now, buffer);
+		buffer.flush();
+	}
+
+	@Override
+	public void reportMetrics(Instant now, MetricBuffer buffer)
 	{
 		Iterable<ReportedMetric> reportedMetrics = m_collector.gatherMetrics(now);
 		for (ReportedMetric metric : reportedMetrics)
 		{
-			formatAndSink(metric);
+			formatAndSink(metric, buffer);
 		}
 	}
 
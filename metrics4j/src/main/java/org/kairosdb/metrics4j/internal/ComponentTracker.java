@@ -3,6 +3,7 @@ package org.kairosdb.metrics4j.internal;
 import org.kairosdb.metrics4j.configuration.MissingReferenceException;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,7 +16,7 @@ public class ComponentTracker<T>
 	}
 
 	protected final Map<String, T> m_components;
-	private final Map<List<String>, T> m_mappedComponents;
+	private final PathTrie<T> m_mappedComponents;
 	protected final String m_componentType;
 	private final List<ComponentListener> m_listeners;
 
@@ -23,7 +24,7 @@ public class ComponentTracker<T>
 	{
 		m_componentType = componentType;
 		m_components = new HashMap<>();
-		m_mappedComponents = new HashMap<>();
+		m_mappedComponents = new PathTrie<>();
 		m_listeners = new ArrayList<>();
 	}
 
@@ -33,22 +34,12 @@ public class ComponentTracker<T>
 		if (component == null)
 			throw new MissingReferenceException(m_componentType, name);
 
-		m_mappedComponents.put(path, component);
+		m_mappedComponents.update(path, (previous) -> component);
 	}
 
 	public T getComponentForKey(ArgKey key)
 	{
-		T ret = null;
-		List<String> configPath = key.getConfigPath();
-		for (int i = configPath.size(); i >= 0; i--)
-		{
-			List<String> searchPath = new ArrayList<>(configPath.subList(0, i));
-			ret = m_mappedComponents.get(searchPath);
-			if (ret != null)
-				break;
-		}
-
-		return ret;
+		return m_mappedComponents.getDeepest(key.getConfigPath());
 	}
 
 	public void addComponent(String name, T component)
@@ -66,6 +57,14 @@ public class ComponentTracker<T>
 		return m_components.get(name);
 	}
 
+	/**
+	 Registered components by name, cannot be modified
+	 */
+	public Map<String, T> getComponents()
+	{
+		return Collections.unmodifiableMap(m_components);
+	}
+
 	public void addComponentListener(ComponentListener<T> listener)
 	{
 		for (String name : m_components.keySet())
@@ -3,18 +3,22 @@ package org.kairosdb.metrics4j.internal;
 import org.kairosdb.metrics4j.configuration.MissingReferenceException;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ListComponentTracker<T> extends ComponentTracker<T>
 {
-	private final Map<List<String>, List<T>> m_mappedComponents;
+	private final PathTrie<List<T>> m_mappedComponents;
+	//Resolved components by config path, cleared when a mapping is added
+	private final Map<List<String>, List<T>> m_resolved;
 
 	public ListComponentTracker(String componentType)
 	{
 		super(componentType);
-		m_mappedComponents = new HashMap<>();
+		m_mappedComponents = new PathTrie<>();
+		m_resolved = new ConcurrentHashMap<>();
 	}
 
 	public void addToPath(String name, List<String> path)
@@ -23,22 +27,48 @@ public class ListComponentTracker<T> extends ComponentTracker<T>
 		if (component == null)
 			throw new MissingReferenceException(m_componentType, name);
 
-		List<T> componentList = m_mappedComponents.computeIfAbsent(path, (k) -> new ArrayList<>());
-		componentList.add(component);
+		m_mappedComponents.update(path, (previous) ->
+		{
+			List<T> componentList = previous == null ? new ArrayList<>() : new ArrayList<>(previous);
+			componentList.add(component);
+			return Collections.unmodifiableList(componentList);
+		});
+		m_resolved.clear();
+	}
+
+	/**
+	 Swaps the component registered under name for another one everywhere the
+	 old one was mapped.  Listeners are not told about the replacement.
+	 */
+	public void replaceComponent(String name, T component)
+	{
+		T previous = m_components.put(name, component);
+
+		m_mappedComponents.updateAll((components) ->
+		{
+			if (!components.contains(previous))
+				return components;
+
+			List<T> componentList = new ArrayList<>(components);
+			componentList.replaceAll((c) -> c == previous ? component : c);
+			return Collections.unmodifiableList(componentList);
+		});
+		m_resolved.clear();
 	}
 
+	/**
+	 Returns the components mapped along the key's config path, the most
+	 specific first.  The returned list is shared and cannot be modified.
+	 */
 	public List<T> getComponentsForKey(ArgKey key)
 	{
-		List<T> ret = new ArrayList<>();
-		List<String> configPath = key.getConfigPath();
-		for (int i = configPath.size(); i >= 0; i--)
+		return m_resolved.computeIfAbsent(key.getConfigPath(), (configPath) ->
 		{
-			List<String> searchPath = new ArrayList<>(configPath.subList(0, i));
-			List<T> objects = m_mappedComponents.get(searchPath);
-			if (objects != null)
+			List<T> ret = new ArrayList<>();
+			for (List<T> objects : m_mappedComponents.getAll(configPath))
 				ret.addAll(objects);
-		}
 
-		return ret;
+			return Collections.unmodifiableList(ret);
+		});
 	}
 }
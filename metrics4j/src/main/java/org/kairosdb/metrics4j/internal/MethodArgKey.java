@@ -1,14 +1,13 @@
 package org.kairosdb.metrics4j.internal;
 
 import lombok.ToString;
-import org.kairosdb.metrics4j.MetricThreadHelper;
+import org.kairosdb.metrics4j.TagContext;
 import org.kairosdb.metrics4j.annotation.Key;
 import org.kairosdb.metrics4j.configuration.ImplementationException;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -50,31 +49,16 @@ public class MethodArgKey implements ArgKey
 
 	public TagKey getTagKey(Map<String, String> overrides)
 	{
-		Iterator<Map.Entry<String, String>> threadTagIterator = MetricThreadHelper.getTagIterator();
-
-		if ((m_args == null || m_args.length == 0) && (!threadTagIterator.hasNext()))
-			return TagKey.newBuilder().build();
+		TagContext tagContext = TagContext.current();
+		if ((m_args == null || m_args.length == 0) && tagContext.isEmpty())
+			return TagKey.EMPTY;
 		else
 		{
 			TagKey.Builder builder = TagKey.newBuilder();
-			Annotation[][] parameterAnnotations = m_method.getParameterAnnotations();
-			for (int i = 0; i < parameterAnnotations.length; i ++)
+			String[] tagNames = getTagNames(m_method);
+			for (int i = 0; i < tagNames.length; i ++)
 			{
-				String tagKey = null;
-
-				Annotation[] annotations = parameterAnnotations[i];
-				for (Annotation annotation : annotations)
-				{
-					if (annotation instanceof Key)
-					{
-						Key key = (Key)annotation;
-						tagKey = key.value();
-						break;
-					}
-				}
-
-				if (tagKey == null)
-					throw new ImplementationException("All parameters on "+m_method.getDeclaringClass().getName()+"."+m_method.getName()+" must be annotated with @Key()");
+				String tagKey = tagNames[i];
 
 				/*
 				If there is an override configured for a tag that is a parameter we must
@@ -89,18 +73,7 @@ public class MethodArgKey implements ArgKey
 					builder.addTag(tagKey, m_args[i].toString());
 			}
 
-			//Add any tags that are set on the thread.
-			while (threadTagIterator.hasNext())
-			{
-				Map.Entry<String, String> tagEntry = threadTagIterator.next();
-				String key = tagEntry.getKey();
-				String override = overrides.get(key);
-
-				if (override != null)
-					builder.addTag(key, override);
-				else
-					builder.addTag(key, tagEntry.getValue());
-			}
+			addContextTags(builder, tagContext.getTagKey(), overrides);
 
 			TagKey tag = builder.build();
 
@@ -108,6 +81,51 @@ public class MethodArgKey implements ArgKey
 		}
 	}
 
+	/**
+	 Returns the tag name for each parameter of the method as declared by the
+	 {@link Key} annotation.
+	 @param method Source method
+	 @return Array of tag names, one per parameter
+	 */
+	public static String[] getTagNames(Method method)
+	{
+		Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+		String[] tagNames = new String[parameterAnnotations.length];
+		for (int i = 0; i < parameterAnnotations.length; i ++)
+		{
+			for (Annotation annotation : parameterAnnotations[i])
+			{
+				if (annotation instanceof Key)
+				{
+					tagNames[i] = ((Key)annotation).value();
+					break;
+				}
+			}
+
+			if (tagNames[i] == null)
+				throw new ImplementationException("All parameters on "+method.getDeclaringClass().getName()+"."+method.getName()+" must be annotated with @Key()");
+		}
+
+		return tagNames;
+	}
+
+	/**
+	 Add the tags from the current TagContext.
+	 */
+	/*package*/ static void addContextTags(TagKey.Builder builder, TagKey contextTags, Map<String, String> overrides)
+	{
+		for (int i = 0; i < contextTags.size(); i++)
+		{
+			String key = contextTags.getName(i);
+			String override = overrides.get(key);
+
+			if (override != null)
+				builder.addTag(key, override);
+			else
+				builder.addTag(key, contextTags.getValue(i));
+		}
+	}
+
 	@Override
 	public String getMethodName()
 	{
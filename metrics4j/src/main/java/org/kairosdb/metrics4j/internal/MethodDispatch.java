@@ -0,0 +1,147 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.kairosdb.metrics4j.TagContext;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ Everything SourceInvocationHandler needs to resolve a collector for a single
+ source method.  It is built once per method the first time it is called so
+ the hot path does not have to look at annotations, split class names or
+ look up the collector context again.
+ */
+public class MethodDispatch
+{
+	private final Method m_method;
+	private final CollectorContext m_context;
+	private final CollectorCollection m_collection;
+	private final Map<String, String> m_overrides;
+	private final String[] m_tagNames;
+	private final String[] m_tagOverrides; //Override for each parameter or null
+	private final long m_generation;
+
+	public MethodDispatch(Method method, CollectorContext context)
+	{
+		this(method, context, 0);
+	}
+
+	/**
+	 @param generation Generation of the handler's dispatches this was created in
+	 */
+	public MethodDispatch(Method method, CollectorContext context, long generation)
+	{
+		m_generation = generation;
+		m_method = method;
+		m_context = context;
+		m_collection = context.getCollection();
+		m_overrides = context.getTags();
+		m_tagNames = MethodArgKey.getTagNames(method);
+
+		m_tagOverrides = new String[m_tagNames.length];
+		for (int i = 0; i < m_tagNames.length; i++)
+		{
+			m_tagOverrides[i] = m_overrides.get(m_tagNames[i]);
+		}
+	}
+
+	public Method getMethod()
+	{
+		return m_method;
+	}
+
+	public CollectorContext getContext()
+	{
+		return m_context;
+	}
+
+	public long getGeneration()
+	{
+		return m_generation;
+	}
+
+	/**
+	 Returns the collector for the arguments passed to the source method.
+	 @param args Arguments passed to the source method, may be null
+	 @return Collector to return from the source method
+	 */
+	public MetricCollector getCollector(Object[] args)
+	{
+		TagContext tagContext = TagContext.current();
+
+		if (args == null || args.length == 0)
+			return m_collection.getCollector(contextTags(tagContext));
+
+		TagKey.Builder builder = TagKey.newBuilder();
+		for (int i = 0; i < m_tagNames.length; i++)
+		{
+			addArg(builder, i, args[i]);
+		}
+
+		return m_collection.getCollector(build(builder, tagContext));
+	}
+
+	/**
+	 The following fixed argument versions are called from generated sources
+	 so the arguments do not have to be wrapped in an array.
+	 */
+	public MetricCollector getCollector()
+	{
+		return m_collection.getCollector(contextTags(TagContext.current()));
+	}
+
+	public MetricCollector getCollector(Object arg0)
+	{
+		TagKey.Builder builder = TagKey.newBuilder();
+		addArg(builder, 0, arg0);
+
+		return m_collection.getCollector(build(builder, TagContext.current()));
+	}
+
+	public MetricCollector getCollector(Object arg0, Object arg1)
+	{
+		TagKey.Builder builder = TagKey.newBuilder();
+		addArg(builder, 0, arg0);
+		addArg(builder, 1, arg1);
+
+		return m_collection.getCollector(build(builder, TagContext.current()));
+	}
+
+	private void addArg(TagKey.Builder builder, int index, Object arg)
+	{
+		/*
+		If there is an override configured for a tag that is a parameter we must
+		set it in the tag key.  This will make sure that the same collector is
+		returned and the data is aggregated properly.
+		 */
+		String override = m_tagOverrides[index];
+
+		if (override != null)
+			builder.addTag(m_tagNames[index], override);
+		else
+			builder.addTag(m_tagNames[index], arg.toString());
+	}
+
+	private TagKey build(TagKey.Builder builder, TagContext tagContext)
+	{
+		if (!tagContext.isEmpty())
+		{
+			TagKey contextTags = contextTags(tagContext);
+			for (int i = 0; i < contextTags.size(); i++)
+				builder.addTag(contextTags.getName(i), contextTags.getValue(i));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 Returns the context tags with the configured overrides applied.  The
+	 result is kept on the context itself, which is usually only used by one
+	 thread, so threads in different scopes do not evict each other.
+	 */
+	private TagKey contextTags(TagContext tagContext)
+	{
+		return tagContext.getTagKey(m_overrides);
+	}
+}
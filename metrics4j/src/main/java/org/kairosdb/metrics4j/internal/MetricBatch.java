@@ -0,0 +1,368 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+import org.kairosdb.metrics4j.reporting.ReportedMetric;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ Columnar set of samples for a single sink.  Each row is a sample made up of a
+ series id, a time in epoch nanoseconds, a type and a value.  Long and double values
+ are kept in a primitive column, any other MetricValue is kept as is.  The series
+ id points into a dictionary of Series that hold the name, tags and props shared
+ by every sample of that series.
+
+ Series are cached by the collector that reports them so from one interval to
+ the next the only thing a batch allocates is its columns.  Not thread safe.
+ */
+public class MetricBatch
+{
+	public static final byte TYPE_LONG = 0;
+	public static final byte TYPE_DOUBLE = 1;
+	public static final byte TYPE_OBJECT = 2;
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 Everything about a sample that does not change between intervals
+	 */
+	public static class Series
+	{
+		private final String m_metricName;
+		private final String m_fieldName;
+		private final String m_className;
+		private final String m_methodName;
+		private final Map<String, String> m_tags;
+		private final Map<String, String> m_props;
+		private final String m_help;
+		private volatile List<Map.Entry<String, String>> m_tagEntries;
+
+		public Series(String metricName, String fieldName, String className, String methodName,
+				Map<String, String> tags, Map<String, String> props, String help)
+		{
+			m_metricName = metricName;
+			m_fieldName = fieldName;
+			m_className = className;
+			m_methodName = methodName;
+			m_tags = tags;
+			m_props = props;
+			m_help = help;
+		}
+
+		public String getMetricName()
+		{
+			return m_metricName;
+		}
+
+		public String getFieldName()
+		{
+			return m_fieldName;
+		}
+
+		public String getClassName()
+		{
+			return m_className;
+		}
+
+		public String getMethodName()
+		{
+			return m_methodName;
+		}
+
+		public Map<String, String> getTags()
+		{
+			return m_tags;
+		}
+
+		/**
+		 Tags as a list in the same order as getTags().entrySet(), the list is
+		 built once so sinks can iterate the tags of every sample without
+		 creating an iterator over the map.
+		 */
+		public List<Map.Entry<String, String>> getTagEntries()
+		{
+			List<Map.Entry<String, String>> tagEntries = m_tagEntries;
+			if (tagEntries == null)
+			{
+				tagEntries = Collections.unmodifiableList(new ArrayList<>(m_tags.entrySet()));
+				m_tagEntries = tagEntries;
+			}
+
+			return tagEntries;
+		}
+
+		public Map<String, String> getProps()
+		{
+			return m_props;
+		}
+
+		public String getHelp()
+		{
+			return m_help;
+		}
+
+		private boolean sameMetric(Series other)
+		{
+			return Objects.equals(m_className, other.m_className) &&
+					Objects.equals(m_methodName, other.m_methodName) &&
+					m_props == other.m_props &&
+					Objects.equals(m_tags, other.m_tags);
+		}
+	}
+
+	private final List<Series> m_series = new ArrayList<>();
+	private final Map<Series, Integer> m_seriesIds = new IdentityHashMap<>();
+	private Series m_lastSeries;
+	private int m_lastSeriesId;
+
+	private int m_size;
+	private int[] m_seriesColumn;
+	private long[] m_times;
+	private byte[] m_types;
+	private long[] m_values;
+	private MetricValue[] m_objects;
+
+	public MetricBatch()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public MetricBatch(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+		m_seriesColumn = new int[capacity];
+		m_times = new long[capacity];
+		m_types = new byte[capacity];
+		m_values = new long[capacity];
+	}
+
+	public int size()
+	{
+		return m_size;
+	}
+
+	public boolean isEmpty()
+	{
+		return m_size == 0;
+	}
+
+	public int getSeriesCount()
+	{
+		return m_series.size();
+	}
+
+	public Series getSeries(int seriesId)
+	{
+		return m_series.get(seriesId);
+	}
+
+	public int getSeriesId(int row)
+	{
+		return m_seriesColumn[row];
+	}
+
+	/**
+	 Series of the sample at row
+	 */
+	public Series getRowSeries(int row)
+	{
+		return m_series.get(m_seriesColumn[row]);
+	}
+
+	/**
+	 Time of the sample at row in epoch nanoseconds
+	 */
+	public long getTime(int row)
+	{
+		return m_times[row];
+	}
+
+	public long getTimeMillis(int row)
+	{
+		return Math.floorDiv(m_times[row], 1_000_000L);
+	}
+
+	public Instant getInstant(int row)
+	{
+		return Instant.ofEpochSecond(0, m_times[row]);
+	}
+
+	/**
+	 Converts an Instant to the epoch nanoseconds kept in the time column
+	 */
+	public static long toEpochNanos(Instant time)
+	{
+		return time.getEpochSecond() * 1_000_000_000L + time.getNano();
+	}
+
+	public byte getType(int row)
+	{
+		return m_types[row];
+	}
+
+	/**
+	 Value of a TYPE_LONG row
+	 */
+	public long getLong(int row)
+	{
+		return m_values[row];
+	}
+
+	/**
+	 Value of a TYPE_DOUBLE row
+	 */
+	public double getDouble(int row)
+	{
+		return Double.longBitsToDouble(m_values[row]);
+	}
+
+	/**
+	 Returns the value of any row as a MetricValue, long and double rows
+	 create a new object each call.
+	 */
+	public MetricValue getValue(int row)
+	{
+		switch (m_types[row])
+		{
+			case TYPE_LONG:
+				return new LongValue(m_values[row]);
+			case TYPE_DOUBLE:
+				return new DoubleValue(getDouble(row));
+			default:
+				return m_objects[row];
+		}
+	}
+
+	private int seriesId(Series series)
+	{
+		//Samples for the same series usually arrive together
+		if (series == m_lastSeries)
+			return m_lastSeriesId;
+
+		Integer id = m_seriesIds.get(series);
+		if (id == null)
+		{
+			id = m_series.size();
+			m_series.add(series);
+			m_seriesIds.put(series, id);
+		}
+
+		m_lastSeries = series;
+		m_lastSeriesId = id;
+		return id;
+	}
+
+	private int addRow(Series series, long time, byte type)
+	{
+		if (m_size == m_times.length)
+		{
+			int capacity = m_size * 2;
+			m_seriesColumn = Arrays.copyOf(m_seriesColumn, capacity);
+			m_times = Arrays.copyOf(m_times, capacity);
+			m_types = Arrays.copyOf(m_types, capacity);
+			m_values = Arrays.copyOf(m_values, capacity);
+			if (m_objects != null)
+				m_objects = Arrays.copyOf(m_objects, capacity);
+		}
+
+		int row = m_size++;
+		m_seriesColumn[row] = seriesId(series);
+		m_times[row] = time;
+		m_types[row] = type;
+		return row;
+	}
+
+	public void addLong(Series series, long time, long value)
+	{
+		int row = addRow(series, time, TYPE_LONG);
+		m_values[row] = value;
+	}
+
+	public void addDouble(Series series, long time, double value)
+	{
+		int row = addRow(series, time, TYPE_DOUBLE);
+		m_values[row] = Double.doubleToRawLongBits(value);
+	}
+
+	public void add(Series series, long time, MetricValue value)
+	{
+		if (value instanceof LongValue)
+			addLong(series, time, ((LongValue) value).getValue());
+		else if (value instanceof DoubleValue)
+			addDouble(series, time, ((DoubleValue) value).getValue());
+		else
+		{
+			int row = addRow(series, time, TYPE_OBJECT);
+			if (m_objects == null)
+				m_objects = new MetricValue[m_times.length];
+			m_objects[row] = value;
+		}
+	}
+
+	/**
+	 Appends all rows from other to this batch
+	 */
+	public void addAll(MetricBatch other)
+	{
+		for (int row = 0; row < other.m_size; row++)
+		{
+			Series series = other.getRowSeries(row);
+			switch (other.m_types[row])
+			{
+				case TYPE_LONG:
+					addLong(series, other.m_times[row], other.m_values[row]);
+					break;
+				case TYPE_DOUBLE:
+					addDouble(series, other.m_times[row], other.getDouble(row));
+					break;
+				default:
+					add(series, other.m_times[row], other.m_objects[row]);
+			}
+		}
+	}
+
+	/**
+	 Converts the batch to the FormattedMetric list passed to
+	 MetricSink.reportMetrics.  Consecutive rows from the same source and tags
+	 are grouped into one FormattedMetric.
+	 */
+	public List<FormattedMetric> toFormattedMetrics()
+	{
+		List<FormattedMetric> ret = new ArrayList<>();
+		FormattedMetric formattedMetric = null;
+		ReportedMetricImpl reportedMetric = null;
+		Series lastSeries = null;
+
+		for (int row = 0; row < m_size; row++)
+		{
+			Series series = getRowSeries(row);
+			if (lastSeries == null || (series != lastSeries && !series.sameMetric(lastSeries)))
+			{
+				reportedMetric = new ReportedMetricImpl()
+						.setClassName(series.getClassName())
+						.setMethodName(series.getMethodName())
+						.setTags(series.getTags());
+				formattedMetric = new FormattedMetric(reportedMetric, series.getProps(),
+						Collections.emptyMap(), series.getHelp());
+				ret.add(formattedMetric);
+			}
+
+			lastSeries = series;
+
+			reportedMetric.addSample(series.getFieldName(), getValue(row), getInstant(row));
+			List<ReportedMetric.Sample> samples = reportedMetric.getSamples();
+			formattedMetric.addSample(samples.get(samples.size() - 1), series.getMetricName());
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,48 @@
+package org.kairosdb.metrics4j.internal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Holds formatted metrics for a single gathering task so the sink queues are
+ only locked once per task when the buffer is flushed.  Sinks that support
+ batches get a MetricBatch instead of a list.  Not thread safe, each task uses
+ its own buffer.
+ */
+public class MetricBuffer
+{
+	private final Map<SinkQueue, List<FormattedMetric>> m_buffers = new IdentityHashMap<>();
+	private final Map<SinkQueue, MetricBatch> m_batches = new IdentityHashMap<>();
+
+	public void addMetric(SinkQueue sinkQueue, FormattedMetric metric)
+	{
+		m_buffers.computeIfAbsent(sinkQueue, (sq) -> new ArrayList<>()).add(metric);
+	}
+
+	public MetricBatch getBatch(SinkQueue sinkQueue)
+	{
+		return m_batches.computeIfAbsent(sinkQueue, (sq) -> new MetricBatch());
+	}
+
+	/**
+	 Moves all buffered metrics to their sink queues.
+	 */
+	public void flush()
+	{
+		for (Map.Entry<SinkQueue, List<FormattedMetric>> entry : m_buffers.entrySet())
+		{
+			entry.getKey().addMetrics(entry.getValue());
+		}
+
+		m_buffers.clear();
+
+		for (Map.Entry<SinkQueue, MetricBatch> entry : m_batches.entrySet())
+		{
+			entry.getKey().addBatch(entry.getValue());
+		}
+
+		m_batches.clear();
+	}
+}
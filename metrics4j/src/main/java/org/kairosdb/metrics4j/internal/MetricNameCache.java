@@ -0,0 +1,53 @@
+package org.kairosdb.metrics4j.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ Formatted metric names and batch series for a single collector (one TagKey)
+ keyed by sink and field.  The cache lives on the AgedMetricCollector so it is dropped along with
+ the collector when MetricsGatherer removes unused collectors.
+ */
+public class MetricNameCache
+{
+	private final Map<String, Map<String, String>> m_sinkNames = new HashMap<>();
+	private final Map<String, Map<String, MetricBatch.Series>> m_sinkSeries = new HashMap<>();
+
+	public synchronized String getName(String sinkName, String fieldName)
+	{
+		Map<String, String> fieldNames = m_sinkNames.get(sinkName);
+		if (fieldNames == null)
+			return null;
+
+		return fieldNames.get(fieldName);
+	}
+
+	public synchronized void putName(String sinkName, String fieldName, String metricName)
+	{
+		m_sinkNames.computeIfAbsent(sinkName, (s) -> new HashMap<>()).put(fieldName, metricName);
+	}
+
+	public synchronized MetricBatch.Series getSeries(String sinkName, String fieldName)
+	{
+		Map<String, MetricBatch.Series> fieldSeries = m_sinkSeries.get(sinkName);
+		if (fieldSeries == null)
+			return null;
+
+		return fieldSeries.get(fieldName);
+	}
+
+	public synchronized void putSeries(String sinkName, String fieldName, MetricBatch.Series series)
+	{
+		m_sinkSeries.computeIfAbsent(sinkName, (s) -> new HashMap<>()).put(fieldName, series);
+	}
+
+	/**
+	 Drops all names and series, they are rebuilt the next time the collector
+	 is reported.
+	 */
+	public synchronized void clear()
+	{
+		m_sinkNames.clear();
+		m_sinkSeries.clear();
+	}
+}
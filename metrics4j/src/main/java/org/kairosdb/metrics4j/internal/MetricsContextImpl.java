@@ -12,6 +12,7 @@ import org.kairosdb.metrics4j.formatters.Formatter;
 import org.kairosdb.metrics4j.plugins.Plugin;
 import org.kairosdb.metrics4j.sinks.MetricSink;
 import org.kairosdb.metrics4j.triggers.Trigger;
+import org.kairosdb.metrics4j.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +30,7 @@ public class MetricsContextImpl implements MetricsContext
 	private final ListComponentTracker<Collector> m_collectors;
 	private final ListComponentTracker<AssignedFormatter> m_formatters;
 	private final ComponentTracker<TriggerMetricCollection> m_triggers;
+	private Clock m_clock = new Clock();
 
 	public MetricsContextImpl()
 	{
@@ -65,7 +67,27 @@ public class MetricsContextImpl implements MetricsContext
 	public void registerSink(String name, MetricSink sink)
 	{
 		log.debug("Registering sink {}", name);
-		m_sinks.addComponent(name, new SinkQueue(sink, name));
+		registerSinkQueue(new SinkQueue(sink, name));
+	}
+
+	public void registerSinkQueue(SinkQueue sinkQueue)
+	{
+		m_sinks.addComponent(sinkQueue.getSinkName(), sinkQueue);
+	}
+
+	/**
+	 Puts sinkQueue in place of the queue registered under the same name,
+	 used to keep a sink across a reload.
+	 */
+	public void replaceSinkQueue(SinkQueue sinkQueue)
+	{
+		log.debug("Keeping sink {}", sinkQueue.getSinkName());
+		m_sinks.replaceComponent(sinkQueue.getSinkName(), sinkQueue);
+	}
+
+	public Map<String, SinkQueue> getSinkQueues()
+	{
+		return m_sinks.getComponents();
 	}
 
 	public void registerCollector(String name, Collector collector)
@@ -89,7 +111,12 @@ public class MetricsContextImpl implements MetricsContext
 	public void registerTrigger(String name, Trigger trigger)
 	{
 		log.debug("Registering trigger {}", name);
-		m_triggers.addComponent(name, new TriggerMetricCollection(trigger));
+		registerTriggerCollection(name, new TriggerMetricCollection(trigger));
+	}
+
+	public void registerTriggerCollection(String name, TriggerMetricCollection triggerCollection)
+	{
+		m_triggers.addComponent(name, triggerCollection);
 	}
 
 	public void registerPlugin(String name, Plugin plugin)
@@ -151,6 +178,17 @@ public class MetricsContextImpl implements MetricsContext
 		return m_triggers.getComponent(name).getTrigger();
 	}
 
+	@Override
+	public Clock getClock()
+	{
+		return m_clock;
+	}
+
+	public void setClock(Clock clock)
+	{
+		m_clock = clock;
+	}
+
 
 	/**
 	 This assigns an instance of a collector to a trigger, associates a formatter
@@ -7,7 +7,6 @@ import org.kairosdb.metrics4j.reporting.ReportedMetric;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -19,14 +18,60 @@ public abstract class MetricsGatherer implements CollectorCollection
 {
 	private static final Logger log = LoggerFactory.getLogger(MetricsGatherer.class);
 
+	/**
+	 Collectors that report nothing for this many gather intervals are removed
+	 */
+	public static final int DEFAULT_MAX_IDLE_INTERVALS = 10;
+
+	//Incremented once per gather, collectors record the epoch they last reported in
+	private volatile long m_epoch;
+
 	protected abstract ArgKey getArgKey();
 	protected abstract Map<TagKey, AgedMetricCollector> getCollectors();
 
+	/**
+	 Number of consecutive gather intervals a collector can report nothing
+	 before it is removed.
+	 */
+	protected int getMaxIdleIntervals()
+	{
+		return DEFAULT_MAX_IDLE_INTERVALS;
+	}
+
+	/**
+	 Current gather epoch, pass to new AgedMetricCollectors so they are not
+	 counted as idle for intervals from before they were created.
+	 */
+	protected long getEpoch()
+	{
+		return m_epoch;
+	}
+
+	/**
+	 Called after an idle collector has been removed from getCollectors()
+	 */
+	protected void collectorRemoved(TagKey tagKey, AgedMetricCollector collector)
+	{
+	}
+
+	/**
+	 Drops the cached metric names and series of every collector.  Called when
+	 the collection is assigned to a new context (ie on reload) as the names,
+	 tags, props and help may have changed.
+	 */
+	public void clearNameCaches()
+	{
+		for (AgedMetricCollector collector : getCollectors().values())
+			collector.getNameCache().clear();
+	}
+
 	@Override
 	public Iterable<ReportedMetric> gatherMetrics(Instant now)
 	{
 		ArgKey argKey = getArgKey();
 		Map<TagKey, AgedMetricCollector> collectors = getCollectors();
+		long epoch = ++m_epoch;
+		int maxIdleIntervals = getMaxIdleIntervals();
 
 		List<ReportedMetric> ret = new ArrayList<>();
 		Iterator<Map.Entry<TagKey, AgedMetricCollector>> collectorIterator = collectors.entrySet().iterator();
@@ -40,6 +85,9 @@ public abstract class MetricsGatherer implements CollectorCollection
 					.setMethodName(argKey.getMethodName())
 					.setTags(entry.getKey().getTags());
 
+			AgedMetricCollector agedMetricCollector = entry.getValue();
+			reportedMetric.setNameCache(agedMetricCollector.getNameCache());
+
 			MetricReporter reporter = new MetricReporter()
 			{
 				@Override
@@ -55,20 +103,20 @@ public abstract class MetricsGatherer implements CollectorCollection
 				}
 			};
 
-			AgedMetricCollector agedMetricCollector = entry.getValue();
 			agedMetricCollector.getMetricCollector().reportMetric(reporter);
 
 			if (reportedMetric.getSamples().size() == 0)
 			{
-				if (agedMetricCollector.getAge().getSeconds() > 600)
+				if (agedMetricCollector.getIdleIntervals(epoch) >= maxIdleIntervals)
 				{
 					log.debug("Removing collector for {} {} - tag key: {}", argKey.getClassName(), argKey.getMethodName(), entry.getKey());
 					collectorIterator.remove();
+					collectorRemoved(entry.getKey(), agedMetricCollector);
 				}
 			}
 			else
 			{
-				agedMetricCollector.updateLastUsed();
+				agedMetricCollector.markReported(epoch);
 			}
 
 			ret.add(reportedMetric);
@@ -77,15 +125,26 @@ public abstract class MetricsGatherer implements CollectorCollection
 		return ret;
 	}
 
+	/**
+	 Tracks the gather epoch a collector last reported samples in.  Only the
+	 gather thread updates the epoch so recording to the collector does not
+	 touch it.
+	 */
 	protected static class AgedMetricCollector
 	{
 		private final MetricCollector m_metricCollector;
-		private long m_lastUsed;
+		private final MetricNameCache m_nameCache = new MetricNameCache();
+		private long m_lastReportedEpoch;
 
 		public AgedMetricCollector(MetricCollector metricCollector)
+		{
+			this(metricCollector, 0);
+		}
+
+		public AgedMetricCollector(MetricCollector metricCollector, long epoch)
 		{
 			m_metricCollector = metricCollector;
-			m_lastUsed = System.nanoTime();
+			m_lastReportedEpoch = epoch;
 		}
 
 		public MetricCollector getMetricCollector()
@@ -93,14 +152,22 @@ public abstract class MetricsGatherer implements CollectorCollection
 			return m_metricCollector;
 		}
 
-		public void updateLastUsed()
+		public MetricNameCache getNameCache()
+		{
+			return m_nameCache;
+		}
+
+		public void markReported(long epoch)
 		{
-			m_lastUsed = System.nanoTime();
+			m_lastReportedEpoch = epoch;
 		}
 
-		public Duration getAge()
+		/**
+		 Number of gather intervals since this collector last reported samples
+		 */
+		public long getIdleIntervals(long epoch)
 		{
-			return Duration.ofNanos(System.nanoTime() - m_lastUsed);
+			return epoch - m_lastReportedEpoch;
 		}
 	}
 
@@ -0,0 +1,126 @@
+package org.kairosdb.metrics4j.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ Maps config paths (ie [com, example, MyClass, myMethod]) to values so that
+ every value along a path can be found in a single walk from the root.
+
+ Nodes are immutable, an update copies the nodes along the updated path and
+ swaps in a new root.  Lookups never lock and always see a complete trie.
+ Updates only happen while loading configuration so the copying is cheap.
+ @param <T> Value stored at each node
+ */
+public class PathTrie<T>
+{
+	private static final class Node<T>
+	{
+		private final Map<String, Node<T>> m_children;
+		private final T m_value;
+
+		private Node(Map<String, Node<T>> children, T value)
+		{
+			m_children = children;
+			m_value = value;
+		}
+	}
+
+	private volatile Node<T> m_root = new Node<>(Collections.emptyMap(), null);
+
+	/**
+	 Replaces the value at path with the result of update.  Update is passed
+	 null if there is no value at the path yet.
+	 */
+	public synchronized void update(List<String> path, UnaryOperator<T> update)
+	{
+		m_root = update(m_root, path, 0, update);
+	}
+
+	private Node<T> update(Node<T> node, List<String> path, int depth, UnaryOperator<T> update)
+	{
+		if (depth == path.size())
+			return new Node<>(node.m_children, update.apply(node.m_value));
+
+		String name = path.get(depth);
+		Node<T> child = node.m_children.get(name);
+		if (child == null)
+			child = new Node<>(Collections.emptyMap(), null);
+
+		Map<String, Node<T>> children = new HashMap<>(node.m_children);
+		children.put(name, update(child, path, depth + 1, update));
+
+		return new Node<>(Collections.unmodifiableMap(children), node.m_value);
+	}
+
+	/**
+	 Replaces every value in the trie with the result of update
+	 */
+	public synchronized void updateAll(UnaryOperator<T> update)
+	{
+		m_root = updateAll(m_root, update);
+	}
+
+	private Node<T> updateAll(Node<T> node, UnaryOperator<T> update)
+	{
+		Map<String, Node<T>> children = Collections.emptyMap();
+		if (!node.m_children.isEmpty())
+		{
+			children = new HashMap<>();
+			for (Map.Entry<String, Node<T>> entry : node.m_children.entrySet())
+				children.put(entry.getKey(), updateAll(entry.getValue(), update));
+
+			children = Collections.unmodifiableMap(children);
+		}
+
+		return new Node<>(children, node.m_value == null ? null : update.apply(node.m_value));
+	}
+
+	/**
+	 Returns the value set on the longest prefix of path that has one, or null
+	 */
+	public T getDeepest(List<String> path)
+	{
+		Node<T> node = m_root;
+		T ret = node.m_value;
+		for (String name : path)
+		{
+			node = node.m_children.get(name);
+			if (node == null)
+				break;
+
+			if (node.m_value != null)
+				ret = node.m_value;
+		}
+
+		return ret;
+	}
+
+	/**
+	 Returns every value set along path, the most specific (longest prefix) first.
+	 */
+	public List<T> getAll(List<String> path)
+	{
+		List<T> ret = new ArrayList<>();
+		Node<T> node = m_root;
+		if (node.m_value != null)
+			ret.add(node.m_value);
+
+		for (String name : path)
+		{
+			node = node.m_children.get(name);
+			if (node == null)
+				break;
+
+			if (node.m_value != null)
+				ret.add(node.m_value);
+		}
+
+		Collections.reverse(ret);
+		return ret;
+	}
+}
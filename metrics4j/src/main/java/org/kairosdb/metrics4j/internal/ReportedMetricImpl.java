@@ -20,6 +20,9 @@ public class ReportedMetricImpl implements ReportedMetric
 	private String m_methodName;
 	private Map<String, String> m_tags = Collections.emptyMap();
 	private final List<Sample> m_samples = new ArrayList<>();
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private MetricNameCache m_nameCache;
 
 
 	public ReportedMetricImpl setTime(Instant time)
@@ -90,6 +93,21 @@ public class ReportedMetricImpl implements ReportedMetric
 		return m_samples;
 	}
 
+	/**
+	 Cache of formatted names for the collector that reported this metric,
+	 null if the metric did not come from a MetricsGatherer.
+	 */
+	public MetricNameCache getNameCache()
+	{
+		return m_nameCache;
+	}
+
+	public ReportedMetricImpl setNameCache(MetricNameCache nameCache)
+	{
+		m_nameCache = nameCache;
+		return this;
+	}
+
 
 	@ToString
 	@EqualsAndHashCode
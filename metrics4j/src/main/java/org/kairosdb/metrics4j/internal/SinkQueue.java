@@ -1,6 +1,7 @@
 package org.kairosdb.metrics4j.internal;
 
 import org.kairosdb.metrics4j.reporting.ReportedMetric;
+import org.kairosdb.metrics4j.sinks.BatchMetricSink;
 import org.kairosdb.metrics4j.sinks.MetricSink;
 
 import java.util.ArrayList;
@@ -12,23 +13,88 @@ public class SinkQueue
 	private final MetricSink m_sink;
 	private final String m_sinkName;
 	private List<FormattedMetric> m_metricList;
+	private final boolean m_batched;
+	private MetricBatch m_batch;
 	private final Object m_queueLock = new Object();
+	private final Object m_sinkLock = new Object();
+	private AsyncSinkDispatcher m_asyncDispatcher;
 
 	public SinkQueue(MetricSink sink, String sinkName)
 	{
 		m_sink = sink;
 		m_sinkName = sinkName;
 		m_metricList = new ArrayList<>();
+		m_batched = sink instanceof BatchMetricSink;
+		m_batch = new MetricBatch();
+	}
+
+	/**
+	 True if the sink is sent MetricBatches instead of FormattedMetric lists
+	 */
+	public boolean isBatched()
+	{
+		return m_batched;
+	}
+
+	/**
+	 Sends the metrics to the sink on a separate thread, see AsyncSinkDispatcher
+	 */
+	public void setAsyncDispatcher(AsyncSinkDispatcher asyncDispatcher)
+	{
+		m_asyncDispatcher = asyncDispatcher;
+	}
+
+	public AsyncSinkDispatcher getAsyncDispatcher()
+	{
+		return m_asyncDispatcher;
 	}
 
 	public void flush()
 	{
+		if (m_batched)
+		{
+			flushBatch();
+			return;
+		}
+
+		List<FormattedMetric> metrics;
 		synchronized (m_queueLock)
 		{
-			List<FormattedMetric> metrics = m_metricList;
+			metrics = m_metricList;
 			m_metricList = new ArrayList<>();
+		}
 
-			m_sink.reportMetrics(metrics);
+		//The sink is called outside of the queue lock so addMetric does not
+		//block while the sink is doing IO
+		if (m_asyncDispatcher != null)
+			m_asyncDispatcher.submit(metrics);
+		else
+		{
+			synchronized (m_sinkLock)
+			{
+				m_sink.reportMetrics(metrics);
+			}
+		}
+	}
+
+	private void flushBatch()
+	{
+		MetricBatch batch;
+		synchronized (m_queueLock)
+		{
+			batch = m_batch;
+			//Start with room for the same number of samples as last time
+			m_batch = new MetricBatch(batch.size());
+		}
+
+		if (m_asyncDispatcher != null)
+			m_asyncDispatcher.submit(batch);
+		else
+		{
+			synchronized (m_sinkLock)
+			{
+				m_sink.reportBatch(batch);
+			}
 		}
 	}
 
@@ -49,4 +115,23 @@ public class SinkQueue
 			m_metricList.add(reportedMetric);
 		}
 	}
+
+	public void addMetrics(List<FormattedMetric> metrics)
+	{
+		synchronized (m_queueLock)
+		{
+			m_metricList.addAll(metrics);
+		}
+	}
+
+	public void addBatch(MetricBatch batch)
+	{
+		synchronized (m_queueLock)
+		{
+			if (m_batch.isEmpty() && m_batch.getSeriesCount() == 0)
+				m_batch = batch;
+			else
+				m_batch.addAll(batch);
+		}
+	}
 }
@@ -0,0 +1,529 @@
+package org.kairosdb.metrics4j.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ Generates a class that implements a source interface as an alternative to
+ using java.lang.reflect.Proxy.  Each method of the generated class passes its
+ arguments straight to a SourceDispatcher without boxing primitives into an
+ Object[] or going through reflection, this lets the JIT inline the call all
+ the way down to the collector.
+
+ The class file is written by hand as the generated methods are straight line
+ code (no branches) so no stack map frames are needed.  Generated methods
+ look like this:
+ <pre>
+ public LongCollector reportSize(String host, int status)
+ {
+ 	return (LongCollector)m_dispatcher.getCollector(3, host, String.valueOf(status));
+ }
+ </pre>
+ */
+public class SourceClassGenerator
+{
+	private static final AtomicInteger s_classCounter = new AtomicInteger();
+
+	private static final int CLASS_VERSION = 52; //Java 8
+	private static final int MAX_DIRECT_ARGS = 2; //Number of arguments SourceDispatcher.getCollector takes without an array
+
+	private static final String OBJECT = "java/lang/Object";
+	private static final String STRING = "java/lang/String";
+	private static final String DISPATCHER = SourceDispatcher.class.getName().replace('.', '/');
+	private static final String DISPATCHER_FIELD = "m_dispatcher";
+	private static final String COLLECTOR_DESC = "Lorg/kairosdb/metrics4j/collectors/MetricCollector;";
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int ILOAD = 0x15;
+	private static final int LLOAD = 0x16;
+	private static final int FLOAD = 0x17;
+	private static final int DLOAD = 0x18;
+	private static final int ALOAD = 0x19;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int AASTORE = 0x53;
+	private static final int DUP = 0x59;
+	private static final int ARETURN = 0xb0;
+	private static final int RETURN = 0xb1;
+	private static final int GETFIELD = 0xb4;
+	private static final int PUTFIELD = 0xb5;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC = 0xb8;
+	private static final int ANEWARRAY = 0xbd;
+	private static final int CHECKCAST = 0xc0;
+	private static final int WIDE = 0xc4;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	/**
+	 Creates an instance of a generated class that implements sourceClass.
+	 @param sourceClass Public source interface to implement
+	 @param handler Handler that resolves the collectors for the source
+	 @param <T>
+	 @return Instance of the generated class
+	 @throws IllegalArgumentException if sourceClass cannot be implemented
+	 by a generated class, the caller should use a Proxy instead.
+	 */
+	public static <T> T newSource(Class<T> sourceClass, SourceInvocationHandler handler) throws ReflectiveOperationException
+	{
+		if (!sourceClass.isInterface() || !Modifier.isPublic(sourceClass.getModifiers()))
+			throw new IllegalArgumentException("Source "+sourceClass.getName()+" must be a public interface");
+
+		List<Method> methods = getSourceMethods(sourceClass);
+		String className = sourceClass.getName() + "$$Metrics4jSource" + s_classCounter.incrementAndGet();
+
+		byte[] classBytes = new SourceClassGenerator(className, sourceClass, methods).generate();
+
+		SourceClassLoader loader = new SourceClassLoader(sourceClass.getClassLoader());
+		Class<?> generatedClass = loader.define(className, classBytes);
+
+		SourceDispatcher dispatcher = handler.newSourceDispatcher(methods.toArray(new Method[0]));
+		return sourceClass.cast(generatedClass.getConstructor(SourceDispatcher.class).newInstance(dispatcher));
+	}
+
+	private static List<Method> getSourceMethods(Class<?> sourceClass)
+	{
+		List<Method> methods = new ArrayList<>();
+		Set<String> signatures = new HashSet<>();
+
+		for (Method method : sourceClass.getMethods())
+		{
+			//Default and static methods are left as is
+			if (!Modifier.isAbstract(method.getModifiers()))
+				continue;
+
+			Class<?> returnType = method.getReturnType();
+			if (returnType.isPrimitive() || !Modifier.isPublic(returnType.getModifiers()))
+				throw new IllegalArgumentException("Method "+method.getName()+" on "+sourceClass.getName()+" does not return a public collector interface");
+
+			//Same method inherited from more than one interface
+			if (!signatures.add(method.getName() + getParameterDescriptor(method)))
+				throw new IllegalArgumentException("Method "+method.getName()+" is declared more than once on "+sourceClass.getName());
+
+			methods.add(method);
+		}
+
+		return methods;
+	}
+
+	private final String m_className;
+	private final Class<?> m_sourceClass;
+	private final List<Method> m_methods;
+
+	private final ByteArrayOutputStream m_constantPoolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream m_constantPool = new DataOutputStream(m_constantPoolBytes);
+	private final Map<String, Integer> m_constants = new HashMap<>();
+	private int m_constantCount = 1;
+
+	private SourceClassGenerator(String className, Class<?> sourceClass, List<Method> methods)
+	{
+		m_className = className.replace('.', '/');
+		m_sourceClass = sourceClass;
+		m_methods = methods;
+	}
+
+	private byte[] generate()
+	{
+		try
+		{
+			int thisClass = classConstant(m_className);
+			int superClass = classConstant(OBJECT);
+			int sourceInterface = classConstant(internalName(m_sourceClass));
+			int dispatcherField = fieldConstant(m_className, DISPATCHER_FIELD, "L"+DISPATCHER+";");
+
+			ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+			DataOutputStream methodOut = new DataOutputStream(methodBytes);
+
+			writeConstructor(methodOut, dispatcherField);
+			for (int i = 0; i < m_methods.size(); i++)
+			{
+				writeSourceMethod(methodOut, dispatcherField, i, m_methods.get(i));
+			}
+
+			ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(classBytes);
+
+			//Constants have to be all added before the header can be written
+			int fieldName = utf8Constant(DISPATCHER_FIELD);
+			int fieldType = utf8Constant("L"+DISPATCHER+";");
+
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0); //minor version
+			out.writeShort(CLASS_VERSION);
+			out.writeShort(m_constantCount);
+			m_constantPool.flush();
+			m_constantPoolBytes.writeTo(out);
+
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1); //interface count
+			out.writeShort(sourceInterface);
+
+			out.writeShort(1); //field count
+			out.writeShort(ACC_PRIVATE | ACC_FINAL);
+			out.writeShort(fieldName);
+			out.writeShort(fieldType);
+			out.writeShort(0); //attribute count
+
+			out.writeShort(m_methods.size() + 1); //method count
+			methodOut.flush();
+			methodBytes.writeTo(out);
+
+			out.writeShort(0); //class attribute count
+			out.flush();
+
+			return classBytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			//Cannot happen when writing to a byte array
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeConstructor(DataOutputStream out, int dispatcherField) throws IOException
+	{
+		ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		DataOutputStream code = new DataOutputStream(codeBytes);
+
+		code.writeByte(ALOAD_0);
+		code.writeByte(INVOKESPECIAL);
+		code.writeShort(methodConstant(OBJECT, "<init>", "()V"));
+		code.writeByte(ALOAD_0);
+		code.writeByte(ALOAD_1);
+		code.writeByte(PUTFIELD);
+		code.writeShort(dispatcherField);
+		code.writeByte(RETURN);
+
+		writeMethod(out, "<init>", "(L"+DISPATCHER+";)V", 2, 2, codeBytes.toByteArray());
+	}
+
+	private void writeSourceMethod(DataOutputStream out, int dispatcherField, int index, Method method) throws IOException
+	{
+		ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		DataOutputStream code = new DataOutputStream(codeBytes);
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		boolean useArray = parameterTypes.length > MAX_DIRECT_ARGS;
+
+		code.writeByte(ALOAD_0);
+		code.writeByte(GETFIELD);
+		code.writeShort(dispatcherField);
+		pushInt(code, index);
+
+		if (useArray)
+		{
+			pushInt(code, parameterTypes.length);
+			code.writeByte(ANEWARRAY);
+			code.writeShort(classConstant(OBJECT));
+		}
+
+		int slot = 1;
+		for (int i = 0; i < parameterTypes.length; i++)
+		{
+			if (useArray)
+			{
+				code.writeByte(DUP);
+				pushInt(code, i);
+			}
+
+			slot += loadArgument(code, parameterTypes[i], slot);
+
+			if (useArray)
+				code.writeByte(AASTORE);
+		}
+
+		String getCollectorDesc;
+		if (useArray)
+			getCollectorDesc = "(I[L"+OBJECT+";)"+COLLECTOR_DESC;
+		else
+		{
+			StringBuilder sb = new StringBuilder("(I");
+			for (int i = 0; i < parameterTypes.length; i++)
+				sb.append("L"+OBJECT+";");
+			getCollectorDesc = sb.append(")").append(COLLECTOR_DESC).toString();
+		}
+
+		code.writeByte(INVOKEVIRTUAL);
+		code.writeShort(methodConstant(DISPATCHER, "getCollector", getCollectorDesc));
+		code.writeByte(CHECKCAST);
+		code.writeShort(classConstant(internalName(method.getReturnType())));
+		code.writeByte(ARETURN);
+
+		if (slot > 0xffff)
+			throw new IllegalArgumentException("Method "+method.getName()+" on "+m_sourceClass.getName()+" has too many parameters");
+
+		//dispatcher, index, array, array, array index and a two word argument
+		int maxStack = 7;
+		writeMethod(out, method.getName(), getParameterDescriptor(method) + descriptor(method.getReturnType()),
+				maxStack, slot, codeBytes.toByteArray());
+	}
+
+	/**
+	 Loads an argument on to the stack as an Object.  Primitives are converted to
+	 strings with String.valueOf which gives the same value as calling toString
+	 on the boxed value.
+	 @return Number of local variable slots used by the argument
+	 */
+	private int loadArgument(DataOutputStream code, Class<?> type, int slot) throws IOException
+	{
+		int size = 1;
+		int opcode;
+		String valueOfDesc = null;
+
+		if (!type.isPrimitive())
+			opcode = ALOAD;
+		else if (type == long.class)
+		{
+			opcode = LLOAD;
+			valueOfDesc = "(J)";
+			size = 2;
+		}
+		else if (type == double.class)
+		{
+			opcode = DLOAD;
+			valueOfDesc = "(D)";
+			size = 2;
+		}
+		else if (type == float.class)
+		{
+			opcode = FLOAD;
+			valueOfDesc = "(F)";
+		}
+		else if (type == boolean.class)
+		{
+			opcode = ILOAD;
+			valueOfDesc = "(Z)";
+		}
+		else if (type == char.class)
+		{
+			opcode = ILOAD;
+			valueOfDesc = "(C)";
+		}
+		else //int, short and byte
+		{
+			opcode = ILOAD;
+			valueOfDesc = "(I)";
+		}
+
+		//Slots past 255 do not fit in the one byte operand
+		if (slot > 255)
+		{
+			code.writeByte(WIDE);
+			code.writeByte(opcode);
+			code.writeShort(slot);
+		}
+		else
+		{
+			code.writeByte(opcode);
+			code.writeByte(slot);
+		}
+
+		if (valueOfDesc != null)
+		{
+			code.writeByte(INVOKESTATIC);
+			code.writeShort(methodConstant(STRING, "valueOf", valueOfDesc+"L"+STRING+";"));
+		}
+
+		return size;
+	}
+
+	private void pushInt(DataOutputStream code, int value) throws IOException
+	{
+		if (value <= 5)
+			code.writeByte(ICONST_0 + value);
+		else if (value <= Byte.MAX_VALUE)
+		{
+			code.writeByte(BIPUSH);
+			code.writeByte(value);
+		}
+		else if (value <= Short.MAX_VALUE)
+		{
+			code.writeByte(SIPUSH);
+			code.writeShort(value);
+		}
+		else
+			throw new IllegalArgumentException("Source "+m_sourceClass.getName()+" has too many methods");
+	}
+
+	private void writeMethod(DataOutputStream out, String name, String descriptor,
+			int maxStack, int maxLocals, byte[] code) throws IOException
+	{
+		out.writeShort(ACC_PUBLIC);
+		out.writeShort(utf8Constant(name));
+		out.writeShort(utf8Constant(descriptor));
+		out.writeShort(1); //attribute count
+
+		out.writeShort(utf8Constant("Code"));
+		out.writeInt(12 + code.length); //attribute length
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0); //exception table length
+		out.writeShort(0); //attribute count
+	}
+
+	//==========================================================================
+	//Constant pool
+
+	private int utf8Constant(String value) throws IOException
+	{
+		Integer index = m_constants.get("U" + value);
+		if (index == null)
+		{
+			m_constantPool.writeByte(CONSTANT_UTF8);
+			m_constantPool.writeUTF(value);
+			index = addConstant("U" + value);
+		}
+
+		return index;
+	}
+
+	private int classConstant(String internalName) throws IOException
+	{
+		Integer index = m_constants.get("C" + internalName);
+		if (index == null)
+		{
+			int name = utf8Constant(internalName);
+			m_constantPool.writeByte(CONSTANT_CLASS);
+			m_constantPool.writeShort(name);
+			index = addConstant("C" + internalName);
+		}
+
+		return index;
+	}
+
+	private int nameAndTypeConstant(String name, String descriptor) throws IOException
+	{
+		String key = "N" + name + ":" + descriptor;
+		Integer index = m_constants.get(key);
+		if (index == null)
+		{
+			int nameIndex = utf8Constant(name);
+			int descriptorIndex = utf8Constant(descriptor);
+			m_constantPool.writeByte(CONSTANT_NAME_AND_TYPE);
+			m_constantPool.writeShort(nameIndex);
+			m_constantPool.writeShort(descriptorIndex);
+			index = addConstant(key);
+		}
+
+		return index;
+	}
+
+	private int memberConstant(int tag, String owner, String name, String descriptor) throws IOException
+	{
+		String key = tag + owner + "." + name + ":" + descriptor;
+		Integer index = m_constants.get(key);
+		if (index == null)
+		{
+			int ownerIndex = classConstant(owner);
+			int nameAndType = nameAndTypeConstant(name, descriptor);
+			m_constantPool.writeByte(tag);
+			m_constantPool.writeShort(ownerIndex);
+			m_constantPool.writeShort(nameAndType);
+			index = addConstant(key);
+		}
+
+		return index;
+	}
+
+	private int fieldConstant(String owner, String name, String descriptor) throws IOException
+	{
+		return memberConstant(CONSTANT_FIELDREF, owner, name, descriptor);
+	}
+
+	private int methodConstant(String owner, String name, String descriptor) throws IOException
+	{
+		return memberConstant(CONSTANT_METHODREF, owner, name, descriptor);
+	}
+
+	private int addConstant(String key)
+	{
+		if (m_constantCount == 0xFFFF)
+			throw new IllegalArgumentException("Source "+m_sourceClass.getName()+" is too large to generate");
+
+		int index = m_constantCount++;
+		m_constants.put(key, index);
+		return index;
+	}
+
+	//==========================================================================
+	//Descriptors
+
+	private static String internalName(Class<?> type)
+	{
+		return type.getName().replace('.', '/');
+	}
+
+	private static String getParameterDescriptor(Method method)
+	{
+		StringBuilder sb = new StringBuilder("(");
+		for (Class<?> type : method.getParameterTypes())
+			sb.append(descriptor(type));
+
+		return sb.append(")").toString();
+	}
+
+	private static String descriptor(Class<?> type)
+	{
+		if (type == void.class) return "V";
+		if (type == boolean.class) return "Z";
+		if (type == byte.class) return "B";
+		if (type == char.class) return "C";
+		if (type == short.class) return "S";
+		if (type == int.class) return "I";
+		if (type == long.class) return "J";
+		if (type == float.class) return "F";
+		if (type == double.class) return "D";
+		if (type.isArray()) return internalName(type);
+
+		return "L" + internalName(type) + ";";
+	}
+
+	/**
+	 Defines the generated class as a child of the source interface class loader.
+	 Classes the loader cannot see (like SourceDispatcher when metrics4j is loaded
+	 by a different loader) are loaded from the metrics4j class loader.
+	 */
+	private static class SourceClassLoader extends ClassLoader
+	{
+		public SourceClassLoader(ClassLoader parent)
+		{
+			super(parent);
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException
+		{
+			return SourceClassGenerator.class.getClassLoader().loadClass(name);
+		}
+
+		public Class<?> define(String name, byte[] classBytes)
+		{
+			return defineClass(name, classBytes, 0, classBytes.length);
+		}
+	}
+}
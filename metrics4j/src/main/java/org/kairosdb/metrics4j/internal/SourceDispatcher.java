@@ -0,0 +1,73 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ Called by classes created by SourceClassGenerator.  Each method on the
+ generated class calls getCollector with the index of the method so there is
+ no Method lookup or argument array needed to find the MethodDispatch.
+ */
+public class SourceDispatcher
+{
+	private final SourceInvocationHandler m_handler;
+	private final Method[] m_methods;
+	private final AtomicReferenceArray<MethodDispatch> m_dispatch;
+
+	public SourceDispatcher(SourceInvocationHandler handler, Method[] methods)
+	{
+		m_handler = handler;
+		m_methods = methods;
+		m_dispatch = new AtomicReferenceArray<>(methods.length);
+	}
+
+	private MethodDispatch getDispatch(int index)
+	{
+		MethodDispatch dispatch = m_dispatch.get(index);
+		if (dispatch == null)
+		{
+			dispatch = m_handler.getMethodDispatch(m_methods[index]);
+			if (m_handler.isCurrent(dispatch))
+			{
+				m_dispatch.compareAndSet(index, null, dispatch);
+
+				//A reset that cleared the slot before we stored it would be undone
+				if (!m_handler.isCurrent(dispatch))
+					m_dispatch.compareAndSet(index, dispatch, null);
+			}
+		}
+
+		return dispatch;
+	}
+
+	/**
+	 Drops the cached dispatches, called when the handler has changed a collector.
+	 */
+	/*package*/ void reset()
+	{
+		for (int i = 0; i < m_dispatch.length(); i++)
+			m_dispatch.set(i, null);
+	}
+
+	public MetricCollector getCollector(int index)
+	{
+		return getDispatch(index).getCollector();
+	}
+
+	public MetricCollector getCollector(int index, Object arg0)
+	{
+		return getDispatch(index).getCollector(arg0);
+	}
+
+	public MetricCollector getCollector(int index, Object arg0, Object arg1)
+	{
+		return getDispatch(index).getCollector(arg0, arg1);
+	}
+
+	public MetricCollector getCollector(int index, Object[] args)
+	{
+		return getDispatch(index).getCollector(args);
+	}
+}
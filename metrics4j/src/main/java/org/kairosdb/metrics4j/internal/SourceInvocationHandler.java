@@ -13,8 +13,11 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SourceInvocationHandler implements InvocationHandler
 {
@@ -22,7 +25,11 @@ public class SourceInvocationHandler implements InvocationHandler
 	public static final String COLLECTOR_PACKAGE = "org.kairosdb.metrics4j.collectors";
 
 	private final Map<MethodArgKey, CollectorContext> m_statsMap = new ConcurrentHashMap<>();
-	private final MetricConfig m_config;
+	private final Map<Method, MethodDispatch> m_dispatchMap = new ConcurrentHashMap<>();
+	private final List<SourceDispatcher> m_sourceDispatchers = new CopyOnWriteArrayList<>();
+	private volatile MetricConfig m_config;
+	//Incremented each time the dispatches are reset so stale ones are not cached
+	private final AtomicLong m_generation = new AtomicLong();
 
 	//ephemeral collectors should only be within this class
 
@@ -34,21 +41,65 @@ public class SourceInvocationHandler implements InvocationHandler
 	private CollectorContext getCollectorContext(MethodArgKey key)
 	{
 		return m_statsMap.computeIfAbsent(key, (MethodArgKey k) ->
-				lookupCollectorContext(k));
+				lookupCollectorContext(k, null, null));
 	}
 
-	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	/**
+	 Returns the dispatch for a method, it is created the first time the method
+	 is called.
+	 @param method Source method
+	 @return
+	 */
+	public MethodDispatch getMethodDispatch(Method method)
 	{
-		MethodArgKey key = new MethodArgKey(method, args);
+		MethodDispatch dispatch = m_dispatchMap.get(method);
+		if (dispatch == null)
+		{
+			long generation = m_generation.get();
+			MethodDispatch created = new MethodDispatch(method, getCollectorContext(new MethodArgKey(method, null)),
+					generation);
+
+			//If the dispatches were reset while creating it, use it for this call only
+			dispatch = m_dispatchMap.compute(method, (m, existing) ->
+			{
+				if (existing != null)
+					return existing;
 
-		CollectorContext collectorContext = getCollectorContext(key);
-		CollectorCollection collection = collectorContext.getCollection();
+				return isCurrent(created) ? created : null;
+			});
 
-		TagKey tagKey = key.getTagKey(collectorContext.getTags());
+			if (dispatch == null)
+				dispatch = created;
+		}
 
-		MetricCollector ret = collection.getCollector(tagKey);
+		return dispatch;
+	}
 
-		return ret;
+	/**
+	 Returns false if the dispatches have been reset since the dispatch was
+	 created, a stale dispatch may point to a collector from before a reload.
+	 */
+	/*package*/ boolean isCurrent(MethodDispatch dispatch)
+	{
+		return dispatch.getGeneration() == m_generation.get();
+	}
+
+	/**
+	 Creates a dispatcher for a generated source class.
+	 @param methods Methods of the source interface, the index into this array
+	 is used by the generated class to identify the method.
+	 @return
+	 */
+	public SourceDispatcher newSourceDispatcher(Method[] methods)
+	{
+		SourceDispatcher dispatcher = new SourceDispatcher(this, methods);
+		m_sourceDispatchers.add(dispatcher);
+		return dispatcher;
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		return getMethodDispatch(method).getCollector(args);
 	}
 
 	/**
@@ -78,20 +129,82 @@ public class SourceInvocationHandler implements InvocationHandler
 		CollectorCollection collection = context.getCollection();
 
 		((CollectorCollectionAdapter)collection).addCollector(key.getTagKey(context.getTags()), statsObject);
+
+		resetDispatches();
+	}
+
+	private void resetDispatches()
+	{
+		//Dispatches may be holding on to the previous context
+		m_generation.incrementAndGet();
+		m_dispatchMap.clear();
+		for (SourceDispatcher dispatcher : m_sourceDispatchers)
+			dispatcher.reset();
 	}
 
 	/**
-	 Called once for each unique key.  Results are cached
+	 Points every method looked up so far at the new configuration.  A
+	 collection of collectors is kept, along with the values in it, when the
+	 collector and props for the method are configured the same as before.
+	 @param config Configuration replacing oldConfig
+	 @param oldConfig Configuration the current contexts were built from
+	 */
+	public void reload(MetricConfig config, MetricConfig oldConfig)
+	{
+		m_config = config;
+
+		for (Map.Entry<MethodArgKey, CollectorContext> entry : m_statsMap.entrySet())
+		{
+			CollectorContext previous = entry.getValue();
+			if (previous instanceof TestingCollectorContext)
+				continue;
+
+			entry.setValue(lookupCollectorContext(entry.getKey(), previous, oldConfig));
+		}
+
+		resetDispatches();
+	}
+
+	/**
+	 Returns the collection from the previous context if it can be carried
+	 over to the new configuration.
+	 */
+	private CollectorCollectionAdapter reusableCollection(CollectorContext previous, MetricConfig oldConfig,
+			Collector collector, Map<String, String> contextProperties)
+	{
+		if (previous == null || !(previous.getCollection() instanceof CollectorCollectionAdapter))
+			return null;
+
+		CollectorCollectionAdapter collection = (CollectorCollectionAdapter) previous.getCollection();
+		if (m_config.isUnchanged(collector, oldConfig, collection.getBaseCollector()) &&
+				contextProperties.equals(collection.getContextProperties()) &&
+				collection.getGlobalLimiter() == m_config.getTagCombinationLimiter() &&
+				m_config.getContext().getClock() == oldConfig.getContext().getClock())
+		{
+			//Formatters, metric name, tags and help may have changed
+			collection.clearNameCaches();
+			return collection;
+		}
+
+		return null;
+	}
+
+	/**
+	 Called once for each unique key and again for each reload.  Results are cached
 	 @param key
+	 @param previous Context being replaced on reload, null otherwise
+	 @param oldConfig Configuration previous was built from
 	 @return
 	 */
-	private CollectorContext lookupCollectorContext(MethodArgKey key)
+	private CollectorContext lookupCollectorContext(MethodArgKey key, CollectorContext previous, MetricConfig oldConfig)
 	{
 		log.debug("Looking up collector for {}", key);
 
 		if (m_config.isDisabled(key))
 		{
 			log.debug("Collector is disabled");
+			if (previous != null)
+				CollectorCollectionAdapter.removeRejectedSource(key);
 			return new DevNullCollectorContext();
 		}
 
@@ -129,8 +242,15 @@ public class SourceInvocationHandler implements InvocationHandler
 			{
 				log.debug("Returning collector {}", collector);
 				Map<String, String> contextProperties = m_config.getPropsForKey(key);
+				CollectorCollectionAdapter collectorCollection = reusableCollection(previous, oldConfig, collector, contextProperties);
+
 				//Collector will be cloned before use in the adapter
-				CollectorCollectionAdapter collectorCollection = new CollectorCollectionAdapter(collector, key, contextProperties);
+				if (collectorCollection == null)
+				{
+					collectorCollection = new CollectorCollectionAdapter(collector, key, contextProperties,
+							m_config.getTagCombinationLimiter());
+					collectorCollection.registerRejectedSource();
+				}
 
 				Map<String, String> tagsForKey = m_config.getTagsForKey(key);
 
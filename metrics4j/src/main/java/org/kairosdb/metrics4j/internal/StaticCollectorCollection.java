@@ -5,7 +5,6 @@ import org.kairosdb.metrics4j.reporting.MetricReporter;
 import org.kairosdb.metrics4j.reporting.MetricValue;
 import org.kairosdb.metrics4j.reporting.ReportedMetric;
 
-import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -47,7 +46,7 @@ public class StaticCollectorCollection extends MetricsGatherer implements Collec
 	public void addCollector(TagKey tagKey, MetricCollector collector)
 	{
 		collector.setContextProperties(m_contextProperties);
-		m_collectors.put(tagKey, new AgelessMetricCollector(collector));
+		m_collectors.put(tagKey.intern(), new AgelessMetricCollector(collector));
 	}
 
 	@Override
@@ -70,9 +69,9 @@ public class StaticCollectorCollection extends MetricsGatherer implements Collec
 		}
 
 		@Override
-		public Duration getAge()
+		public long getIdleIntervals(long epoch)
 		{
-			return Duration.ZERO;
+			return 0;
 		}
 	}
 }
@@ -0,0 +1,85 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.kairosdb.metrics4j.MetricSourceManager;
+import org.kairosdb.metrics4j.PostConfig;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Limits the number of live tag combinations across all sources.  A slot is
+ taken when a collector is created for a new set of tags and given back when
+ the collector is removed for being idle.
+ */
+public class TagCombinationLimiter implements PostConfig
+{
+	private final int m_limit;
+	private final AtomicInteger m_live = new AtomicInteger();
+	private final AtomicLong m_rejected = new AtomicLong();
+
+	public TagCombinationLimiter(int limit)
+	{
+		m_limit = limit;
+	}
+
+	public static TagCombinationLimiter unlimited()
+	{
+		return new TagCombinationLimiter(Integer.MAX_VALUE);
+	}
+
+	@Override
+	public void init()
+	{
+		String className = TagCombinationLimiter.class.getName();
+
+		MetricSourceManager.addSource(className, "liveTagCombinations", Collections.emptyMap(),
+				"Number of tag combinations that have a collector", () -> (long)m_live.get());
+		MetricSourceManager.addSource(className, "rejectedTagCombinations", Collections.emptyMap(),
+				"Number of tag combinations sent to an overflow collector because of the global limit", m_rejected::get);
+	}
+
+	/**
+	 @return true if there is room for another tag combination
+	 */
+	public boolean tryAcquire()
+	{
+		int live;
+		do
+		{
+			live = m_live.get();
+			if (live >= m_limit)
+				return false;
+		} while (!m_live.compareAndSet(live, live + 1));
+
+		return true;
+	}
+
+	public void release()
+	{
+		m_live.decrementAndGet();
+	}
+
+	/**
+	 Called once for each tag combination this limiter turned away
+	 */
+	public void rejected()
+	{
+		m_rejected.incrementAndGet();
+	}
+
+	public int getLimit()
+	{
+		return m_limit;
+	}
+
+	public int getLive()
+	{
+		return m_live.get();
+	}
+
+	public long getRejected()
+	{
+		return m_rejected.get();
+	}
+}
@@ -1,30 +1,126 @@
 package org.kairosdb.metrics4j.internal;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Collections;
-import java.util.HashMap;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
- Contains tags and can be used as a key for a map
+ Contains tags and can be used as a key for a map.  Tags are kept sorted by
+ name in two arrays with a 64 bit hash computed when the key is built, so
+ equality is a hash compare followed by comparing the tag names and values
+ one by one.  Adding the same tag name twice keeps the last value.
+
+ Keys that are kept as map keys for the life of a collector should be passed
+ through intern() so every collection with the same tags shares one instance.
  */
 public class TagKey
 {
-	private final Map<String, String> m_tags;
-	private final String m_key;
+	private static final String[] NO_TAGS = new String[0];
+
+	/**
+	 TagKey with no tags, used for sources that take no arguments.
+	 */
+	public static final TagKey EMPTY = new TagKey(NO_TAGS, NO_TAGS);
+
+	//Weak so keys are dropped once the collectors using them are removed
+	private static final Map<TagKey, WeakReference<TagKey>> s_interned = new WeakHashMap<>();
 
+	private final String[] m_names;
+	private final String[] m_values;
+	private final long m_hash;
+	private Map<String, String> m_tags;
 
-	private TagKey(Map<String, String> tags, String key)
+	private TagKey(String[] names, String[] values)
 	{
-		m_tags = Collections.unmodifiableMap(tags);
-		m_key = key;
+		m_names = names;
+		m_values = values;
+		m_hash = hash(names, values);
 	}
 
+	private static long mix(long hash, int value)
+	{
+		return (hash ^ value) * 0x9E3779B97F4A7C15L;
+	}
+
+	private static long hash(String[] names, String[] values)
+	{
+		long hash = names.length;
+		for (int i = 0; i < names.length; i++)
+		{
+			hash = mix(hash, names[i].hashCode());
+			hash = mix(hash, Objects.hashCode(values[i]));
+		}
+
+		//Final avalanche from MurmurHash3 fmix64
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 Returns the shared instance of this key, the first key interned with a
+	 given set of tags becomes the shared instance.
+	 */
+	public TagKey intern()
+	{
+		if (m_names.length == 0)
+			return EMPTY;
+
+		synchronized (s_interned)
+		{
+			WeakReference<TagKey> ref = s_interned.get(this);
+			TagKey interned = ref == null ? null : ref.get();
+			if (interned == null)
+			{
+				s_interned.put(this, new WeakReference<>(this));
+				interned = this;
+			}
+
+			return interned;
+		}
+	}
+
+	/**
+	 Tags as a read only map that iterates in tag name order
+	 */
 	public Map<String, String> getTags()
 	{
-		return m_tags;
+		Map<String, String> tags = m_tags;
+		if (tags == null)
+		{
+			tags = new TagMap();
+			m_tags = tags;
+		}
+
+		return tags;
+	}
+
+	public int size()
+	{
+		return m_names.length;
+	}
+
+	public String getName(int index)
+	{
+		return m_names[index];
+	}
+
+	public String getValue(int index)
+	{
+		return m_values[index];
+	}
+
+	public long getHash()
+	{
+		return m_hash;
 	}
 
 
@@ -39,44 +135,168 @@ public class TagKey
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		TagKey tagKey = (TagKey) o;
-		return m_key.equals(tagKey.m_key);
+		return m_hash == tagKey.m_hash &&
+				Arrays.equals(m_names, tagKey.m_names) &&
+				Arrays.equals(m_values, tagKey.m_values);
 	}
 
 	@Override
 	public int hashCode()
 	{
-		return Objects.hash(m_key);
+		return (int)(m_hash ^ (m_hash >>> 32));
 	}
 
 	@Override
 	public String toString()
 	{
 		return "TagKey{" +
-				"m_key='" + m_key + '\'' +
+				"m_tags=" + getTags() +
 				'}';
 	}
 
+	/**
+	 Read only view of the tag arrays
+	 */
+	private class TagMap extends AbstractMap<String, String>
+	{
+		private final Set<Entry<String, String>> m_entrySet = new AbstractSet<Entry<String, String>>()
+		{
+			@Override
+			public Iterator<Entry<String, String>> iterator()
+			{
+				return new Iterator<Entry<String, String>>()
+				{
+					private int m_index;
+
+					@Override
+					public boolean hasNext()
+					{
+						return m_index < m_names.length;
+					}
+
+					@Override
+					public Entry<String, String> next()
+					{
+						if (m_index >= m_names.length)
+							throw new NoSuchElementException();
+
+						Entry<String, String> entry = new SimpleImmutableEntry<>(m_names[m_index], m_values[m_index]);
+						m_index++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size()
+			{
+				return m_names.length;
+			}
+		};
+
+		@Override
+		public Set<Entry<String, String>> entrySet()
+		{
+			return m_entrySet;
+		}
+
+		@Override
+		public int size()
+		{
+			return m_names.length;
+		}
+
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return key instanceof String && Arrays.binarySearch(m_names, key) >= 0;
+		}
+
+		@Override
+		public String get(Object key)
+		{
+			if (!(key instanceof String))
+				return null;
+
+			int index = Arrays.binarySearch(m_names, key);
+			return index >= 0 ? m_values[index] : null;
+		}
+	}
+
+	/**
+	 Collects tags in any order, build() sorts them by name.  Not thread safe.
+	 */
 	public static class Builder
 	{
-		private final Map<String, String> m_tags;
-		private final StringBuilder m_keyBuilder;
+		private String[] m_names = new String[4];
+		private String[] m_values = new String[4];
+		private int m_size;
 
 		private Builder()
 		{
-			m_tags = new HashMap<>();
-			m_keyBuilder = new StringBuilder();
 		}
 
 		public Builder addTag(String key, String value)
 		{
-			m_tags.put(key, value);
-			m_keyBuilder.append(key).append(value);
+			if (m_size == m_names.length)
+			{
+				m_names = Arrays.copyOf(m_names, m_size * 2);
+				m_values = Arrays.copyOf(m_values, m_size * 2);
+			}
+
+			m_names[m_size] = key;
+			m_values[m_size] = value;
+			m_size++;
+			return this;
+		}
+
+		public Builder addTags(Map<String, String> tags)
+		{
+			for (Map.Entry<String, String> tag : tags.entrySet())
+			{
+				addTag(tag.getKey(), tag.getValue());
+			}
+
 			return this;
 		}
 
 		public TagKey build()
 		{
-			return new TagKey(m_tags, m_keyBuilder.toString());
+			if (m_size == 0)
+				return EMPTY;
+
+			//Insertion sort, tag sets are small and it keeps tags with the
+			//same name in the order they were added
+			for (int i = 1; i < m_size; i++)
+			{
+				String name = m_names[i];
+				String value = m_values[i];
+				int j = i - 1;
+				while (j >= 0 && m_names[j].compareTo(name) > 0)
+				{
+					m_names[j + 1] = m_names[j];
+					m_values[j + 1] = m_values[j];
+					j--;
+				}
+
+				m_names[j + 1] = name;
+				m_values[j + 1] = value;
+			}
+
+			//Drop duplicate names keeping the last value added
+			int size = 0;
+			for (int i = 0; i < m_size; i++)
+			{
+				if (i + 1 < m_size && m_names[i].equals(m_names[i + 1]))
+					continue;
+
+				m_names[size] = m_names[i];
+				m_values[size] = m_values[i];
+				size++;
+			}
+
+			m_size = size;
+			return new TagKey(Arrays.copyOf(m_names, size), Arrays.copyOf(m_values, size));
 		}
 	}
 }
@@ -4,23 +4,28 @@ import org.kairosdb.metrics4j.Snapshot;
 import org.kairosdb.metrics4j.triggers.MetricCollection;
 import org.kairosdb.metrics4j.triggers.Trigger;
 
+import java.io.Closeable;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  build this class and then add it to the trigger
  For a specific trigger this class holds all the sinks and collectors that will
  be scraped by this trigger.
  */
-public class TriggerMetricCollection implements MetricCollection
+public class TriggerMetricCollection implements MetricCollection, Closeable
 {
 	private final Trigger m_trigger;
 	private final List<CollectorContext> m_collectors;
 	private final List<Snapshot> m_snapshots;
 	private final Set<SinkQueue> m_sinkQueues; //we use this to flush the sinks when we are done.
+	private ForkJoinPool m_gatherPool;
+	private int m_gatherParallelism = 1;
 
 	public TriggerMetricCollection(Trigger trigger)
 	{
@@ -36,6 +41,30 @@ public class TriggerMetricCollection implements MetricCollection
 		return m_trigger;
 	}
 
+	/**
+	 When greater than 1 collectors are gathered in parallel on a ForkJoinPool
+	 with this many threads.  A pool from an earlier call is shut down, a
+	 gather already running on it is allowed to finish.
+	 */
+	public void setGatherParallelism(int gatherParallelism)
+	{
+		ForkJoinPool oldPool = m_gatherPool;
+
+		m_gatherParallelism = gatherParallelism;
+		if (gatherParallelism > 1)
+			m_gatherPool = new ForkJoinPool(gatherParallelism);
+		else
+			m_gatherPool = null;
+
+		if (oldPool != null)
+			oldPool.shutdown();
+	}
+
+	public int getGatherParallelism()
+	{
+		return m_gatherParallelism;
+	}
+
 	public void addCollector(CollectorContext collector)
 	{
 		m_collectors.add(collector);
@@ -57,10 +86,20 @@ public class TriggerMetricCollection implements MetricCollection
 			snapshot.run();
 		}
 
-		for (CollectorContext collector : m_collectors)
+		ForkJoinPool gatherPool = m_gatherPool;
+		if (gatherPool != null)
+		{
+			CollectorContext[] collectors = m_collectors.toArray(new CollectorContext[0]);
+			int threshold = Math.max(1, collectors.length / (m_gatherParallelism * 4));
+			gatherPool.invoke(new GatherTask(collectors, 0, collectors.length, threshold, now));
+		}
+		else
 		{
-			//maybe just pass a timestamp into this
-			collector.reportMetrics(now);
+			for (CollectorContext collector : m_collectors)
+			{
+				//maybe just pass a timestamp into this
+				collector.reportMetrics(now);
+			}
 		}
 
 		//Flush out the queues to all sinks
@@ -69,4 +108,57 @@ public class TriggerMetricCollection implements MetricCollection
 			sinkQueue.flush();
 		}
 	}
+
+	/**
+	 Shuts down the gather pool if there is one
+	 */
+	@Override
+	public void close()
+	{
+		ForkJoinPool gatherPool = m_gatherPool;
+		if (gatherPool != null)
+			gatherPool.shutdown();
+	}
+
+	/**
+	 Splits the collectors into chunks of no more than threshold, each chunk is
+	 formatted into its own buffer that is then merged into the sink queues.
+	 */
+	private static class GatherTask extends RecursiveAction
+	{
+		private final CollectorContext[] m_collectors;
+		private final int m_start;
+		private final int m_end;
+		private final int m_threshold;
+		private final Instant m_now;
+
+		private GatherTask(CollectorContext[] collectors, int start, int end, int threshold, Instant now)
+		{
+			m_collectors = collectors;
+			m_start = start;
+			m_end = end;
+			m_threshold = threshold;
+			m_now = now;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (m_end - m_start <= m_threshold)
+			{
+				MetricBuffer buffer = new MetricBuffer();
+				for (int i = m_start; i < m_end; i++)
+				{
+					m_collectors[i].reportMetrics(m_now, buffer);
+				}
+				buffer.flush();
+			}
+			else
+			{
+				int middle = (m_start + m_end) >>> 1;
+				invokeAll(new GatherTask(m_collectors, m_start, middle, m_threshold, m_now),
+						new GatherTask(m_collectors, middle, m_end, m_threshold, m_now));
+			}
+		}
+	}
 }
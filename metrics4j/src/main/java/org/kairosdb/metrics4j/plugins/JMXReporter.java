@@ -9,6 +9,7 @@ import lombok.ToString;
 import org.kairosdb.metrics4j.MetricSourceManager;
 import org.kairosdb.metrics4j.MetricsContext;
 import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.configuration.ConfigurationException;
 import org.kairosdb.metrics4j.reporting.DoubleValue;
 import org.kairosdb.metrics4j.reporting.LongValue;
 import org.kairosdb.metrics4j.reporting.MetricReporter;
@@ -23,12 +24,23 @@ import javax.management.openmbean.SimpleType;
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @ToString
@@ -39,11 +51,19 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 	public static final String JMX_TYPE_PROP = "jmx_type";
 
 	private final Map<ObjectName, List<SourceKey>> m_sourceKeyMap = new HashMap<>();
+	private final Map<ObjectName, BeanPoller> m_beanPollers = new ConcurrentHashMap<>();
+	private final Object m_pollLock = new Object();
 
 	private MBeanServer m_server;
 
 	private final Map<String, String> m_typeMap = new HashMap<>();
 	private List<String> m_classNameAttributes = Collections.emptyList();
+	private List<ObjectName> m_includePatterns = Collections.emptyList();
+	private List<ObjectName> m_excludePatterns = Collections.emptyList();
+	private int m_pollThreads = 4;
+	private Duration m_pollTimeout = Duration.ofSeconds(5);
+	private Duration m_pollMaxAge = Duration.ofSeconds(10);
+	private ExecutorService m_pollExecutor;
 
 	public JMXReporter()
 	{
@@ -69,6 +89,80 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 		m_classNameAttributes = attributes;
 	}
 
+	/**
+	 Only MBeans matching one of these ObjectName patterns are registered,
+	 all are registered if none are set.
+	 */
+	public void setIncludePatterns(List<String> patterns)
+	{
+		m_includePatterns = parsePatterns(patterns);
+	}
+
+	/**
+	 MBeans matching any of these ObjectName patterns are not registered.
+	 */
+	public void setExcludePatterns(List<String> patterns)
+	{
+		m_excludePatterns = parsePatterns(patterns);
+	}
+
+	public void setPollThreads(int pollThreads)
+	{
+		m_pollThreads = pollThreads;
+	}
+
+	public void setPollTimeout(Duration pollTimeout)
+	{
+		m_pollTimeout = pollTimeout;
+	}
+
+	public void setPollMaxAge(Duration pollMaxAge)
+	{
+		m_pollMaxAge = pollMaxAge;
+	}
+
+	private static List<ObjectName> parsePatterns(List<String> patterns)
+	{
+		List<ObjectName> ret = new ArrayList<>();
+		for (String pattern : patterns)
+		{
+			try
+			{
+				ret.add(new ObjectName(pattern));
+			}
+			catch (MalformedObjectNameException e)
+			{
+				throw new ConfigurationException("Invalid ObjectName pattern '"+pattern+"': "+e.getMessage());
+			}
+		}
+
+		return ret;
+	}
+
+	/*package*/ boolean isIncluded(ObjectName beanName)
+	{
+		boolean included = m_includePatterns.isEmpty();
+		for (ObjectName pattern : m_includePatterns)
+		{
+			if (pattern.apply(beanName))
+			{
+				included = true;
+				break;
+			}
+		}
+
+		if (included)
+		{
+			for (ObjectName pattern : m_excludePatterns)
+			{
+				if (pattern.apply(beanName))
+					return false;
+			}
+		}
+
+		return included;
+	}
+
 	@Override
 	public void init()
 	{
@@ -99,13 +193,30 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 		{
 			logger.error("Error removing notification listener", e);
 		}
+
+		synchronized (m_pollLock)
+		{
+			if (m_pollExecutor != null)
+				m_pollExecutor.shutdownNow();
+		}
 	}
 
 	private void loadExistingMBeans()
 	{
-		for (ObjectInstance queryMBean : m_server.queryMBeans(null, null))
+		//Query by the include patterns so beans we don't want are never looked at
+		Set<ObjectName> beanNames = new LinkedHashSet<>();
+		if (m_includePatterns.isEmpty())
+			beanNames.addAll(m_server.queryNames(null, null));
+		else
 		{
-			registerMBean(queryMBean.getObjectName());
+			for (ObjectName pattern : m_includePatterns)
+				beanNames.addAll(m_server.queryNames(pattern, null));
+		}
+
+		for (ObjectName beanName : beanNames)
+		{
+			if (isIncluded(beanName))
+				registerMBean(beanName);
 		}
 	}
 
@@ -136,6 +247,7 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 			return;
 		
 		List<SourceKey> sourceKeys = new ArrayList<>();
+		BeanPoller poller = new BeanPoller(beanName);
 		try
 		{
 			for (MBeanAttributeInfo attribute : m_server.getMBeanInfo(beanName).getAttributes())
@@ -162,31 +274,31 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 					if (type.equals("int"))
 					{
 						MetricSourceManager.addSource(className, methodName,
-								tags, helpText, new IntAttributeSource(beanName, attribute.getName()));
+								tags, helpText, new IntAttributeSource(poller, attribute.getName()));
 						sourceKeys.add(new SourceKey(className, methodName, tags));
 					}
 					else if (type.equals("long"))
 					{
 						MetricSourceManager.addSource(className, methodName,
-								tags, helpText, new LongAttributeSource(beanName, attribute.getName()));
+								tags, helpText, new LongAttributeSource(poller, attribute.getName()));
 						sourceKeys.add(new SourceKey(className, methodName, tags));
 					}
 					else if (type.equals("float"))
 					{
 						MetricSourceManager.addSource(className, methodName,
-								tags, helpText, new FloatAttributeSource(beanName, attribute.getName()));
+								tags, helpText, new FloatAttributeSource(poller, attribute.getName()));
 						sourceKeys.add(new SourceKey(className, methodName, tags));
 					}
 					else if (type.equals("double"))
 					{
 						MetricSourceManager.addSource(className, methodName,
-								tags, helpText, new DoubleAttributeSource(beanName, attribute.getName()));
+								tags, helpText, new DoubleAttributeSource(poller, attribute.getName()));
 						sourceKeys.add(new SourceKey(className, methodName, tags));
 					}
 					else if (type.equals("javax.management.openmbean.CompositeData"))
 					{
 						MetricSourceManager.addSource(className, methodName,
-								tags, helpText, new CompositeAttributeSource(beanName, attribute.getName()));
+								tags, helpText, new CompositeAttributeSource(poller, attribute.getName()));
 						sourceKeys.add(new SourceKey(className, methodName, tags));
 					}
 					else
@@ -203,7 +315,10 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 		}
 
 		if (sourceKeys.size() != 0)
+		{
 			m_sourceKeyMap.put(beanName, sourceKeys);
+			m_beanPollers.put(beanName, poller);
+		}
 	}
 
 	private void unregisterMBean(ObjectName beanName)
@@ -211,6 +326,7 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 		try
 		{
 			List<SourceKey> sourceKeys = m_sourceKeyMap.remove(beanName);
+			m_beanPollers.remove(beanName);
 
 			if (sourceKeys != null)
 			{
@@ -239,7 +355,8 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 		ObjectName beanName = mbsn.getMBeanName();
 		if (notification.getType().equals(MBeanServerNotification.REGISTRATION_NOTIFICATION))
 		{
-			registerMBean(beanName);
+			if (isIncluded(beanName))
+				registerMBean(beanName);
 			what = "MBean registered";
 		}
 		else if (notification.getType().equals(MBeanServerNotification.UNREGISTRATION_NOTIFICATION))
@@ -275,15 +392,158 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 			reporter.put(key, new DoubleValue(value));
 	}
 
+	/**
+	 Polls the requested bean.  When an attribute is read a second time a new
+	 collection pass has started, so every other bean read since it was last
+	 polled is fetched up front as well.  Beans are fetched in parallel on the
+	 poll executor and the whole pass must finish within the poll timeout, a
+	 bean that does not is cancelled.  A bean that times out or fails reports
+	 nothing until the next poll.
+	 */
+	private void pollBeans(BeanPoller requested, String attribute)
+	{
+		synchronized (m_pollLock)
+		{
+			//Another thread may have polled it while we waited
+			if (!requested.needsPoll(attribute))
+				return;
+
+			List<BeanPoller> pollers = new ArrayList<>();
+			pollers.add(requested);
+			if (requested.m_read.contains(attribute))
+			{
+				for (BeanPoller poller : m_beanPollers.values())
+				{
+					if (poller != requested && poller.m_used)
+						pollers.add(poller);
+				}
+			}
+
+			if (m_pollExecutor == null)
+			{
+				m_pollExecutor = Executors.newFixedThreadPool(Math.max(1, m_pollThreads), runnable ->
+				{
+					Thread thread = new Thread(runnable, "metrics4j-jmx-poller");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+
+			List<Callable<Map<String, Object>>> tasks = new ArrayList<>();
+			for (BeanPoller poller : pollers)
+			{
+				poller.m_used = false;
+				tasks.add(poller::fetch);
+			}
+
+			//One deadline for the whole pass, tasks that miss it are cancelled
+			List<Future<Map<String, Object>>> futures;
+			try
+			{
+				futures = m_pollExecutor.invokeAll(tasks, m_pollTimeout.toMillis(), TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			for (int i = 0; i < pollers.size(); i++)
+			{
+				BeanPoller poller = pollers.get(i);
+				Future<Map<String, Object>> future = futures.get(i);
+				Map<String, Object> values = Collections.emptyMap();
+				if (future.isCancelled())
+				{
+					logger.debug("Timed out reading JMX attributes of "+poller.m_objectName);
+				}
+				else
+				{
+					try
+					{
+						values = future.get();
+					}
+					catch (ExecutionException e)
+					{
+						logger.debug("Failed to read JMX attributes of "+poller.m_objectName, e.getCause());
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+				}
+
+				poller.m_read = ConcurrentHashMap.newKeySet();
+				poller.m_values = values;
+				poller.m_fetchTime = System.nanoTime();
+				poller.m_fetched = true;
+			}
+		}
+	}
+
+	/**
+	 Holds the last values read from a bean so all of its attributes are read
+	 with one getAttributes call per poll.  Reading an attribute a second time
+	 starts a new poll, as does reading values older than the poll max age.
+	 */
+	private class BeanPoller
+	{
+		private final ObjectName m_objectName;
+		//Added to while the bean is registered, which can overlap a poll
+		private final List<String> m_attributes = new CopyOnWriteArrayList<>();
+		private volatile Map<String, Object> m_values = Collections.emptyMap();
+		private volatile Set<String> m_read = ConcurrentHashMap.newKeySet();
+		private volatile long m_fetchTime;
+		private volatile boolean m_fetched = false;
+		//Set when read so the next poll fetches this bean along with the others
+		private volatile boolean m_used = false;
+
+		private BeanPoller(ObjectName objectName)
+		{
+			m_objectName = objectName;
+		}
+
+		private boolean needsPoll(String attribute)
+		{
+			return !m_fetched || m_read.contains(attribute) ||
+					(System.nanoTime() - m_fetchTime) > m_pollMaxAge.toNanos();
+		}
+
+		private Map<String, Object> fetch() throws InstanceNotFoundException, ReflectionException
+		{
+			Map<String, Object> values = new HashMap<>();
+			AttributeList attributes = m_server.getAttributes(m_objectName, m_attributes.toArray(new String[0]));
+			for (Attribute attribute : attributes.asList())
+			{
+				values.put(attribute.getName(), attribute.getValue());
+			}
+
+			return values;
+		}
+
+		private Object getValue(String attribute)
+		{
+			if (needsPoll(attribute))
+				pollBeans(this, attribute);
+
+			m_read.add(attribute);
+			m_used = true;
+			return m_values.get(attribute);
+		}
+	}
+
 	private abstract class AttributeSource implements MetricCollector
 	{
+		protected final BeanPoller m_poller;
 		protected final ObjectName m_objectName;
 		protected final String m_attribute;
 
-		private AttributeSource(ObjectName objectName, String attribute)
+		private AttributeSource(BeanPoller poller, String attribute)
 		{
-			m_objectName = objectName;
+			m_poller = poller;
+			m_objectName = poller.m_objectName;
 			m_attribute = attribute;
+			poller.m_attributes.add(attribute);
 		}
 
 		@Override
@@ -296,9 +556,9 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 
 	private class IntAttributeSource extends AttributeSource
 	{
-		private IntAttributeSource(ObjectName objectName, String attribute)
+		private IntAttributeSource(BeanPoller poller, String attribute)
 		{
-			super(objectName, attribute);
+			super(poller, attribute);
 		}
 
 		@Override
@@ -308,7 +568,7 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 
 			try
 			{
-				value = (Integer)m_server.getAttribute(m_objectName, m_attribute);
+				value = (Integer)m_poller.getValue(m_attribute);
 			}
 			catch (Exception e)
 			{
@@ -322,9 +582,9 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 
 	private class LongAttributeSource extends AttributeSource
 	{
-		private LongAttributeSource(ObjectName objectName, String attribute)
+		private LongAttributeSource(BeanPoller poller, String attribute)
 		{
-			super(objectName, attribute);
+			super(poller, attribute);
 		}
 
 		@Override
@@ -334,7 +594,7 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 
 			try
 			{
-				value = (Long)m_server.getAttribute(m_objectName, m_attribute);
+				value = (Long)m_poller.getValue(m_attribute);
 			}
 			catch (Exception e)
 			{
@@ -348,9 +608,9 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 	private class FloatAttributeSource extends AttributeSource
 	{
 
-		private FloatAttributeSource(ObjectName objectName, String attribute)
+		private FloatAttributeSource(BeanPoller poller, String attribute)
 		{
-			super(objectName, attribute);
+			super(poller, attribute);
 		}
 
 		@Override
@@ -360,7 +620,7 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 
 			try
 			{
-				value = (Float)m_server.getAttribute(m_objectName, m_attribute);
+				value = (Float)m_poller.getValue(m_attribute);
 			}
 			catch (Exception e)
 			{
@@ -374,9 +634,9 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 	private class DoubleAttributeSource extends AttributeSource
 	{
 
-		private DoubleAttributeSource(ObjectName objectName, String attribute)
+		private DoubleAttributeSource(BeanPoller poller, String attribute)
 		{
-			super(objectName, attribute);
+			super(poller, attribute);
 		}
 
 		@Override
@@ -386,7 +646,7 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 
 			try
 			{
-				value = (Double)m_server.getAttribute(m_objectName, m_attribute);
+				value = (Double)m_poller.getValue(m_attribute);
 			}
 			catch (Exception e)
 			{
@@ -399,9 +659,9 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 
 	private class CompositeAttributeSource extends AttributeSource
 	{
-		private CompositeAttributeSource(ObjectName objectName, String attribute)
+		private CompositeAttributeSource(BeanPoller poller, String attribute)
 		{
-			super(objectName, attribute);
+			super(poller, attribute);
 		}
 
 		@Override
@@ -409,7 +669,7 @@ public class JMXReporter implements Plugin, Closeable, NotificationListener
 		{
 			try
 			{
-				CompositeData data = (CompositeData) m_server.getAttribute(m_objectName, m_attribute);
+				CompositeData data = (CompositeData) m_poller.getValue(m_attribute);
 				if (data != null)
 				{
 					CompositeType type = data.getCompositeType();
@@ -0,0 +1,13 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.kairosdb.metrics4j.internal.MetricBatch;
+
+/**
+ Sinks that implement this are sent their metrics as a MetricBatch through
+ reportBatch instead of as a list of FormattedMetrics.
+ */
+public interface BatchMetricSink extends MetricSink
+{
+	@Override
+	void reportBatch(MetricBatch batch);
+}
@@ -0,0 +1,586 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ Spills encoded batches to segment files so a sink can ride out a backend
+ outage without losing data.  Batches are appended to the newest segment and
+ replayed oldest first, a segment file is deleted once every batch in it has
+ been replayed.
+
+ Each segment keeps its read and write offsets in a small header so a
+ restarted process picks up where the last one stopped.  When the spool
+ reaches max-size the oldest segment is dropped to make room and batches
+ older than max-age are dropped instead of replayed.  Replay is limited to
+ replay-rate batches per second so a recovering backend is not flooded.
+
+ Thread safe.  Batches are copied out of the spool before they are replayed
+ so appending never waits on the replayer sending to the backend.  Each sink
+ needs its own directory.
+ */
+public class DiskSpool implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(DiskSpool.class);
+
+	private static final int MAGIC = 0x4D345350;  //M4SP
+	private static final int VERSION = 1;
+	private static final int READ_OFFSET = 8;
+	private static final int WRITE_OFFSET = 12;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_HEADER_SIZE = 12;  //length and time
+	private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+	private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+	private static final String PREFIX = "spool-";
+	private static final String SUFFIX = ".seg";
+
+	public interface Replayer
+	{
+		/**
+		 Sends the bytes between position and limit of the record.  Returning
+		 normally acknowledges the record, throwing leaves it in the spool to be
+		 retried on the next replay.
+		 */
+		void replay(ByteBuffer record) throws IOException;
+	}
+
+	/**
+	 Receives request bodies spooled with appendRequest
+	 */
+	public interface RequestReplayer
+	{
+		/**
+		 Same as Replayer.replay, data holds length bytes of the body.
+		 */
+		void replay(byte[] data, int length, boolean gzipped) throws IOException;
+	}
+
+	private static class Segment
+	{
+		private final Path m_path;
+		private final long m_sequence;
+		private final FileChannel m_channel;
+		private final int m_capacity;
+		private int m_readOffset;
+		private int m_writeOffset;
+		private int m_records;
+		private long m_lastTime;
+
+		private Segment(Path path, long sequence, FileChannel channel, int capacity)
+		{
+			m_path = path;
+			m_sequence = sequence;
+			m_channel = channel;
+			m_capacity = capacity;
+		}
+
+		private boolean hasRoom(int length)
+		{
+			return m_capacity - m_writeOffset >= RECORD_HEADER_SIZE + length;
+		}
+
+		private boolean isConsumed()
+		{
+			return m_readOffset == m_writeOffset;
+		}
+
+		private void write(ByteBuffer buffer, long position) throws IOException
+		{
+			while (buffer.hasRemaining())
+				position += m_channel.write(buffer, position);
+		}
+
+		private ByteBuffer read(int length, long position) throws IOException
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining())
+			{
+				int read = m_channel.read(buffer, position + buffer.position());
+				if (read < 0)
+					throw new EOFException("Spool segment "+m_path+" is truncated");
+			}
+			buffer.flip();
+			return buffer;
+		}
+
+		private void writeInt(int value, long position) throws IOException
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(4);
+			buffer.putInt(0, value);
+			write(buffer, position);
+		}
+
+		private void setReadOffset(int readOffset) throws IOException
+		{
+			m_readOffset = readOffset;
+			writeInt(readOffset, READ_OFFSET);
+		}
+
+		private void setWriteOffset(int writeOffset) throws IOException
+		{
+			m_writeOffset = writeOffset;
+			writeInt(writeOffset, WRITE_OFFSET);
+		}
+
+		private void close()
+		{
+			try
+			{
+				m_channel.close();
+			}
+			catch (IOException e)
+			{
+				logger.warn("Unable to close spool segment {}", m_path, e);
+			}
+		}
+	}
+
+	/**
+	 A batch copied out of the spool to be replayed
+	 */
+	private static class PendingRecord
+	{
+		private final Segment m_segment;
+		private final int m_offset;
+		private final int m_length;
+		private final ByteBuffer m_data;
+
+		private PendingRecord(Segment segment, int offset, int length, ByteBuffer data)
+		{
+			m_segment = segment;
+			m_offset = offset;
+			m_length = length;
+			m_data = data;
+		}
+	}
+
+	private final Path m_directory;
+	private final long m_maxSize;
+	private final long m_maxAge;
+	private final int m_replayRate;
+	private final int m_segmentSize;
+	private final ArrayDeque<Segment> m_segments = new ArrayDeque<>();
+	//Only one replay at a time, held while sending so it is separate from the spool monitor
+	private final Object m_replayLock = new Object();
+
+	//Updated while holding the monitor, read without it
+	private volatile long m_size;
+	private long m_diskSize;
+	private long m_nextSequence;
+	private long m_lastReplay;
+	private double m_replayCredit;
+	private long m_dropped;
+
+	/**
+	 @param directory Directory to keep segment files in, created if missing
+	 @param maxSize Maximum bytes of segment files on disk
+	 @param maxAge Batches older than this are dropped
+	 @param replayRate Maximum batches replayed per second, 0 for no limit
+	 */
+	public DiskSpool(Path directory, long maxSize, Duration maxAge, int replayRate) throws IOException
+	{
+		m_directory = directory;
+		m_maxSize = maxSize;
+		m_maxAge = maxAge.toMillis();
+		m_replayRate = replayRate;
+		m_segmentSize = (int)Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxSize / 4));
+		m_lastReplay = System.currentTimeMillis();
+
+		Files.createDirectories(directory);
+		openSegments();
+	}
+
+	private static Path segmentPath(Path directory, long sequence)
+	{
+		return directory.resolve(String.format("%s%016d%s", PREFIX, sequence, SUFFIX));
+	}
+
+	private static FileChannel open(Path path) throws IOException
+	{
+		return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 Picks up segments left by a previous process
+	 */
+	private void openSegments() throws IOException
+	{
+		List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(m_directory, PREFIX + "*" + SUFFIX))
+		{
+			for (Path path : stream)
+				paths.add(path);
+		}
+		Collections.sort(paths);
+
+		for (Path path : paths)
+		{
+			String name = path.getFileName().toString();
+			long sequence;
+			try
+			{
+				sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+			}
+			catch (NumberFormatException e)
+			{
+				continue;
+			}
+			m_nextSequence = Math.max(m_nextSequence, sequence + 1);
+
+			long size = Files.size(path);
+			Segment segment = null;
+			if (size >= HEADER_SIZE && size <= Integer.MAX_VALUE)
+				segment = loadSegment(path, sequence, (int)size);
+
+			if (segment == null || segment.isConsumed())
+			{
+				if (segment == null)
+					logger.warn("Deleting unreadable spool segment {}", path);
+				else
+					segment.close();
+				Files.deleteIfExists(path);
+				continue;
+			}
+
+			m_segments.addLast(segment);
+			m_diskSize += segment.m_capacity;
+			m_size += segment.m_records;
+		}
+
+		if (!m_segments.isEmpty())
+			logger.info("Found {} spooled batches in {}", size(), m_directory);
+	}
+
+	/**
+	 Reads the header of an existing segment and counts the unread records.
+	 A record cut short by a crash ends the segment.  Returns null if the
+	 segment is not readable.
+	 */
+	private static Segment loadSegment(Path path, long sequence, int size) throws IOException
+	{
+		Segment segment = new Segment(path, sequence, open(path), size);
+		ByteBuffer header = segment.read(HEADER_SIZE, 0);
+		int readOffset = header.getInt(READ_OFFSET);
+		int writeOffset = header.getInt(WRITE_OFFSET);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION ||
+				readOffset < HEADER_SIZE || writeOffset < readOffset || writeOffset > size)
+		{
+			segment.close();
+			return null;
+		}
+
+		int offset = readOffset;
+		while (offset + RECORD_HEADER_SIZE <= writeOffset)
+		{
+			ByteBuffer recordHeader = segment.read(RECORD_HEADER_SIZE, offset);
+			int length = recordHeader.getInt(0);
+			if (length < 0 || offset + RECORD_HEADER_SIZE + length > writeOffset)
+				break;
+
+			segment.m_lastTime = recordHeader.getLong(4);
+			segment.m_records++;
+			offset += RECORD_HEADER_SIZE + length;
+		}
+
+		segment.m_readOffset = readOffset;
+		segment.setWriteOffset(offset);
+		return segment;
+	}
+
+	private Segment newSegment(int recordLength) throws IOException
+	{
+		int size = Math.max(m_segmentSize, HEADER_SIZE + RECORD_HEADER_SIZE + recordLength);
+
+		//Make room by dropping the oldest batches
+		while (!m_segments.isEmpty() && m_diskSize + size > m_maxSize)
+			dropSegment("spool is full");
+
+		long sequence = m_nextSequence++;
+		Path path = segmentPath(m_directory, sequence);
+		Segment segment = new Segment(path, sequence, open(path), size);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(READ_OFFSET, HEADER_SIZE);
+		header.putInt(WRITE_OFFSET, HEADER_SIZE);
+		segment.write(header, 0);
+		segment.m_readOffset = HEADER_SIZE;
+		segment.m_writeOffset = HEADER_SIZE;
+
+		m_segments.addLast(segment);
+		m_diskSize += size;
+		return segment;
+	}
+
+	private void dropSegment(String reason) throws IOException
+	{
+		Segment segment = m_segments.removeFirst();
+		m_diskSize -= segment.m_capacity;
+		m_size -= segment.m_records;
+		if (segment.m_records != 0)
+		{
+			m_dropped += segment.m_records;
+			logger.warn("Dropped {} spooled batches from {}, {}", segment.m_records, m_directory, reason);
+		}
+		segment.close();
+		Files.deleteIfExists(segment.m_path);
+	}
+
+	/**
+	 Drops whole segments whose newest batch is past max-age
+	 */
+	private void expire(long now) throws IOException
+	{
+		while (!m_segments.isEmpty() && m_segments.peekFirst().m_lastTime < now - m_maxAge)
+			dropSegment("batches expired");
+	}
+
+	/**
+	 Appends the bytes between position and limit of data as one batch, the
+	 position of data is moved to the limit.
+	 */
+	public synchronized void append(ByteBuffer data) throws IOException
+	{
+		long now = System.currentTimeMillis();
+		expire(now);
+
+		int length = data.remaining();
+		Segment tail = m_segments.peekLast();
+		if (tail == null || !tail.hasRoom(length))
+			tail = newSegment(length);
+
+		int offset = tail.m_writeOffset;
+		ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		recordHeader.putInt(0, length);
+		recordHeader.putLong(4, now);
+		tail.write(recordHeader, offset);
+		tail.write(data, offset + RECORD_HEADER_SIZE);
+
+		//Written last so a crash part way through does not expose the record
+		tail.setWriteOffset(offset + RECORD_HEADER_SIZE + length);
+		tail.m_records++;
+		tail.m_lastTime = now;
+		m_size++;
+	}
+
+	/**
+	 Appends length bytes of a request body as one batch.  The first byte of
+	 the batch says if the body is gzipped, replayRequests reads it back.
+	 */
+	public void appendRequest(byte[] data, int length, boolean gzipped) throws IOException
+	{
+		ByteBuffer record = ByteBuffer.allocate(length + 1);
+		record.put(gzipped ? (byte)1 : (byte)0).put(data, 0, length);
+		record.flip();
+
+		append(record);
+	}
+
+	/**
+	 Replays request bodies appended with appendRequest, see replay.
+	 */
+	public int replayRequests(RequestReplayer replayer) throws IOException
+	{
+		return replay(record ->
+		{
+			boolean gzipped = record.get() != 0;
+			byte[] data = new byte[record.remaining()];
+			record.get(data);
+			replayer.replay(data, data.length, gzipped);
+		});
+	}
+
+	/**
+	 Replays batches oldest first until the spool is empty, the replay rate
+	 is used up or the replayer throws.  The exception from the replayer is
+	 passed on.  Each batch is copied out of the spool and sent without
+	 holding the spool monitor, then acknowledged.
+
+	 @return Number of batches replayed
+	 */
+	public int replay(Replayer replayer) throws IOException
+	{
+		synchronized (m_replayLock)
+		{
+			int allowed = replayAllowance();
+			int replayed = 0;
+			try
+			{
+				while (replayed < allowed)
+				{
+					PendingRecord record = nextRecord();
+					if (record == null)
+						break;
+
+					replayer.replay(record.m_data);
+					acknowledge(record);
+					replayed++;
+				}
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					m_replayCredit -= replayed;
+					compact();
+				}
+			}
+
+			return replayed;
+		}
+	}
+
+	private synchronized int replayAllowance() throws IOException
+	{
+		long now = System.currentTimeMillis();
+		expire(now);
+
+		int allowed = Integer.MAX_VALUE;
+		if (m_replayRate > 0)
+		{
+			//Credit builds up between calls, to at most a minute worth
+			m_replayCredit = Math.min(m_replayCredit + (now - m_lastReplay) * m_replayRate / 1000.0,
+					m_replayRate * 60.0);
+			m_replayCredit = Math.max(m_replayCredit, 1.0);
+			allowed = (int)m_replayCredit;
+		}
+		m_lastReplay = now;
+
+		return allowed;
+	}
+
+	/**
+	 Copies out the oldest batch, dropping expired ones along the way.
+	 Returns null when there is nothing left to replay.
+	 */
+	private synchronized PendingRecord nextRecord() throws IOException
+	{
+		long now = System.currentTimeMillis();
+		while (!m_segments.isEmpty())
+		{
+			Segment head = m_segments.peekFirst();
+			if (head.isConsumed())
+			{
+				if (m_segments.size() == 1)
+					return null;
+
+				dropSegment("replayed");
+				continue;
+			}
+
+			int offset = head.m_readOffset;
+			ByteBuffer recordHeader = head.read(RECORD_HEADER_SIZE, offset);
+			int length = recordHeader.getInt(0);
+			long time = recordHeader.getLong(4);
+
+			if (time >= now - m_maxAge)
+				return new PendingRecord(head, offset, length, head.read(length, offset + RECORD_HEADER_SIZE));
+
+			m_dropped++;
+			advance(head, offset, length);
+		}
+
+		return null;
+	}
+
+	/**
+	 Moves past a replayed batch unless it was dropped while it was being sent
+	 */
+	private synchronized void acknowledge(PendingRecord record) throws IOException
+	{
+		Segment head = m_segments.peekFirst();
+		if (head == record.m_segment && head.m_readOffset == record.m_offset)
+			advance(head, record.m_offset, record.m_length);
+	}
+
+	private void advance(Segment segment, int offset, int length) throws IOException
+	{
+		segment.setReadOffset(offset + RECORD_HEADER_SIZE + length);
+		segment.m_records--;
+		m_size--;
+	}
+
+	/**
+	 Deletes replayed segments and rewinds the last one once it is empty
+	 */
+	private void compact() throws IOException
+	{
+		while (m_segments.size() > 1 && m_segments.peekFirst().isConsumed())
+			dropSegment("replayed");
+
+		Segment head = m_segments.peekFirst();
+		if (head != null && head.isConsumed())
+		{
+			head.setWriteOffset(HEADER_SIZE);
+			head.setReadOffset(HEADER_SIZE);
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return m_size == 0;
+	}
+
+	/**
+	 Number of batches waiting to be replayed
+	 */
+	public long size()
+	{
+		return m_size;
+	}
+
+	/**
+	 Bytes of segment files on disk, new segments are counted at their full size
+	 */
+	public synchronized long getDiskSize()
+	{
+		return m_diskSize;
+	}
+
+	/**
+	 Number of batches dropped because the spool was full or they expired
+	 */
+	public synchronized long getDropped()
+	{
+		return m_dropped;
+	}
+
+	/**
+	 Flushes the segments to disk and closes them, the files are kept to be
+	 replayed by the next process.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		for (Segment segment : m_segments)
+		{
+			try
+			{
+				segment.m_channel.force(true);
+			}
+			catch (IOException e)
+			{
+				logger.warn("Unable to flush spool segment {}", segment.m_path, e);
+			}
+			segment.close();
+		}
+		m_segments.clear();
+		m_diskSize = 0;
+		m_size = 0;
+	}
+}
@@ -0,0 +1,15 @@
+package org.kairosdb.metrics4j.sinks;
+
+/**
+ Sinks that implement this can hold something only one instance can have at
+ a time, like a listening port or a spool directory.  When a reload changes
+ the configuration of such a sink the old instance is closed before the new
+ one is initialized.
+ */
+public interface ExclusiveSink extends MetricSink
+{
+	/**
+	 True if the sink holds an exclusive resource with its current configuration
+	 */
+	boolean isExclusive();
+}
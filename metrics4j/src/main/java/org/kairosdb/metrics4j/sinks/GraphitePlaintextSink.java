@@ -8,6 +8,7 @@ import org.kairosdb.metrics4j.internal.FormattedMetric;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -35,28 +36,33 @@ public class GraphitePlaintextSink extends TextSocketSink
 	{
 		logger.debug("Sending {} events to {}", metrics.size(),  m_host);
 
-		for (FormattedMetric metric : metrics)
+		try
 		{
-			for (FormattedMetric.Sample sample : metric.getSamples())
+			for (FormattedMetric metric : metrics)
 			{
-				StringBuilder sb = new StringBuilder();
-				sb.append(sample.getMetricName());
-
-				if (includeTags)
+				for (FormattedMetric.Sample sample : metric.getSamples())
 				{
-					for (Map.Entry<String, String> tag : metric.getTags().entrySet())
+					m_writer.append(sample.getMetricName());
+
+					if (includeTags)
 					{
-						sb.append(";").append(tag.getKey()).append("=").append(tag.getValue());
+						for (Map.Entry<String, String> tag : metric.getTags().entrySet())
+						{
+							m_writer.append(';').append(tag.getKey()).append('=').append(tag.getValue());
+						}
 					}
-				}
 
-				sb.append(" ").append(sample.getValue().getValueAsString());
+					m_writer.append(' ').append(sample.getValue());
 
-				sb.append(" ").append(sample.getTime().getEpochSecond());
+					m_writer.append(' ').append(sample.getTime().getEpochSecond());
 
-				sendText(sb.toString());
+					endLine();
+				}
 			}
-
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
 		}
 
 		flush();
@@ -0,0 +1,283 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ Encodes lines of text directly into a reusable direct ByteBuffer.  Strings are
+ encoded as UTF-8 with a fast path for ASCII, longs are formatted without
+ creating any objects.
+
+ When the buffer fills up the completed lines are handed to the Output and
+ the partial line is moved to the front of the buffer.  Not thread safe.
+ */
+public class LineWriter
+{
+	public interface Output
+	{
+		/**
+		 Write out the bytes between position and limit of the buffer.
+		 */
+		void write(ByteBuffer buffer) throws IOException;
+	}
+
+	private static final byte[] MIN_LONG = "-9223372036854775808".getBytes();
+	private static final byte[] NAN = "NaN".getBytes();
+	private static final byte[] INFINITY = "Infinity".getBytes();
+	private static final byte[] NEGATIVE_INFINITY = "-Infinity".getBytes();
+
+	private final Output m_output;
+	private final byte[] m_digits = new byte[20];
+	private ByteBuffer m_buffer;
+	private int m_lineStart;      //Start of the line currently being written
+	private int m_lastLineStart;  //Start of the last completed line
+
+	public LineWriter(int initialCapacity, Output output)
+	{
+		m_buffer = ByteBuffer.allocateDirect(initialCapacity);
+		m_output = output;
+	}
+
+	/**
+	 Makes sure there is room for count more bytes.  Completed lines are written
+	 out first, if there is still not enough room the buffer is grown.
+	 */
+	private void ensureCapacity(int count) throws IOException
+	{
+		if (m_buffer.remaining() >= count)
+			return;
+
+		if (m_lineStart != 0)
+		{
+			writeCompleted(m_lineStart);
+
+			if (m_buffer.remaining() >= count)
+				return;
+		}
+
+		int newCapacity = Math.max(m_buffer.capacity() * 2, m_buffer.position() + count);
+		ByteBuffer newBuffer = ByteBuffer.allocateDirect(newCapacity);
+		m_buffer.flip();
+		newBuffer.put(m_buffer);
+		m_buffer = newBuffer;
+	}
+
+	/**
+	 Writes bytes [0, end) to the output and moves anything after end to the
+	 front of the buffer.
+	 */
+	private void writeCompleted(int end) throws IOException
+	{
+		int position = m_buffer.position();
+
+		m_buffer.position(0).limit(end);
+		try
+		{
+			m_output.write(m_buffer);
+		}
+		finally
+		{
+			m_buffer.limit(position).position(end);
+			m_buffer.compact();
+			m_lineStart -= end;
+			m_lastLineStart = Math.max(0, m_lastLineStart - end);
+		}
+	}
+
+	public LineWriter append(char c) throws IOException
+	{
+		if (c < 0x80)
+		{
+			ensureCapacity(1);
+			m_buffer.put((byte)c);
+		}
+		else
+		{
+			ensureCapacity(3);
+			putMultiByte(c);
+		}
+
+		return this;
+	}
+
+	public LineWriter append(CharSequence str) throws IOException
+	{
+		int length = str.length();
+		ensureCapacity(length * 3);
+
+		for (int i = 0; i < length; i++)
+		{
+			char c = str.charAt(i);
+			if (c < 0x80)
+				m_buffer.put((byte)c);
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1)))
+			{
+				int codePoint = Character.toCodePoint(c, str.charAt(++i));
+				m_buffer.put((byte)(0xF0 | (codePoint >> 18)));
+				m_buffer.put((byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+				m_buffer.put((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+				m_buffer.put((byte)(0x80 | (codePoint & 0x3F)));
+			}
+			else
+				putMultiByte(c);
+		}
+
+		return this;
+	}
+
+	private void putMultiByte(char c)
+	{
+		if (c < 0x800)
+		{
+			m_buffer.put((byte)(0xC0 | (c >> 6)));
+			m_buffer.put((byte)(0x80 | (c & 0x3F)));
+		}
+		else if (Character.isSurrogate(c))
+		{
+			m_buffer.put((byte)'?'); //unpaired surrogate, same as String.getBytes
+		}
+		else
+		{
+			m_buffer.put((byte)(0xE0 | (c >> 12)));
+			m_buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+			m_buffer.put((byte)(0x80 | (c & 0x3F)));
+		}
+	}
+
+	/**
+	 Same output as String.valueOf(long)
+	 */
+	public LineWriter append(long value) throws IOException
+	{
+		if (value == Long.MIN_VALUE)
+		{
+			ensureCapacity(MIN_LONG.length);
+			m_buffer.put(MIN_LONG);
+			return this;
+		}
+
+		ensureCapacity(20);
+		if (value < 0)
+		{
+			m_buffer.put((byte)'-');
+			value = -value;
+		}
+
+		int pos = m_digits.length;
+		do
+		{
+			m_digits[--pos] = (byte)('0' + (value % 10));
+			value /= 10;
+		} while (value != 0);
+
+		m_buffer.put(m_digits, pos, m_digits.length - pos);
+		return this;
+	}
+
+	/**
+	 Same output as String.valueOf(double).  Whole numbers in the range that
+	 Double.toString does not use scientific notation are written without
+	 creating objects, anything else falls back to Double.toString.
+	 */
+	public LineWriter append(double value) throws IOException
+	{
+		if (Double.isNaN(value))
+			return append(NAN);
+
+		if (Double.isInfinite(value))
+			return append(value > 0 ? INFINITY : NEGATIVE_INFINITY);
+
+		long whole = (long)value;
+		if (whole == value && Math.abs(value) < 1.0e7)
+		{
+			if (whole == 0 && Double.doubleToRawLongBits(value) != 0)
+				append('-'); //negative zero
+
+			append(whole);
+			ensureCapacity(2);
+			m_buffer.put((byte)'.').put((byte)'0');
+			return this;
+		}
+
+		return append(Double.toString(value));
+	}
+
+	private LineWriter append(byte[] bytes) throws IOException
+	{
+		ensureCapacity(bytes.length);
+		m_buffer.put(bytes);
+		return this;
+	}
+
+	/**
+	 Writes the value without calling getValueAsString for long and double values.
+	 */
+	public LineWriter append(MetricValue value) throws IOException
+	{
+		if (value instanceof LongValue)
+			return append(((LongValue)value).getValue());
+		else if (value instanceof DoubleValue)
+			return append(((DoubleValue)value).getValue());
+		else
+			return append(value.getValueAsString());
+	}
+
+	/**
+	 Terminates the current line with a new line
+	 */
+	public void endLine() throws IOException
+	{
+		append('\n');
+		m_lastLineStart = m_lineStart;
+		m_lineStart = m_buffer.position();
+	}
+
+	/**
+	 Number of bytes in the buffer including any partial line
+	 */
+	public int size()
+	{
+		return m_buffer.position();
+	}
+
+	/**
+	 Number of bytes in the buffer before the last completed line.
+	 */
+	public int sizeBeforeLastLine()
+	{
+		return m_lastLineStart;
+	}
+
+	/**
+	 Writes out the completed lines that come before the last completed line.
+	 Used to pack lines into fixed size packets.
+	 */
+	public void writeBeforeLastLine() throws IOException
+	{
+		if (m_lastLineStart != 0)
+			writeCompleted(m_lastLineStart);
+	}
+
+	/**
+	 Writes out all completed lines
+	 */
+	public void flush() throws IOException
+	{
+		if (m_lineStart != 0)
+			writeCompleted(m_lineStart);
+	}
+
+	/**
+	 Throws away everything in the buffer, used after a write failure.
+	 */
+	public void clear()
+	{
+		m_buffer.clear();
+		m_lineStart = 0;
+		m_lastLineStart = 0;
+	}
+}
@@ -3,6 +3,7 @@ package org.kairosdb.metrics4j.sinks;
 import org.kairosdb.metrics4j.PostConstruct;
 import org.kairosdb.metrics4j.formatters.Formatter;
 import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.internal.MetricBatch;
 import org.kairosdb.metrics4j.reporting.ReportedMetric;
 
 import java.util.List;
@@ -11,4 +12,14 @@ public interface MetricSink extends PostConstruct
 {
 	void reportMetrics(List<FormattedMetric> metrics);
 	Formatter getDefaultFormatter();
+
+	/**
+	 Reports a columnar batch of metrics, by default the batch is converted
+	 to FormattedMetrics and passed to reportMetrics.  Metrics4j only calls
+	 this on sinks that implement BatchMetricSink.
+	 */
+	default void reportBatch(MetricBatch batch)
+	{
+		reportMetrics(batch.toFormattedMetrics());
+	}
 }
@@ -0,0 +1,342 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ Sends request bodies written by a LineWriter on sender threads.  Bytes passed
+ to write are copied into pooled, optionally gzipped, bodies and send hands the
+ current body to a sender thread.  No more than maxInFlight requests are sent
+ at once and send waits when that many are outstanding.  Failed requests are
+ retried with an exponential backoff.
+
+ When given a DiskSpool requests that still fail after maxRetries, or that
+ can't get a sender within the timeout, are spooled instead of dropped.  The
+ spool is replayed on a sender thread alongside new requests once the backend
+ answers again.
+
+ write, send and discard are called by the one thread encoding requests.
+ */
+public class RequestSender implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(RequestSender.class);
+	private static final int BODY_SIZE = 64 * 1024;
+	private static final long MAX_BACKOFF_MS = 60_000;
+	private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+	/**
+	 Sends one request to the backend
+	 */
+	public interface Transport
+	{
+		/**
+		 Returns normally when the backend took the data or rejected it as bad,
+		 throws when the request should be tried again.
+		 */
+		void send(byte[] data, int length, boolean gzipped) throws IOException;
+	}
+
+	private final String m_name;
+	private final Transport m_transport;
+	private final boolean m_gzip;
+	private final int m_maxRetries;
+	private final Duration m_retryBackoff;
+	private final Duration m_timeout;
+	private final DiskSpool m_spool;
+	private final Semaphore m_inFlight;
+	private final BlockingQueue<RequestBody> m_bodyPool;
+	private final ExecutorService m_sendExecutor;
+	private final AtomicBoolean m_replaying = new AtomicBoolean();
+	private final byte[] m_copyBuffer = new byte[8 * 1024];
+
+	//Request body currently being written
+	private RequestBody m_body;
+	private OutputStream m_bodyStream;
+
+	/**
+	 Body of a single request, kept in a pool so the backing array is reused
+	 from one request to the next.
+	 */
+	private static class RequestBody extends ByteArrayOutputStream
+	{
+		private RequestBody()
+		{
+			super(BODY_SIZE);
+		}
+
+		private byte[] getBuffer()
+		{
+			return buf;
+		}
+	}
+
+	/**
+	 @param name Name of the backend used in logs and sender thread names
+	 @param transport Sends each request
+	 @param gzip Compress request bodies
+	 @param maxInFlight Number of requests that can be sent at the same time
+	 @param maxRetries Number of times a failed request is retried
+	 @param retryBackoff Time to wait before the first retry, doubled for each one after
+	 @param timeout How long send waits for a sender before spooling, only used with a spool
+	 @param spool Spool for failed requests, may be null.  It is closed with this sender.
+	 */
+	public RequestSender(String name, Transport transport, boolean gzip, int maxInFlight,
+			int maxRetries, Duration retryBackoff, Duration timeout, DiskSpool spool)
+	{
+		m_name = name;
+		m_transport = transport;
+		m_gzip = gzip;
+		m_maxRetries = maxRetries;
+		m_retryBackoff = retryBackoff;
+		m_timeout = timeout;
+		m_spool = spool;
+		m_inFlight = new Semaphore(maxInFlight);
+		m_bodyPool = new ArrayBlockingQueue<>(maxInFlight + 1);
+
+		String threadName = "metrics4j-" + name.toLowerCase() + "-sender";
+		m_sendExecutor = Executors.newFixedThreadPool(maxInFlight, runnable ->
+		{
+			Thread thread = new Thread(runnable, threadName);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 Adds the buffer to the current request body, can be used as the consumer
+	 of a LineWriter.
+	 */
+	public void write(ByteBuffer buffer) throws IOException
+	{
+		if (m_body == null)
+		{
+			m_body = m_bodyPool.poll();
+			if (m_body == null)
+				m_body = new RequestBody();
+
+			m_bodyStream = m_gzip ? new GZIPOutputStream(m_body, m_copyBuffer.length) : m_body;
+		}
+
+		while (buffer.hasRemaining())
+		{
+			int length = Math.min(buffer.remaining(), m_copyBuffer.length);
+			buffer.get(m_copyBuffer, 0, length);
+			m_bodyStream.write(m_copyBuffer, 0, length);
+		}
+	}
+
+	/**
+	 Hands everything written so far to a sender thread, waits if maxInFlight
+	 requests are already being sent.  Does nothing if nothing was written.
+	 */
+	public void send() throws IOException
+	{
+		if (m_body == null)
+			return;
+
+		RequestBody body = m_body;
+		m_bodyStream.close(); //Writes the gzip trailer, closing the RequestBody does nothing
+
+		m_body = null;
+		m_bodyStream = null;
+
+		replaySpool();
+
+		try
+		{
+			if (m_spool == null)
+				m_inFlight.acquire();
+			else if (!m_inFlight.tryAcquire(m_timeout.toMillis(), TimeUnit.MILLISECONDS))
+			{
+				//Backend is falling behind, don't hold up reporting
+				spool(body);
+				releaseBody(body);
+				return;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			logger.warn("Interrupted waiting to send metrics to {}, dropping {} bytes", m_name, body.size());
+			releaseBody(body);
+			return;
+		}
+
+		try
+		{
+			m_sendExecutor.execute(() ->
+			{
+				try
+				{
+					post(body);
+				}
+				finally
+				{
+					m_inFlight.release();
+					releaseBody(body);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			m_inFlight.release();
+			releaseBody(body);
+			logger.warn("{} sink is closed, dropping metrics", m_name);
+		}
+	}
+
+	/**
+	 Throws away what was written since the last send
+	 */
+	public void discard()
+	{
+		if (m_body != null)
+		{
+			releaseBody(m_body);
+			m_body = null;
+			m_bodyStream = null;
+		}
+	}
+
+	private void releaseBody(RequestBody body)
+	{
+		body.reset();
+		m_bodyPool.offer(body);
+	}
+
+	private void spool(RequestBody body)
+	{
+		try
+		{
+			m_spool.appendRequest(body.getBuffer(), body.size(), m_gzip);
+		}
+		catch (IOException e)
+		{
+			logger.error("Unable to spool metrics for {}, dropping {} bytes", m_name, body.size(), e);
+		}
+	}
+
+	/**
+	 Starts replaying the spool on a sender thread unless it is empty or
+	 already being replayed.
+	 */
+	private void replaySpool()
+	{
+		if (m_spool == null || m_spool.isEmpty() || !m_replaying.compareAndSet(false, true))
+			return;
+
+		if (!m_inFlight.tryAcquire())
+		{
+			m_replaying.set(false);
+			return;
+		}
+
+		try
+		{
+			m_sendExecutor.execute(() ->
+			{
+				try
+				{
+					int replayed = m_spool.replayRequests(m_transport::send);
+					logger.info("Replayed {} spooled requests to {}, {} left", replayed, m_name, m_spool.size());
+				}
+				catch (IOException e)
+				{
+					logger.warn("{} is still unavailable, {} requests are spooled", m_name, m_spool.size(), e);
+				}
+				finally
+				{
+					m_inFlight.release();
+					m_replaying.set(false);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			m_inFlight.release();
+			m_replaying.set(false);
+		}
+	}
+
+	private void post(RequestBody body)
+	{
+		long backoff = m_retryBackoff.toMillis();
+
+		for (int attempt = 0; ; attempt++)
+		{
+			try
+			{
+				m_transport.send(body.getBuffer(), body.size(), m_gzip);
+				return;
+			}
+			catch (IOException e)
+			{
+				logger.warn("Unable to send metrics to {} (attempt {})", m_name, attempt + 1, e);
+			}
+
+			if (attempt >= m_maxRetries)
+			{
+				if (m_spool != null)
+				{
+					logger.error("Unable to send metrics to {} after {} attempts, spooling {} bytes", m_name, attempt + 1, body.size());
+					spool(body);
+				}
+				else
+					logger.error("Unable to send metrics to {} after {} attempts, dropping {} bytes", m_name, attempt + 1, body.size());
+				return;
+			}
+
+			try
+			{
+				Thread.sleep(backoff);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+		}
+	}
+
+	/**
+	 Waits for outstanding requests to finish, then closes the spool
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		m_sendExecutor.shutdown();
+		try
+		{
+			if (!m_sendExecutor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+			{
+				logger.warn("Timed out sending metrics to {}", m_name);
+				m_sendExecutor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		if (m_spool != null)
+			m_spool.close();
+	}
+}
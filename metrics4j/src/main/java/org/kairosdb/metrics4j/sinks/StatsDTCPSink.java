@@ -6,6 +6,7 @@ import org.kairosdb.metrics4j.internal.FormattedMetric;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.List;
 
 public class StatsDTCPSink extends TextSocketSink
@@ -19,22 +20,27 @@ public class StatsDTCPSink extends TextSocketSink
 	{
 		logger.debug("Sending {} events to {}", metrics.size(), m_host);
 		//<bucket>:<value>|<type>|<sample rate>
-		for (FormattedMetric metric : metrics)
+		try
 		{
-			for (FormattedMetric.Sample sample : metric.getSamples())
+			for (FormattedMetric metric : metrics)
 			{
 				String type = metric.getProps().getOrDefault("statsd_type", "g");
-				StringBuilder sb = new StringBuilder();
-
-				sb.append(sample.getMetricName())
-						.append(":")
-						.append(sample.getValue().getValueAsString())
-						.append("|")
-						.append(type);
-
-				sendText(sb.toString());
+				for (FormattedMetric.Sample sample : metric.getSamples())
+				{
+					m_writer.append(sample.getMetricName())
+							.append(':')
+							.append(sample.getValue())
+							.append('|')
+							.append(type);
+
+					endLine();
+				}
 			}
 		}
+		catch (IOException e)
+		{
+			writeFailed(e);
+		}
 
 		flush();
 	}
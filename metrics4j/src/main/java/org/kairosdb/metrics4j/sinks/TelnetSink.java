@@ -2,16 +2,18 @@ package org.kairosdb.metrics4j.sinks;
 
 import org.kairosdb.metrics4j.MetricsContext;
 import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.internal.MetricBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import static org.kairosdb.metrics4j.sinks.TelnetSink.Resolution.MILLISECONDS;
 import static org.kairosdb.metrics4j.sinks.TelnetSink.Resolution.SECONDS;
 
-public class TelnetSink extends TextSocketSink
+public class TelnetSink extends TextSocketSink implements BatchMetricSink
 {
 	public enum Resolution
 	{
@@ -50,29 +52,87 @@ public class TelnetSink extends TextSocketSink
 	{
 		logger.debug("Sending {} events via {}to {}", metrics.size(), m_command, m_host);
 
-		for (FormattedMetric metric : metrics)
+		try
 		{
-			for (FormattedMetric.Sample sample : metric.getSamples())
+			for (FormattedMetric metric : metrics)
 			{
-				StringBuilder sb = new StringBuilder();
-				sb.append(m_command)
-						.append(sample.getMetricName()).append(" ");
+				for (FormattedMetric.Sample sample : metric.getSamples())
+				{
+					m_writer.append(m_command)
+							.append(sample.getMetricName()).append(' ');
+
+					if (resolution.equals(MILLISECONDS))
+						m_writer.append(sample.getTime().toEpochMilli());
+					else
+						m_writer.append(sample.getTime().getEpochSecond());
+
+					m_writer.append(' ').append(sample.getValue());
+
+					for (Map.Entry<String, String> tag : metric.getTags().entrySet())
+					{
+						m_writer.append(' ').append(tag.getKey()).append('=').append(tag.getValue());
+					}
+
+					endLine();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
+		}
+
+		flush();
+	}
+
+	/**
+	 Same output as reportMetrics but values are read straight from the batch
+	 columns so no objects are created per sample.
+	 */
+	@Override
+	public void reportBatch(MetricBatch batch)
+	{
+		logger.debug("Sending {} events via {}to {}", batch.size(), m_command, m_host);
+
+		try
+		{
+			for (int row = 0; row < batch.size(); row++)
+			{
+				MetricBatch.Series series = batch.getRowSeries(row);
+				m_writer.append(m_command)
+						.append(series.getMetricName()).append(' ');
 
 				if (resolution.equals(MILLISECONDS))
-					sb.append(sample.getTime().toEpochMilli());
+					m_writer.append(batch.getTimeMillis(row));
 				else
-					sb.append(sample.getTime().getEpochSecond());
+					m_writer.append(Math.floorDiv(batch.getTime(row), 1_000_000_000L));
 
-				sb.append(" ").append(sample.getValue().getValueAsString());
+				m_writer.append(' ');
+				switch (batch.getType(row))
+				{
+					case MetricBatch.TYPE_LONG:
+						m_writer.append(batch.getLong(row));
+						break;
+					case MetricBatch.TYPE_DOUBLE:
+						m_writer.append(batch.getDouble(row));
+						break;
+					default:
+						m_writer.append(batch.getValue(row));
+				}
 
-				for (Map.Entry<String, String> tag : metric.getTags().entrySet())
+				List<Map.Entry<String, String>> tags = series.getTagEntries();
+				for (int i = 0; i < tags.size(); i++)
 				{
-					sb.append(" ").append(tag.getKey()).append("=").append(tag.getValue());
+					Map.Entry<String, String> tag = tags.get(i);
+					m_writer.append(' ').append(tag.getKey()).append('=').append(tag.getValue());
 				}
 
-				sendText(sb.toString());
+				endLine();
 			}
-
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
 		}
 
 		flush();
@@ -6,31 +6,44 @@ import org.kairosdb.metrics4j.formatters.Formatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.annotation.XmlAttribute;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 enum Protocol
 {
 	TCP, UDP
 }
 
-public abstract class TextSocketSink implements MetricSink, Closeable
+/**
+ Base class for sinks that send lines of text over TCP or UDP.  Subclasses
+ append each line to m_writer and call endLine(), lines are encoded straight
+ into a direct buffer and written with non blocking channels.  For UDP lines
+ are packed into datagrams of no more than max-udp-packet-size.
+
+ When spool-dir is set writes that fail are spilled to a DiskSpool instead of
+ being dropped.  New data keeps going to the spool while it holds anything so
+ order is kept, the spool is replayed ahead of new writes once the host can
+ be reached again.
+ */
+public abstract class TextSocketSink implements ExclusiveSink, Closeable
 {
 	private static final Logger logger = LoggerFactory.getLogger(TextSocketSink.class);
 	private static final Formatter DEFAULT_FORMATTER = new DefaultFormatter();
-	protected Socket m_tcpSocket;
-	protected PrintWriter m_writer;
-	protected DatagramSocket m_udpSocket;
-	protected ByteArrayOutputStream m_udpBuffer;
-	protected InetAddress m_udpAddress;
-	protected int m_packetSize;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	protected SocketChannel m_tcpChannel;
+	protected Selector m_selector;
+	protected DatagramChannel m_udpChannel;
+	protected InetSocketAddress m_address;
+	protected final LineWriter m_writer = new LineWriter(BUFFER_SIZE, this::writeBuffer);
 
 	protected String m_host;
 
@@ -40,6 +53,22 @@ public abstract class TextSocketSink implements MetricSink, Closeable
 
 	protected int m_maxUdpPacketSize = 1024;
 
+	protected Duration m_writeTimeout = Duration.ofSeconds(10);
+
+	protected String m_spoolDir;
+
+	protected long m_spoolMaxSize = 256L * 1024 * 1024;
+
+	protected Duration m_spoolMaxAge = Duration.ofHours(24);
+
+	protected int m_spoolReplayRate = 10;
+
+	protected Duration m_spoolRetryDelay = Duration.ofSeconds(5);
+
+	protected DiskSpool m_spool;
+
+	private long m_retryTime;  //When to try the host again after a failure while spooling
+
 	public void setHost(String host)
 	{
 		m_host = host;
@@ -60,78 +89,221 @@ public abstract class TextSocketSink implements MetricSink, Closeable
 		m_maxUdpPacketSize = maxUdpPacketSize;
 	}
 
+	public void setWriteTimeout(Duration writeTimeout)
+	{
+		m_writeTimeout = writeTimeout;
+	}
+
+	public void setSpoolDir(String spoolDir)
+	{
+		m_spoolDir = spoolDir;
+	}
+
+	public void setSpoolMaxSize(long spoolMaxSize)
+	{
+		m_spoolMaxSize = spoolMaxSize;
+	}
+
+	public void setSpoolMaxAge(Duration spoolMaxAge)
+	{
+		m_spoolMaxAge = spoolMaxAge;
+	}
+
+	public void setSpoolReplayRate(int spoolReplayRate)
+	{
+		m_spoolReplayRate = spoolReplayRate;
+	}
+
+	public void setSpoolRetryDelay(Duration spoolRetryDelay)
+	{
+		m_spoolRetryDelay = spoolRetryDelay;
+	}
+
 	protected void openSocket() throws IOException
 	{
 		logger.info("Connecting to {} on port {} {}", m_host, m_port, m_protocol);
 
+		m_address = new InetSocketAddress(m_host, m_port);
+
 		if (m_protocol == Protocol.TCP)
 		{
-			m_tcpSocket = new Socket(m_host, m_port);
-			m_writer = new PrintWriter(m_tcpSocket.getOutputStream());
+			//Connect with a timeout so a host that does not answer can't hold the trigger thread
+			m_tcpChannel = SocketChannel.open();
+			try
+			{
+				m_tcpChannel.socket().connect(m_address, (int)m_writeTimeout.toMillis());
+			}
+			catch (IOException e)
+			{
+				close();
+				throw e;
+			}
+			m_tcpChannel.configureBlocking(false);
+			m_selector = Selector.open();
+			m_tcpChannel.register(m_selector, SelectionKey.OP_WRITE);
 		}
 		else
 		{
-			m_udpSocket = new DatagramSocket();
-			m_udpAddress = InetAddress.getByName(m_host);
-			m_udpBuffer = new ByteArrayOutputStream();
-			m_writer = new PrintWriter(m_udpBuffer);
+			m_udpChannel = DatagramChannel.open();
+			m_udpChannel.configureBlocking(false);
 		}
 	}
 
-	protected void sendText(String msg)
+	/**
+	 Writes the buffer to the socket or to the spool if one is configured and
+	 the host can't take it.
+	 */
+	protected void writeBuffer(ByteBuffer buffer) throws IOException
 	{
-		try
+		if (m_spool == null)
 		{
-			logger.debug(msg);
-			if (m_protocol == Protocol.UDP && (m_packetSize + msg.length() > m_maxUdpPacketSize))
+			sendBuffer(buffer);
+			return;
+		}
+
+		if (System.currentTimeMillis() >= m_retryTime)
+		{
+			int start = buffer.position();
+			try
 			{
-				flushUdp();
+				if (!m_spool.isEmpty())
+					m_spool.replay(this::sendBuffer);
+
+				if (m_spool.isEmpty())
+				{
+					sendBuffer(buffer);
+					return;
+				}
 			}
+			catch (IOException e)
+			{
+				logger.warn("Failed sending metrics to host {}, spooling to {}", m_host, m_spoolDir, e);
+				close();
+				m_retryTime = System.currentTimeMillis() + m_spoolRetryDelay.toMillis();
 
-			m_packetSize = msg.length() + 1; //add 1 for \n
-			m_writer.println(msg);
+				//Lines partly written to the closed connection are spooled whole
+				buffer.position(start);
+			}
 		}
-		catch (Exception e)
+
+		m_spool.append(buffer);
+	}
+
+	/**
+	 Writes the buffer to the socket, for UDP the buffer is sent as a single datagram.
+	 */
+	protected void sendBuffer(ByteBuffer buffer) throws IOException
+	{
+		if (m_tcpChannel == null && m_udpChannel == null)
+			openSocket();
+
+		if (m_protocol == Protocol.UDP)
 		{
-			logger.error("Failed sending metrics to host {}", m_host);
+			if (m_udpChannel.send(buffer, m_address) == 0)
+				logger.warn("Dropped UDP packet to {}, no room in the socket buffer", m_host);
+			return;
+		}
+
+		while (buffer.hasRemaining())
+		{
+			if (m_tcpChannel.write(buffer) == 0)
+			{
+				//Socket buffer is full, wait for it to drain
+				if (m_selector.select(m_writeTimeout.toMillis()) == 0)
+					throw new IOException("Timed out writing to "+m_host);
+
+				m_selector.selectedKeys().clear();
+			}
 		}
 	}
 
-	private void flushUdp() throws IOException
+	/**
+	 Ends the line written to m_writer.  For UDP once the packet size is
+	 exceeded the lines before this one are sent as a datagram.
+	 */
+	protected void endLine()
 	{
-		m_writer.flush();
-		byte[] buf = m_udpBuffer.toByteArray();
-		m_udpBuffer.reset();
-		m_packetSize = 0;
-		DatagramPacket datagramPacket = new DatagramPacket(buf, buf.length, m_udpAddress, m_port);
-		m_udpSocket.send(datagramPacket);
+		try
+		{
+			m_writer.endLine();
+
+			if (m_protocol == Protocol.UDP && m_writer.size() > m_maxUdpPacketSize)
+			{
+				m_writer.writeBeforeLastLine();
+
+				//A single line bigger than a packet is sent on its own
+				if (m_writer.size() > m_maxUdpPacketSize)
+					m_writer.flush();
+			}
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
+		}
+	}
+
+	protected void sendText(String msg)
+	{
+		try
+		{
+			logger.debug(msg);
+			m_writer.append(msg);
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
+			return;
+		}
+
+		endLine();
 	}
 
 	protected void flush()
 	{
 		try
 		{
-			if (m_protocol == Protocol.UDP)
-				flushUdp();
-			else
-				m_writer.flush();
+			m_writer.flush();
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
-			logger.error("Failed sending metrics to host {}", m_host);
+			writeFailed(e);
 		}
 	}
 
+	/**
+	 Drops any buffered data and closes the connection, it will be reopened
+	 on the next write.
+	 */
+	protected void writeFailed(IOException e)
+	{
+		logger.error("Failed sending metrics to host {}", m_host, e);
+		m_writer.clear();
+		close();
+	}
+
 	@Override
 	public void init(MetricsContext context)
 	{
+		if (m_spoolDir != null)
+		{
+			try
+			{
+				m_spool = new DiskSpool(Paths.get(m_spoolDir), m_spoolMaxSize, m_spoolMaxAge, m_spoolReplayRate);
+			}
+			catch (IOException e)
+			{
+				logger.error("Unable to open spool directory {}", m_spoolDir, e);
+			}
+		}
+
 		try
 		{
 			openSocket();
 		}
-		catch (IOException e)
+		catch (IOException | IllegalArgumentException e)
 		{
-			e.printStackTrace();
+			logger.error("Unable to connect to {} on port {}", m_host, m_port, e);
+			close();
 		}
 	}
 
@@ -139,16 +311,31 @@ public abstract class TextSocketSink implements MetricSink, Closeable
 	{
 		try
 		{
-			if (m_tcpSocket != null)
-				m_tcpSocket.close();
+			if (m_selector != null)
+				m_selector.close();
+
+			if (m_tcpChannel != null)
+				m_tcpChannel.close();
 
-			if (m_udpSocket != null)
-				m_udpSocket.close();
+			if (m_udpChannel != null)
+				m_udpChannel.close();
 		}
 		catch (IOException e)
 		{
-			e.printStackTrace();
+			logger.error("Error closing connection to {}", m_host, e);
 		}
+		finally
+		{
+			m_selector = null;
+			m_tcpChannel = null;
+			m_udpChannel = null;
+		}
+	}
+
+	@Override
+	public boolean isExclusive()
+	{
+		return m_spoolDir != null;
 	}
 
 	@Override
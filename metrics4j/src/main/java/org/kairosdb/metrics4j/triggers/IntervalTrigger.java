@@ -6,18 +6,22 @@ import org.kairosdb.metrics4j.MetricsContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 
-public class IntervalTrigger implements Trigger, Runnable
+public class IntervalTrigger implements Trigger, Runnable, Closeable
 {
 	private static final Logger log = LoggerFactory.getLogger(IntervalTrigger.class);
+	private static final long CLOSE_TIMEOUT_MS = 10_000;
 
 	private MetricCollection m_collection;
+	private ScheduledExecutorService m_executor;
 
 	@Setter
 	private Duration interval;
@@ -32,7 +36,7 @@ public class IntervalTrigger implements Trigger, Runnable
 	@Override
 	public void init(MetricsContext context)
 	{
-		Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		m_executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
 		{
 			@Override
 			public Thread newThread(Runnable r)
@@ -42,7 +46,30 @@ public class IntervalTrigger implements Trigger, Runnable
 				t.setDaemon(true);
 				return t;
 			}
-		}).scheduleAtFixedRate(this, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+		});
+		m_executor.scheduleAtFixedRate(this, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 Stops the trigger and waits for a report that is running to finish, so
+	 it does not overlap with a trigger that replaces this one on reload.
+	 */
+	@Override
+	public void close()
+	{
+		if (m_executor == null)
+			return;
+
+		m_executor.shutdown();
+		try
+		{
+			if (!m_executor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+				log.warn("Timed out waiting for metrics report to finish");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
 	}
 
 	@Override
@@ -0,0 +1,64 @@
+package org.kairosdb.metrics4j.util;
+
+import java.io.Closeable;
+
+/**
+ Clock that returns a time updated by a background thread every resolution
+ milliseconds.  Calls to now() are a single volatile read, at the cost of the
+ returned time being up to one resolution behind the system clock.
+ */
+public class CachedClock extends Clock implements Closeable
+{
+	private final long m_resolution;
+	private final Thread m_ticker;
+	private volatile long m_now;
+	private volatile boolean m_running = true;
+
+	public CachedClock(long resolution)
+	{
+		if (resolution <= 0)
+			throw new IllegalArgumentException("Clock resolution must be greater than zero");
+
+		m_resolution = resolution;
+		m_now = System.currentTimeMillis();
+
+		m_ticker = new Thread(this::tick, "metrics4j-clock");
+		m_ticker.setDaemon(true);
+		m_ticker.start();
+	}
+
+	private void tick()
+	{
+		while (m_running)
+		{
+			try
+			{
+				Thread.sleep(m_resolution);
+			}
+			catch (InterruptedException e)
+			{
+				//close() interrupts to stop the ticker
+			}
+
+			m_now = System.currentTimeMillis();
+		}
+	}
+
+	public long getResolution()
+	{
+		return m_resolution;
+	}
+
+	@Override
+	public long now()
+	{
+		return m_now;
+	}
+
+	@Override
+	public void close()
+	{
+		m_running = false;
+		m_ticker.interrupt();
+	}
+}
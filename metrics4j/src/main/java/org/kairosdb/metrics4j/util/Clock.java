@@ -1,5 +1,9 @@
 package org.kairosdb.metrics4j.util;
 
+/**
+ Source of the current time in epoch milliseconds.  This implementation reads
+ the system clock on every call, see CachedClock for a cheaper alternative.
+ */
 public class Clock
 {
 	public long now()
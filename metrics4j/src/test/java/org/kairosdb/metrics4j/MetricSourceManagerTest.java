@@ -12,6 +12,8 @@ import org.kairosdb.metrics4j.collectors.LongCollector;
 import org.kairosdb.metrics4j.collectors.impl.LongCounter;
 import org.kairosdb.metrics4j.collectors.impl.StringReporter;
 import org.kairosdb.metrics4j.configuration.ImplementationException;
+import org.kairosdb.metrics4j.configuration.MetricConfig;
+import org.kairosdb.metrics4j.configuration.TestSource;
 import org.kairosdb.metrics4j.configuration.TestTrigger;
 import org.kairosdb.metrics4j.internal.MetricsContextImpl;
 
@@ -227,4 +229,22 @@ class MetricSourceManagerTest
 		}
 	}
 
-}
\ No newline at end of file
+
+	@Test
+	public void test_rejectedTagCombinationsPerSource()
+	{
+		MetricSourceManager.setMetricConfig(MetricConfig.parseConfig("tag_limit.conf", "Not_there"));
+		TestSource source = MetricSourceManager.getSource(TestSource.class);
+
+		source.countSomethingWithTag("a").put(1);
+		source.countSomethingWithTag("b").put(1);
+		source.countSomethingWithTag("c").put(1);
+		source.countSomethingWithTag("b").put(1);
+
+		MetricsContextImpl context = (MetricsContextImpl) MetricSourceManager.getMetricConfig().getContext();
+		((TestTrigger) context.getTrigger("trigger")).triggerCollection(Instant.now());
+
+		TestSink sink = (TestSink) context.getSink("test");
+		assertThat(sink.getResults("rejectedTagCombinations").get(0).getValue().getValueAsString()).isEqualTo("2");
+	}
+}
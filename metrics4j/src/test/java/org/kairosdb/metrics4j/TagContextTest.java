@@ -0,0 +1,88 @@
+package org.kairosdb.metrics4j;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.internal.TagKey;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TagContextTest
+{
+	@AfterEach
+	public void cleanup()
+	{
+		MetricThreadHelper.clearTags();
+	}
+
+	@Test
+	public void test_withDoesNotChangeOriginal()
+	{
+		TagContext parent = TagContext.EMPTY.with("host", "a");
+		TagContext child = parent.with("user", "bob");
+
+		assertThat(parent.getTags()).containsOnlyKeys("host");
+		assertThat(child.getTags()).containsEntry("host", "a").containsEntry("user", "bob");
+		assertThat(child.without("user").getTags()).isEqualTo(parent.getTags());
+		assertThat(child.without("host").without("user")).isSameAs(TagContext.EMPTY);
+	}
+
+	@Test
+	public void test_tagKeyWithOverrides()
+	{
+		TagContext context = TagContext.EMPTY.with("host", "a").with("user", "bob");
+		Map<String, String> overrides = Collections.singletonMap("user", "alice");
+
+		TagKey tags = context.getTagKey(overrides);
+		assertThat(tags.getTags()).containsEntry("host", "a").containsEntry("user", "alice");
+		assertThat(context.getTagKey(overrides)).isSameAs(tags);
+
+		//Overrides that do not name a context tag leave the tags as they are
+		assertThat(context.getTagKey(Collections.singletonMap("client", "x"))).isSameAs(context.getTagKey());
+		assertThat(context.getTagKey(Collections.emptyMap())).isSameAs(context.getTagKey());
+	}
+
+	@Test
+	public void test_scopeRestoresPrevious()
+	{
+		MetricThreadHelper.addTag("host", "a");
+
+		try (TagContext.Scope scope = TagContext.current().with("user", "bob").makeCurrent())
+		{
+			assertThat(MetricThreadHelper.getTag("user")).isEqualTo("bob");
+			assertThat(MetricThreadHelper.getTag("host")).isEqualTo("a");
+		}
+
+		assertThat(MetricThreadHelper.getTag("user")).isNull();
+		assertThat(MetricThreadHelper.getTag("host")).isEqualTo("a");
+	}
+
+	@Test
+	public void test_propagateToExecutor() throws Exception
+	{
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try
+		{
+			String tag;
+			try (TagContext.Scope scope = TagContext.EMPTY.with("user", "bob").makeCurrent())
+			{
+				tag = CompletableFuture.supplyAsync(() -> MetricThreadHelper.getTag("user"),
+						TagContext.propagating(executorService)).get();
+			}
+
+			assertThat(tag).isEqualTo("bob");
+
+			//Executor thread is left without tags
+			assertThat(executorService.submit(MetricThreadHelper::hasTags).get()).isFalse();
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricThreadHelper;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.collectors.helpers.SampleRing;
+import org.kairosdb.metrics4j.collectors.impl.BagCollector;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+import org.kairosdb.metrics4j.reporting.StringValue;
+import org.kairosdb.metrics4j.util.Clock;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class BagCollectorTest
+{
+	@Test
+	public void test_usesContextClock()
+	{
+		Clock clock = mock(Clock.class);
+		when(clock.now()).thenReturn(1000L);
+		MetricsContext context = mock(MetricsContext.class);
+		when(context.getClock()).thenReturn(clock);
+
+		BagCollector prototype = new BagCollector();
+		prototype.init(context);
+		BagCollector bagCollector = (BagCollector) prototype.clone();
+
+		bagCollector.put(42L);
+		bagCollector.put("hello");
+
+		MetricReporter reporter = mock(MetricReporter.class);
+		bagCollector.reportMetric(reporter);
+
+		verify(reporter).put("value", new LongValue(42), Instant.ofEpochMilli(1000L));
+		verify(reporter).put("value", new StringValue("hello"), Instant.ofEpochMilli(1000L));
+	}
+
+	@Test
+	public void test_threadReportTime()
+	{
+		Clock clock = mock(Clock.class);
+		when(clock.now()).thenReturn(1000L);
+		BagCollector bagCollector = new BagCollector(clock);
+
+		MetricThreadHelper.setReportTime(Instant.ofEpochMilli(5000L));
+		try
+		{
+			bagCollector.put(1L);
+			bagCollector.put(Instant.ofEpochMilli(2000L), "hello");
+		}
+		finally
+		{
+			MetricThreadHelper.clearReportTime();
+		}
+
+		MetricReporter reporter = mock(MetricReporter.class);
+		bagCollector.reportMetric(reporter);
+
+		verify(reporter).put("value", new LongValue(1), Instant.ofEpochMilli(5000L));
+		verify(reporter).put("value", new StringValue("hello"), Instant.ofEpochMilli(5000L));
+	}
+
+	@Test
+	public void test_defaultKeepsEveryValue()
+	{
+		Clock clock = mock(Clock.class);
+		when(clock.now()).thenReturn(1000L);
+		BagCollector bagCollector = new BagCollector(clock);
+
+		int count = BagCollector.DEFAULT_CAPACITY * 2;
+		for (int i = 0; i < count; i++)
+			bagCollector.put((long) i);
+
+		MetricReporter reporter = mock(MetricReporter.class);
+		bagCollector.reportMetric(reporter);
+
+		verify(reporter, times(count)).put(eq("value"), any(LongValue.class), eq(Instant.ofEpochMilli(1000L)));
+		verify(reporter).put("value", new LongValue(count - 1), Instant.ofEpochMilli(1000L));
+		verifyNoMoreInteractions(reporter);
+		assertThat(bagCollector.getDroppedSamples()).isEqualTo(0);
+	}
+
+	@Test
+	public void test_reportsDropped()
+	{
+		Clock clock = mock(Clock.class);
+		when(clock.now()).thenReturn(1000L);
+		BagCollector bagCollector = new BagCollector(clock);
+		bagCollector.setCapacity(2);
+		bagCollector.setOverflowPolicy(SampleRing.OverflowPolicy.DROP_NEWEST);
+
+		bagCollector.put(1L);
+		bagCollector.put(2.5);
+		bagCollector.put(3L);
+
+		MetricReporter reporter = mock(MetricReporter.class);
+		bagCollector.reportMetric(reporter);
+
+		verify(reporter).put("value", new LongValue(1), Instant.ofEpochMilli(1000L));
+		verify(reporter).put("value", new DoubleValue(2.5), Instant.ofEpochMilli(1000L));
+		verify(reporter).put("dropped", new LongValue(1));
+		verifyNoMoreInteractions(reporter);
+	}
+
+	@Test
+	public void test_droppedAfterRingReplaced()
+	{
+		Clock clock = mock(Clock.class);
+		when(clock.now()).thenReturn(1000L);
+		BagCollector bagCollector = new BagCollector(clock);
+		bagCollector.setCapacity(1);
+		bagCollector.setOverflowPolicy(SampleRing.OverflowPolicy.DROP_NEWEST);
+
+		bagCollector.put(1L);
+		bagCollector.put(2L);
+		bagCollector.put(3L);
+		bagCollector.reportMetric(mock(MetricReporter.class));
+
+		//New ring starts its dropped count over
+		bagCollector.setCapacity(2);
+		bagCollector.put(4L);
+		bagCollector.put(5L);
+		bagCollector.put(6L);
+
+		MetricReporter reporter = mock(MetricReporter.class);
+		bagCollector.reportMetric(reporter);
+
+		verify(reporter).put("value", new LongValue(4), Instant.ofEpochMilli(1000L));
+		verify(reporter).put("value", new LongValue(5), Instant.ofEpochMilli(1000L));
+		verify(reporter).put("dropped", new LongValue(1));
+		verifyNoMoreInteractions(reporter);
+	}
+}
@@ -0,0 +1,43 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ Keeps the last value reported for each field
+ */
+public class CapturingReporter implements MetricReporter
+{
+	private final Map<String, MetricValue> m_values = new LinkedHashMap<>();
+
+	@Override
+	public void put(String field, MetricValue value)
+	{
+		m_values.put(field, value);
+	}
+
+	@Override
+	public void put(String field, MetricValue value, Instant time)
+	{
+		put(field, value);
+	}
+
+	public Map<String, MetricValue> getValues()
+	{
+		return m_values;
+	}
+
+	public MetricValue get(String field)
+	{
+		return m_values.get(field);
+	}
+
+	public void clear()
+	{
+		m_values.clear();
+	}
+}
@@ -0,0 +1,69 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.impl.DurationHistogram;
+import org.kairosdb.metrics4j.reporting.LongValue;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DurationHistogramTest
+{
+	private long longValue(CapturingReporter reporter, String field)
+	{
+		return ((LongValue)reporter.get(field)).getValue();
+	}
+
+	@Test
+	public void testClone()
+	{
+		DurationHistogram histogram = new DurationHistogram(ChronoUnit.MICROS, true);
+		assertThat(histogram).isEqualTo(histogram.clone());
+	}
+
+	@Test
+	public void testReportUnit()
+	{
+		CapturingReporter reporter = new CapturingReporter();
+		DurationHistogram histogram = new DurationHistogram(ChronoUnit.MILLIS, false);
+
+		for (int i = 1; i <= 100; i++)
+			histogram.put(Duration.ofMillis(i));
+
+		histogram.reportMetric(reporter);
+
+		assertThat(reporter.getValues().keySet()).containsExactly("min", "max", "total", "count", "avg", "p50", "p90", "p99", "p999");
+		assertThat(longValue(reporter, "min")).isEqualTo(1);
+		assertThat(longValue(reporter, "max")).isEqualTo(100);
+		assertThat(longValue(reporter, "total")).isEqualTo(5050);
+		assertThat(longValue(reporter, "count")).isEqualTo(100);
+		assertThat(longValue(reporter, "p50")).isCloseTo(50, within(1L));
+		assertThat(longValue(reporter, "p99")).isCloseTo(99, within(1L));
+	}
+
+	@Test
+	public void testContextProperties()
+	{
+		DurationHistogram histogram = new DurationHistogram();
+		Map<String, String> props = new HashMap<>();
+		props.put("report-unit", "SECONDS");
+		props.put("highest-trackable-value", "10s");
+		props.put("percentiles", "95");
+		histogram.setContextProperties(props);
+
+		histogram.put(Duration.ofSeconds(5));
+		histogram.put(Duration.ofMinutes(1));
+
+		CapturingReporter reporter = new CapturingReporter();
+		histogram.reportMetric(reporter);
+
+		assertThat(longValue(reporter, "min")).isEqualTo(5);
+		assertThat(longValue(reporter, "max")).isEqualTo(60);
+		assertThat(longValue(reporter, "p95")).isEqualTo(60);
+	}
+}
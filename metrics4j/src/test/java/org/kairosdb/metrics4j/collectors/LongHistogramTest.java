@@ -0,0 +1,164 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.impl.LongHistogram;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class LongHistogramTest
+{
+	private long longValue(CapturingReporter reporter, String field)
+	{
+		return ((LongValue)reporter.get(field)).getValue();
+	}
+
+	@Test
+	public void testClone()
+	{
+		LongHistogram histogram = new LongHistogram(true);
+		histogram.setSignificantDigits(3);
+		histogram.setPercentiles(Arrays.asList(75.0, 99.99));
+		assertThat(histogram).isEqualTo(histogram.clone());
+	}
+
+	@Test
+	public void testPercentiles()
+	{
+		CapturingReporter reporter = new CapturingReporter();
+		LongHistogram histogram = new LongHistogram();
+
+		for (int i = 1; i <= 1000; i++)
+			histogram.put(i);
+
+		histogram.reportMetric(reporter);
+
+		assertThat(reporter.getValues().keySet()).containsExactly("min", "max", "sum", "count", "avg", "p50", "p90", "p99", "p999");
+		assertThat(longValue(reporter, "min")).isEqualTo(1);
+		assertThat(longValue(reporter, "max")).isEqualTo(1000);
+		assertThat(longValue(reporter, "sum")).isEqualTo(500500);
+		assertThat(longValue(reporter, "count")).isEqualTo(1000);
+		assertThat(reporter.get("avg")).isEqualTo(new DoubleValue(500.5));
+
+		//Two significant digits is within 1%
+		assertThat(longValue(reporter, "p50")).isCloseTo(500, within(5L));
+		assertThat(longValue(reporter, "p90")).isCloseTo(900, within(9L));
+		assertThat(longValue(reporter, "p99")).isCloseTo(990, within(10L));
+		assertThat(longValue(reporter, "p999")).isCloseTo(999, within(10L));
+	}
+
+	@Test
+	public void testPrecision()
+	{
+		LongHistogram histogram = new LongHistogram();
+		histogram.setSignificantDigits(3);
+		histogram.setPercentiles(Arrays.asList(50.0));
+
+		Random random = new Random(42);
+		long[] values = new long[10_001];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = (long)(Math.exp(random.nextDouble() * 25));
+			histogram.put(values[i]);
+		}
+
+		Arrays.sort(values);
+		long median = values[values.length / 2];
+
+		CapturingReporter reporter = new CapturingReporter();
+		histogram.reportMetric(reporter);
+
+		assertThat((double)longValue(reporter, "p50")).isCloseTo(median, within(median * 0.001 + 1));
+	}
+
+	@Test
+	public void testContextProperties()
+	{
+		LongHistogram histogram = new LongHistogram();
+		Map<String, String> props = new HashMap<>();
+		props.put("percentiles", "25, 75");
+		props.put("significant-digits", "3");
+		histogram.setContextProperties(props);
+
+		histogram.put(10);
+
+		CapturingReporter reporter = new CapturingReporter();
+		histogram.reportMetric(reporter);
+
+		assertThat(reporter.getValues()).containsKeys("p25", "p75");
+		assertThat(reporter.getValues()).doesNotContainKey("p50");
+	}
+
+	@Test
+	public void testPercentileFieldsDoNotCollide()
+	{
+		LongHistogram histogram = new LongHistogram();
+		histogram.setPercentiles(Arrays.asList(9.9, 99.0, 0.5, 5.0));
+
+		for (int i = 1; i <= 1000; i++)
+			histogram.put(i);
+
+		CapturingReporter reporter = new CapturingReporter();
+		histogram.reportMetric(reporter);
+
+		assertThat(reporter.getValues()).containsKeys("p9_9", "p99", "p0_5", "p5");
+		assertThat(longValue(reporter, "p9_9")).isCloseTo(99, within(1L));
+		assertThat(longValue(reporter, "p99")).isCloseTo(990, within(10L));
+	}
+
+	@Test
+	public void testInvalidPercentile()
+	{
+		LongHistogram histogram = new LongHistogram();
+		assertThrows(IllegalArgumentException.class, () -> histogram.setPercentiles(Arrays.asList(101.0)));
+	}
+
+	@Test
+	public void testAboveHighestTrackable()
+	{
+		LongHistogram histogram = new LongHistogram();
+		histogram.setHighestTrackableValue(1000);
+
+		histogram.put(5);
+		histogram.put(1_000_000);
+
+		CapturingReporter reporter = new CapturingReporter();
+		histogram.reportMetric(reporter);
+
+		assertThat(longValue(reporter, "max")).isEqualTo(1_000_000);
+		assertThat(longValue(reporter, "p99")).isEqualTo(1_000_000);
+		assertThat(longValue(reporter, "count")).isEqualTo(2);
+	}
+
+	@Test
+	public void testResetAndReportZero()
+	{
+		MetricReporter mockReporter = mock(MetricReporter.class);
+		LongHistogram histogram = new LongHistogram(false);
+
+		histogram.put(1);
+		histogram.reportMetric(new CapturingReporter());
+
+		//Nothing reported after reset
+		histogram.reportMetric(mockReporter);
+		verifyNoMoreInteractions(mockReporter);
+
+		LongHistogram zeroHistogram = new LongHistogram(true);
+		CapturingReporter reporter = new CapturingReporter();
+		zeroHistogram.reportMetric(reporter);
+
+		assertThat(longValue(reporter, "count")).isEqualTo(0);
+		assertThat(longValue(reporter, "p99")).isEqualTo(0);
+	}
+}
@@ -0,0 +1,249 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.helpers.DDSketch;
+import org.kairosdb.metrics4j.collectors.impl.QuantileSketch;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QuantileSketchTest
+{
+	private double doubleValue(CapturingReporter reporter, String field)
+	{
+		return ((DoubleValue)reporter.get(field)).getValue();
+	}
+
+	private long longValue(CapturingReporter reporter, String field)
+	{
+		return ((LongValue)reporter.get(field)).getValue();
+	}
+
+	@Test
+	public void testClone()
+	{
+		QuantileSketch sketch = new QuantileSketch(0.02, true);
+		sketch.setMaxBins(100);
+		assertThat(sketch).isEqualTo(sketch.clone());
+	}
+
+	@Test
+	public void testWideRangeRelativeAccuracy()
+	{
+		QuantileSketch sketch = new QuantileSketch(0.01, false);
+		sketch.setPercentiles(Arrays.asList(10.0, 50.0, 99.0));
+
+		//Values from 1 to ~1e13
+		Random random = new Random(42);
+		double[] values = new double[10_001];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = Math.exp(random.nextDouble() * 30);
+			sketch.put(values[i]);
+		}
+		Arrays.sort(values);
+
+		CapturingReporter reporter = new CapturingReporter();
+		sketch.reportMetric(reporter);
+
+		assertThat(longValue(reporter, "count")).isEqualTo(10_001);
+		assertThat(doubleValue(reporter, "min")).isEqualTo(values[0]);
+		assertThat(doubleValue(reporter, "max")).isEqualTo(values[values.length - 1]);
+
+		double p10 = values[1000];
+		double p50 = values[5000];
+		double p99 = values[9900];
+		assertThat(doubleValue(reporter, "p10")).isCloseTo(p10, within(p10 * 0.01));
+		assertThat(doubleValue(reporter, "p50")).isCloseTo(p50, within(p50 * 0.01));
+		assertThat(doubleValue(reporter, "p99")).isCloseTo(p99, within(p99 * 0.01));
+	}
+
+	@Test
+	public void testDefaultMaxBinsRelativeAccuracy()
+	{
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.setPercentiles(Arrays.asList(1.0, 10.0, 50.0, 99.0, 99.9));
+
+		//Values from 1 to ~150, within the range the default bins cover
+		Random random = new Random(42);
+		double[] values = new double[10_001];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = Math.exp(random.nextDouble() * 5);
+			sketch.put(values[i]);
+		}
+		Arrays.sort(values);
+
+		CapturingReporter reporter = new CapturingReporter();
+		sketch.reportMetric(reporter);
+
+		int[] ranks = {100, 1000, 5000, 9900, 9990};
+		String[] fields = {"p1", "p10", "p50", "p99", "p999"};
+		for (int i = 0; i < ranks.length; i++)
+		{
+			double expected = values[ranks[i]];
+			assertThat(doubleValue(reporter, fields[i])).as(fields[i])
+					.isCloseTo(expected, within(expected * QuantileSketch.DEFAULT_RELATIVE_ACCURACY));
+		}
+	}
+
+	@Test
+	public void testSparseBins()
+	{
+		DDSketch sketch = new DDSketch(QuantileSketch.DEFAULT_RELATIVE_ACCURACY, QuantileSketch.DEFAULT_MAX_BINS);
+
+		//Small and very large payloads, only the bins near each are allocated
+		for (int i = 0; i < 1000; i++)
+		{
+			sketch.add(100 + i % 10);
+			sketch.add(1e12 + i);
+		}
+
+		assertThat(sketch.getAllocatedBins()).isLessThanOrEqualTo(256);
+		assertThat(sketch.getValueAtQuantile(0.25)).isCloseTo(104, within(104 * 0.01));
+		assertThat(sketch.getValueAtQuantile(0.75)).isCloseTo(1e12, within(1e12 * 0.01));
+	}
+
+	@Test
+	public void testCollapsedLowBins()
+	{
+		DDSketch sketch = new DDSketch(0.01, 100);
+
+		//Needs about 1500 bins, the lowest are collapsed
+		double[] values = new double[10_001];
+		Random random = new Random(42);
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = Math.exp(random.nextDouble() * 30);
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+
+		DDSketch merged = new DDSketch(0.01, 100);
+		merged.merge(sketch);
+
+		assertThat(sketch.getCount()).isEqualTo(10_001);
+		assertThat(sketch.getAllocatedBins()).isLessThanOrEqualTo(192);
+		assertThat(sketch.getValueAtQuantile(0.99)).isCloseTo(values[9900], within(values[9900] * 0.01));
+		assertThat(merged.getValueAtQuantile(0.99)).isCloseTo(values[9900], within(values[9900] * 0.01));
+	}
+
+	@Test
+	public void testNegativeAndZeroValues()
+	{
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.setPercentiles(Arrays.asList(10.0, 50.0, 90.0));
+
+		for (int i = -50; i <= 50; i++)
+			sketch.put((long)i);
+
+		CapturingReporter reporter = new CapturingReporter();
+		sketch.reportMetric(reporter);
+
+		assertThat(doubleValue(reporter, "min")).isEqualTo(-50.0);
+		assertThat(doubleValue(reporter, "p10")).isCloseTo(-40.0, within(0.5));
+		assertThat(doubleValue(reporter, "p50")).isEqualTo(0.0);
+		assertThat(doubleValue(reporter, "p90")).isCloseTo(40.0, within(0.5));
+	}
+
+	@Test
+	public void testMaxBinsCollapsesLowValues()
+	{
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.setMaxBins(64);
+		sketch.setPercentiles(Arrays.asList(99.0));
+
+		for (int i = 0; i < 1000; i++)
+			sketch.put(Math.pow(10, i % 10));
+
+		CapturingReporter reporter = new CapturingReporter();
+		sketch.reportMetric(reporter);
+
+		//High quantiles keep their accuracy
+		assertThat(doubleValue(reporter, "p99")).isCloseTo(1e9, within(1e9 * 0.01));
+	}
+
+	@Test
+	public void testMerge()
+	{
+		QuantileSketch low = new QuantileSketch();
+		QuantileSketch high = new QuantileSketch();
+		QuantileSketch rollup = new QuantileSketch();
+		rollup.setPercentiles(Arrays.asList(25.0, 75.0));
+
+		for (int i = 1; i <= 100; i++)
+		{
+			low.put((long)i);
+			high.put((long)i + 100);
+		}
+
+		rollup.merge(low);
+		rollup.merge(high);
+
+		CapturingReporter reporter = new CapturingReporter();
+		rollup.reportMetric(reporter);
+
+		assertThat(longValue(reporter, "count")).isEqualTo(200);
+		assertThat(doubleValue(reporter, "sum")).isEqualTo(20100.0);
+		assertThat(doubleValue(reporter, "p25")).isCloseTo(50.0, within(1.0));
+		assertThat(doubleValue(reporter, "p75")).isCloseTo(150.0, within(2.0));
+	}
+
+	@Test
+	public void testMergeDifferentAccuracy()
+	{
+		QuantileSketch sketch = new QuantileSketch(0.01, false);
+		QuantileSketch other = new QuantileSketch(0.05, false);
+		other.put(1.0);
+
+		assertThrows(IllegalArgumentException.class, () -> sketch.merge(other));
+	}
+
+	@Test
+	public void testDurations()
+	{
+		QuantileSketch sketch = new QuantileSketch();
+		Map<String, String> props = new HashMap<>();
+		props.put("report-unit", "MILLIS");
+		props.put("percentiles", "50");
+		sketch.setContextProperties(props);
+
+		for (int i = 1; i <= 100; i++)
+			sketch.put(Duration.ofMillis(i));
+
+		CapturingReporter reporter = new CapturingReporter();
+		sketch.reportMetric(reporter);
+
+		assertThat(reporter.getValues().keySet()).containsExactly("min", "max", "total", "count", "avg", "p50");
+		assertThat(longValue(reporter, "min")).isEqualTo(1);
+		assertThat(longValue(reporter, "max")).isEqualTo(100);
+		assertThat(longValue(reporter, "total")).isEqualTo(5050);
+		assertThat(longValue(reporter, "p50")).isCloseTo(50, within(1L));
+	}
+
+	@Test
+	public void testResetAndReportZero()
+	{
+		QuantileSketch sketch = new QuantileSketch(0.01, true);
+		sketch.put(5.0);
+
+		CapturingReporter reporter = new CapturingReporter();
+		sketch.reportMetric(reporter);
+		assertThat(longValue(reporter, "count")).isEqualTo(1);
+
+		reporter.clear();
+		sketch.reportMetric(reporter);
+		assertThat(longValue(reporter, "count")).isEqualTo(0);
+		assertThat(longValue(reporter, "p99")).isEqualTo(0);
+	}
+}
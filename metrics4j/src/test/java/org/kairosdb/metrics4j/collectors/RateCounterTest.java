@@ -0,0 +1,148 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.helpers.Ticker;
+import org.kairosdb.metrics4j.collectors.impl.RateCounter;
+import org.kairosdb.metrics4j.configuration.ConfigurationException;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateCounterTest
+{
+	private static class TestTicker implements Ticker
+	{
+		private long m_time = 0;
+
+		@Override
+		public long read()
+		{
+			return m_time;
+		}
+
+		public void advance(long duration, TimeUnit unit)
+		{
+			m_time += unit.toNanos(duration);
+		}
+	}
+
+	@Test
+	public void test_rateUsesElapsedTime()
+	{
+		TestTicker ticker = new TestTicker();
+		RateCounter counter = new RateCounter(ChronoUnit.SECONDS, true, ticker);
+		CapturingReporter reporter = new CapturingReporter();
+
+		counter.put(100);
+		counter.put(50.0);
+		ticker.advance(10, TimeUnit.SECONDS);
+		counter.reportMetric(reporter);
+		assertThat(reporter.get("rate")).isEqualTo(new DoubleValue(15.0));
+
+		//Trigger was late, the rate is still correct
+		counter.put(150);
+		ticker.advance(15, TimeUnit.SECONDS);
+		counter.reportMetric(reporter);
+		assertThat(reporter.get("rate")).isEqualTo(new DoubleValue(10.0));
+	}
+
+	@Test
+	public void test_perMinute()
+	{
+		TestTicker ticker = new TestTicker();
+		RateCounter counter = new RateCounter(ChronoUnit.SECONDS, true, ticker);
+		counter.setContextProperties(Collections.singletonMap("rate-unit", "MINUTES"));
+		CapturingReporter reporter = new CapturingReporter();
+
+		counter.put(30);
+		ticker.advance(30, TimeUnit.SECONDS);
+		counter.reportMetric(reporter);
+		assertThat(reporter.get("rate")).isEqualTo(new DoubleValue(60.0));
+	}
+
+	@Test
+	public void test_noElapsedTimeCarriesOver()
+	{
+		TestTicker ticker = new TestTicker();
+		RateCounter counter = new RateCounter(ChronoUnit.SECONDS, true, ticker);
+		CapturingReporter reporter = new CapturingReporter();
+
+		counter.put(10);
+		counter.reportMetric(reporter);
+		assertThat(reporter.getValues()).isEmpty();
+
+		counter.put(10);
+		ticker.advance(2, TimeUnit.SECONDS);
+		counter.reportMetric(reporter);
+		assertThat(reporter.get("rate")).isEqualTo(new DoubleValue(10.0));
+	}
+
+	@Test
+	public void test_cloneStartsFromCreation()
+	{
+		TestTicker ticker = new TestTicker();
+		RateCounter counter = new RateCounter(ChronoUnit.SECONDS, true, ticker);
+		ticker.advance(100, TimeUnit.SECONDS);
+
+		RateCounter clone = (RateCounter) counter.clone();
+		CapturingReporter reporter = new CapturingReporter();
+		clone.put(20);
+		ticker.advance(10, TimeUnit.SECONDS);
+		clone.reportMetric(reporter);
+		assertThat(reporter.get("rate")).isEqualTo(new DoubleValue(2.0));
+	}
+
+	@Test
+	public void test_notReportingZero()
+	{
+		TestTicker ticker = new TestTicker();
+		RateCounter counter = new RateCounter(ChronoUnit.SECONDS, false, ticker);
+		CapturingReporter reporter = new CapturingReporter();
+
+		ticker.advance(10, TimeUnit.SECONDS);
+		counter.reportMetric(reporter);
+		assertThat(reporter.getValues()).isEmpty();
+	}
+
+	@Test
+	public void test_rateUnitIgnoresCase()
+	{
+		TestTicker ticker = new TestTicker();
+		RateCounter counter = new RateCounter(ChronoUnit.SECONDS, true, ticker);
+		counter.setContextProperties(Collections.singletonMap("rate-unit", "minutes"));
+		CapturingReporter reporter = new CapturingReporter();
+
+		counter.put(10);
+		ticker.advance(1, TimeUnit.SECONDS);
+		counter.reportMetric(reporter);
+
+		assertThat(reporter.get("rate")).isEqualTo(new DoubleValue(600.0));
+	}
+
+	@Test
+	public void test_invalidRateUnit()
+	{
+		RateCounter counter = new RateCounter();
+
+		assertThatThrownBy(() -> counter.setContextProperties(Collections.singletonMap("rate-unit", "fortnights")))
+				.isInstanceOf(ConfigurationException.class)
+				.hasMessageContaining("rate-unit");
+	}
+
+	@Test
+	public void test_defaultSkipsZero() throws InterruptedException
+	{
+		RateCounter counter = new RateCounter();
+		CapturingReporter reporter = new CapturingReporter();
+
+		Thread.sleep(5); //Past the minimum interval so a rate is computed
+		counter.reportMetric(reporter);
+
+		assertThat(reporter.get("rate")).isNull();
+	}
+}
@@ -0,0 +1,145 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.helpers.SampleRing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SampleRingTest
+{
+	private static class ListVisitor implements SampleRing.SampleVisitor
+	{
+		private final List<String> m_samples = new ArrayList<>();
+
+		@Override
+		public void longSample(long time, long value)
+		{
+			m_samples.add(time+":"+value);
+		}
+
+		@Override
+		public void doubleSample(long time, double value)
+		{
+			m_samples.add(time+":"+value);
+		}
+
+		@Override
+		public void stringSample(long time, String value)
+		{
+			m_samples.add(time+":"+value);
+		}
+	}
+
+	@Test
+	public void test_drainInOrder()
+	{
+		SampleRing ring = new SampleRing(4, SampleRing.OverflowPolicy.DROP_OLDEST);
+		ring.addLong(1, 10);
+		ring.addDouble(2, 2.5);
+		ring.addString(3, "hi");
+
+		ListVisitor visitor = new ListVisitor();
+		assertThat(ring.drain(visitor)).isEqualTo(3);
+		assertThat(visitor.m_samples).containsExactly("1:10", "2:2.5", "3:hi");
+
+		//Nothing left for the next drain
+		assertThat(ring.drain(new ListVisitor())).isEqualTo(0);
+		assertThat(ring.getDropped()).isEqualTo(0);
+	}
+
+	@Test
+	public void test_capacityRoundedUp()
+	{
+		assertThat(new SampleRing(5, SampleRing.OverflowPolicy.DROP_OLDEST).getCapacity()).isEqualTo(8);
+	}
+
+	@Test
+	public void test_dropOldest()
+	{
+		SampleRing ring = new SampleRing(2, SampleRing.OverflowPolicy.DROP_OLDEST);
+		for (int i = 0; i < 5; i++)
+			ring.addLong(i, i);
+
+		ListVisitor visitor = new ListVisitor();
+		ring.drain(visitor);
+		assertThat(visitor.m_samples).containsExactly("3:3", "4:4");
+		assertThat(ring.getDropped()).isEqualTo(3);
+	}
+
+	@Test
+	public void test_dropNewest()
+	{
+		SampleRing ring = new SampleRing(2, SampleRing.OverflowPolicy.DROP_NEWEST);
+		for (int i = 0; i < 5; i++)
+			ring.addLong(i, i);
+
+		ListVisitor visitor = new ListVisitor();
+		ring.drain(visitor);
+		assertThat(visitor.m_samples).containsExactly("0:0", "1:1");
+		assertThat(ring.getDropped()).isEqualTo(3);
+
+		//Room again after draining
+		ring.addLong(5, 5);
+		visitor = new ListVisitor();
+		ring.drain(visitor);
+		assertThat(visitor.m_samples).containsExactly("5:5");
+	}
+
+	@Test
+	public void test_growKeepsOverflow()
+	{
+		SampleRing ring = new SampleRing(2, SampleRing.OverflowPolicy.GROW);
+		for (int i = 0; i < 5; i++)
+			ring.addLong(i, i);
+
+		ListVisitor visitor = new ListVisitor();
+		assertThat(ring.drain(visitor)).isEqualTo(5);
+		assertThat(visitor.m_samples).containsExactly("0:0", "1:1", "2:2", "3:3", "4:4");
+		assertThat(ring.getDropped()).isEqualTo(0);
+
+		//Back to the ring after draining
+		ring.addString(5, "hi");
+		visitor = new ListVisitor();
+		ring.drain(visitor);
+		assertThat(visitor.m_samples).containsExactly("5:hi");
+	}
+
+	@Test
+	public void test_concurrentWriters() throws InterruptedException
+	{
+		int threads = 4;
+		int perThread = 50_000;
+		SampleRing ring = new SampleRing(256, SampleRing.OverflowPolicy.DROP_OLDEST);
+		AtomicLong drained = new AtomicLong();
+		SampleRing.SampleVisitor counter = new SampleRing.SampleVisitor()
+		{
+			@Override
+			public void longSample(long time, long value)
+			{
+				drained.incrementAndGet();
+			}
+		};
+
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++)
+		{
+			new Thread(() -> {
+				for (int i = 0; i < perThread; i++)
+					ring.addLong(i, i);
+				done.countDown();
+			}).start();
+		}
+
+		while (done.getCount() != 0)
+			ring.drain(counter);
+
+		ring.drain(counter);
+
+		assertThat(drained.get() + ring.getDropped()).isEqualTo(threads * perThread);
+	}
+}
@@ -0,0 +1,130 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.impl.StripedDoubleCounter;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class StripedDoubleCounterTest
+{
+	@Test
+	public void test_countingValues()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedDoubleCounter counter = new StripedDoubleCounter();
+
+		counter.put(1.1);
+		counter.put(2.2);
+		counter.put(3.3);
+
+		counter.reportMetric(reporter);
+		verify(reporter).put("count", new DoubleValue(6.6));
+
+		counter.put(1.1);
+		counter.put(2.2);
+		counter.put(3.3);
+
+		counter.reportMetric(reporter);
+		verify(reporter).put("count", new DoubleValue(13.2));
+	}
+
+	@Test
+	public void test_countingWithReset()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedDoubleCounter counter = new StripedDoubleCounter(true, true);
+
+		counter.put(1.1);
+		counter.put(2.2);
+		counter.put(3.3);
+
+		counter.reportMetric(reporter);
+
+		counter.put(1.1);
+		counter.put(2.2);
+		counter.put(3.3);
+
+		counter.reportMetric(reporter);
+
+		verify(reporter, times(2)).put("count", new DoubleValue(6.6));
+
+		counter.put(0.0);
+
+		counter.reportMetric(reporter);
+
+		verify(reporter, times(1)).put("count", new DoubleValue(0.0));
+	}
+
+	@Test
+	public void test_countingNotReportingZero()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedDoubleCounter counter = new StripedDoubleCounter(true, false);
+
+		counter.put(1.1);
+		counter.put(2.2);
+		counter.put(3.3);
+
+		counter.reportMetric(reporter);
+
+		verify(reporter).put("count", new DoubleValue(6.6));
+
+		counter.reportMetric(reporter);
+
+		verifyNoMoreInteractions(reporter);
+	}
+
+	@Test
+	public void test_resetWhileCounting() throws InterruptedException
+	{
+		StripedDoubleCounter counter = new StripedDoubleCounter(true, false);
+		DoubleAdder reported = new DoubleAdder();
+		MetricReporter reporter = new MetricReporter()
+		{
+			@Override
+			public void put(String field, MetricValue value)
+			{
+				reported.add(((DoubleValue)value).getValue());
+			}
+
+			@Override
+			public void put(String field, MetricValue value, Instant time)
+			{
+				put(field, value);
+			}
+		};
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+		{
+			Thread thread = new Thread(() -> {
+				for (int j = 0; j < 100_000; j++)
+					counter.put(1.0);
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		while (threads.stream().anyMatch(Thread::isAlive))
+			counter.reportMetric(reporter);
+
+		for (Thread thread : threads)
+			thread.join();
+
+		counter.reportMetric(reporter);
+
+		assertThat(reported.sum()).isEqualTo(800_000.0);
+	}
+}
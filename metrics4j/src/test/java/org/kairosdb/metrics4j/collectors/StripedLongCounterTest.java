@@ -0,0 +1,130 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.impl.StripedLongCounter;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class StripedLongCounterTest
+{
+	@Test
+	public void test_countingValues()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedLongCounter counter = new StripedLongCounter();
+
+		counter.put(1);
+		counter.put(2);
+		counter.put(3);
+
+		counter.reportMetric(reporter);
+		verify(reporter).put("count", new LongValue(6));
+
+		counter.put(1);
+		counter.put(2);
+		counter.put(3);
+
+		counter.reportMetric(reporter);
+		verify(reporter).put("count", new LongValue(12));
+	}
+
+	@Test
+	public void test_countingWithReset()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedLongCounter counter = new StripedLongCounter(true, true);
+
+		counter.put(1);
+		counter.put(2);
+		counter.put(3);
+
+		counter.reportMetric(reporter);
+
+		counter.put(1);
+		counter.put(2);
+		counter.put(3);
+
+		counter.reportMetric(reporter);
+
+		verify(reporter, times(2)).put("count", new LongValue(6));
+
+		counter.put(0);
+
+		counter.reportMetric(reporter);
+
+		verify(reporter, times(1)).put("count", new LongValue(0));
+	}
+
+	@Test
+	public void test_countingNotReportingZero()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedLongCounter counter = new StripedLongCounter(true, false);
+
+		counter.put(1);
+		counter.put(2);
+		counter.put(3);
+
+		counter.reportMetric(reporter);
+
+		verify(reporter).put("count", new LongValue(6));
+
+		counter.reportMetric(reporter);
+
+		verifyNoMoreInteractions(reporter);
+	}
+
+	@Test
+	public void test_resetWhileCounting() throws InterruptedException
+	{
+		StripedLongCounter counter = new StripedLongCounter(true, false);
+		AtomicLong reported = new AtomicLong();
+		MetricReporter reporter = new MetricReporter()
+		{
+			@Override
+			public void put(String field, MetricValue value)
+			{
+				reported.addAndGet(((LongValue)value).getValue());
+			}
+
+			@Override
+			public void put(String field, MetricValue value, Instant time)
+			{
+				put(field, value);
+			}
+		};
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+		{
+			Thread thread = new Thread(() -> {
+				for (int j = 0; j < 100_000; j++)
+					counter.put(1);
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		while (threads.stream().anyMatch(Thread::isAlive))
+			counter.reportMetric(reporter);
+
+		for (Thread thread : threads)
+			thread.join();
+
+		counter.reportMetric(reporter);
+
+		assertThat(reported.get()).isEqualTo(800_000);
+	}
+}
@@ -0,0 +1,128 @@
+package org.kairosdb.metrics4j.collectors;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.collectors.impl.StripedStats;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricReporter;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class StripedStatsTest
+{
+	@Test
+	public void testClone()
+	{
+		StripedStats stats = new StripedStats(true);
+		assertThat(stats).isEqualTo(stats.clone());
+	}
+
+	@Test
+	public void testStripedStats()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedStats stats = new StripedStats(false);
+
+		stats.put(1);
+		stats.put(2);
+		stats.put(3);
+
+		stats.reportMetric(reporter);
+		verify(reporter).put("min", new LongValue(1));
+		verify(reporter).put("max", new LongValue(3));
+		verify(reporter).put("sum", new LongValue(6));
+		verify(reporter).put("count", new LongValue(3));
+		verify(reporter).put("avg", new DoubleValue(2.0));
+
+		stats.reportMetric(reporter);
+
+		verifyNoMoreInteractions(reporter);
+	}
+
+	@Test
+	public void testReportZero()
+	{
+		MetricReporter reporter = mock(MetricReporter.class);
+		StripedStats stats = new StripedStats(true);
+
+		stats.put(1);
+		stats.put(2);
+		stats.put(3);
+
+		stats.reportMetric(reporter);
+		verify(reporter).put("min", new LongValue(1));
+		verify(reporter).put("max", new LongValue(3));
+		verify(reporter).put("sum", new LongValue(6));
+		verify(reporter).put("count", new LongValue(3));
+		verify(reporter).put("avg", new DoubleValue(2.0));
+
+		stats.reportMetric(reporter);
+		verify(reporter).put("min", new LongValue(0));
+		verify(reporter).put("max", new LongValue(0));
+		verify(reporter).put("sum", new LongValue(0));
+		verify(reporter).put("count", new LongValue(0));
+		verify(reporter).put("avg", new DoubleValue(0.0));
+	}
+
+	@Test
+	public void testResetWhileRecording() throws InterruptedException
+	{
+		StripedStats stats = new StripedStats(false);
+		Map<String, AtomicLong> totals = new ConcurrentHashMap<>();
+		AtomicLong badMinMax = new AtomicLong();
+		MetricReporter reporter = new MetricReporter()
+		{
+			@Override
+			public void put(String field, MetricValue value)
+			{
+				if (value instanceof LongValue)
+				{
+					long longValue = ((LongValue) value).getValue();
+					totals.computeIfAbsent(field, f -> new AtomicLong()).addAndGet(longValue);
+					if ((field.equals("min") || field.equals("max")) && (longValue < 1 || longValue > 10))
+						badMinMax.incrementAndGet();
+				}
+			}
+
+			@Override
+			public void put(String field, MetricValue value, Instant time)
+			{
+				put(field, value);
+			}
+		};
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+		{
+			Thread thread = new Thread(() -> {
+				for (int j = 0; j < 100_000; j++)
+					stats.put((j % 10) + 1);
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		while (threads.stream().anyMatch(Thread::isAlive))
+			stats.reportMetric(reporter);
+
+		for (Thread thread : threads)
+			thread.join();
+
+		stats.reportMetric(reporter);
+
+		assertThat(totals.get("count").get()).isEqualTo(800_000);
+		assertThat(totals.get("sum").get()).isEqualTo(8 * 10_000 * 55);
+		assertThat(badMinMax.get()).isEqualTo(0);
+	}
+}
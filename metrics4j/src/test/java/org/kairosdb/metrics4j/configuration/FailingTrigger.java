@@ -0,0 +1,32 @@
+package org.kairosdb.metrics4j.configuration;
+
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.triggers.MetricCollection;
+import org.kairosdb.metrics4j.triggers.Trigger;
+
+import java.io.Closeable;
+
+/**
+ Trigger that fails to start, records whether it was closed
+ */
+public class FailingTrigger implements Trigger, Closeable
+{
+	public static volatile boolean s_closed;
+
+	@Override
+	public void setMetricCollection(MetricCollection collection)
+	{
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+		throw new ConfigurationException("Unable to start trigger");
+	}
+
+	@Override
+	public void close()
+	{
+		s_closed = true;
+	}
+}
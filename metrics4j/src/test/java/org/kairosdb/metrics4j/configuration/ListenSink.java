@@ -0,0 +1,75 @@
+package org.kairosdb.metrics4j.configuration;
+
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.formatters.Formatter;
+import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.sinks.ExclusiveSink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+
+/**
+ Sink that listens on a port like the Prometheus sink does, fails to start
+ if the port is already taken.
+ */
+public class ListenSink implements ExclusiveSink, Closeable
+{
+	private int m_port;
+	private int m_backlog;
+	private ServerSocket m_serverSocket;
+
+	public void setPort(int port)
+	{
+		m_port = port;
+	}
+
+	public void setBacklog(int backlog)
+	{
+		m_backlog = backlog;
+	}
+
+	public ServerSocket getServerSocket()
+	{
+		return m_serverSocket;
+	}
+
+	@Override
+	public boolean isExclusive()
+	{
+		return true;
+	}
+
+	@Override
+	public void reportMetrics(List<FormattedMetric> metrics)
+	{
+	}
+
+	@Override
+	public Formatter getDefaultFormatter()
+	{
+		return new TestFormatter();
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+		try
+		{
+			m_serverSocket = new ServerSocket(m_port, m_backlog, InetAddress.getLoopbackAddress());
+		}
+		catch (IOException e)
+		{
+			throw new ConfigurationException("Unable to listen on port " + m_port + ": " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (m_serverSocket != null)
+			m_serverSocket.close();
+	}
+}
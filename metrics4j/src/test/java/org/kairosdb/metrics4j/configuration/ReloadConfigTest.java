@@ -0,0 +1,184 @@
+package org.kairosdb.metrics4j.configuration;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricSourceManager;
+import org.kairosdb.metrics4j.TestSink;
+import org.kairosdb.metrics4j.internal.MetricsContextImpl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReloadConfigTest
+{
+	private static final String LISTEN_PORT_PROPERTY = "metrics4j.sinks.listen.port";
+
+	@BeforeEach
+	public void setup()
+	{
+		MetricConfig metricConfig = MetricConfig.parseConfig("reload_before.conf", "Not_there");
+		MetricSourceManager.setMetricConfig(metricConfig);
+	}
+
+	@AfterEach
+	public void tearDown()
+	{
+		MetricSourceManager.clearConfig();
+	}
+
+	private static MetricsContextImpl getContext()
+	{
+		return (MetricsContextImpl) MetricSourceManager.getMetricConfig().getContext();
+	}
+
+	private static String getResult(TestSink sink, String method)
+	{
+		return sink.getResults(method).get(0).getValue().getValueAsString();
+	}
+
+	@Test
+	public void test_reloadKeepsUnchangedCollectors()
+	{
+		TestSource source = MetricSourceManager.getSource(TestSource.class);
+		source.countSomething().put(5);
+		source.countSomethingElse().put(1);
+		source.countSomethingWithTag("a").put(2);
+
+		MetricsContextImpl oldContext = getContext();
+		MetricSourceManager.reloadConfig("reload_after.conf", "Not_there");
+		MetricsContextImpl context = getContext();
+		assertThat(context).isNotSameAs(oldContext);
+
+		source.countSomething().put(1);
+		source.countSomethingElse().put(1);
+		source.countSomethingWithTag("a").put(3);
+
+		((TestTrigger) context.getTrigger("trigger")).triggerCollection(Instant.now());
+		TestSink sink = (TestSink) context.getSink("test");
+
+		//Same collector config so the count carries over
+		assertThat(getResult(sink, "countSomething")).isEqualTo("6");
+		//Collector config changed so it starts over
+		assertThat(getResult(sink, "countSomethingWithTag")).isEqualTo("3");
+		//Disabled by the new config
+		assertThat(sink.getResults("countSomethingElse")).isNull();
+
+		//Sink config is unchanged so the running sink is kept
+		assertThat(oldContext.getSink("test")).isSameAs(sink);
+	}
+
+	@Test
+	public void test_reloadWithBoundListener() throws IOException
+	{
+		int port;
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()))
+		{
+			port = socket.getLocalPort();
+		}
+
+		System.setProperty(LISTEN_PORT_PROPERTY, String.valueOf(port));
+		ConfigFactory.invalidateCaches(); //System properties are cached
+		try
+		{
+			MetricSourceManager.reloadConfig("reload_listen.conf", "Not_there");
+			ListenSink sink = (ListenSink) getContext().getSink("listen");
+			assertThat(sink.getServerSocket().getLocalPort()).isEqualTo(port);
+
+			//Unchanged, the sink keeps listening and is not started again
+			MetricSourceManager.reloadConfig("reload_listen.conf", "Not_there");
+			assertThat(getContext().getSink("listen")).isSameAs(sink);
+			assertThat(sink.getServerSocket().isClosed()).isFalse();
+
+			//Changed, the old sink lets go of the port before the new one binds it
+			MetricSourceManager.reloadConfig("reload_listen_changed.conf", "Not_there");
+			ListenSink newSink = (ListenSink) getContext().getSink("listen");
+			assertThat(newSink).isNotSameAs(sink);
+			assertThat(sink.getServerSocket().isClosed()).isTrue();
+			assertThat(newSink.getServerSocket().isClosed()).isFalse();
+			assertThat(newSink.getServerSocket().getLocalPort()).isEqualTo(port);
+
+			//Kept sinks are still reported to
+			TestSource source = MetricSourceManager.getSource(TestSource.class);
+			source.countSomething().put(3);
+			((TestTrigger) getContext().getTrigger("trigger")).triggerCollection(Instant.now());
+			assertThat(getResult((TestSink) getContext().getSink("test"), "countSomething")).isEqualTo("3");
+		}
+		finally
+		{
+			System.clearProperty(LISTEN_PORT_PROPERTY);
+			ConfigFactory.invalidateCaches();
+		}
+	}
+
+	@Test
+	public void test_reloadUsesNewFormatter()
+	{
+		TestSource source = MetricSourceManager.getSource(TestSource.class);
+		source.countSomething().put(5);
+
+		MetricsContextImpl oldContext = getContext();
+		((TestTrigger) oldContext.getTrigger("trigger")).triggerCollection(Instant.now());
+		TestSink oldSink = (TestSink) oldContext.getSink("test");
+		assertThat(oldSink.getResults("countSomething").get(0).getMetricName()).isEqualTo("OLD.countSomething");
+
+		MetricSourceManager.reloadConfig("reload_after.conf", "Not_there");
+		MetricsContextImpl context = getContext();
+
+		source.countSomething().put(1);
+		((TestTrigger) context.getTrigger("trigger")).triggerCollection(Instant.now());
+		TestSink sink = (TestSink) context.getSink("test");
+
+		//Collector was kept but the name is formatted with the new template
+		assertThat(getResult(sink, "countSomething")).isEqualTo("6");
+		assertThat(sink.getResults("countSomething").get(0).getMetricName()).isEqualTo("NEW.countSomething");
+	}
+
+	@Test
+	public void test_badConfigKeepsCurrent()
+	{
+		MetricConfig current = MetricSourceManager.getMetricConfig();
+
+		assertThatThrownBy(() -> MetricSourceManager.reloadConfig("reload_bad.conf", "Not_there"))
+				.isInstanceOf(ConfigurationException.class);
+
+		assertThat(MetricSourceManager.getMetricConfig()).isSameAs(current);
+	}
+
+	@Test
+	public void test_initFailureKeepsCurrent()
+	{
+		TestSource source = MetricSourceManager.getSource(TestSource.class);
+		source.countSomething().put(5);
+
+		MetricConfig current = MetricSourceManager.getMetricConfig();
+		MetricsContextImpl context = getContext();
+		FailingTrigger.s_closed = false;
+
+		assertThatThrownBy(() -> MetricSourceManager.reloadConfig("reload_init_fail.conf", "Not_there"))
+				.isInstanceOf(ConfigurationException.class);
+
+		//The new configuration is closed and the current one keeps reporting
+		assertThat(FailingTrigger.s_closed).isTrue();
+		assertThat(MetricSourceManager.getMetricConfig()).isSameAs(current);
+
+		((TestTrigger) context.getTrigger("trigger")).triggerCollection(Instant.now());
+		assertThat(getResult((TestSink) context.getSink("test"), "countSomething")).isEqualTo("5");
+	}
+
+	@Test
+	public void test_reloadRemovesShutdownHook()
+	{
+		MetricConfig current = MetricSourceManager.getMetricConfig();
+		MetricSourceManager.reloadConfig("reload_after.conf", "Not_there");
+
+		//Already removed by the reload
+		assertThat(Runtime.getRuntime().removeShutdownHook(current.m_shutdownHook)).isFalse();
+	}
+}
@@ -0,0 +1,159 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.formatters.Formatter;
+import org.kairosdb.metrics4j.sinks.MetricSink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncSinkDispatcherTest
+{
+	/**
+	 Sink that blocks on the first batch until released and records the
+	 size of each batch it is sent.
+	 */
+	private static class BlockingSink implements MetricSink
+	{
+		private final CountDownLatch m_started = new CountDownLatch(1);
+		private final CountDownLatch m_release = new CountDownLatch(1);
+		private final List<Integer> m_batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void reportMetrics(List<FormattedMetric> metrics)
+		{
+			m_started.countDown();
+			try
+			{
+				m_release.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			m_batchSizes.add(metrics.size());
+		}
+
+		@Override
+		public Formatter getDefaultFormatter()
+		{
+			return null;
+		}
+
+		@Override
+		public void init(MetricsContext context)
+		{
+		}
+	}
+
+	private AsyncSinkDispatcher m_dispatcher;
+
+	@AfterEach
+	public void cleanup()
+	{
+		if (m_dispatcher != null)
+			m_dispatcher.close();
+	}
+
+	private static List<FormattedMetric> batch(int size)
+	{
+		List<FormattedMetric> batch = new ArrayList<>();
+		for (int i = 0; i < size; i++)
+			batch.add(null);
+		return batch;
+	}
+
+	/**
+	 Submits a batch that the sink blocks on so following batches stay in the queue
+	 */
+	private BlockingSink startBlocked(AsyncSinkDispatcher.OverflowPolicy policy) throws InterruptedException
+	{
+		BlockingSink sink = new BlockingSink();
+		m_dispatcher = new AsyncSinkDispatcher("test", sink, 2, policy);
+		m_dispatcher.submit(batch(1));
+		assertThat(sink.m_started.await(10, TimeUnit.SECONDS)).isTrue();
+		return sink;
+	}
+
+	@Test
+	public void test_dropNewest() throws InterruptedException
+	{
+		BlockingSink sink = startBlocked(AsyncSinkDispatcher.OverflowPolicy.DROP_NEWEST);
+
+		m_dispatcher.submit(batch(2));
+		m_dispatcher.submit(batch(3));
+		m_dispatcher.submit(batch(4));
+
+		assertThat(m_dispatcher.getQueueDepth()).isEqualTo(2);
+		assertThat(m_dispatcher.getDroppedBatches()).isEqualTo(1);
+
+		sink.m_release.countDown();
+		m_dispatcher.close();
+
+		assertThat(sink.m_batchSizes).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	public void test_dropOldest() throws InterruptedException
+	{
+		BlockingSink sink = startBlocked(AsyncSinkDispatcher.OverflowPolicy.DROP_OLDEST);
+
+		m_dispatcher.submit(batch(2));
+		m_dispatcher.submit(batch(3));
+		m_dispatcher.submit(batch(4));
+
+		assertThat(m_dispatcher.getQueueDepth()).isEqualTo(2);
+		assertThat(m_dispatcher.getDroppedBatches()).isEqualTo(1);
+
+		sink.m_release.countDown();
+		m_dispatcher.close();
+
+		assertThat(sink.m_batchSizes).containsExactly(1, 3, 4);
+	}
+
+	@Test
+	public void test_block() throws InterruptedException
+	{
+		BlockingSink sink = startBlocked(AsyncSinkDispatcher.OverflowPolicy.BLOCK);
+
+		m_dispatcher.submit(batch(2));
+		m_dispatcher.submit(batch(3));
+
+		Thread producer = new Thread(() -> m_dispatcher.submit(batch(4)));
+		producer.start();
+		producer.join(200);
+		assertThat(producer.isAlive()).isTrue();
+
+		sink.m_release.countDown();
+		producer.join(10_000);
+		m_dispatcher.close();
+
+		assertThat(m_dispatcher.getDroppedBatches()).isEqualTo(0);
+		assertThat(sink.m_batchSizes).containsExactly(1, 2, 3, 4);
+	}
+
+	@Test
+	public void test_sinkQueueFlushesToDispatcher() throws InterruptedException
+	{
+		BlockingSink sink = new BlockingSink();
+		sink.m_release.countDown();
+		m_dispatcher = new AsyncSinkDispatcher("test", sink, 2, AsyncSinkDispatcher.OverflowPolicy.DROP_OLDEST);
+
+		SinkQueue sinkQueue = new SinkQueue(sink, "test");
+		sinkQueue.setAsyncDispatcher(m_dispatcher);
+		sinkQueue.addMetric(null);
+		sinkQueue.addMetric(null);
+		sinkQueue.flush();
+
+		m_dispatcher.close();
+
+		assertThat(sink.m_batchSizes).containsExactly(2);
+	}
+}
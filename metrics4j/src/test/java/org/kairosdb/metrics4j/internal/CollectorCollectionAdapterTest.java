@@ -0,0 +1,115 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.annotation.Key;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.impl.LongCounter;
+import org.kairosdb.metrics4j.configuration.ConfigurationException;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CollectorCollectionAdapterTest
+{
+	public interface LimitedSource
+	{
+		LongCollector countForUser(@Key("user") String user);
+	}
+
+	private static MethodArgKey newKey() throws NoSuchMethodException
+	{
+		return new MethodArgKey(LimitedSource.class.getMethod("countForUser", String.class), null);
+	}
+
+	private static TagKey userKey(String user)
+	{
+		return TagKey.newBuilder().addTag("user", user).build();
+	}
+
+	private static Map<String, String> limitProps(String limit)
+	{
+		return Collections.singletonMap(CollectorCollectionAdapter.MAX_TAG_COMBINATIONS_PROP, limit);
+	}
+
+	@Test
+	public void test_sourceLimit() throws NoSuchMethodException
+	{
+		CollectorCollectionAdapter adapter = new CollectorCollectionAdapter(new LongCounter(), newKey(), limitProps("2"));
+
+		MetricCollector bob = adapter.getCollector(userKey("bob"));
+		MetricCollector alice = adapter.getCollector(userKey("alice"));
+		MetricCollector fred = adapter.getCollector(userKey("fred"));
+		MetricCollector joe = adapter.getCollector(userKey("joe"));
+		adapter.getCollector(userKey("joe"));
+
+		assertThat(bob).isNotSameAs(alice);
+		assertThat(adapter.getCollector(userKey("bob"))).isSameAs(bob);
+
+		//Over the limit, both go to the overflow collector
+		assertThat(fred).isSameAs(joe);
+		assertThat(fred).isNotSameAs(bob).isNotSameAs(alice);
+		assertThat(adapter.getCollectors()).containsKey(userKey(CollectorCollectionAdapter.OVERFLOW_TAG_VALUE));
+		assertThat(adapter.getRejectedCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void test_globalLimit() throws NoSuchMethodException
+	{
+		TagCombinationLimiter limiter = new TagCombinationLimiter(3);
+		CollectorCollectionAdapter adapter1 = new CollectorCollectionAdapter(new LongCounter(), newKey(), Collections.emptyMap(), limiter);
+		CollectorCollectionAdapter adapter2 = new CollectorCollectionAdapter(new LongCounter(), newKey(), Collections.emptyMap(), limiter);
+
+		adapter1.getCollector(userKey("bob"));
+		adapter1.getCollector(userKey("alice"));
+		adapter2.getCollector(userKey("bob"));
+		adapter2.getCollector(userKey("alice"));
+
+		adapter2.getCollector(userKey("alice"));
+
+		assertThat(limiter.getLive()).isEqualTo(3);
+		assertThat(limiter.getRejected()).isEqualTo(1);
+		assertThat(adapter2.getRejectedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void test_sourceLimitNotCountedGlobally() throws NoSuchMethodException
+	{
+		TagCombinationLimiter limiter = new TagCombinationLimiter(10);
+		CollectorCollectionAdapter adapter = new CollectorCollectionAdapter(new LongCounter(), newKey(), limitProps("1"), limiter);
+
+		adapter.getCollector(userKey("bob"));
+		adapter.getCollector(userKey("alice"));
+
+		assertThat(adapter.getRejectedCount()).isEqualTo(1);
+		assertThat(limiter.getRejected()).isEqualTo(0);
+	}
+
+	@Test
+	public void test_removedCollectorFreesSlot() throws NoSuchMethodException
+	{
+		TagCombinationLimiter limiter = new TagCombinationLimiter(1);
+		CollectorCollectionAdapter adapter = new CollectorCollectionAdapter(new LongCounter(), newKey(), Collections.emptyMap(), limiter);
+
+		TagKey bob = userKey("bob");
+		adapter.getCollector(bob);
+		assertThat(limiter.getLive()).isEqualTo(1);
+
+		//Same as what gatherMetrics does for an idle collector
+		adapter.collectorRemoved(bob, adapter.getCollectors().remove(bob));
+
+		assertThat(limiter.getLive()).isEqualTo(0);
+		adapter.getCollector(userKey("alice"));
+		assertThat(adapter.getRejectedCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void test_invalidLimit() throws NoSuchMethodException
+	{
+		MethodArgKey key = newKey();
+		assertThrows(ConfigurationException.class, () -> new CollectorCollectionAdapter(new LongCounter(), key, limitProps("lots")));
+	}
+}
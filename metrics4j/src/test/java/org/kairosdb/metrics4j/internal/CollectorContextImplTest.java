@@ -0,0 +1,128 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.annotation.Key;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.impl.LongCounter;
+import org.kairosdb.metrics4j.formatters.DefaultFormatter;
+import org.kairosdb.metrics4j.formatters.Formatter;
+import org.kairosdb.metrics4j.reporting.ReportedMetric;
+import org.kairosdb.metrics4j.sinks.MetricSink;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CollectorContextImplTest
+{
+	public interface NameSource
+	{
+		LongCollector countForHost(@Key("host") String host);
+	}
+
+	private static class CountingFormatter extends DefaultFormatter
+	{
+		private final boolean m_cacheable;
+		private int m_formatCount;
+
+		private CountingFormatter(boolean cacheable)
+		{
+			m_cacheable = cacheable;
+		}
+
+		@Override
+		public boolean isCacheable()
+		{
+			return m_cacheable;
+		}
+
+		@Override
+		public String formatReportedMetric(ReportedMetric reportedMetric, ReportedMetric.Sample sample, String metricName)
+		{
+			m_formatCount++;
+			return super.formatReportedMetric(reportedMetric, sample, metricName);
+		}
+	}
+
+	private static class ListSink implements MetricSink
+	{
+		private final List<FormattedMetric> m_metrics = new ArrayList<>();
+
+		@Override
+		public void reportMetrics(List<FormattedMetric> metrics)
+		{
+			m_metrics.addAll(metrics);
+		}
+
+		@Override
+		public Formatter getDefaultFormatter()
+		{
+			return null;
+		}
+
+		@Override
+		public void init(MetricsContext context)
+		{
+		}
+	}
+
+	private List<String> reportTwice(CountingFormatter formatter) throws NoSuchMethodException
+	{
+		ListSink sink = new ListSink();
+		SinkQueue sinkQueue = new SinkQueue(sink, "list");
+		MethodArgKey key = new MethodArgKey(NameSource.class.getMethod("countForHost", String.class), null);
+		CollectorCollectionAdapter adapter = new CollectorCollectionAdapter(new LongCounter(), key, Collections.emptyMap());
+		TagKey tagKey = TagKey.newBuilder().addTag("host", "localhost").build();
+
+		Map<String, Formatter> formatters = new HashMap<>();
+		formatters.put("list", formatter);
+
+		CollectorContextImpl context = new CollectorContextImpl(adapter, key);
+		context.setTags(Collections.emptyMap());
+		context.setFormatters(formatters);
+		context.addSinkQueue(Collections.singletonList(sinkQueue));
+
+		((LongCounter) adapter.getCollector(tagKey)).put(1);
+		context.reportMetrics(Instant.now());
+		((LongCounter) adapter.getCollector(tagKey)).put(2);
+		context.reportMetrics(Instant.now());
+		sinkQueue.flush();
+
+		List<String> names = new ArrayList<>();
+		for (FormattedMetric metric : sink.m_metrics)
+		{
+			for (FormattedMetric.Sample sample : metric.getSamples())
+				names.add(sample.getMetricName());
+		}
+		return names;
+	}
+
+	@Test
+	public void test_cacheableFormatterFormatsOnce() throws NoSuchMethodException
+	{
+		CountingFormatter formatter = new CountingFormatter(true);
+
+		List<String> names = reportTwice(formatter);
+
+		assertThat(formatter.m_formatCount).isEqualTo(1);
+		assertThat(names).hasSize(2);
+		assertThat(names.get(0)).isEqualTo(names.get(1));
+	}
+
+	@Test
+	public void test_notCacheableFormatterFormatsEveryTime() throws NoSuchMethodException
+	{
+		CountingFormatter formatter = new CountingFormatter(false);
+
+		List<String> names = reportTwice(formatter);
+
+		assertThat(formatter.m_formatCount).isEqualTo(2);
+		assertThat(names).hasSize(2);
+	}
+}
@@ -0,0 +1,152 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricThreadHelper;
+import org.kairosdb.metrics4j.TagContext;
+import org.kairosdb.metrics4j.annotation.Key;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.impl.LongCounter;
+import org.kairosdb.metrics4j.configuration.ImplementationException;
+import org.kairosdb.metrics4j.configuration.MetricConfig;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MethodDispatchTest
+{
+	public interface DispatchSource
+	{
+		LongCollector count();
+
+		LongCollector countForHost(@Key("host") String host);
+
+		LongCollector countForClient(@Key("client") String client);
+
+		LongCollector countNotAnnotated(String host);
+	}
+
+	@AfterEach
+	public void cleanup()
+	{
+		MetricThreadHelper.clearTags();
+	}
+
+	private MethodDispatch newDispatch(String methodName, Map<String, String> tags) throws NoSuchMethodException
+	{
+		Method method;
+		if (methodName.equals("count"))
+			method = DispatchSource.class.getMethod(methodName);
+		else
+			method = DispatchSource.class.getMethod(methodName, String.class);
+
+		MethodArgKey key = new MethodArgKey(method, null);
+		CollectorContextImpl context = new CollectorContextImpl(
+				new CollectorCollectionAdapter(new LongCounter(), key, Collections.emptyMap()), key);
+		context.setTags(tags);
+
+		return new MethodDispatch(method, context);
+	}
+
+	@Test
+	public void test_resetDropsStaleDispatches() throws NoSuchMethodException
+	{
+		SourceInvocationHandler handler = new SourceInvocationHandler(new MetricConfig(new MetricsContextImpl()));
+		Method method = DispatchSource.class.getMethod("count");
+
+		MethodDispatch dispatch = handler.getMethodDispatch(method);
+		assertThat(handler.isCurrent(dispatch)).isTrue();
+		assertThat(handler.getMethodDispatch(method)).isSameAs(dispatch);
+
+		LongCounter counter = new LongCounter();
+		handler.setCollector(new MethodArgKey(method, null), counter);
+
+		assertThat(handler.isCurrent(dispatch)).isFalse();
+		MethodDispatch next = handler.getMethodDispatch(method);
+		assertThat(next).isNotSameAs(dispatch);
+		assertThat(handler.isCurrent(next)).isTrue();
+		assertThat(next.getCollector(null)).isSameAs(counter);
+	}
+
+	@Test
+	public void test_zeroArgsReturnsSameCollector() throws NoSuchMethodException
+	{
+		MethodDispatch dispatch = newDispatch("count", Collections.emptyMap());
+
+		MetricCollector collector = dispatch.getCollector(null);
+
+		assertThat(dispatch.getCollector(null)).isSameAs(collector);
+		assertThat(dispatch.getCollector(new Object[0])).isSameAs(collector);
+	}
+
+	@Test
+	public void test_threadTagsCreateNewCollector() throws NoSuchMethodException
+	{
+		MethodDispatch dispatch = newDispatch("count", Collections.emptyMap());
+
+		MetricCollector collector = dispatch.getCollector(null);
+
+		MetricThreadHelper.addTag("thread", "tag");
+		assertThat(dispatch.getCollector(null)).isNotSameAs(collector);
+	}
+
+	@Test
+	public void test_scopedTagContext() throws NoSuchMethodException
+	{
+		MethodDispatch dispatch = newDispatch("countForHost", Collections.emptyMap());
+		MetricCollector collector = dispatch.getCollector("host1");
+
+		TagContext context = TagContext.EMPTY.with("user", "bob");
+		MetricCollector scoped;
+		try (TagContext.Scope scope = context.makeCurrent())
+		{
+			scoped = dispatch.getCollector("host1");
+			assertThat(scoped).isNotSameAs(collector);
+			assertThat(dispatch.getCollector("host1")).isSameAs(scoped);
+		}
+
+		assertThat(dispatch.getCollector("host1")).isSameAs(collector);
+
+		//Same tags from a different context instance resolve to the same collector
+		try (TagContext.Scope scope = TagContext.EMPTY.with("user", "bob").makeCurrent())
+		{
+			assertThat(dispatch.getCollector("host1")).isSameAs(scoped);
+		}
+	}
+
+	@Test
+	public void test_keyedArguments() throws NoSuchMethodException
+	{
+		MethodDispatch dispatch = newDispatch("countForHost", Collections.emptyMap());
+
+		MetricCollector collector = dispatch.getCollector(new Object[]{"host1"});
+
+		assertThat(dispatch.getCollector(new Object[]{"host1"})).isSameAs(collector);
+		assertThat(dispatch.getCollector(new Object[]{"host2"})).isNotSameAs(collector);
+	}
+
+	@Test
+	public void test_tagOverride() throws NoSuchMethodException
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("client", "bob");
+		MethodDispatch dispatch = newDispatch("countForClient", tags);
+
+		MetricCollector collector = dispatch.getCollector(new Object[]{"alice"});
+
+		//Override aggregates all clients into the same collector
+		assertThat(dispatch.getCollector(new Object[]{"fred"})).isSameAs(collector);
+	}
+
+	@Test
+	public void test_missingKeyAnnotation()
+	{
+		assertThrows(ImplementationException.class, () -> newDispatch("countNotAnnotated", Collections.emptyMap()));
+	}
+}
@@ -0,0 +1,97 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.StringValue;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricBatchTest
+{
+	private static MetricBatch.Series series(String field, Map<String, String> tags)
+	{
+		return new MetricBatch.Series("MyClass.myMethod."+field, field, "MyClass", "myMethod",
+				tags, Collections.emptyMap(), "");
+	}
+
+	@Test
+	public void test_columns()
+	{
+		MetricBatch.Series count = series("count", Collections.singletonMap("host", "a"));
+		MetricBatch.Series avg = series("avg", Collections.singletonMap("host", "a"));
+
+		MetricBatch batch = new MetricBatch(1);
+		batch.add(count, 1000L, new LongValue(5));
+		batch.add(avg, 1000L, new DoubleValue(2.5));
+		batch.add(count, 2000L, new StringValue("hi"));
+
+		assertThat(batch.size()).isEqualTo(3);
+		assertThat(batch.getSeriesCount()).isEqualTo(2);
+		assertThat(batch.getSeriesId(0)).isEqualTo(batch.getSeriesId(2));
+		assertThat(batch.getRowSeries(1)).isSameAs(avg);
+
+		assertThat(batch.getType(0)).isEqualTo(MetricBatch.TYPE_LONG);
+		assertThat(batch.getLong(0)).isEqualTo(5);
+		assertThat(batch.getType(1)).isEqualTo(MetricBatch.TYPE_DOUBLE);
+		assertThat(batch.getDouble(1)).isEqualTo(2.5);
+		assertThat(batch.getType(2)).isEqualTo(MetricBatch.TYPE_OBJECT);
+		assertThat(batch.getValue(2)).isEqualTo(new StringValue("hi"));
+		assertThat(batch.getTime(2)).isEqualTo(2000L);
+	}
+
+	@Test
+	public void test_addAll()
+	{
+		MetricBatch.Series count = series("count", Collections.singletonMap("host", "a"));
+		MetricBatch.Series other = series("count", Collections.singletonMap("host", "b"));
+
+		MetricBatch first = new MetricBatch();
+		first.addLong(count, 1000L, 1);
+
+		MetricBatch second = new MetricBatch();
+		second.addLong(other, 1000L, 2);
+		second.addLong(count, 2000L, 3);
+
+		first.addAll(second);
+
+		assertThat(first.size()).isEqualTo(3);
+		assertThat(first.getSeriesCount()).isEqualTo(2);
+		assertThat(first.getRowSeries(2)).isSameAs(count);
+		assertThat(first.getLong(2)).isEqualTo(3);
+	}
+
+	@Test
+	public void test_toFormattedMetrics()
+	{
+		Map<String, String> hostA = Collections.singletonMap("host", "a");
+		MetricBatch.Series count = series("count", hostA);
+		MetricBatch.Series avg = series("avg", hostA);
+		MetricBatch.Series countB = series("count", Collections.singletonMap("host", "b"));
+
+		MetricBatch batch = new MetricBatch();
+		batch.addLong(count, 1000L, 5);
+		batch.addDouble(avg, 1_000_000_123L, 2.5);
+		batch.addLong(countB, 1000L, 7);
+
+		List<FormattedMetric> metrics = batch.toFormattedMetrics();
+
+		assertThat(metrics).hasSize(2);
+		FormattedMetric first = metrics.get(0);
+		assertThat(first.getClassName()).isEqualTo("MyClass");
+		assertThat(first.getTags()).containsEntry("host", "a");
+		assertThat(first.getSamples()).hasSize(2);
+		assertThat(first.getSamples().get(1).getMetricName()).isEqualTo("MyClass.myMethod.avg");
+		assertThat(first.getSamples().get(1).getValue()).isEqualTo(new DoubleValue(2.5));
+		assertThat(first.getSamples().get(1).getTime()).isEqualTo(Instant.ofEpochSecond(1, 123));
+		assertThat(MetricBatch.toEpochNanos(Instant.ofEpochSecond(1, 123))).isEqualTo(1_000_000_123L);
+
+		assertThat(metrics.get(1).getTags()).containsEntry("host", "b");
+		assertThat(metrics.get(1).getSamples().get(0).getValue()).isEqualTo(new LongValue(7));
+	}
+}
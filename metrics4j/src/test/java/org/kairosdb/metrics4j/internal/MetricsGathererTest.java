@@ -2,10 +2,10 @@ package org.kairosdb.metrics4j.internal;
 
 import org.junit.jupiter.api.Test;
 import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.impl.LongCounter;
 import org.kairosdb.metrics4j.reporting.LongValue;
 import org.kairosdb.metrics4j.reporting.MetricReporter;
 
-import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
@@ -13,10 +13,6 @@ import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 public class MetricsGathererTest
 {
@@ -90,73 +86,77 @@ public class MetricsGathererTest
 		}
 	}
 
-	private class FixedMetricCollector extends MetricsGatherer.AgedMetricCollector
+	private void gather(TestMetricsGatherer tmg, int times)
 	{
-		private Duration m_age;
-
-		public FixedMetricCollector(Duration age, MetricCollector metricCollector)
-		{
-			super(metricCollector);
-			m_age = age;
-		}
-
-		@Override
-		public Duration getAge()
-		{
-			return m_age;
-		}
+		for (int i = 0; i < times; i++)
+			tmg.gatherMetrics(Instant.now());
 	}
 
-
 	@Test
 	public void testAgedOutCollector()
 	{
 		TestMetricsGatherer tmg = new TestMetricsGatherer();
 
-		MetricsGatherer.AgedMetricCollector metricCollector = mock(MetricsGatherer.AgedMetricCollector.class);
-		when(metricCollector.getAge()).thenReturn(Duration.ofMinutes(11));
-		when(metricCollector.getMetricCollector()).thenReturn(new TestCollector(false));
-
 		tmg.addCollector(TagKey.newBuilder().addTag("tag1", "value1").build(),
-				metricCollector);
+				new MetricsGatherer.AgedMetricCollector(new TestCollector(false)));
 
-		tmg.gatherMetrics(Instant.now());
+		gather(tmg, MetricsGatherer.DEFAULT_MAX_IDLE_INTERVALS);
 
 		assertThat(tmg.getCollectors()).isEmpty();
-		verify(metricCollector, never()).updateLastUsed();
 	}
 
 	@Test
 	public void testAgedOutCollector_reporting_but_aged()
 	{
 		TestMetricsGatherer tmg = new TestMetricsGatherer();
-		MetricsGatherer.AgedMetricCollector metricCollector = mock(MetricsGatherer.AgedMetricCollector.class);
-		when(metricCollector.getAge()).thenReturn(Duration.ofMinutes(11));
-		when(metricCollector.getMetricCollector()).thenReturn(new TestCollector(true));
 
 		tmg.addCollector(TagKey.newBuilder().addTag("tag1", "value1").build(),
-				metricCollector);
+				new MetricsGatherer.AgedMetricCollector(new TestCollector(true)));
 
-		tmg.gatherMetrics(Instant.now());
+		gather(tmg, MetricsGatherer.DEFAULT_MAX_IDLE_INTERVALS * 2);
 
 		assertThat(tmg.getCollectors().size()).isEqualTo(1);
-		verify(metricCollector).updateLastUsed();
 	}
 
 	@Test
 	public void testAgedOutCollector_not_reporting_not_aged()
 	{
 		TestMetricsGatherer tmg = new TestMetricsGatherer();
-		MetricsGatherer.AgedMetricCollector metricCollector = mock(MetricsGatherer.AgedMetricCollector.class);
-		when(metricCollector.getAge()).thenReturn(Duration.ofMinutes(1));
-		when(metricCollector.getMetricCollector()).thenReturn(new TestCollector(false));
 
 		tmg.addCollector(TagKey.newBuilder().addTag("tag1", "value1").build(),
-				metricCollector);
+				new MetricsGatherer.AgedMetricCollector(new TestCollector(false)));
 
-		tmg.gatherMetrics(Instant.now());
+		gather(tmg, MetricsGatherer.DEFAULT_MAX_IDLE_INTERVALS - 1);
 
 		assertThat(tmg.getCollectors().size()).isEqualTo(1);
-		verify(metricCollector, never()).updateLastUsed();
+	}
+
+	@Test
+	public void testIdleCountResetByReporting()
+	{
+		TestMetricsGatherer tmg = new TestMetricsGatherer();
+		MetricsGatherer.AgedMetricCollector collector = new MetricsGatherer.AgedMetricCollector(new TestCollector(true));
+
+		gather(tmg, 5);
+		collector.markReported(5);
+
+		assertThat(collector.getIdleIntervals(5)).isEqualTo(0);
+		assertThat(collector.getIdleIntervals(8)).isEqualTo(3);
+	}
+
+	@Test
+	public void testConfiguredIdleIntervals() throws NoSuchMethodException
+	{
+		MethodArgKey key = new MethodArgKey(CollectorCollectionAdapterTest.LimitedSource.class.getMethod("countForUser", String.class), null);
+		CollectorCollectionAdapter adapter = new CollectorCollectionAdapter(new LongCounter(true, false), key,
+				Collections.singletonMap(CollectorCollectionAdapter.MAX_IDLE_INTERVALS_PROP, "2"));
+
+		adapter.getCollector(TagKey.newBuilder().addTag("user", "bob").build());
+
+		adapter.gatherMetrics(Instant.now());
+		assertThat(adapter.getCollectors()).hasSize(1);
+
+		adapter.gatherMetrics(Instant.now());
+		assertThat(adapter.getCollectors()).isEmpty();
 	}
 }
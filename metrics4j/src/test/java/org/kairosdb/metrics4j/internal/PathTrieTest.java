@@ -0,0 +1,54 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathTrieTest
+{
+	@Test
+	public void test_getAllMostSpecificFirst()
+	{
+		PathTrie<String> trie = new PathTrie<>();
+		trie.update(Collections.emptyList(), (previous) -> "root");
+		trie.update(Arrays.asList("com", "example"), (previous) -> "package");
+		trie.update(Arrays.asList("com", "example", "MyClass", "myMethod"), (previous) -> "method");
+		trie.update(Arrays.asList("com", "other"), (previous) -> "other");
+
+		assertThat(trie.getAll(Arrays.asList("com", "example", "MyClass", "myMethod")))
+				.containsExactly("method", "package", "root");
+		assertThat(trie.getAll(Arrays.asList("com", "example", "Another"))).containsExactly("package", "root");
+		assertThat(trie.getDeepest(Arrays.asList("com", "example", "Another"))).isEqualTo("package");
+		assertThat(trie.getDeepest(Arrays.asList("org", "example"))).isEqualTo("root");
+	}
+
+	@Test
+	public void test_updateSeesPreviousValue()
+	{
+		PathTrie<Integer> trie = new PathTrie<>();
+		trie.update(Arrays.asList("a", "b"), (previous) -> previous == null ? 1 : previous + 1);
+		trie.update(Arrays.asList("a", "b"), (previous) -> previous == null ? 1 : previous + 1);
+
+		assertThat(trie.getDeepest(Arrays.asList("a", "b", "c"))).isEqualTo(2);
+		assertThat(trie.getDeepest(Arrays.asList("a"))).isNull();
+		assertThat(trie.getAll(Arrays.asList("a"))).isEmpty();
+	}
+
+	@Test
+	public void test_updateAll()
+	{
+		PathTrie<String> trie = new PathTrie<>();
+		trie.update(Collections.emptyList(), (previous) -> "root");
+		trie.update(Arrays.asList("com", "example"), (previous) -> "old");
+		trie.update(Arrays.asList("com", "example", "MyClass"), (previous) -> "class");
+
+		trie.updateAll((value) -> value.equals("old") ? "new" : value);
+
+		assertThat(trie.getAll(Arrays.asList("com", "example", "MyClass")))
+				.containsExactly("class", "new", "root");
+		assertThat(trie.getDeepest(Arrays.asList("com"))).isEqualTo("root");
+	}
+}
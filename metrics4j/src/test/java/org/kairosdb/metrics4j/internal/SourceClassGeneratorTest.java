@@ -0,0 +1,124 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricSourceManager;
+import org.kairosdb.metrics4j.annotation.Key;
+import org.kairosdb.metrics4j.collectors.DoubleCollector;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.impl.DoubleCounter;
+import org.kairosdb.metrics4j.collectors.impl.LongCounter;
+
+import java.lang.reflect.Proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SourceClassGeneratorTest
+{
+	public interface GeneratedSource
+	{
+		LongCollector count();
+
+		LongCollector countForHost(@Key("host") String host);
+
+		DoubleCollector countForStatus(@Key("host") String host, @Key("status") int status);
+
+		LongCollector countForAll(@Key("size") long size, @Key("ratio") double ratio,
+				@Key("success") boolean success, @Key("grade") char grade);
+
+		default LongCollector countLocalhost()
+		{
+			return countForHost("localhost");
+		}
+	}
+
+	interface PackageSource
+	{
+		LongCollector count();
+	}
+
+	@BeforeEach
+	public void setup()
+	{
+		MetricSourceManager.getMetricConfig().setGeneratedSources(true);
+	}
+
+	@AfterEach
+	public void cleanup()
+	{
+		MetricSourceManager.clearConfig();
+	}
+
+	@Test
+	public void test_generatedSource()
+	{
+		GeneratedSource source = MetricSourceManager.getSource(GeneratedSource.class);
+
+		assertThat(Proxy.isProxyClass(source.getClass())).isFalse();
+		assertThat(MetricSourceManager.getSource(GeneratedSource.class)).isSameAs(source);
+	}
+
+	@Test
+	public void test_zeroArgs()
+	{
+		GeneratedSource source = MetricSourceManager.getSource(GeneratedSource.class);
+		LongCounter counter = new LongCounter();
+
+		MetricSourceManager.setCollectorForSource(counter, GeneratedSource.class).count();
+
+		assertThat(source.count()).isSameAs(counter);
+	}
+
+	@Test
+	public void test_keyedArgs()
+	{
+		GeneratedSource source = MetricSourceManager.getSource(GeneratedSource.class);
+		LongCounter counter = new LongCounter();
+		DoubleCounter doubleCounter = new DoubleCounter();
+
+		MetricSourceManager.setCollectorForSource(counter, GeneratedSource.class).countForHost("localhost");
+		MetricSourceManager.setCollectorForSource(doubleCounter, GeneratedSource.class).countForStatus("localhost", 200);
+
+		assertThat(source.countForHost("localhost")).isSameAs(counter);
+		assertThat(source.countForHost("127.0.0.1")).isNotSameAs(counter);
+		assertThat(source.countForStatus("localhost", 200)).isSameAs(doubleCounter);
+		assertThat(source.countForStatus("localhost", 404)).isNotSameAs(doubleCounter);
+
+		//default methods are not overridden
+		assertThat(source.countLocalhost()).isSameAs(counter);
+	}
+
+	@Test
+	public void test_primitiveArgsMatchProxy()
+	{
+		GeneratedSource source = MetricSourceManager.getSource(GeneratedSource.class);
+		LongCounter counter = new LongCounter();
+
+		//setCollectorForSource goes through a proxy so primitives are boxed
+		MetricSourceManager.setCollectorForSource(counter, GeneratedSource.class).countForAll(42L, 1.5, true, 'A');
+
+		assertThat(source.countForAll(42L, 1.5, true, 'A')).isSameAs(counter);
+		assertThat(source.countForAll(42L, 1.5, false, 'A')).isNotSameAs(counter);
+	}
+
+	@Test
+	public void test_setCollectorAfterCall()
+	{
+		GeneratedSource source = MetricSourceManager.getSource(GeneratedSource.class);
+		LongCounter counter = new LongCounter();
+
+		source.countForHost("localhost");
+		MetricSourceManager.setCollectorForSource(counter, GeneratedSource.class).countForHost("localhost");
+
+		assertThat(source.countForHost("localhost")).isSameAs(counter);
+	}
+
+	@Test
+	public void test_packagePrivateFallsBackToProxy()
+	{
+		PackageSource source = MetricSourceManager.getSource(PackageSource.class);
+
+		assertThat(Proxy.isProxyClass(source.getClass())).isTrue();
+	}
+}
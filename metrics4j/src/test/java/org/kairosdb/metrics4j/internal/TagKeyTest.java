@@ -0,0 +1,65 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TagKeyTest
+{
+	@Test
+	public void test_noAmbiguousConcatenation()
+	{
+		TagKey first = TagKey.newBuilder().addTag("ab", "c").build();
+		TagKey second = TagKey.newBuilder().addTag("a", "bc").build();
+
+		assertThat(first).isNotEqualTo(second);
+	}
+
+	@Test
+	public void test_orderIndependent()
+	{
+		TagKey first = TagKey.newBuilder().addTag("host", "a").addTag("dc", "east").build();
+		TagKey second = TagKey.newBuilder().addTag("dc", "east").addTag("host", "a").build();
+
+		assertThat(first).isEqualTo(second);
+		assertThat(first.hashCode()).isEqualTo(second.hashCode());
+		assertThat(first.getTags().keySet()).containsExactly("dc", "host");
+	}
+
+	@Test
+	public void test_lastValueWins()
+	{
+		TagKey tagKey = TagKey.newBuilder().addTag("host", "a").addTag("dc", "east").addTag("host", "b").build();
+
+		assertThat(tagKey.size()).isEqualTo(2);
+		assertThat(tagKey.getTags().get("host")).isEqualTo("b");
+	}
+
+	@Test
+	public void test_getTags()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("host", "a");
+		tags.put("dc", "east");
+
+		TagKey tagKey = TagKey.newBuilder().addTags(tags).build();
+
+		assertThat(tagKey.getTags()).isEqualTo(tags);
+		assertThat(tagKey.getTags().containsKey("dc")).isTrue();
+		assertThat(tagKey.getTags().get("rack")).isNull();
+	}
+
+	@Test
+	public void test_intern()
+	{
+		TagKey first = TagKey.newBuilder().addTag("host", "interned").build().intern();
+		TagKey second = TagKey.newBuilder().addTag("host", "interned").build();
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.intern()).isSameAs(first);
+		assertThat(TagKey.newBuilder().build()).isSameAs(TagKey.EMPTY);
+	}
+}
@@ -0,0 +1,136 @@
+package org.kairosdb.metrics4j.internal;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.annotation.Key;
+import org.kairosdb.metrics4j.collectors.LongCollector;
+import org.kairosdb.metrics4j.collectors.MetricCollector;
+import org.kairosdb.metrics4j.collectors.impl.LongCounter;
+import org.kairosdb.metrics4j.formatters.DefaultFormatter;
+import org.kairosdb.metrics4j.formatters.Formatter;
+import org.kairosdb.metrics4j.reporting.ReportedMetric;
+import org.kairosdb.metrics4j.sinks.MetricSink;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TriggerMetricCollectionTest
+{
+	private static final int COLLECTOR_COUNT = 100;
+
+	public interface GatherSource
+	{
+		LongCollector countForHost(@Key("host") String host);
+	}
+
+	private static class ListSink implements MetricSink
+	{
+		private final List<FormattedMetric> m_metrics = new ArrayList<>();
+
+		@Override
+		public void reportMetrics(List<FormattedMetric> metrics)
+		{
+			m_metrics.addAll(metrics);
+		}
+
+		@Override
+		public Formatter getDefaultFormatter()
+		{
+			return new DefaultFormatter();
+		}
+
+		@Override
+		public void init(MetricsContext context)
+		{
+		}
+	}
+
+	private ListSink runGather(int parallelism, AtomicBoolean snapshotRan) throws NoSuchMethodException
+	{
+		ListSink sink = new ListSink();
+		SinkQueue sinkQueue = new SinkQueue(sink, "list");
+		TriggerMetricCollection collection = new TriggerMetricCollection(new NeverTrigger());
+		collection.setGatherParallelism(parallelism);
+		collection.addSnapshot(() -> snapshotRan.set(true));
+
+		MethodArgKey key = new MethodArgKey(GatherSource.class.getMethod("countForHost", String.class), null);
+		for (int i = 0; i < COLLECTOR_COUNT; i++)
+		{
+			CollectorCollectionAdapter adapter = new CollectorCollectionAdapter(new LongCounter(), key, Collections.emptyMap());
+			TagKey tagKey = TagKey.newBuilder().addTag("host", "host" + i).build();
+			((LongCounter) adapter.getCollector(tagKey)).put(i);
+
+			CollectorContextImpl context = new CollectorContextImpl(new AssertingCollection(adapter, snapshotRan), key);
+			context.setTags(Collections.emptyMap());
+			context.setFormatters(new HashMap<>());
+			context.addSinkQueue(Collections.singletonList(sinkQueue));
+			collection.addCollector(context);
+		}
+
+		collection.reportMetrics(Instant.now());
+		collection.close();
+		return sink;
+	}
+
+	/**
+	 Fails gathering if the snapshot has not already been ran
+	 */
+	private static class AssertingCollection implements CollectorCollection
+	{
+		private final CollectorCollection m_inner;
+		private final AtomicBoolean m_snapshotRan;
+
+		private AssertingCollection(CollectorCollection inner, AtomicBoolean snapshotRan)
+		{
+			m_inner = inner;
+			m_snapshotRan = snapshotRan;
+		}
+
+		@Override
+		public Iterable<ReportedMetric> gatherMetrics(Instant now)
+		{
+			assertThat(m_snapshotRan.get()).isTrue();
+			return m_inner.gatherMetrics(now);
+		}
+
+		@Override
+		public MetricCollector getCollector(TagKey tagKey)
+		{
+			return m_inner.getCollector(tagKey);
+		}
+	}
+
+	private Set<String> hosts(ListSink sink)
+	{
+		Set<String> hosts = new HashSet<>();
+		for (FormattedMetric metric : sink.m_metrics)
+			hosts.add(metric.getTags().get("host"));
+		return hosts;
+	}
+
+	@Test
+	public void test_sequentialGather() throws NoSuchMethodException
+	{
+		ListSink sink = runGather(1, new AtomicBoolean());
+
+		assertThat(sink.m_metrics).hasSize(COLLECTOR_COUNT);
+		assertThat(hosts(sink)).hasSize(COLLECTOR_COUNT);
+	}
+
+	@Test
+	public void test_parallelGather() throws NoSuchMethodException
+	{
+		ListSink sink = runGather(4, new AtomicBoolean());
+
+		assertThat(sink.m_metrics).hasSize(COLLECTOR_COUNT);
+		assertThat(hosts(sink)).hasSize(COLLECTOR_COUNT);
+	}
+}
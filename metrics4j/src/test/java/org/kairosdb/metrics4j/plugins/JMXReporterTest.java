@@ -20,26 +20,57 @@ import javax.management.InstanceNotFoundException;
 import javax.management.ListenerNotFoundException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 class JMXReporterTest
 {
+	public interface SlowMXBean
+	{
+		long getSlowCount();
+	}
+
+	public static class Slow implements SlowMXBean
+	{
+		@Override
+		public long getSlowCount()
+		{
+			try
+			{
+				Thread.sleep(5000);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			return 1;
+		}
+	}
+
 	private MetricsContextImpl m_context;
 	private MetricConfig m_metricConfig;
 	private TestTrigger m_testTrigger;
@@ -198,4 +229,91 @@ class JMXReporterTest
 		reporter.close();
 
 	}
+
+	@Test
+	void testAttributesReadInOneCallPerBean() throws Exception
+	{
+		MBeanServer server = mock(MBeanServer.class, delegatesTo(MBeanServerFactory.newMBeanServer()));
+
+		JMXReporter reporter = new JMXReporter(server);
+		reporter.setClassNameAttributes(asList("type"));
+		reporter.addMBeanNotification();
+
+		ObjectName first = new ObjectName("org.kairosdb.jmxreporter:type=First");
+		ObjectName second = new ObjectName("org.kairosdb.jmxreporter:type=Second");
+		server.registerMBean(new TestImpl(), first);
+		server.registerMBean(new TestImpl(), second);
+
+		m_testTrigger.triggerCollection(Instant.now());
+		m_testTrigger.triggerCollection(Instant.now());
+
+		ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		verify(m_sink, times(2)).reportMetrics(captor.capture());
+		assertThat(captor.getValue()).hasSize(8);
+
+		verify(server, never()).getAttribute(any(ObjectName.class), anyString());
+		verify(server, times(2)).getAttributes(eq(first), any(String[].class));
+		verify(server, times(2)).getAttributes(eq(second), any(String[].class));
+
+		reporter.close();
+	}
+
+	@Test
+	void testExcludedBeansAreNotInspected() throws Exception
+	{
+		MBeanServer server = mock(MBeanServer.class, delegatesTo(MBeanServerFactory.newMBeanServer()));
+
+		JMXReporter reporter = new JMXReporter(server);
+		reporter.setClassNameAttributes(asList("type"));
+		reporter.setIncludePatterns(asList("org.kairosdb.jmxreporter:*"));
+		reporter.setExcludePatterns(asList("org.kairosdb.jmxreporter:type=Excluded,*"));
+		reporter.addMBeanNotification();
+
+		ObjectName included = new ObjectName("org.kairosdb.jmxreporter:type=Included");
+		ObjectName excluded = new ObjectName("org.kairosdb.jmxreporter:type=Excluded,kind=grass");
+		ObjectName other = new ObjectName("org.kairosdb.other:type=Other");
+		server.registerMBean(new TestImpl(), included);
+		server.registerMBean(new TestImpl(), excluded);
+		server.registerMBean(new TestImpl(), other);
+
+		m_testTrigger.triggerCollection(Instant.now());
+
+		ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		verify(m_sink).reportMetrics(captor.capture());
+		List<FormattedMetric> reportedMetrics = captor.getValue();
+		assertThat(reportedMetrics).hasSize(4);
+		for (FormattedMetric reportedMetric : reportedMetrics)
+			assertThat(reportedMetric.getClassName()).isEqualTo("org.kairosdb.jmxreporter.Included");
+
+		verify(server).getMBeanInfo(included);
+		verify(server, never()).getMBeanInfo(excluded);
+		verify(server, never()).getMBeanInfo(other);
+
+		reporter.close();
+	}
+
+	@Test
+	void testSlowBeansShareOneDeadline() throws Exception
+	{
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+
+		JMXReporter reporter = new JMXReporter(server);
+		reporter.setClassNameAttributes(asList("type"));
+		reporter.setPollTimeout(Duration.ofMillis(300));
+		reporter.addMBeanNotification();
+
+		for (int i = 0; i < 3; i++)
+			server.registerMBean(new Slow(), new ObjectName("org.kairosdb.jmxreporter:type=Slow"+i));
+
+		//First pass reads each bean as it is found
+		m_testTrigger.triggerCollection(Instant.now());
+
+		//Second pass polls all three together
+		long start = System.nanoTime();
+		m_testTrigger.triggerCollection(Instant.now());
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(elapsed).isLessThan(700);
+		reporter.close();
+	}
 }
@@ -0,0 +1,200 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DiskSpoolTest
+{
+	@TempDir
+	Path m_dir;
+
+	private static ByteBuffer bytes(String value)
+	{
+		return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String string(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private long segmentCount() throws IOException
+	{
+		try (Stream<Path> files = Files.list(m_dir))
+		{
+			return files.count();
+		}
+	}
+
+	@Test
+	public void test_replayInOrder() throws IOException
+	{
+		DiskSpool spool = new DiskSpool(m_dir, 1024 * 1024, Duration.ofHours(1), 0);
+		spool.append(bytes("one"));
+		spool.append(bytes("two"));
+		spool.append(bytes("three"));
+		assertThat(spool.size()).isEqualTo(3);
+
+		List<String> replayed = new ArrayList<>();
+		assertThat(spool.replay(record -> replayed.add(string(record)))).isEqualTo(3);
+
+		assertThat(replayed).containsExactly("one", "two", "three");
+		assertThat(spool.isEmpty()).isTrue();
+	}
+
+	@Test
+	public void test_failedReplayIsRetried() throws IOException
+	{
+		DiskSpool spool = new DiskSpool(m_dir, 1024 * 1024, Duration.ofHours(1), 0);
+		spool.append(bytes("one"));
+		spool.append(bytes("two"));
+
+		List<String> replayed = new ArrayList<>();
+		assertThatThrownBy(() -> spool.replay(record ->
+		{
+			String value = string(record);
+			if (value.equals("two"))
+				throw new IOException("backend down");
+			replayed.add(value);
+		})).isInstanceOf(IOException.class);
+
+		assertThat(replayed).containsExactly("one");
+		assertThat(spool.size()).isEqualTo(1);
+
+		spool.replay(record -> replayed.add(string(record)));
+		assertThat(replayed).containsExactly("one", "two");
+	}
+
+	@Test
+	public void test_reopenResumes() throws IOException
+	{
+		DiskSpool spool = new DiskSpool(m_dir, 1024 * 1024, Duration.ofHours(1), 1);
+		spool.append(bytes("one"));
+		spool.append(bytes("two"));
+		spool.append(bytes("three"));
+
+		//Rate of one per second replays only the first
+		List<String> replayed = new ArrayList<>();
+		assertThat(spool.replay(record -> replayed.add(string(record)))).isEqualTo(1);
+		spool.close();
+
+		DiskSpool reopened = new DiskSpool(m_dir, 1024 * 1024, Duration.ofHours(1), 0);
+		assertThat(reopened.size()).isEqualTo(2);
+		reopened.replay(record -> replayed.add(string(record)));
+		assertThat(replayed).containsExactly("one", "two", "three");
+	}
+
+	@Test
+	public void test_fullSpoolDropsOldest() throws IOException
+	{
+		//Segments are 64k so this holds two of them
+		DiskSpool spool = new DiskSpool(m_dir, 128 * 1024, Duration.ofHours(1), 0);
+		byte[] batch = new byte[40 * 1024];
+		for (int i = 0; i < 4; i++)
+		{
+			batch[0] = (byte)i;
+			spool.append(ByteBuffer.wrap(batch));
+		}
+
+		assertThat(spool.getDiskSize()).isLessThanOrEqualTo(128 * 1024);
+		assertThat(spool.getDropped()).isEqualTo(2);
+
+		List<Byte> replayed = new ArrayList<>();
+		spool.replay(record -> replayed.add(record.get(0)));
+		assertThat(replayed).containsExactly((byte)2, (byte)3);
+
+		//Replayed segments are deleted
+		assertThat(segmentCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void test_appendWhileReplaying() throws Exception
+	{
+		DiskSpool spool = new DiskSpool(m_dir, 1024 * 1024, Duration.ofHours(1), 0);
+		spool.append(bytes("one"));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		List<String> replayed = new ArrayList<>();
+		try
+		{
+			spool.replay(record ->
+			{
+				replayed.add(string(record));
+				if (replayed.size() > 1)
+					return;
+
+				//The replayer is sending, another thread must not wait on it
+				Future<Boolean> append = executor.submit(() ->
+				{
+					spool.append(bytes("two"));
+					return spool.isEmpty();
+				});
+
+				try
+				{
+					assertThat(append.get(5, TimeUnit.SECONDS)).isFalse();
+				}
+				catch (Exception e)
+				{
+					throw new IOException(e);
+				}
+			});
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		spool.replay(record -> replayed.add(string(record)));
+		assertThat(replayed).containsExactly("one", "two");
+		assertThat(spool.isEmpty()).isTrue();
+	}
+
+	@Test
+	public void test_expiredBatchesAreDropped() throws IOException, InterruptedException
+	{
+		DiskSpool spool = new DiskSpool(m_dir, 1024 * 1024, Duration.ofMillis(1), 0);
+		spool.append(bytes("old"));
+		Thread.sleep(10);
+
+		List<String> replayed = new ArrayList<>();
+		assertThat(spool.replay(record -> replayed.add(string(record)))).isEqualTo(0);
+		assertThat(replayed).isEmpty();
+		assertThat(spool.getDropped()).isEqualTo(1);
+	}
+
+	@Test
+	public void test_requests() throws IOException
+	{
+		DiskSpool spool = new DiskSpool(m_dir, 1024 * 1024, Duration.ofHours(1), 0);
+		byte[] body = "one two".getBytes(StandardCharsets.UTF_8);
+		spool.appendRequest(body, 3, true);
+		spool.appendRequest(body, body.length, false);
+
+		List<String> replayed = new ArrayList<>();
+		assertThat(spool.replayRequests((data, length, gzipped) ->
+				replayed.add(new String(data, 0, length, StandardCharsets.UTF_8) + ":" + gzipped))).isEqualTo(2);
+
+		assertThat(replayed).containsExactly("one:true", "one two:false");
+		spool.close();
+	}
+}
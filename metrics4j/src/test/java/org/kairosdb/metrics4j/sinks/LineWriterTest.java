@@ -0,0 +1,114 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.StringValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineWriterTest
+{
+	private final List<String> m_writes = new ArrayList<>();
+
+	private LineWriter newWriter(int capacity)
+	{
+		return new LineWriter(capacity, (buffer) ->
+		{
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			m_writes.add(new String(bytes, StandardCharsets.UTF_8));
+		});
+	}
+
+	private String written()
+	{
+		return String.join("", m_writes);
+	}
+
+	@Test
+	public void test_longMatchesString() throws IOException
+	{
+		long[] values = {0, 1, -1, 9, 10, 42, 1234567890L, -987654321L, Long.MAX_VALUE, Long.MIN_VALUE};
+		LineWriter writer = newWriter(16);
+		StringBuilder expected = new StringBuilder();
+
+		for (long value : values)
+		{
+			writer.append(value);
+			writer.endLine();
+			expected.append(value).append('\n');
+		}
+		writer.flush();
+
+		assertThat(written()).isEqualTo(expected.toString());
+	}
+
+	@Test
+	public void test_doubleMatchesString() throws IOException
+	{
+		double[] values = {0.0, -0.0, 1.0, -1.0, 42.0, 9999999.0, 1.0e7, 1.5, -0.25, 0.001, 1.0e-4,
+				123456.789, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MAX_VALUE};
+		LineWriter writer = newWriter(16);
+		StringBuilder expected = new StringBuilder();
+
+		for (double value : values)
+		{
+			writer.append(value);
+			writer.endLine();
+			expected.append(value).append('\n');
+		}
+		writer.flush();
+
+		assertThat(written()).isEqualTo(expected.toString());
+	}
+
+	@Test
+	public void test_utf8() throws IOException
+	{
+		String text = "café 日本 😀 ascii";
+		LineWriter writer = newWriter(8);
+
+		writer.append(text).endLine();
+		writer.flush();
+
+		assertThat(written()).isEqualTo(text + "\n");
+	}
+
+	@Test
+	public void test_metricValues() throws IOException
+	{
+		LineWriter writer = newWriter(64);
+
+		writer.append(new LongValue(42)).append(' ')
+				.append(new DoubleValue(1.5)).append(' ')
+				.append(new StringValue("str"));
+		writer.endLine();
+		writer.flush();
+
+		assertThat(written()).isEqualTo("42 1.5 str\n");
+	}
+
+	@Test
+	public void test_onlyCompletedLinesAreWritten() throws IOException
+	{
+		LineWriter writer = newWriter(16);
+
+		writer.append("first line").endLine();
+		writer.append("second line that does not fit");
+
+		//The first line was written to make room, the partial line stays buffered
+		assertThat(m_writes).containsExactly("first line\n");
+
+		writer.endLine();
+		writer.flush();
+
+		assertThat(written()).isEqualTo("first line\nsecond line that does not fit\n");
+	}
+}
@@ -0,0 +1,170 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestSenderTest
+{
+	@TempDir
+	Path m_dir;
+
+	/**
+	 Records what it is sent, fails the first m_failures requests
+	 */
+	private static class FakeTransport implements RequestSender.Transport
+	{
+		private final List<String> m_received = new CopyOnWriteArrayList<>();
+		private final AtomicInteger m_attempts = new AtomicInteger();
+		private final int m_failures;
+
+		private FakeTransport(int failures)
+		{
+			m_failures = failures;
+		}
+
+		@Override
+		public void send(byte[] data, int length, boolean gzipped) throws IOException
+		{
+			if (m_attempts.incrementAndGet() <= m_failures)
+				throw new IOException("Backend is down");
+
+			InputStream in = new ByteArrayInputStream(data, 0, length);
+			if (gzipped)
+				in = new GZIPInputStream(in);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				out.write(buffer, 0, read);
+
+			m_received.add(new String(out.toByteArray(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private static ByteBuffer bytes(String value)
+	{
+		return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static RequestSender newSender(FakeTransport transport, boolean gzip, int maxRetries, DiskSpool spool)
+	{
+		return new RequestSender("Test", transport, gzip, 2, maxRetries, Duration.ofMillis(1),
+				Duration.ofSeconds(10), spool);
+	}
+
+	@Test
+	public void test_send() throws IOException
+	{
+		FakeTransport transport = new FakeTransport(0);
+		RequestSender sender = newSender(transport, false, 0, null);
+
+		sender.write(bytes("one "));
+		sender.write(bytes("two"));
+		sender.send();
+		sender.write(bytes("three"));
+		sender.send();
+		sender.send(); //Nothing written, nothing sent
+		sender.close();
+
+		assertThat(transport.m_received).containsExactlyInAnyOrder("one two", "three");
+	}
+
+	@Test
+	public void test_gzip() throws IOException
+	{
+		FakeTransport transport = new FakeTransport(0);
+		RequestSender sender = newSender(transport, true, 0, null);
+
+		sender.write(bytes("compressed"));
+		sender.send();
+		sender.write(bytes("again"));
+		sender.send();
+		sender.close();
+
+		assertThat(transport.m_received).containsExactlyInAnyOrder("compressed", "again");
+	}
+
+	@Test
+	public void test_discard() throws IOException
+	{
+		FakeTransport transport = new FakeTransport(0);
+		RequestSender sender = newSender(transport, false, 0, null);
+
+		sender.write(bytes("partial"));
+		sender.discard();
+		sender.write(bytes("whole"));
+		sender.send();
+		sender.close();
+
+		assertThat(transport.m_received).containsExactly("whole");
+	}
+
+	@Test
+	public void test_retry() throws IOException
+	{
+		FakeTransport transport = new FakeTransport(2);
+		RequestSender sender = newSender(transport, false, 3, null);
+
+		sender.write(bytes("retried"));
+		sender.send();
+		sender.close();
+
+		assertThat(transport.m_attempts.get()).isEqualTo(3);
+		assertThat(transport.m_received).containsExactly("retried");
+	}
+
+	@Test
+	public void test_dropAfterRetries() throws IOException
+	{
+		FakeTransport transport = new FakeTransport(Integer.MAX_VALUE);
+		RequestSender sender = newSender(transport, false, 2, null);
+
+		sender.write(bytes("lost"));
+		sender.send();
+		sender.close();
+
+		assertThat(transport.m_attempts.get()).isEqualTo(3);
+		assertThat(transport.m_received).isEmpty();
+	}
+
+	@Test
+	public void test_spoolAndReplay() throws IOException
+	{
+		DiskSpool spool = new DiskSpool(m_dir, 1024 * 1024, Duration.ofHours(1), 0);
+		FakeTransport transport = new FakeTransport(2);
+		RequestSender sender = newSender(transport, true, 1, spool);
+
+		sender.write(bytes("spooled"));
+		sender.send();
+
+		//Wait for the failed request to land in the spool
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (spool.isEmpty() && System.currentTimeMillis() < deadline)
+			Thread.yield();
+		assertThat(spool.size()).isEqualTo(1);
+
+		//Backend is back, the next send replays the spool
+		sender.write(bytes("fresh"));
+		sender.send();
+		sender.close();
+
+		assertThat(transport.m_received).containsExactlyInAnyOrder("spooled", "fresh");
+		assertThat(spool.isEmpty()).isTrue();
+	}
+}
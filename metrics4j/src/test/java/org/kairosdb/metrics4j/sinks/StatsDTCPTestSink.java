@@ -2,9 +2,12 @@ package org.kairosdb.metrics4j.sinks;
 
 import org.kairosdb.metrics4j.MetricsContext;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class StatsDTCPTestSink extends StatsDTCPSink
 {
-	private String m_sentText;
+	private final StringBuilder m_sentText = new StringBuilder();
 
 	public StatsDTCPTestSink()
 	{
@@ -22,18 +25,15 @@ public class StatsDTCPTestSink extends StatsDTCPSink
 	}
 
 	@Override
-	protected void flush()
-	{
-	}
-
-	@Override
-	protected void sendText(String msg)
+	protected void writeBuffer(ByteBuffer buffer)
 	{
-		m_sentText = msg;
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		m_sentText.append(new String(bytes, StandardCharsets.UTF_8));
 	}
 
 	public String getSentText()
 	{
-		return m_sentText;
+		return m_sentText.toString().trim();
 	}
 }
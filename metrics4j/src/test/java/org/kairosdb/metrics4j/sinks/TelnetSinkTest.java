@@ -2,6 +2,7 @@ package org.kairosdb.metrics4j.sinks;
 
 import org.junit.jupiter.api.Test;
 import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.internal.MetricBatch;
 import org.kairosdb.metrics4j.internal.ReportedMetricImpl;
 import org.kairosdb.metrics4j.reporting.LongValue;
 
@@ -60,4 +61,25 @@ class TelnetSinkTest
 
 		assertThat(sink.getSentText()).isEqualTo("put FormattedName 962715600 42 host=localhost");
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testBatch()
+	{
+		TelnetTestSink sink = new TelnetTestSink(TelnetSink.Resolution.MILLISECONDS);
+
+		Map<String, String> tags = new HashMap<>();
+		tags.put("host", "localhost");
+
+		MetricBatch.Series series = new MetricBatch.Series("FormattedName", "value", "MyClass", "myMethod",
+				tags, new HashMap<>(), "");
+
+		MetricBatch batch = new MetricBatch();
+		batch.addLong(series, 962715600000_000_000L, 42);
+		batch.addDouble(series, 962715601000_000_000L, 1.5);
+
+		sink.reportBatch(batch);
+
+		assertThat(sink.getSentText()).isEqualTo("putm FormattedName 962715600000 42 host=localhost\n" +
+				"putm FormattedName 962715601000 1.5 host=localhost");
+	}
+}
@@ -0,0 +1,187 @@
+package org.kairosdb.metrics4j.sinks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kairosdb.metrics4j.internal.FormattedMetric;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextSocketSinkTest
+{
+	private static class LineSink extends TextSocketSink
+	{
+		private final List<String> m_packets = new ArrayList<>();
+		private final boolean m_capture;
+
+		private LineSink(boolean capture)
+		{
+			m_capture = capture;
+		}
+
+		@Override
+		public void reportMetrics(List<FormattedMetric> metrics)
+		{
+		}
+
+		@Override
+		protected void writeBuffer(ByteBuffer buffer) throws IOException
+		{
+			if (m_capture)
+			{
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				m_packets.add(new String(bytes, StandardCharsets.UTF_8));
+			}
+			else
+				super.writeBuffer(buffer);
+		}
+	}
+
+	@Test
+	public void test_udpPacketsAccumulateLines()
+	{
+		LineSink sink = new LineSink(true);
+		sink.setProtocol(Protocol.UDP);
+		sink.setMaxUdpPacketSize(50);
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 20; i++)
+		{
+			String line = "metric.name." + i + " " + i;
+			sink.sendText(line);
+			expected.append(line).append('\n');
+		}
+		sink.flush();
+
+		assertThat(String.join("", sink.m_packets)).isEqualTo(expected.toString());
+		for (int i = 0; i < sink.m_packets.size(); i++)
+		{
+			String packet = sink.m_packets.get(i);
+			assertThat(packet.length()).isLessThanOrEqualTo(50);
+			//every full packet holds more than one line, the last one gets what is left
+			if (i < sink.m_packets.size() - 1)
+				assertThat(packet.split("\n").length).isGreaterThan(1);
+		}
+	}
+
+	@Test
+	public void test_udpLineBiggerThanPacket()
+	{
+		LineSink sink = new LineSink(true);
+		sink.setProtocol(Protocol.UDP);
+		sink.setMaxUdpPacketSize(10);
+
+		sink.sendText("a");
+		sink.sendText("this line is too long");
+		sink.sendText("b");
+		sink.flush();
+
+		assertThat(sink.m_packets).containsExactly("a\n", "this line is too long\n", "b\n");
+	}
+
+	@Test
+	public void test_tcpSocket() throws IOException
+	{
+		try (ServerSocket server = new ServerSocket(0))
+		{
+			LineSink sink = new LineSink(false);
+			sink.setHost("localhost");
+			sink.setPort(server.getLocalPort());
+			sink.init(null);
+
+			try (Socket client = server.accept())
+			{
+				sink.sendText("line one");
+				sink.sendText("line two");
+				sink.flush();
+				sink.close();
+
+				BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+				assertThat(reader.readLine()).isEqualTo("line one");
+				assertThat(reader.readLine()).isEqualTo("line two");
+				assertThat(reader.readLine()).isNull();
+			}
+		}
+	}
+
+	@Test
+	public void test_udpSocket() throws IOException
+	{
+		try (DatagramSocket server = new DatagramSocket(0))
+		{
+			server.setSoTimeout(10_000);
+			LineSink sink = new LineSink(false);
+			sink.setHost("localhost");
+			sink.setPort(server.getLocalPort());
+			sink.setProtocol(Protocol.UDP);
+			sink.init(null);
+
+			sink.sendText("line one");
+			sink.sendText("line two");
+			sink.flush();
+			sink.close();
+
+			DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+			server.receive(packet);
+			assertThat(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8))
+					.isEqualTo("line one\nline two\n");
+		}
+	}
+
+	@Test
+	public void test_tcpSpoolWhileHostDown(@TempDir Path spoolDir) throws IOException
+	{
+		int port;
+		try (ServerSocket server = new ServerSocket(0))
+		{
+			port = server.getLocalPort();
+		}
+
+		LineSink sink = new LineSink(false);
+		sink.setHost("localhost");
+		sink.setPort(port);
+		sink.setSpoolDir(spoolDir.toString());
+		sink.setSpoolRetryDelay(Duration.ZERO);
+		sink.setSpoolReplayRate(0);
+		sink.init(null);
+
+		//Nothing is listening so both writes are spooled
+		sink.sendText("line one");
+		sink.flush();
+		sink.sendText("line two");
+		sink.flush();
+		assertThat(sink.m_spool.size()).isEqualTo(2);
+
+		try (ServerSocket server = new ServerSocket(port))
+		{
+			sink.sendText("line three");
+			sink.flush();
+			sink.close();
+
+			try (Socket client = server.accept())
+			{
+				BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+				assertThat(reader.readLine()).isEqualTo("line one");
+				assertThat(reader.readLine()).isEqualTo("line two");
+				assertThat(reader.readLine()).isEqualTo("line three");
+				assertThat(reader.readLine()).isNull();
+			}
+		}
+
+		assertThat(sink.m_spool.isEmpty()).isTrue();
+	}
+}
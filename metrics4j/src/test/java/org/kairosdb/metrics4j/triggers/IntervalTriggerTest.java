@@ -0,0 +1,42 @@
+package org.kairosdb.metrics4j.triggers;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntervalTriggerTest
+{
+	@Test
+	public void test_closeWaitsForReport() throws InterruptedException
+	{
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean finished = new AtomicBoolean();
+
+		IntervalTrigger trigger = new IntervalTrigger();
+		trigger.setInterval(Duration.ofMillis(10));
+		trigger.setMetricCollection(now ->
+		{
+			started.countDown();
+			try
+			{
+				Thread.sleep(200);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finished.set(true);
+		});
+		trigger.init(null);
+
+		assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+		trigger.close();
+
+		assertThat(finished.get()).isTrue();
+	}
+}
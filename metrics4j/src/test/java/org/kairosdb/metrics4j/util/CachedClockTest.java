@@ -0,0 +1,30 @@
+package org.kairosdb.metrics4j.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachedClockTest
+{
+	@Test
+	public void test_advances() throws InterruptedException
+	{
+		try (CachedClock clock = new CachedClock(1))
+		{
+			long start = clock.now();
+			assertThat(start).isCloseTo(System.currentTimeMillis(), offset(1000L));
+
+			Thread.sleep(50);
+
+			assertThat(clock.now()).isGreaterThan(start);
+		}
+	}
+
+	@Test
+	public void test_invalidResolution()
+	{
+		assertThrows(IllegalArgumentException.class, () -> new CachedClock(0));
+	}
+}
@@ -1,87 +1,457 @@
 package org.kairosdb.metrics4jplugin.influxdb;
 
-import lombok.Getter;
 import lombok.Setter;
-import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.kairosdb.metrics4j.MetricsContext;
 import org.kairosdb.metrics4j.formatters.DefaultFormatter;
 import org.kairosdb.metrics4j.formatters.Formatter;
 import org.kairosdb.metrics4j.internal.FormattedMetric;
-import org.kairosdb.metrics4j.sinks.MetricSink;
+import org.kairosdb.metrics4j.internal.MetricBatch;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+import org.kairosdb.metrics4j.sinks.BatchMetricSink;
+import org.kairosdb.metrics4j.sinks.DiskSpool;
+import org.kairosdb.metrics4j.sinks.ExclusiveSink;
+import org.kairosdb.metrics4j.sinks.LineWriter;
+import org.kairosdb.metrics4j.sinks.RequestSender;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
-public class InfluxSink implements MetricSink, Closeable
+/**
+ Sends metrics to InfluxDB using the line protocol.  Lines are encoded
+ straight into a reusable buffer and copied into pooled request bodies
+ (optionally gzipped) of at most batch-size lines by a RequestSender.  Each
+ body is posted on a sender thread, no more than max-in-flight requests are
+ sent at once and reporting waits when that many are outstanding.  Failed
+ requests are retried with an exponential backoff.
+
+ When spool-dir is set requests that still fail after max-retries, or that
+ can't get a sender within timeout, are spilled to a DiskSpool instead of
+ being dropped.  The spool is replayed on a sender thread alongside new
+ requests once Influx answers again, points carry their own timestamps so
+ the order they arrive in does not matter.
+
+ With transport UDP lines are packed into datagrams of max-udp-packet-size
+ and sent to udp-host and udp-port, precision is then set on the Influx UDP
+ listener.
+ */
+public class InfluxSink implements BatchMetricSink, ExclusiveSink, Closeable
 {
 	private static final Logger logger = LoggerFactory.getLogger(InfluxSink.class);
+	private static final Formatter DEFAULT_FORMATTER = new DefaultFormatter();
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	//Characters that must be escaped in each part of a line
+	private static final String MEASUREMENT_SPECIAL = ", ";
+	private static final String KEY_SPECIAL = ",= ";
+	private static final String STRING_SPECIAL = "\"\\";
+
+	public enum Precision
+	{
+		NANOSECONDS(null),
+		MICROSECONDS("u"),
+		MILLISECONDS("ms"),
+		SECONDS("s");
+
+		private final String m_param;
+
+		Precision(String param)
+		{
+			m_param = param;
+		}
+	}
+
+	public enum Transport
+	{
+		HTTP,
+		UDP
+	}
+
 	@Setter
 	private String hostUrl = "http://localhost:8086/write?db=mydb";
 
-	//todo make db select a separate sink property
+	@Setter
+	private Precision precision = Precision.NANOSECONDS;
+
+	@Setter
+	private int batchSize = 5000;
+
+	@Setter
+	private boolean gzip = false;
+
+	@Setter
+	private int maxInFlight = 2;
+
+	@Setter
+	private int maxRetries = 3;
+
+	@Setter
+	private Duration retryBackoff = Duration.ofSeconds(1);
+
+	@Setter
+	private Duration timeout = Duration.ofSeconds(10);
+
+	@Setter
+	private Transport transport = Transport.HTTP;
+
+	@Setter
+	private String udpHost = "localhost";
+
+	@Setter
+	private int udpPort = 8089;
+
+	@Setter
+	private int maxUdpPacketSize = 1024;
+
+	@Setter
+	private String spoolDir;
+
+	@Setter
+	private long spoolMaxSize = 256L * 1024 * 1024;
+
+	@Setter
+	private Duration spoolMaxAge = Duration.ofHours(24);
+
+	@Setter
+	private int spoolReplayRate = 10;
+
+	private final LineWriter m_writer = new LineWriter(BUFFER_SIZE, this::writeBuffer);
 
+	private String m_writeUrl;
 	private CloseableHttpClient m_httpClient;
-	private static final Formatter DEFAULT_FORMATTER = new DefaultFormatter();
+	private RequestSender m_sender;
+	private DatagramChannel m_udpChannel;
+	private InetSocketAddress m_udpAddress;
+
+	//Lines in the request body currently being written
+	private int m_lineCount;
+
+	//Line currently being written
+	private boolean m_lineOpen;
+	private long m_lineTime;
+
+	/**
+	 Escapes characters that have special meaning in the line protocol by
+	 putting a backslash in front of them.
+	 */
+	/*package*/ static String escape(String in, String special)
+	{
+		int length = in.length();
+		int i = 0;
+		while (i < length && special.indexOf(in.charAt(i)) == -1)
+			i++;
 
-	private String escape(String in)
+		if (i == length)
+			return in;
+
+		StringBuilder sb = new StringBuilder(length + 8);
+		sb.append(in, 0, i);
+		for (; i < length; i++)
+		{
+			char c = in.charAt(i);
+			if (special.indexOf(c) != -1)
+				sb.append('\\');
+			sb.append(c);
+		}
+
+		return sb.toString();
+	}
+
+	private long timestamp(long epochNanos)
 	{
-		return in;
+		switch (precision)
+		{
+			case NANOSECONDS:
+				return epochNanos;
+			case MICROSECONDS:
+				return Math.floorDiv(epochNanos, 1_000L);
+			case MILLISECONDS:
+				return Math.floorDiv(epochNanos, 1_000_000L);
+			default:
+				return Math.floorDiv(epochNanos, 1_000_000_000L);
+		}
 	}
 
-	@Override
-	public void reportMetrics(List<FormattedMetric> metrics)
+	private long timestamp(Instant time)
 	{
-		StringBuilder sb = new StringBuilder();
-		for (FormattedMetric metric : metrics)
+		switch (precision)
 		{
-			sb.append(escape(metric.getSamples().get(0).getMetricName()));
+			case NANOSECONDS:
+				return time.getEpochSecond() * 1_000_000_000L + time.getNano();
+			case MICROSECONDS:
+				return time.getEpochSecond() * 1_000_000L + time.getNano() / 1_000;
+			case MILLISECONDS:
+				return time.toEpochMilli();
+			default:
+				return time.getEpochSecond();
+		}
+	}
 
-			Map<String, String> tags = metric.getTags();
-			for (String tagKey : tags.keySet())
+	@Override
+	public synchronized void reportMetrics(List<FormattedMetric> metrics)
+	{
+		try
+		{
+			for (FormattedMetric metric : metrics)
 			{
-				sb.append(",").append(escape(tagKey)).append("=")
-						.append(escape(tags.get(tagKey)));
+				List<FormattedMetric.Sample> samples = metric.getSamples();
+				if (samples.isEmpty())
+					continue;
+
+				String measurement = samples.get(0).getMetricName();
+				Instant lineTime = null;
+
+				//Samples taken at the same time are sent as fields of one line
+				for (FormattedMetric.Sample sample : samples)
+				{
+					MetricValue value = sample.getValue();
+					if (!isValid(value))
+						continue;
+
+					boolean newLine = !m_lineOpen || !sample.getTime().equals(lineTime);
+					if (newLine)
+					{
+						endLine();
+						startLine(measurement, metric.getTags().entrySet());
+						lineTime = sample.getTime();
+						m_lineTime = timestamp(lineTime);
+					}
+
+					appendField(newLine, sample.getFieldName(), value);
+				}
+
+				endLine();
 			}
 
-			Instant lastSample = Instant.now();
-			for (FormattedMetric.Sample sample : metric.getSamples())
+			sendBody();
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
+		}
+	}
+
+	/**
+	 Encodes the batch columns directly.  Consecutive rows that share the tags
+	 of a single report and have the same time become fields of one line.
+	 */
+	@Override
+	public synchronized void reportBatch(MetricBatch batch)
+	{
+		try
+		{
+			MetricBatch.Series lineSeries = null;
+
+			for (int row = 0; row < batch.size(); row++)
 			{
-				sb.append(" ").append(sample.getFieldName()).append("=")
-						.append(escape(sample.getValue().getValueAsString()));
+				MetricBatch.Series series = batch.getRowSeries(row);
+				long time = batch.getTime(row);
+				byte type = batch.getType(row);
+
+				if (type == MetricBatch.TYPE_DOUBLE && !Double.isFinite(batch.getDouble(row)))
+					continue;
+				if (type == MetricBatch.TYPE_OBJECT && !isValid(batch.getValue(row)))
+					continue;
+
+				boolean newLine = !m_lineOpen || series == lineSeries ||
+						series.getTags() != lineSeries.getTags() || timestamp(time) != m_lineTime;
+
+				if (newLine)
+				{
+					endLine();
+					startLine(series.getMetricName(), series.getTagEntries());
+					m_lineTime = timestamp(time);
+				}
+
+				lineSeries = series;
 
-				lastSample = sample.getTime();
+				switch (type)
+				{
+					case MetricBatch.TYPE_LONG:
+						startField(newLine, series.getFieldName());
+						m_writer.append(batch.getLong(row));
+						break;
+					case MetricBatch.TYPE_DOUBLE:
+						startField(newLine, series.getFieldName());
+						m_writer.append(batch.getDouble(row));
+						break;
+					default:
+						appendField(newLine, series.getFieldName(), batch.getValue(row));
+				}
 			}
 
+			endLine();
+			sendBody();
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
+		}
+	}
+
+	private static boolean isValid(MetricValue value)
+	{
+		//Influx has no representation for NaN or infinity
+		return !(value instanceof DoubleValue) || Double.isFinite(((DoubleValue) value).getValue());
+	}
+
+	private void startLine(String measurement, Iterable<Map.Entry<String, String>> tags) throws IOException
+	{
+		m_writer.append(escape(measurement, MEASUREMENT_SPECIAL));
 
-			//todo add precision parameter
-			long time = lastSample.getEpochSecond();
-			time *= 1000000000l; //convert to nanoseconds
-			time += lastSample.getNano(); //the nanoseconds returned by inst.getNano() are the nanoseconds past the second so they need to be added to the epoch second
-			sb.append(" ").append(time);
+		for (Map.Entry<String, String> tag : tags)
+		{
+			String value = tag.getValue();
+			if (value == null || value.isEmpty())
+				continue; //Influx rejects empty tag values
 
-			sb.append("\n");
+			m_writer.append(',').append(escape(tag.getKey(), KEY_SPECIAL))
+					.append('=').append(escape(value, KEY_SPECIAL));
 		}
 
-		HttpPost post = new HttpPost(hostUrl);
-		post.setEntity(new ByteArrayEntity(sb.toString().getBytes()));
+		m_lineOpen = true;
+	}
 
-		try
+	private void startField(boolean first, String fieldName) throws IOException
+	{
+		m_writer.append(first ? ' ' : ',').append(escape(fieldName, KEY_SPECIAL)).append('=');
+	}
+
+	private void appendField(boolean first, String fieldName, MetricValue value) throws IOException
+	{
+		startField(first, fieldName);
+
+		if (value instanceof LongValue || value instanceof DoubleValue)
+			m_writer.append(value);
+		else if (MetricValue.TYPE_STRING.equals(value.getType()))
+			m_writer.append('"').append(escape(value.getValueAsString(), STRING_SPECIAL)).append('"');
+		else
+			m_writer.append(value.getValueAsString());
+	}
+
+	/**
+	 Adds the timestamp to the open line and ends it.  Once batch-size lines
+	 are written the request is sent, for UDP lines are packed into packets.
+	 */
+	private void endLine() throws IOException
+	{
+		if (!m_lineOpen)
+			return;
+
+		m_lineOpen = false;
+		m_writer.append(' ').append(m_lineTime);
+		m_writer.endLine();
+		m_lineCount++;
+
+		if (transport == Transport.UDP)
 		{
-			m_httpClient.execute(post);
+			if (m_writer.size() > maxUdpPacketSize)
+			{
+				m_writer.writeBeforeLastLine();
+
+				//A single line bigger than a packet is sent on its own
+				if (m_writer.size() > maxUdpPacketSize)
+					m_writer.flush();
+			}
 		}
-		catch (IOException e)
+		else if (m_lineCount >= batchSize)
+			sendBody();
+	}
+
+	/**
+	 Called by the LineWriter with completed lines
+	 */
+	private void writeBuffer(ByteBuffer buffer) throws IOException
+	{
+		if (transport == Transport.UDP)
 		{
-			logger.error("Unable to send metrics to Influx", e);
+			if (m_udpChannel.send(buffer, m_udpAddress) == 0)
+				logger.warn("Dropped UDP packet to {}, no room in the socket buffer", udpHost);
+			return;
 		}
+
+		m_sender.write(buffer);
+	}
+
+	/**
+	 Hands everything written so far to the sender, waits if max-in-flight
+	 requests are already being sent.
+	 */
+	private void sendBody() throws IOException
+	{
+		m_writer.flush();
+		m_lineCount = 0;
+
+		if (m_sender != null)
+			m_sender.send();
+	}
+
+	/**
+	 Sends one write request.  Returns normally when Influx took the data or
+	 rejected it as bad, throws when the request should be tried again.
+	 */
+	private void send(byte[] data, int length, boolean gzipped) throws IOException
+	{
+		HttpPost post = new HttpPost(m_writeUrl);
+		post.setEntity(new ByteArrayEntity(data, 0, length));
+		if (gzipped)
+			post.setHeader("Content-Encoding", "gzip");
+
+		try (CloseableHttpResponse response = m_httpClient.execute(post))
+		{
+			int status = response.getStatusLine().getStatusCode();
+			if (status < 300)
+			{
+				EntityUtils.consume(response.getEntity());
+				return;
+			}
+
+			String message = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+
+			if (status < 500 && status != 429)
+			{
+				//Retrying will not help, the data is bad
+				logger.error("Influx rejected metrics with status {}: {}", status, message);
+				return;
+			}
+
+			throw new IOException("Influx returned status " + status + ": " + message);
+		}
+	}
+
+	private void writeFailed(IOException e)
+	{
+		logger.error("Unable to send metrics to Influx", e);
+		m_writer.clear();
+		m_lineOpen = false;
+		m_lineCount = 0;
+		if (m_sender != null)
+			m_sender.discard();
+	}
+
+	@Override
+	public boolean isExclusive()
+	{
+		return spoolDir != null;
 	}
 
 	@Override
@@ -93,12 +463,69 @@ public class InfluxSink implements MetricSink, Closeable
 	@Override
 	public void init(MetricsContext context)
 	{
-		m_httpClient = HttpClients.createDefault();
+		if (transport == Transport.UDP)
+		{
+			try
+			{
+				m_udpAddress = new InetSocketAddress(udpHost, udpPort);
+				m_udpChannel = DatagramChannel.open();
+				m_udpChannel.configureBlocking(false);
+			}
+			catch (IOException e)
+			{
+				logger.error("Unable to open UDP channel for Influx", e);
+			}
+			return;
+		}
+
+		m_writeUrl = hostUrl;
+		if (precision.m_param != null)
+			m_writeUrl += (hostUrl.contains("?") ? "&" : "?") + "precision=" + precision.m_param;
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxInFlight);
+		connectionManager.setDefaultMaxPerRoute(maxInFlight);
+
+		int timeoutMs = (int) timeout.toMillis();
+		m_httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectTimeout(timeoutMs)
+						.setConnectionRequestTimeout(timeoutMs)
+						.setSocketTimeout(timeoutMs)
+						.build())
+				.build();
+
+		DiskSpool spool = null;
+		if (spoolDir != null)
+		{
+			try
+			{
+				spool = new DiskSpool(Paths.get(spoolDir), spoolMaxSize, spoolMaxAge, spoolReplayRate);
+			}
+			catch (IOException e)
+			{
+				logger.error("Unable to open spool directory {}", spoolDir, e);
+			}
+		}
+
+		m_sender = new RequestSender("Influx", this::send, gzip, maxInFlight, maxRetries,
+				retryBackoff, timeout, spool);
 	}
 
+	/**
+	 Waits for outstanding requests to finish before closing the client
+	 */
 	@Override
 	public void close() throws IOException
 	{
-		m_httpClient.close();
+		if (m_udpChannel != null)
+			m_udpChannel.close();
+
+		if (m_sender != null)
+			m_sender.close();
+
+		if (m_httpClient != null)
+			m_httpClient.close();
 	}
 }
@@ -0,0 +1,247 @@
+package org.kairosdb.metrics4jplugin.influxdb;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.internal.MetricBatch;
+import org.kairosdb.metrics4j.reporting.StringValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class InfluxSinkTest
+{
+	private static class Request
+	{
+		private final String m_query;
+		private final String m_contentEncoding;
+		private final String m_body;
+
+		private Request(String query, String contentEncoding, String body)
+		{
+			m_query = query;
+			m_contentEncoding = contentEncoding;
+			m_body = body;
+		}
+	}
+
+	private HttpServer m_server;
+	private final List<Request> m_requests = new CopyOnWriteArrayList<>();
+	private final AtomicInteger m_failures = new AtomicInteger();
+
+	@BeforeEach
+	public void startServer() throws IOException
+	{
+		m_server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		m_server.createContext("/write", exchange ->
+		{
+			String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+			InputStream in = exchange.getRequestBody();
+			if ("gzip".equals(encoding))
+				in = new GZIPInputStream(in);
+
+			m_requests.add(new Request(exchange.getRequestURI().getQuery(), encoding, read(in)));
+
+			int status = m_failures.getAndDecrement() > 0 ? 500 : 204;
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+		});
+		m_server.start();
+	}
+
+	@AfterEach
+	public void stopServer()
+	{
+		m_server.stop(0);
+	}
+
+	private static String read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private InfluxSink newSink()
+	{
+		InfluxSink sink = new InfluxSink();
+		sink.setHostUrl("http://localhost:" + m_server.getAddress().getPort() + "/write?db=test");
+		sink.setRetryBackoff(Duration.ofMillis(10));
+		return sink;
+	}
+
+	private static MetricBatch.Series series(String name, String field, Map<String, String> tags)
+	{
+		return new MetricBatch.Series(name, field, "TestClass", "testMethod", tags, Collections.emptyMap(), null);
+	}
+
+	@Test
+	public void test_escapingAndPrecision() throws IOException
+	{
+		InfluxSink sink = newSink();
+		sink.setPrecision(InfluxSink.Precision.MILLISECONDS);
+		sink.init(mock(MetricsContext.class));
+
+		Map<String, String> tags = new HashMap<>();
+		tags.put("host name", "a,b=c");
+		tags.put("empty", "");
+
+		MetricBatch batch = new MetricBatch();
+		batch.add(series("my metric", "value", tags), 1_000_000_000L, new StringValue("say \"hi\""));
+		sink.reportBatch(batch);
+		sink.close();
+
+		assertThat(m_requests).hasSize(1);
+		assertThat(m_requests.get(0).m_query).isEqualTo("db=test&precision=ms");
+		assertThat(m_requests.get(0).m_body).isEqualTo("my\\ metric,host\\ name=a\\,b\\=c value=\"say \\\"hi\\\"\" 1000\n");
+	}
+
+	@Test
+	public void test_fieldsOfOneReportShareALine() throws IOException
+	{
+		InfluxSink sink = newSink();
+		sink.setPrecision(InfluxSink.Precision.SECONDS);
+		sink.init(mock(MetricsContext.class));
+
+		Map<String, String> tags = Collections.singletonMap("host", "h1");
+
+		MetricBatch batch = new MetricBatch();
+		batch.addLong(series("stats", "min", tags), 2_000_000_000L, 1);
+		batch.addDouble(series("stats", "max", tags), 2_000_000_000L, 2.5);
+		batch.addDouble(series("stats", "max", tags), 3_000_000_000L, Double.NaN);
+		//Each collector reports with its own tags map
+		MetricBatch.Series bag = series("bag", "value", Collections.singletonMap("host", "h1"));
+		batch.addLong(bag, 2_000_000_000L, 3);
+		batch.addLong(bag, 3_000_000_000L, 4);
+		sink.reportBatch(batch);
+		sink.close();
+
+		assertThat(m_requests).hasSize(1);
+		assertThat(m_requests.get(0).m_body).isEqualTo(
+				"stats,host=h1 min=1,max=2.5 2\n" +
+				"bag,host=h1 value=3 2\n" +
+				"bag,host=h1 value=4 3\n");
+	}
+
+	@Test
+	public void test_batchSizeAndGzip() throws IOException
+	{
+		InfluxSink sink = newSink();
+		sink.setBatchSize(2);
+		sink.setGzip(true);
+		sink.init(mock(MetricsContext.class));
+
+		MetricBatch batch = new MetricBatch();
+		MetricBatch.Series series = series("count", "value", Collections.emptyMap());
+		for (int i = 0; i < 5; i++)
+			batch.addLong(series, i * 1_000_000L, i);
+
+		sink.reportBatch(batch);
+		sink.close();
+
+		assertThat(m_requests).hasSize(3);
+		StringBuilder all = new StringBuilder();
+		for (Request request : m_requests)
+		{
+			assertThat(request.m_contentEncoding).isEqualTo("gzip");
+			all.append(request.m_body);
+		}
+
+		assertThat(all.toString().split("\n")).hasSize(5).contains("count value=4 4000000");
+	}
+
+	@Test
+	public void test_retryAfterServerError() throws IOException
+	{
+		m_failures.set(2);
+		InfluxSink sink = newSink();
+		sink.init(mock(MetricsContext.class));
+
+		MetricBatch batch = new MetricBatch();
+		batch.addLong(series("count", "value", Collections.emptyMap()), 1_000_123L, 42);
+		sink.reportBatch(batch);
+		sink.close();
+
+		assertThat(m_requests).hasSize(3);
+		assertThat(m_requests.get(2).m_body).isEqualTo(m_requests.get(0).m_body).isEqualTo("count value=42 1000123\n");
+	}
+
+	@Test
+	public void test_spoolReplayedAfterRestart(@TempDir Path spoolDir) throws IOException
+	{
+		m_failures.set(1);
+		InfluxSink sink = newSink();
+		sink.setMaxRetries(0);
+		sink.setSpoolDir(spoolDir.toString());
+		sink.init(mock(MetricsContext.class));
+
+		MetricBatch batch = new MetricBatch();
+		batch.addLong(series("count", "value", Collections.emptyMap()), 1_000_000L, 1);
+		sink.reportBatch(batch);
+		sink.close();
+
+		//A new sink on the same directory replays what the first one spooled
+		sink = newSink();
+		sink.setSpoolDir(spoolDir.toString());
+		sink.setSpoolReplayRate(0);
+		sink.init(mock(MetricsContext.class));
+
+		batch = new MetricBatch();
+		batch.addLong(series("count", "value", Collections.emptyMap()), 2_000_000L, 2);
+		sink.reportBatch(batch);
+		sink.close();
+
+		assertThat(m_requests).hasSize(3);
+		assertThat(m_requests.subList(1, 3)).extracting(request -> request.m_body)
+				.containsExactlyInAnyOrder("count value=1 1000000\n", "count value=2 2000000\n");
+	}
+
+	@Test
+	public void test_udp() throws IOException
+	{
+		try (DatagramChannel server = DatagramChannel.open())
+		{
+			server.bind(new InetSocketAddress("localhost", 0));
+
+			InfluxSink sink = new InfluxSink();
+			sink.setTransport(InfluxSink.Transport.UDP);
+			sink.setUdpPort(((InetSocketAddress) server.getLocalAddress()).getPort());
+			sink.init(mock(MetricsContext.class));
+
+			MetricBatch batch = new MetricBatch();
+			batch.addLong(series("count", "value", Collections.emptyMap()), 1_000_000L, 42);
+			sink.reportBatch(batch);
+
+			ByteBuffer packet = ByteBuffer.allocate(1024);
+			server.receive(packet);
+			packet.flip();
+			assertThat(StandardCharsets.UTF_8.decode(packet).toString()).isEqualTo("count value=42 1000000\n");
+
+			sink.close();
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package org.kairosdb.metrics4jplugin.kairosdb;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+import org.kairosdb.metrics4j.sinks.DiskSpool;
+import org.kairosdb.metrics4j.sinks.LineWriter;
+import org.kairosdb.metrics4j.sinks.RequestSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ Writes the /api/v1/datapoints json straight from FormattedMetrics without
+ going through the kairosdb client MetricBuilder.  Samples with the same name,
+ tags and ttl are written as one entry with many data points.  The json is
+ encoded into a reusable buffer and handed to a RequestSender in requests of
+ at most maxBatchSize data points.  The sender posts them with no more than
+ maxInFlight requests outstanding, retries failed requests and spools them to
+ the DiskSpool when Kairos stays unavailable.
+ */
+public class DatapointStreamer implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(DatapointStreamer.class);
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String DATAPOINTS_PATH = "/api/v1/datapoints";
+
+	private final String m_url;
+	private final int m_maxBatchSize;
+	private final CloseableHttpClient m_httpClient;
+	private final RequestSender m_sender;
+	private final LineWriter m_writer;
+
+	//Data points in the request body currently being written
+	private int m_pointCount;
+
+	/**
+	 Samples are grouped by this before being written
+	 */
+	private static class SeriesKey
+	{
+		private final String m_name;
+		private final Map<String, String> m_tags;
+		private final long m_ttl;
+		private final boolean m_string;
+
+		private SeriesKey(String name, Map<String, String> tags, long ttl, boolean string)
+		{
+			m_name = name;
+			m_tags = tags;
+			m_ttl = ttl;
+			m_string = string;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			SeriesKey seriesKey = (SeriesKey) o;
+			return m_ttl == seriesKey.m_ttl &&
+					m_string == seriesKey.m_string &&
+					m_name.equals(seriesKey.m_name) &&
+					m_tags.equals(seriesKey.m_tags);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(m_name, m_tags, m_ttl, m_string);
+		}
+	}
+
+	/**
+	 @param hostUrl Kairos url, /api/v1/datapoints is added to it
+	 @param gzip Compress request bodies
+	 @param maxBatchSize Max number of data points in one request
+	 @param maxInFlight Number of requests that can be sent at the same time
+	 @param maxRetries Number of times a failed request is retried
+	 @param retryBackoff Time to wait before the first retry, doubled for each one after
+	 @param timeout Connect and read timeout
+	 @param spool Spool for failed requests, may be null
+	 */
+	public DatapointStreamer(String hostUrl, boolean gzip, int maxBatchSize, int maxInFlight, int maxRetries,
+			Duration retryBackoff, Duration timeout, DiskSpool spool)
+	{
+		m_url = (hostUrl.endsWith("/") ? hostUrl.substring(0, hostUrl.length() - 1) : hostUrl) + DATAPOINTS_PATH;
+		m_maxBatchSize = maxBatchSize;
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxInFlight);
+		connectionManager.setDefaultMaxPerRoute(maxInFlight);
+
+		int timeoutMs = (int) timeout.toMillis();
+		m_httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectTimeout(timeoutMs)
+						.setConnectionRequestTimeout(timeoutMs)
+						.setSocketTimeout(timeoutMs)
+						.build())
+				.build();
+
+		m_sender = new RequestSender("Kairos", this::send, gzip, maxInFlight, maxRetries, retryBackoff,
+				timeout, spool);
+		m_writer = new LineWriter(BUFFER_SIZE, m_sender::write);
+	}
+
+	private static boolean isValid(MetricValue value)
+	{
+		//Json has no representation for NaN or infinity
+		return !(value instanceof DoubleValue) || Double.isFinite(((DoubleValue) value).getValue());
+	}
+
+	/**
+	 @param metrics Metrics to send
+	 @param defaultTtl Ttl in seconds for metrics that do not have a ttl prop
+	 */
+	public synchronized void report(List<FormattedMetric> metrics, long defaultTtl)
+	{
+		Map<SeriesKey, List<FormattedMetric.Sample>> series = new LinkedHashMap<>();
+
+		for (FormattedMetric metric : metrics)
+		{
+			String metricTtl = metric.getProps().get("ttl");
+			long ttl = metricTtl != null ? Long.parseLong(metricTtl) : defaultTtl;
+
+			SeriesKey lastKey = null;
+			List<FormattedMetric.Sample> lastSamples = null;
+			for (FormattedMetric.Sample sample : metric.getSamples())
+			{
+				MetricValue value = sample.getValue();
+				if (!isValid(value))
+					continue;
+
+				boolean string = MetricValue.TYPE_STRING.equals(value.getType());
+
+				//Samples of a metric are usually for the same name
+				if (lastKey == null || lastKey.m_string != string || !lastKey.m_name.equals(sample.getMetricName()))
+				{
+					lastKey = new SeriesKey(sample.getMetricName(), metric.getTags(), ttl, string);
+					lastSamples = series.computeIfAbsent(lastKey, k -> new ArrayList<>());
+				}
+
+				lastSamples.add(sample);
+			}
+		}
+
+		if (series.isEmpty())
+			return;
+
+		try
+		{
+			m_writer.append('[');
+			boolean firstEntry = true;
+			for (Map.Entry<SeriesKey, List<FormattedMetric.Sample>> entry : series.entrySet())
+			{
+				SeriesKey key = entry.getKey();
+				if (m_pointCount >= m_maxBatchSize)
+				{
+					//Split before the entry header so no request ends with an empty entry
+					m_writer.append(']');
+					m_writer.endLine();
+					sendBody();
+
+					m_writer.append('[');
+					firstEntry = true;
+				}
+
+				startEntry(key, firstEntry);
+				firstEntry = false;
+
+				boolean firstPoint = true;
+				for (FormattedMetric.Sample sample : entry.getValue())
+				{
+					if (m_pointCount >= m_maxBatchSize)
+					{
+						//Finish this request and carry on with the same entry in the next
+						m_writer.append("]}]");
+						m_writer.endLine();
+						sendBody();
+
+						m_writer.append('[');
+						startEntry(key, true);
+						firstPoint = true;
+					}
+
+					if (!firstPoint)
+						m_writer.append(',');
+					firstPoint = false;
+
+					m_writer.append('[').append(sample.getTime().toEpochMilli()).append(',');
+					if (key.m_string)
+						appendString(sample.getValue().getValueAsString());
+					else
+						m_writer.append(sample.getValue());
+					m_writer.append(']');
+
+					m_pointCount++;
+				}
+
+				m_writer.append("]}");
+				m_writer.endLine();
+			}
+
+			m_writer.append(']');
+			m_writer.endLine();
+			sendBody();
+		}
+		catch (IOException e)
+		{
+			writeFailed(e);
+		}
+	}
+
+	private void startEntry(SeriesKey key, boolean first) throws IOException
+	{
+		if (!first)
+			m_writer.append(',');
+
+		m_writer.append("{\"name\":");
+		appendString(key.m_name);
+
+		m_writer.append(",\"tags\":{");
+		boolean firstTag = true;
+		for (Map.Entry<String, String> tag : key.m_tags.entrySet())
+		{
+			if (!firstTag)
+				m_writer.append(',');
+			firstTag = false;
+
+			appendString(tag.getKey());
+			m_writer.append(':');
+			appendString(tag.getValue());
+		}
+		m_writer.append('}');
+
+		if (key.m_ttl != 0)
+			m_writer.append(",\"ttl\":").append(key.m_ttl);
+
+		if (key.m_string)
+			m_writer.append(",\"type\":\"string\"");
+
+		m_writer.append(",\"datapoints\":[");
+	}
+
+	private void appendString(String value) throws IOException
+	{
+		m_writer.append('"');
+
+		int start = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++)
+		{
+			char c = value.charAt(i);
+			if (c != '"' && c != '\\' && c >= 0x20)
+				continue;
+
+			m_writer.append(value.subSequence(start, i));
+			start = i + 1;
+
+			switch (c)
+			{
+				case '"':
+					m_writer.append("\\\"");
+					break;
+				case '\\':
+					m_writer.append("\\\\");
+					break;
+				case '\n':
+					m_writer.append("\\n");
+					break;
+				case '\r':
+					m_writer.append("\\r");
+					break;
+				case '\t':
+					m_writer.append("\\t");
+					break;
+				default:
+					m_writer.append(String.format("\\u%04x", (int) c));
+			}
+		}
+
+		if (start == 0)
+			m_writer.append(value);
+		else
+			m_writer.append(value.subSequence(start, length));
+
+		m_writer.append('"');
+	}
+
+	private void sendBody() throws IOException
+	{
+		m_writer.flush();
+		m_pointCount = 0;
+		m_sender.send();
+	}
+
+	/**
+	 Sends one request.  Returns normally when Kairos took the data or
+	 rejected it as bad, throws when the request should be tried again.
+	 */
+	private void send(byte[] data, int length, boolean gzipped) throws IOException
+	{
+		HttpPost post = new HttpPost(m_url);
+		post.setEntity(new ByteArrayEntity(data, 0, length, ContentType.APPLICATION_JSON));
+		if (gzipped)
+			post.setHeader("Content-Encoding", "gzip");
+
+		try (CloseableHttpResponse response = m_httpClient.execute(post))
+		{
+			int status = response.getStatusLine().getStatusCode();
+			if (status < 300)
+			{
+				EntityUtils.consume(response.getEntity());
+				return;
+			}
+
+			String message = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+			if (status < 500 && status != 429)
+			{
+				logger.error("Kairos rejected metrics with status {}: {}", status, message);
+				return;
+			}
+
+			throw new IOException("Kairos returned status " + status + ": " + message);
+		}
+	}
+
+	private void writeFailed(IOException e)
+	{
+		logger.error("Unable to encode metrics for Kairos", e);
+		m_writer.clear();
+		m_pointCount = 0;
+		m_sender.discard();
+	}
+
+	/**
+	 Waits for outstanding requests to finish before closing the client
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		m_sender.close();
+		m_httpClient.close();
+	}
+}
@@ -4,7 +4,6 @@ import lombok.Getter;
 import lombok.Setter;
 import org.kairosdb.client.Client;
 import org.kairosdb.client.HttpClient;
-import org.kairosdb.client.TelnetClient;
 import org.kairosdb.client.builder.Metric;
 import org.kairosdb.client.builder.MetricBuilder;
 import org.kairosdb.metrics4j.MetricsContext;
@@ -14,21 +13,35 @@ import org.kairosdb.metrics4j.internal.FormattedMetric;
 import org.kairosdb.metrics4j.reporting.DoubleValue;
 import org.kairosdb.metrics4j.reporting.LongValue;
 import org.kairosdb.metrics4j.reporting.MetricValue;
-import org.kairosdb.metrics4j.sinks.MetricSink;
+import org.kairosdb.metrics4j.reporting.StringValue;
+import org.kairosdb.metrics4j.sinks.DiskSpool;
+import org.kairosdb.metrics4j.sinks.ExclusiveSink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.List;
 
-public class KairosSink implements MetricSink, Closeable
+/**
+ Sends metrics to KairosDB over http or telnet.  By default metrics are sent
+ with the kairosdb client.  With streaming set http requests are written
+ directly from the FormattedMetrics by a DatapointStreamer and telnet lines
+ are written without building a MetricBuilder.
+
+ With streaming and spool-dir set failed http requests are spilled to a
+ DiskSpool and replayed once Kairos is back.
+ */
+public class KairosSink implements ExclusiveSink, Closeable
 {
 	private Logger logger = LoggerFactory.getLogger(KairosSink.class);
 	private static final Formatter DEFAULT_FORMATTER = new DefaultFormatter();
 	private Client m_client;
+	private TelnetClientAdapter m_telnetClient;
+	private DatapointStreamer m_streamer;
 
 	@Setter
 	private String hostUrl = "http://localhost";
@@ -42,9 +55,54 @@ public class KairosSink implements MetricSink, Closeable
 	@Setter
 	private Duration ttl = Duration.ofSeconds(0);
 
+	@Setter
+	private boolean streaming = false;
+
+	@Setter
+	private boolean gzip = true;
+
+	@Setter
+	private int maxBatchSize = 10000;
+
+	@Setter
+	private int maxInFlight = 2;
+
+	@Setter
+	private int maxRetries = 3;
+
+	@Setter
+	private Duration retryBackoff = Duration.ofSeconds(1);
+
+	@Setter
+	private Duration timeout = Duration.ofSeconds(10);
+
+	@Setter
+	private String spoolDir;
+
+	@Setter
+	private long spoolMaxSize = 256L * 1024 * 1024;
+
+	@Setter
+	private Duration spoolMaxAge = Duration.ofHours(24);
+
+	@Setter
+	private int spoolReplayRate = 10;
+
 	@Override
 	public void reportMetrics(List<FormattedMetric> metrics)
 	{
+		if (m_streamer != null)
+		{
+			m_streamer.report(metrics, ttl.getSeconds());
+			return;
+		}
+
+		if (streaming && m_telnetClient != null)
+		{
+			m_telnetClient.putMetrics(metrics);
+			return;
+		}
+
 		MetricBuilder builder = MetricBuilder.getInstance();
 
 		for (FormattedMetric metric : metrics)
@@ -58,23 +116,36 @@ public class KairosSink implements MetricSink, Closeable
 
 			for (FormattedMetric.Sample sample : metric.getSamples())
 			{
-				Metric sendMetric = builder.addMetric(sample.getMetricName())
-						.addTags(metric.getTags());
+				MetricValue value = sample.getValue();
+				Metric sendMetric;
+				if (value instanceof StringValue)
+					sendMetric = builder.addMetric(sample.getMetricName(), "string");
+				else
+					sendMetric = builder.addMetric(sample.getMetricName());
+
+				sendMetric.addTags(metric.getTags());
 
 				if (timeout != 0)
 					sendMetric.addTtl((int)timeout);
 
-				MetricValue value = sample.getValue();
 				if (value instanceof LongValue)
 					sendMetric.addDataPoint(sample.getTime().toEpochMilli(), ((LongValue)value).getValue());
 				else if (value instanceof DoubleValue)
 					sendMetric.addDataPoint(sample.getTime().toEpochMilli(), ((DoubleValue)value).getValue());
+				else
+					sendMetric.addDataPoint(sample.getTime().toEpochMilli(), value.getValueAsString());
 			}
 		}
 
 		m_client.pushMetrics(builder);
 	}
 
+	@Override
+	public boolean isExclusive()
+	{
+		return spoolDir != null;
+	}
+
 	@Override
 	public Formatter getDefaultFormatter()
 	{
@@ -85,7 +156,25 @@ public class KairosSink implements MetricSink, Closeable
 	public void init(MetricsContext context)
 	{
 		logger.info("Initializing Kairosdb client");
-		if (telnetHost == null)
+		if (telnetHost == null && streaming)
+		{
+			DiskSpool spool = null;
+			if (spoolDir != null)
+			{
+				try
+				{
+					spool = new DiskSpool(Paths.get(spoolDir), spoolMaxSize, spoolMaxAge, spoolReplayRate);
+				}
+				catch (IOException e)
+				{
+					logger.error("Unable to open spool directory {}", spoolDir, e);
+				}
+			}
+
+			m_streamer = new DatapointStreamer(hostUrl, gzip, maxBatchSize, maxInFlight, maxRetries,
+					retryBackoff, timeout, spool);
+		}
+		else if (telnetHost == null)
 		{
 			try
 			{
@@ -98,20 +187,18 @@ public class KairosSink implements MetricSink, Closeable
 		}
 		else
 		{
-			try
-			{
-				m_client = new TelnetClientAdapter(new TelnetClient(telnetHost, telnetPort));
-			}
-			catch (IOException e)
-			{
-				e.printStackTrace();
-			}
+			m_telnetClient = new TelnetClientAdapter(telnetHost, telnetPort);
+			m_client = m_telnetClient;
 		}
 	}
 
 	@Override
 	public void close() throws IOException
 	{
-		m_client.close();
+		if (m_streamer != null)
+			m_streamer.close();
+
+		if (m_client != null)
+			m_client.close();
 	}
 }
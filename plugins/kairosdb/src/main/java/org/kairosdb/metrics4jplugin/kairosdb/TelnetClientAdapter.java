@@ -1,7 +1,8 @@
 package org.kairosdb.metrics4jplugin.kairosdb;
 
 import org.kairosdb.client.Client;
-import org.kairosdb.client.TelnetClient;
+import org.kairosdb.client.builder.DataPoint;
+import org.kairosdb.client.builder.Metric;
 import org.kairosdb.client.builder.MetricBuilder;
 import org.kairosdb.client.builder.QueryBuilder;
 import org.kairosdb.client.builder.QueryTagBuilder;
@@ -10,17 +11,119 @@ import org.kairosdb.client.builder.RollupTask;
 import org.kairosdb.client.response.JsonResponseHandler;
 import org.kairosdb.client.response.QueryResponse;
 import org.kairosdb.client.response.QueryTagResponse;
+import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+import org.kairosdb.metrics4j.sinks.TelnetSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ Sends metrics to the Kairos telnet port as putm commands.  Lines are encoded
+ as UTF-8 straight into a buffer by the metrics4j TelnetSink and written out
+ without waiting for any reply, the connection is reopened after a failure.
+ The telnet protocol only takes numbers, other values are skipped.
+ */
 public class TelnetClientAdapter implements Client
 {
-	private final TelnetClient m_client;
-
-	public TelnetClientAdapter(TelnetClient client)
-	{
-		m_client = client;
+	private static final Logger logger = LoggerFactory.getLogger(TelnetClientAdapter.class);
+
+	/**
+	 TelnetSink that can also write data points from a MetricBuilder
+	 */
+	private static class PutmWriter extends TelnetSink
+	{
+		//Metrics a skipped value was already logged for
+		private final Set<String> m_skippedNames = ConcurrentHashMap.newKeySet();
+
+		private PutmWriter(String host, int port)
+		{
+			super(Resolution.MILLISECONDS);
+			setHost(host);
+			setPort(port);
+		}
+
+		private static boolean isNumeric(Object value)
+		{
+			return value instanceof Number || value instanceof LongValue || value instanceof DoubleValue;
+		}
+
+		/**
+		 Writes the samples one at a time so non-numeric values can be skipped
+		 */
+		@Override
+		public void reportMetrics(List<FormattedMetric> metrics)
+		{
+			for (FormattedMetric metric : metrics)
+			{
+				for (FormattedMetric.Sample sample : metric.getSamples())
+				{
+					putDataPoint(sample.getMetricName(), sample.getTime().toEpochMilli(),
+							sample.getValue(), metric.getTags());
+				}
+			}
+
+			flush();
+		}
+
+		private void putDataPoint(String name, long time, Object value, Map<String, String> tags)
+		{
+			if (!isNumeric(value))
+			{
+				if (m_skippedNames.add(name))
+					logger.warn("Skipping non-numeric values for metric {}, the telnet protocol only takes numbers", name);
+				return;
+			}
+
+			try
+			{
+				m_writer.append("putm ").append(name).append(' ').append(time).append(' ');
+				if (value instanceof MetricValue)
+					m_writer.append((MetricValue) value);
+				else
+					m_writer.append(String.valueOf(value));
+
+				for (Map.Entry<String, String> tag : tags.entrySet())
+				{
+					m_writer.append(' ').append(tag.getKey()).append('=').append(tag.getValue());
+				}
+			}
+			catch (IOException e)
+			{
+				writeFailed(e);
+				return;
+			}
+
+			endLine();
+		}
+
+		private void flushLines()
+		{
+			flush();
+		}
+	}
+
+	private final PutmWriter m_sink;
+
+	public TelnetClientAdapter(String host, int port)
+	{
+		m_sink = new PutmWriter(host, port);
+		m_sink.init(null);
+	}
+
+	/**
+	 Writes the metrics as putm lines without building a MetricBuilder
+	 */
+	public void putMetrics(List<FormattedMetric> metrics)
+	{
+		m_sink.reportMetrics(metrics);
 	}
 
 	@Override
@@ -92,7 +195,15 @@ public class TelnetClientAdapter implements Client
 	@Override
 	public void pushMetrics(MetricBuilder metricBuilder)
 	{
-		m_client.putMetrics(metricBuilder);
+		for (Metric metric : metricBuilder.getMetrics())
+		{
+			for (DataPoint dataPoint : metric.getDataPoints())
+			{
+				m_sink.putDataPoint(metric.getName(), dataPoint.getTimestamp(), dataPoint.getValue(), metric.getTags());
+			}
+		}
+
+		m_sink.flushLines();
 	}
 
 	@Override
@@ -128,6 +239,6 @@ public class TelnetClientAdapter implements Client
 	@Override
 	public void close() throws IOException
 	{
-		m_client.shutdown();
+		m_sink.close();
 	}
 }
@@ -0,0 +1,246 @@
+package org.kairosdb.metrics4jplugin.kairosdb;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.internal.ReportedMetricImpl;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+import org.kairosdb.metrics4j.reporting.StringValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class KairosSinkTest
+{
+	private HttpServer m_server;
+	private final List<String> m_bodies = new CopyOnWriteArrayList<>();
+	private final AtomicInteger m_failures = new AtomicInteger();
+
+	@BeforeEach
+	public void startServer() throws IOException
+	{
+		m_server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		m_server.createContext("/api/v1/datapoints", exchange ->
+		{
+			InputStream in = exchange.getRequestBody();
+			if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+				in = new GZIPInputStream(in);
+
+			String body = read(in);
+			if (m_failures.getAndDecrement() > 0)
+			{
+				exchange.sendResponseHeaders(503, -1);
+				exchange.close();
+				return;
+			}
+
+			m_bodies.add(body);
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+		});
+		m_server.start();
+	}
+
+	@AfterEach
+	public void stopServer()
+	{
+		m_server.stop(0);
+	}
+
+	private static String read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static FormattedMetric newMetric(String name, Map<String, String> props, MetricValue... values)
+	{
+		ReportedMetricImpl reportedMetric = new ReportedMetricImpl()
+				.setMethodName("myMethod")
+				.setClassName("MyClass");
+
+		for (int i = 0; i < values.length; i++)
+			reportedMetric.addSample("value", values[i], Instant.ofEpochMilli((i + 1) * 1000L));
+
+		FormattedMetric metric = new FormattedMetric(reportedMetric, props,
+				Collections.singletonMap("host", "h1"), "");
+		for (int i = 0; i < values.length; i++)
+			metric.addSample(reportedMetric.getSamples().get(i), name);
+
+		return metric;
+	}
+
+	private KairosSink newSink()
+	{
+		KairosSink sink = new KairosSink();
+		sink.setHostUrl("http://localhost:" + m_server.getAddress().getPort());
+		sink.setStreaming(true);
+		return sink;
+	}
+
+	@Test
+	public void test_streamingGroupsSeries() throws IOException
+	{
+		KairosSink sink = newSink();
+		sink.init(mock(MetricsContext.class));
+
+		Map<String, String> props = new HashMap<>();
+		props.put("ttl", "60");
+
+		sink.reportMetrics(Arrays.asList(
+				newMetric("bag", Collections.emptyMap(), new LongValue(1), new LongValue(2)),
+				newMetric("status", props, new StringValue("say \"hi\""))));
+		sink.close();
+
+		assertThat(m_bodies).containsExactly(
+				"[{\"name\":\"bag\",\"tags\":{\"host\":\"h1\"},\"datapoints\":[[1000,1],[2000,2]]}\n" +
+				",{\"name\":\"status\",\"tags\":{\"host\":\"h1\"},\"ttl\":60,\"type\":\"string\",\"datapoints\":[[1000,\"say \\\"hi\\\"\"]]}\n" +
+				"]\n");
+	}
+
+	@Test
+	public void test_splitBatches() throws IOException
+	{
+		KairosSink sink = newSink();
+		sink.setGzip(false);
+		sink.setMaxBatchSize(2);
+		sink.setMaxInFlight(1); //Keeps the requests in order
+		sink.init(mock(MetricsContext.class));
+
+		sink.reportMetrics(Collections.singletonList(newMetric("count", Collections.emptyMap(),
+				new LongValue(1), new LongValue(2), new LongValue(3))));
+		sink.close();
+
+		assertThat(m_bodies).containsExactly(
+				"[{\"name\":\"count\",\"tags\":{\"host\":\"h1\"},\"datapoints\":[[1000,1],[2000,2]]}]\n",
+				"[{\"name\":\"count\",\"tags\":{\"host\":\"h1\"},\"datapoints\":[[3000,3]]}\n]\n");
+	}
+
+	@Test
+	public void test_splitOnSeriesBoundary() throws IOException
+	{
+		KairosSink sink = newSink();
+		sink.setGzip(false);
+		sink.setMaxBatchSize(2);
+		sink.setMaxInFlight(1); //Keeps the requests in order
+		sink.init(mock(MetricsContext.class));
+
+		sink.reportMetrics(Arrays.asList(
+				newMetric("first", Collections.emptyMap(), new LongValue(1), new LongValue(2)),
+				newMetric("second", Collections.emptyMap(), new LongValue(3))));
+		sink.close();
+
+		assertThat(m_bodies).containsExactly(
+				"[{\"name\":\"first\",\"tags\":{\"host\":\"h1\"},\"datapoints\":[[1000,1],[2000,2]]}\n]\n",
+				"[{\"name\":\"second\",\"tags\":{\"host\":\"h1\"},\"datapoints\":[[1000,3]]}\n]\n");
+	}
+
+	@Test
+	public void test_telnetStreaming() throws IOException
+	{
+		try (ServerSocket server = new ServerSocket(0))
+		{
+			KairosSink sink = new KairosSink();
+			sink.setTelnetHost("localhost");
+			sink.setTelnetPort(server.getLocalPort());
+			sink.setStreaming(true);
+			sink.init(mock(MetricsContext.class));
+
+			try (Socket socket = server.accept())
+			{
+				sink.reportMetrics(Collections.singletonList(newMetric("count", Collections.emptyMap(),
+						new LongValue(1), new LongValue(2))));
+				sink.close();
+
+				assertThat(read(socket.getInputStream())).isEqualTo(
+						"putm count 1000 1 host=h1\n" +
+						"putm count 2000 2 host=h1\n");
+			}
+		}
+	}
+
+	@Test
+	public void test_telnetSkipsStrings() throws IOException
+	{
+		for (boolean streaming : new boolean[] {true, false})
+		{
+			try (ServerSocket server = new ServerSocket(0))
+			{
+				KairosSink sink = new KairosSink();
+				sink.setTelnetHost("localhost");
+				sink.setTelnetPort(server.getLocalPort());
+				sink.setStreaming(streaming);
+				sink.init(mock(MetricsContext.class));
+
+				try (Socket socket = server.accept())
+				{
+					sink.reportMetrics(Arrays.asList(
+							newMetric("status", Collections.emptyMap(), new StringValue("up and running")),
+							newMetric("count", Collections.emptyMap(), new LongValue(1))));
+					sink.close();
+
+					assertThat(read(socket.getInputStream())).isEqualTo(
+							"putm count 1000 1 host=h1\n");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void test_spoolReplayedAfterRestart(@TempDir Path spoolDir) throws IOException
+	{
+		m_failures.set(1);
+		KairosSink sink = newSink();
+		sink.setGzip(false);
+		sink.setMaxInFlight(1);
+		sink.setSpoolDir(spoolDir.toString());
+		sink.setSpoolReplayRate(0);
+		sink.init(mock(MetricsContext.class));
+
+		sink.reportMetrics(Collections.singletonList(newMetric("count", Collections.emptyMap(), new LongValue(1))));
+		sink.close();
+
+		//A new sink on the same directory replays the failed request first,
+		//with one sender the replay finishes before the next request is sent
+		sink = newSink();
+		sink.setGzip(false);
+		sink.setMaxInFlight(1);
+		sink.setSpoolDir(spoolDir.toString());
+		sink.setSpoolReplayRate(0);
+		sink.init(mock(MetricsContext.class));
+		sink.reportMetrics(Collections.singletonList(newMetric("count", Collections.emptyMap(), new LongValue(2))));
+		sink.close();
+
+		assertThat(m_bodies).containsExactly(
+				"[{\"name\":\"count\",\"tags\":{\"host\":\"h1\"},\"datapoints\":[[1000,1]]}\n]\n",
+				"[{\"name\":\"count\",\"tags\":{\"host\":\"h1\"},\"datapoints\":[[1000,2]]}\n]\n");
+	}
+}
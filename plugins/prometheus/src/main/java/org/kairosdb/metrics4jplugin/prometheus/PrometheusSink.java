@@ -1,8 +1,7 @@
 package org.kairosdb.metrics4jplugin.prometheus;
 
-import io.prometheus.client.Collector;
-import io.prometheus.client.CollectorRegistry;
-import io.prometheus.client.exporter.HTTPServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import lombok.Setter;
 import org.kairosdb.metrics4j.MetricsContext;
 import org.kairosdb.metrics4j.TriggerNotification;
@@ -11,133 +10,425 @@ import org.kairosdb.metrics4j.formatters.Formatter;
 import org.kairosdb.metrics4j.internal.FormattedMetric;
 import org.kairosdb.metrics4j.reporting.DoubleValue;
 import org.kairosdb.metrics4j.reporting.LongValue;
-import org.kairosdb.metrics4j.sinks.MetricSink;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+import org.kairosdb.metrics4j.sinks.ExclusiveSink;
+import org.kairosdb.metrics4j.sinks.LineWriter;
 import org.kairosdb.metrics4j.triggers.Trigger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
 
-public class PrometheusSink  extends CollectorRegistry implements MetricSink, Closeable, TriggerNotification
+/**
+ Serves metrics in the Prometheus text format.  A scrape gathers metrics
+ through the PrometheusTrigger and the result is encoded once into a byte
+ array that is written as is to every scrape until it is older than
+ min-scrape-interval.  Scrapes that arrive while a gather is running wait for
+ it and share its result instead of gathering again.
+
+ Samples are grouped into one family per metric name across all tag sets.
+ The family type is read from the prometheus_type prop of the source and
+ defaults to untyped.
+ */
+public class PrometheusSink implements ExclusiveSink, Closeable, TriggerNotification
 {
 	private static final Logger logger = LoggerFactory.getLogger(PrometheusSink.class);
 	private static final Formatter DEFAULT_FORMATTER = new DefaultFormatter("_");
-	private HTTPServer m_httpServer;
-	private PrometheusTrigger m_trigger;
-	private List<FormattedMetric> m_reportedMetrics;
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final String TYPE_PROP = "prometheus_type";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private HttpServer m_httpServer;
+	private ExecutorService m_httpExecutor;
+	private volatile PrometheusTrigger m_trigger;
+
+	private final Object m_gatherLock = new Object();
+	private volatile Exposition m_exposition;
 
 	@Setter
 	private int listenPort;
 
-	@Override
-	public void reportMetrics(List<FormattedMetric> metrics)
+	@Setter
+	private Duration minScrapeInterval = Duration.ZERO;
+
+	/**
+	 Encoded result of a gather
+	 */
+	private static class Exposition
 	{
-		m_reportedMetrics = metrics;
+		private final byte[] m_body;
+		private final long m_time;   //When the gather finished in nanoTime
+		private volatile byte[] m_gzipBody;
+
+		private Exposition(byte[] body, long time)
+		{
+			m_body = body;
+			m_time = time;
+		}
+
+		private byte[] getGzipBody() throws IOException
+		{
+			byte[] gzipBody = m_gzipBody;
+			if (gzipBody == null)
+			{
+				ByteArrayOutputStream out = new ByteArrayOutputStream(m_body.length / 4 + 64);
+				try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+				{
+					gzip.write(m_body);
+				}
+
+				gzipBody = out.toByteArray();
+				m_gzipBody = gzipBody;
+			}
+
+			return gzipBody;
+		}
 	}
 
-	@Override
-	public Formatter getDefaultFormatter()
+	/**
+	 All samples with the same metric name
+	 */
+	private static class Family
 	{
-		return DEFAULT_FORMATTER;
+		private final String m_help;
+		private final String m_type;
+		private final List<FormattedMetric> m_metrics = new ArrayList<>();
+		private final List<FormattedMetric.Sample> m_samples = new ArrayList<>();
+
+		private Family(String help, String type)
+		{
+			m_help = help;
+			m_type = type;
+		}
 	}
 
+	/**
+	 Called by the trigger with the gathered metrics, they are encoded right
+	 away and replace the cached exposition.
+	 */
 	@Override
-	public void init(MetricsContext context)
+	public void reportMetrics(List<FormattedMetric> metrics)
 	{
-		logger.debug("Initialize PrometheusSink");
-		context.registerTriggerNotification(this);
+		Map<String, Family> families = new LinkedHashMap<>();
+
+		for (FormattedMetric metric : metrics)
+		{
+			String type = metric.getProps().getOrDefault(TYPE_PROP, "untyped");
+
+			for (FormattedMetric.Sample sample : metric.getSamples())
+			{
+				if (MetricValue.TYPE_STRING.equals(sample.getValue().getType()))
+					continue; //Prometheus only takes numbers
+
+				Family family = families.computeIfAbsent(sanitizeName(sample.getMetricName()),
+						name -> new Family(metric.getHelp(), type));
+				family.m_metrics.add(metric);
+				family.m_samples.add(sample);
+			}
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream(BUFFER_SIZE);
+		byte[] copyBuffer = new byte[8 * 1024];
+		LineWriter writer = new LineWriter(BUFFER_SIZE, buffer -> copy(buffer, body, copyBuffer));
 
 		try
 		{
-			m_httpServer = new HTTPServer(new InetSocketAddress(listenPort), this, true);
+			for (Map.Entry<String, Family> entry : families.entrySet())
+				writeFamily(writer, entry.getKey(), entry.getValue());
+
+			writer.flush();
 		}
 		catch (IOException e)
 		{
-			e.printStackTrace();
+			//Only thrown by the output which is in memory
+			logger.error("Unable to encode metrics for Prometheus", e);
+			return;
 		}
-	}
 
-	@Override
-	public void close() throws IOException
-	{
-		logger.debug("PrometheusSink shutting down");
-		m_httpServer.stop();
+		m_exposition = new Exposition(body.toByteArray(), System.nanoTime());
 	}
 
-	@Override
-	public void newTrigger(String name, Trigger trigger)
+	private static void copy(ByteBuffer buffer, OutputStream out, byte[] copyBuffer) throws IOException
 	{
-		if (trigger instanceof PrometheusTrigger)
+		while (buffer.hasRemaining())
 		{
-			m_trigger = (PrometheusTrigger)trigger;
+			int length = Math.min(buffer.remaining(), copyBuffer.length);
+			buffer.get(copyBuffer, 0, length);
+			out.write(copyBuffer, 0, length);
 		}
 	}
 
-	@Override
-	public Enumeration<Collector.MetricFamilySamples> metricFamilySamples()
+	private void writeFamily(LineWriter writer, String name, Family family) throws IOException
 	{
-		logger.debug("Scrape called");
-		m_trigger.reportMetrics();
-		Vector<Collector.MetricFamilySamples> ret = new Vector<>();
+		String help = family.m_help;
+		if (help != null && !help.isEmpty())
+		{
+			writer.append("# HELP ").append(name).append(' ').append(escape(help, false));
+			writer.endLine();
+		}
+
+		writer.append("# TYPE ").append(name).append(' ').append(family.m_type);
+		writer.endLine();
 
-		for (FormattedMetric reportedMetric : m_reportedMetrics)
+		for (int i = 0; i < family.m_samples.size(); i++)
 		{
-			List<Collector.MetricFamilySamples.Sample> promSamples = new ArrayList<>();
-			List<String> keys = new ArrayList<>();
-			List<String> values = new ArrayList<>();
+			FormattedMetric metric = family.m_metrics.get(i);
+			FormattedMetric.Sample sample = family.m_samples.get(i);
+
+			writer.append(name);
+
+			Map<String, String> tags = metric.getTags();
+			if (!tags.isEmpty())
+			{
+				writer.append('{');
+				boolean first = true;
+				for (Map.Entry<String, String> tag : tags.entrySet())
+				{
+					if (!first)
+						writer.append(',');
+					first = false;
+
+					writer.append(sanitizeName(tag.getKey())).append("=\"")
+							.append(escape(tag.getValue(), true)).append('"');
+				}
+				writer.append('}');
+			}
 
-			for (Map.Entry<String, String> tagEntry : reportedMetric.getTags().entrySet())
+			writer.append(' ');
+			appendValue(writer, sample.getValue());
+			writer.append(' ').append(sample.getTime().toEpochMilli());
+			writer.endLine();
+		}
+	}
+
+	private static void appendValue(LineWriter writer, MetricValue value) throws IOException
+	{
+		if (value instanceof DoubleValue)
+		{
+			double d = ((DoubleValue) value).getValue();
+			if (Double.isInfinite(d))
 			{
-				keys.add(tagEntry.getKey());
-				values.add(tagEntry.getValue());
+				writer.append(d > 0 ? "+Inf" : "-Inf");
+				return;
 			}
+		}
+		else if (!(value instanceof LongValue))
+		{
+			writer.append(value.getValueAsString());
+			return;
+		}
 
-			String familyName = "";
+		writer.append(value);
+	}
 
-			//convert to MetricFamilySamples
-			for (FormattedMetric.Sample sample : reportedMetric.getSamples())
+	/**
+	 Replaces any character that is not allowed in a metric or label name with _
+	 */
+	/*package*/ static String sanitizeName(String name)
+	{
+		int length = name.length();
+		for (int i = 0; i < length; i++)
+		{
+			if (!validNameChar(name.charAt(i), i))
 			{
-				//this is kind of hackish need to figure out something better
-				familyName = sample.getMetricName();
-				int index = familyName.lastIndexOf('_');
-				if (index != -1)
-					familyName = familyName.substring(0, index);
-
-				logger.debug("Reporting {}", sample.getMetricName());
-				if (sample.getValue() instanceof DoubleValue)
+				StringBuilder sb = new StringBuilder(name);
+				for (; i < length; i++)
 				{
-					promSamples.add(new Collector.MetricFamilySamples.Sample(sample.getMetricName(),
-							keys, values, ((DoubleValue) sample.getValue()).getValue(), sample.getTime().toEpochMilli()));
-				}
-				else if (sample.getValue() instanceof LongValue)
-				{
-					promSamples.add(new Collector.MetricFamilySamples.Sample(sample.getMetricName(),
-							keys, values, ((LongValue) sample.getValue()).getValue(), sample.getTime().toEpochMilli()));
+					if (!validNameChar(name.charAt(i), i))
+						sb.setCharAt(i, '_');
 				}
+
+				return sb.toString();
+			}
+		}
+
+		return name;
+	}
+
+	private static boolean validNameChar(char c, int index)
+	{
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' ||
+				(index > 0 && c >= '0' && c <= '9');
+	}
+
+	/**
+	 Escapes backslash and new line, and double quote for label values
+	 */
+	/*package*/ static String escape(String value, boolean quote)
+	{
+		StringBuilder sb = null;
+		int length = value.length();
+		for (int i = 0; i < length; i++)
+		{
+			char c = value.charAt(i);
+			String replacement = null;
+			if (c == '\\')
+				replacement = "\\\\";
+			else if (c == '\n')
+				replacement = "\\n";
+			else if (quote && c == '"')
+				replacement = "\\\"";
+
+			if (replacement != null && sb == null)
+			{
+				sb = new StringBuilder(length + 8);
+				sb.append(value, 0, i);
+			}
+
+			if (sb != null)
+			{
+				if (replacement != null)
+					sb.append(replacement);
+				else
+					sb.append(c);
+			}
+		}
+
+		return sb == null ? value : sb.toString();
+	}
+
+	/**
+	 Returns the exposition for a scrape, gathering metrics if the cached one
+	 is older than min-scrape-interval.
+	 */
+	/*package*/ Exposition scrape()
+	{
+		long arrived = System.nanoTime();
+		Exposition exposition = m_exposition;
+		if (exposition != null && arrived - exposition.m_time < minScrapeInterval.toNanos())
+			return exposition;
+
+		synchronized (m_gatherLock)
+		{
+			//A gather finished while we waited for the lock, share its result
+			exposition = m_exposition;
+			if (exposition != null && exposition.m_time - arrived >= 0)
+				return exposition;
+
+			logger.debug("Scrape called");
+			if (m_trigger != null)
+				m_trigger.reportMetrics();
+
+			exposition = m_exposition;
+			if (exposition == null)
+				exposition = new Exposition(new byte[0], System.nanoTime());
+
+			return exposition;
+		}
+	}
+
+	/*package*/ byte[] scrapeBody()
+	{
+		return scrape().m_body;
+	}
+
+	private void handleScrape(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			Exposition exposition = scrape();
+
+			byte[] body = exposition.m_body;
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (acceptEncoding != null && acceptEncoding.contains("gzip"))
+			{
+				body = exposition.getGzipBody();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
 			}
 
-			if (!promSamples.isEmpty())
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+			if (body.length != 0)
 			{
-				ret.add(new Collector.MetricFamilySamples(familyName,
-						Collector.Type.COUNTER, reportedMetric.getHelp(), promSamples));
+				try (OutputStream out = exchange.getResponseBody())
+				{
+					out.write(body);
+				}
 			}
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/*package*/ int getPort()
+	{
+		return m_httpServer.getAddress().getPort();
+	}
+
+	/**
+	 Always holds the listen port
+	 */
+	@Override
+	public boolean isExclusive()
+	{
+		return true;
+	}
+
+	@Override
+	public Formatter getDefaultFormatter()
+	{
+		return DEFAULT_FORMATTER;
+	}
+
+	@Override
+	public void init(MetricsContext context)
+	{
+		logger.debug("Initialize PrometheusSink");
+		context.registerTriggerNotification(this);
 
+		try
+		{
+			m_httpServer = HttpServer.create(new InetSocketAddress(listenPort), 3);
+			m_httpServer.createContext("/", this::handleScrape);
+
+			//Concurrent scrapes wait on the same gather instead of queueing behind it
+			m_httpExecutor = Executors.newFixedThreadPool(4, runnable ->
+			{
+				Thread thread = new Thread(runnable, "metrics4j-prometheus-http");
+				thread.setDaemon(true);
+				return thread;
+			});
+			m_httpServer.setExecutor(m_httpExecutor);
+			m_httpServer.start();
 		}
+		catch (IOException e)
+		{
+			logger.error("Unable to start Prometheus http server on port {}", listenPort, e);
+		}
+	}
 
-		return ret.elements();
+	@Override
+	public void close() throws IOException
+	{
+		logger.debug("PrometheusSink shutting down");
+		if (m_httpServer != null)
+			m_httpServer.stop(0);
+
+		if (m_httpExecutor != null)
+			m_httpExecutor.shutdown();
 	}
 
 	@Override
-	public Enumeration<Collector.MetricFamilySamples> filteredMetricFamilySamples(Set<String> includedNames)
+	public void newTrigger(String name, Trigger trigger)
 	{
-		return metricFamilySamples();
+		if (trigger instanceof PrometheusTrigger)
+		{
+			m_trigger = (PrometheusTrigger)trigger;
+		}
 	}
 }
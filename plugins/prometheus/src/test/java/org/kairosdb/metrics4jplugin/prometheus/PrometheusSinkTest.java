@@ -0,0 +1,167 @@
+package org.kairosdb.metrics4jplugin.prometheus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kairosdb.metrics4j.MetricsContext;
+import org.kairosdb.metrics4j.internal.FormattedMetric;
+import org.kairosdb.metrics4j.internal.ReportedMetricImpl;
+import org.kairosdb.metrics4j.reporting.DoubleValue;
+import org.kairosdb.metrics4j.reporting.LongValue;
+import org.kairosdb.metrics4j.reporting.MetricValue;
+import org.kairosdb.metrics4j.reporting.StringValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class PrometheusSinkTest
+{
+	private final PrometheusSink m_sink = new PrometheusSink();
+	private final AtomicInteger m_gathers = new AtomicInteger();
+	private volatile CountDownLatch m_gatherLatch;
+	private volatile List<FormattedMetric> m_metrics = Collections.emptyList();
+
+	private void init()
+	{
+		PrometheusTrigger trigger = new PrometheusTrigger();
+		trigger.setMetricCollection(now ->
+		{
+			m_gathers.incrementAndGet();
+			CountDownLatch latch = m_gatherLatch;
+			if (latch != null)
+			{
+				try
+				{
+					latch.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			m_sink.reportMetrics(m_metrics);
+		});
+
+		m_sink.newTrigger("prometheus", trigger);
+		m_sink.init(mock(MetricsContext.class));
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException
+	{
+		m_sink.close();
+	}
+
+	private static FormattedMetric newMetric(String name, Map<String, String> tags, Map<String, String> props,
+			String help, MetricValue value)
+	{
+		ReportedMetricImpl reportedMetric = new ReportedMetricImpl()
+				.setMethodName("myMethod")
+				.setClassName("MyClass");
+		reportedMetric.addSample("value", value, Instant.ofEpochMilli(1000L));
+
+		FormattedMetric metric = new FormattedMetric(reportedMetric, props, tags, help);
+		metric.addSample(reportedMetric.getSamples().get(0), name);
+		return metric;
+	}
+
+	private static String read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void test_familiesAreGrouped() throws IOException
+	{
+		Map<String, String> counterProps = new HashMap<>();
+		counterProps.put("prometheus_type", "counter");
+
+		m_metrics = Arrays.asList(
+				newMetric("requests_count", Collections.singletonMap("host", "a"), counterProps, "Number of requests", new LongValue(1)),
+				newMetric("latency_max", Collections.singletonMap("host", "a"), Collections.emptyMap(), null, new DoubleValue(Double.POSITIVE_INFINITY)),
+				newMetric("requests_count", Collections.singletonMap("host", "b\"c"), counterProps, "Number of requests", new LongValue(2)),
+				newMetric("status", Collections.emptyMap(), Collections.emptyMap(), null, new StringValue("ok")));
+		init();
+
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + m_sink.getPort() + "/metrics").openConnection();
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentType()).startsWith("text/plain; version=0.0.4");
+		assertThat(read(connection.getInputStream())).isEqualTo(
+				"# HELP requests_count Number of requests\n" +
+				"# TYPE requests_count counter\n" +
+				"requests_count{host=\"a\"} 1 1000\n" +
+				"requests_count{host=\"b\\\"c\"} 2 1000\n" +
+				"# TYPE latency_max untyped\n" +
+				"latency_max{host=\"a\"} +Inf 1000\n");
+	}
+
+	@Test
+	public void test_minScrapeInterval()
+	{
+		m_sink.setMinScrapeInterval(Duration.ofMinutes(1));
+		m_metrics = Collections.singletonList(newMetric("count", Collections.emptyMap(), Collections.emptyMap(), null, new LongValue(1)));
+		init();
+
+		byte[] body = m_sink.scrapeBody();
+		assertThat(m_sink.scrapeBody()).isSameAs(body);
+		assertThat(m_gathers.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void test_concurrentScrapesShareGather() throws InterruptedException
+	{
+		init();
+		m_gatherLatch = new CountDownLatch(1);
+
+		List<Thread> scrapers = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+		{
+			Thread thread = new Thread(m_sink::scrapeBody);
+			thread.start();
+			scrapers.add(thread);
+		}
+
+		//Wait for one scrape to be gathering and the others to wait for it
+		for (Thread scraper : scrapers)
+		{
+			while (scraper.getState() == Thread.State.NEW || scraper.getState() == Thread.State.RUNNABLE)
+				Thread.sleep(1);
+		}
+
+		m_gatherLatch.countDown();
+		for (Thread scraper : scrapers)
+			scraper.join();
+
+		assertThat(m_gathers.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void test_sanitizeName()
+	{
+		assertThat(PrometheusSink.sanitizeName("my.metric-name")).isEqualTo("my_metric_name");
+		assertThat(PrometheusSink.sanitizeName("1abc")).isEqualTo("_abc");
+		assertThat(PrometheusSink.sanitizeName("ok_name:1")).isEqualTo("ok_name:1");
+	}
+}